@@ -23,6 +23,8 @@ import java.io.Serializable;
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.EntityExistsException;
+import org.apache.fulcrum.security.util.GroupDictionary;
+import org.apache.fulcrum.security.util.GroupHandle;
 import org.apache.fulcrum.security.util.GroupSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
 
@@ -104,6 +106,28 @@ public interface GroupManager extends Serializable
      */
     <T extends Group> T getGroupById(Object id) throws DataBackendException, UnknownEntityException;
 
+    /**
+     * Resolve a Group name once into a handle for repeated checks with
+     * the ACLs. The handle stays valid until the Group is removed.
+     *
+     * @param name
+     *            the name of the Group.
+     * @return the handle of the Group
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     * @throws UnknownEntityException
+     *             if the group does not exist.
+     */
+    GroupHandle getGroupHandle(String name) throws DataBackendException, UnknownEntityException;
+
+    /**
+     * The dictionary of this manager which assigns the ordinals of the
+     * group handles.
+     *
+     * @return the group dictionary
+     */
+    GroupDictionary getGroupDictionary();
+
     /**
      * Renames an existing Group.
      *
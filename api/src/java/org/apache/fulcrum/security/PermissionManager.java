@@ -23,6 +23,8 @@ import java.io.Serializable;
 import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.EntityExistsException;
+import org.apache.fulcrum.security.util.PermissionDictionary;
+import org.apache.fulcrum.security.util.PermissionHandle;
 import org.apache.fulcrum.security.util.PermissionSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
 
@@ -105,6 +107,28 @@ public interface PermissionManager extends Serializable
      */
     <T extends Permission> T getPermissionById(Object id) throws DataBackendException, UnknownEntityException;
 
+    /**
+     * Resolve a Permission name once into a handle for repeated checks with
+     * the ACLs. The handle stays valid until the Permission is removed.
+     *
+     * @param name
+     *            the name of the Permission.
+     * @return the handle of the Permission
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     * @throws UnknownEntityException
+     *             if the permission does not exist.
+     */
+    PermissionHandle getPermissionHandle(String name) throws DataBackendException, UnknownEntityException;
+
+    /**
+     * The dictionary of this manager which assigns the ordinals of the
+     * permission handles and of the bitmap permission sets of the ACLs.
+     *
+     * @return the permission dictionary
+     */
+    PermissionDictionary getPermissionDictionary();
+
     /**
      * Retrieves all permissions defined in the system.
      *
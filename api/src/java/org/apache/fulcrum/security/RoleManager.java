@@ -21,6 +21,7 @@ package org.apache.fulcrum.security;
 import java.io.Serializable;
 
 import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.EntityExistsException;
@@ -175,4 +176,17 @@ public interface RoleManager extends Serializable
      *             when more than one Role with the same name exists.
      */
     boolean checkExists(String roleName) throws DataBackendException;
+
+    /**
+     * Count the roles a permission is granted to directly, without
+     * retrieving them. Roles which only inherit the permission are not
+     * counted.
+     *
+     * @param permission
+     *            the permission
+     * @return the number of roles granting the permission
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    int countRolesWithPermission(Permission permission) throws DataBackendException;
 }
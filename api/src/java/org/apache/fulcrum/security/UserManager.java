@@ -19,13 +19,17 @@ package org.apache.fulcrum.security;
  * under the License.
  */
 import java.io.Serializable;
+import java.util.List;
+import java.util.stream.Stream;
 
 import org.apache.fulcrum.security.acl.AccessControlList;
+import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.EntityExistsException;
 import org.apache.fulcrum.security.util.PasswordMismatchException;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.fulcrum.security.util.UserQuery;
 import org.apache.fulcrum.security.util.UserSet;
 
 /**
@@ -169,6 +173,75 @@ public interface UserManager extends Serializable
     <T extends User> UserSet<T> retrieveUserList(Object criteria)
         throws DataBackendException;
 
+    /**
+     * Retrieve the users matching a typed query. The backend evaluates the
+     * conditions where the users are stored as far as it can, so that only
+     * the matching users are loaded.
+     *
+     * @param <T> User type
+     * @param query the query
+     * @return the matching users, in the order and up to the limit of the
+     *         query
+     * @throws DataBackendException if there is a problem accessing the
+     *         storage.
+     */
+    <T extends User> List<T> retrieveUserList(UserQuery query)
+        throws DataBackendException;
+
+    /**
+     * Retrieve one page of users, ordered by name. The first page starts
+     * with <code>afterName</code> set to <code>null</code>, every following
+     * page with the name of the last user of the previous page. Unlike an
+     * offset, this position stays cheap to find deep into the list and does
+     * not skip or repeat users when others are added or removed meanwhile.
+     *
+     * @param <T> User type
+     * @param afterName the page starts with the first user whose name
+     *        sorts after this one, may be <code>null</code>
+     * @param limit the maximum number of users to return, at least 1
+     * @return the users of the page, an empty list after the last page
+     * @throws DataBackendException if there is a problem accessing the
+     *         storage.
+     */
+    <T extends User> List<T> getUsers(String afterName, int limit)
+        throws DataBackendException;
+
+    /**
+     * Stream all users defined in the system without loading them all into
+     * memory at once. The order of the users is not specified. The stream
+     * may hold backend resources and should be closed, e.g. in a
+     * try-with-resources statement. Errors while reading a later part of the
+     * stream are thrown as RuntimeException with the DataBackendException as
+     * cause.
+     *
+     * @param <T> User type
+     * @return a stream of all users
+     * @throws DataBackendException if there is a problem accessing the
+     *         storage.
+     */
+    <T extends User> Stream<T> streamUsers() throws DataBackendException;
+
+    /**
+     * Count all users defined in the system without retrieving them.
+     *
+     * @return the number of users
+     * @throws DataBackendException if there is a problem accessing the
+     *         storage.
+     */
+    int countUsers() throws DataBackendException;
+
+    /**
+     * Count the users who are members of a group without retrieving them.
+     * In the turbine model a user is a member of every group in which the
+     * user holds a role.
+     *
+     * @param group the group
+     * @return the number of members of the group
+     * @throws DataBackendException if there is a problem accessing the
+     *         storage.
+     */
+    int countUsersInGroup(Group group) throws DataBackendException;
+
     /**
      * Saves User's data in the permanent storage. The user account is required
      * to exist in the storage.
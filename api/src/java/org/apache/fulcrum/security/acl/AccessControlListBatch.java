@@ -0,0 +1,244 @@
+package org.apache.fulcrum.security.acl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Helpers for the batch checks of the AccessControlList interfaces. A batch
+ * is either a list of pairs, where bit <code>i</code> of the result holds
+ * the check of the <code>i</code>-th pair, or the cross product of two
+ * arrays, where bit <code>i * second.length + j</code> holds the check of
+ * <code>first[i]</code> and <code>second[j]</code>.
+ *
+ * @version $Id$
+ */
+public final class AccessControlListBatch
+{
+    /**
+     * A check on resolved ordinals
+     */
+    @FunctionalInterface
+    public interface OrdinalCheck
+    {
+        /**
+         * @param first the ordinal of the first element, -1 if unknown
+         * @param second the ordinal of the second element, -1 if unknown
+         * @return the result of the check
+         */
+        boolean test(int first, int second);
+    }
+
+    private AccessControlListBatch()
+    {
+        // static helpers only
+    }
+
+    /**
+     * Check each element of an array
+     *
+     * @param <T> the element type
+     * @param items the elements
+     * @param check the check
+     * @return bit <code>i</code> is set if the check of <code>items[i]</code> succeeds
+     */
+    public static <T> BitSet each(T[] items, Predicate<? super T> check)
+    {
+        BitSet result = new BitSet(items.length);
+        for (int i = 0; i < items.length; i++)
+        {
+            if (check.test(items[i]))
+            {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check a list of pairs
+     *
+     * @param <P> the type of the first elements
+     * @param <G> the type of the second elements
+     * @param first the first elements
+     * @param second the second elements, same length as first
+     * @param check the check
+     * @return bit <code>i</code> is set if the check of the <code>i</code>-th pair succeeds
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public static <P, G> BitSet pairs(P[] first, G[] second, BiPredicate<? super P, ? super G> check)
+    {
+        checkPairs(first.length, second.length);
+        BitSet result = new BitSet(first.length);
+        for (int i = 0; i < first.length; i++)
+        {
+            if (check.test(first[i], second[i]))
+            {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check the cross product of two arrays
+     *
+     * @param <P> the type of the first elements
+     * @param <G> the type of the second elements
+     * @param first the first elements
+     * @param second the second elements
+     * @param check the check
+     * @return bit <code>i * second.length + j</code> is set if the check of
+     *         <code>first[i]</code> and <code>second[j]</code> succeeds
+     */
+    public static <P, G> BitSet crossProduct(P[] first, G[] second, BiPredicate<? super P, ? super G> check)
+    {
+        BitSet result = new BitSet(first.length * second.length);
+        for (int i = 0; i < first.length; i++)
+        {
+            int row = i * second.length;
+            for (int j = 0; j < second.length; j++)
+            {
+                if (check.test(first[i], second[j]))
+                {
+                    result.set(row + j);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check a list of resolved pairs
+     *
+     * @param first the ordinals of the first elements
+     * @param second the ordinals of the second elements, same length as first
+     * @param check the check
+     * @return bit <code>i</code> is set if the check of the <code>i</code>-th pair succeeds
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public static BitSet pairs(int[] first, int[] second, OrdinalCheck check)
+    {
+        checkPairs(first.length, second.length);
+        BitSet result = new BitSet(first.length);
+        for (int i = 0; i < first.length; i++)
+        {
+            if (check.test(first[i], second[i]))
+            {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check the cross product of two resolved arrays
+     *
+     * @param first the ordinals of the first elements
+     * @param second the ordinals of the second elements
+     * @param check the check
+     * @return bit <code>i * second.length + j</code> is set if the check of
+     *         <code>first[i]</code> and <code>second[j]</code> succeeds
+     */
+    public static BitSet crossProduct(int[] first, int[] second, OrdinalCheck check)
+    {
+        BitSet result = new BitSet(first.length * second.length);
+        for (int i = 0; i < first.length; i++)
+        {
+            if (first[i] < 0)
+            {
+                continue;
+            }
+
+            int row = i * second.length;
+            for (int j = 0; j < second.length; j++)
+            {
+                if (check.test(first[i], second[j]))
+                {
+                    result.set(row + j);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Resolve entities to ordinals
+     *
+     * @param <T> the entity type
+     * @param items the entities, may contain null
+     * @param resolver the resolver, returns -1 for unknown entities
+     * @return the ordinals
+     */
+    public static <T> int[] resolve(T[] items, ToIntFunction<? super T> resolver)
+    {
+        int[] ordinals = new int[items.length];
+        for (int i = 0; i < items.length; i++)
+        {
+            ordinals[i] = (items[i] == null) ? -1 : resolver.applyAsInt(items[i]);
+        }
+        return ordinals;
+    }
+
+    /**
+     * Resolve names to ordinals. Every distinct name is resolved once, so
+     * repeated names are neither case-folded nor looked up again.
+     *
+     * @param names the names, may contain null
+     * @param resolver the resolver, returns -1 for unknown names
+     * @return the ordinals
+     */
+    public static int[] resolveNames(String[] names, ToIntFunction<String> resolver)
+    {
+        int[] ordinals = new int[names.length];
+        Map<String, Integer> resolved = new HashMap<String, Integer>();
+        for (int i = 0; i < names.length; i++)
+        {
+            String name = names[i];
+            if (name == null)
+            {
+                ordinals[i] = -1;
+                continue;
+            }
+
+            Integer ordinal = resolved.get(name);
+            if (ordinal == null)
+            {
+                ordinal = Integer.valueOf(resolver.applyAsInt(name));
+                resolved.put(name, ordinal);
+            }
+            ordinals[i] = ordinal.intValue();
+        }
+        return ordinals;
+    }
+
+    private static void checkPairs(int first, int second)
+    {
+        if (first != second)
+        {
+            throw new IllegalArgumentException("Batch of pairs with " + first + " and " + second + " elements");
+        }
+    }
+}
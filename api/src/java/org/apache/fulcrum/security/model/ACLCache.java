@@ -0,0 +1,47 @@
+package org.apache.fulcrum.security.model;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.fulcrum.security.entity.SecurityEntity;
+
+/**
+ * This interface is implemented by an {@link ACLFactory} which caches the
+ * AccessControlList objects it creates. The managers call it whenever
+ * users, groups, roles, permissions or the relations between them are
+ * modified.
+ *
+ * @version $Id$
+ */
+public interface ACLCache
+{
+    /**
+     * Discard all cached ACLs which depend on the given entity. For a user
+     * this is the ACL of the user, for a group, role or permission these are
+     * the ACLs of all users which are related to it.
+     *
+     * @param entity the modified user, group, role or permission
+     */
+    void invalidate(SecurityEntity entity);
+
+    /**
+     * Discard all cached ACLs
+     */
+    void invalidateAll();
+}
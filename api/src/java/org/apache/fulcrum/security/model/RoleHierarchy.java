@@ -0,0 +1,385 @@
+package org.apache.fulcrum.security.model;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.fulcrum.security.util.BitmapPermissionSet;
+import org.apache.fulcrum.security.util.PermissionDictionary;
+import org.apache.fulcrum.security.util.PermissionSet;
+
+/**
+ * Index of an optional role hierarchy. A role may extend any number of
+ * parent roles and inherits the permissions of all its ancestors. Roles
+ * are identified by id, the hierarchy must be acyclic.
+ *
+ * For every role with ancestors the index keeps the closure of its
+ * ancestors and the union of their permissions as a bitmap. Both are
+ * recomputed for the affected roles when an edge is added or removed or
+ * when the permissions of a parent role change, so looking up the
+ * inherited permissions of a role costs the same for any depth of the
+ * hierarchy.
+ *
+ * The index only knows about the permissions passed to it, it must be
+ * updated by the model manager whenever the permissions of a role change.
+ *
+ * @version $Id$
+ */
+public class RoleHierarchy
+{
+    /** The dictionary of the permission bitmaps */
+    private final PermissionDictionary dictionary;
+
+    /** Map for "role id" is "ids of the direct parents" */
+    private final Map<Object, Set<Object>> parents = new HashMap<Object, Set<Object>>();
+
+    /** Map for "role id" is "ids of the direct children" */
+    private final Map<Object, Set<Object>> children = new HashMap<Object, Set<Object>>();
+
+    /** Map for "role id" is "own permissions", for all roles with children */
+    private final Map<Object, BitmapPermissionSet> permissions = new HashMap<Object, BitmapPermissionSet>();
+
+    /** Map for "role id" is "ids of all ancestors", for all roles with parents */
+    private final Map<Object, Set<Object>> ancestors = new HashMap<Object, Set<Object>>();
+
+    /** Map for "role id" is "permissions of all ancestors", for all roles with parents */
+    private final Map<Object, BitmapPermissionSet> inherited = new HashMap<Object, BitmapPermissionSet>();
+
+    /**
+     * Create an empty hierarchy with a permission dictionary of its own
+     */
+    public RoleHierarchy()
+    {
+        this(new PermissionDictionary());
+    }
+
+    /**
+     * Create an empty hierarchy
+     *
+     * @param dictionary the dictionary of the permission bitmaps, usually the
+     *            one of the permission manager so that the inherited
+     *            permissions can be merged into ACLs word by word
+     */
+    public RoleHierarchy(PermissionDictionary dictionary)
+    {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Check whether adding an edge would create a cycle
+     *
+     * @param roleId the id of the child role
+     * @param parentId the id of the parent role
+     * @return true if the role is the parent or one of its ancestors
+     */
+    public synchronized boolean createsCycle(Object roleId, Object parentId)
+    {
+        return roleId.equals(parentId) || getAncestorSet(parentId).contains(roleId);
+    }
+
+    /**
+     * Record that a role extends a parent role
+     *
+     * @param roleId the id of the child role
+     * @param parentId the id of the parent role
+     * @param parentPermissions the own permissions of the parent role, only
+     *            used if the parent has no other children yet
+     * @return true if the edge did not exist before
+     * @throws IllegalArgumentException if the edge would create a cycle
+     */
+    public synchronized boolean addParent(Object roleId, Object parentId, PermissionSet parentPermissions)
+    {
+        if (createsCycle(roleId, parentId))
+        {
+            throw new IllegalArgumentException("Role " + roleId + " cannot extend role " + parentId);
+        }
+
+        if (!parents.computeIfAbsent(roleId, k -> new HashSet<Object>()).add(parentId))
+        {
+            return false;
+        }
+
+        children.computeIfAbsent(parentId, k -> new HashSet<Object>()).add(roleId);
+        permissions.computeIfAbsent(parentId, k -> new BitmapPermissionSet(dictionary, parentPermissions));
+        recompute(roleId);
+        return true;
+    }
+
+    /**
+     * Record that a role no longer extends a parent role
+     *
+     * @param roleId the id of the child role
+     * @param parentId the id of the parent role
+     * @return true if the edge existed
+     */
+    public synchronized boolean removeParent(Object roleId, Object parentId)
+    {
+        Set<Object> direct = parents.get(roleId);
+        if (direct == null || !direct.remove(parentId))
+        {
+            return false;
+        }
+
+        if (direct.isEmpty())
+        {
+            parents.remove(roleId);
+        }
+
+        Set<Object> siblings = children.get(parentId);
+        siblings.remove(roleId);
+        if (siblings.isEmpty())
+        {
+            children.remove(parentId);
+            permissions.remove(parentId);
+        }
+
+        recompute(roleId);
+        return true;
+    }
+
+    /**
+     * Remove a role and all its edges
+     *
+     * @param roleId the role id
+     * @return true if the role was part of the hierarchy
+     */
+    public synchronized boolean removeRole(Object roleId)
+    {
+        boolean removed = false;
+        for (Object parentId : getParents(roleId))
+        {
+            removed |= removeParent(roleId, parentId);
+        }
+        for (Object childId : getChildren(roleId))
+        {
+            removed |= removeParent(childId, roleId);
+        }
+        return removed;
+    }
+
+    /**
+     * Update the own permissions of a role. Only roles with children are
+     * tracked, for all others this is a no-op.
+     *
+     * @param roleId the role id
+     * @param rolePermissions the current permissions of the role
+     * @return true if the role has descendants whose inherited permissions
+     *         were recomputed
+     */
+    public synchronized boolean setPermissions(Object roleId, PermissionSet rolePermissions)
+    {
+        if (!permissions.containsKey(roleId))
+        {
+            return false;
+        }
+
+        permissions.put(roleId, new BitmapPermissionSet(dictionary, rolePermissions));
+        for (Object descendant : getDescendantSet(roleId))
+        {
+            inherited.put(descendant, union(ancestors.get(descendant)));
+        }
+        return true;
+    }
+
+    /**
+     * @param roleId the role id
+     * @return true if other roles extend the role
+     */
+    public synchronized boolean hasChildren(Object roleId)
+    {
+        return children.containsKey(roleId);
+    }
+
+    /**
+     * @param roleId the role id
+     * @return the ids of the direct parents of the role
+     */
+    public synchronized Set<Object> getParents(Object roleId)
+    {
+        Set<Object> direct = parents.get(roleId);
+        return direct == null ? Collections.emptySet() : new HashSet<Object>(direct);
+    }
+
+    /**
+     * @param roleId the role id
+     * @return the ids of the roles directly extending the role
+     */
+    public synchronized Set<Object> getChildren(Object roleId)
+    {
+        Set<Object> direct = children.get(roleId);
+        return direct == null ? Collections.emptySet() : new HashSet<Object>(direct);
+    }
+
+    /**
+     * @param roleId the role id
+     * @return the ids of all ancestors of the role
+     */
+    public synchronized Set<Object> getAncestors(Object roleId)
+    {
+        return new HashSet<Object>(getAncestorSet(roleId));
+    }
+
+    /**
+     * @param roleId the role id
+     * @return the ids of all roles extending the role directly or indirectly
+     */
+    public synchronized Set<Object> getDescendants(Object roleId)
+    {
+        return getDescendantSet(roleId);
+    }
+
+    /**
+     * Get the permissions a role inherits from its ancestors, without its
+     * own permissions
+     *
+     * @param roleId the role id
+     * @return a copy of the inherited permissions, empty for roles without
+     *         parents
+     */
+    public synchronized BitmapPermissionSet getInheritedPermissions(Object roleId)
+    {
+        BitmapPermissionSet set = inherited.get(roleId);
+        return set == null ? new BitmapPermissionSet(dictionary) : new BitmapPermissionSet(set);
+    }
+
+    /**
+     * Get all roles which inherit a permission from one of their ancestors
+     *
+     * @param permissionId the permission id
+     * @return the role ids
+     */
+    public synchronized Set<Object> getInheritingRoles(Object permissionId)
+    {
+        Set<Object> roles = new HashSet<Object>();
+        for (Map.Entry<Object, BitmapPermissionSet> entry : inherited.entrySet())
+        {
+            if (entry.getValue().containsId(permissionId))
+            {
+                roles.add(entry.getKey());
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * @return true if no role extends another role
+     */
+    public synchronized boolean isEmpty()
+    {
+        return parents.isEmpty();
+    }
+
+    /**
+     * Drop all state
+     */
+    public synchronized void clear()
+    {
+        parents.clear();
+        children.clear();
+        permissions.clear();
+        ancestors.clear();
+        inherited.clear();
+    }
+
+    private Set<Object> getAncestorSet(Object roleId)
+    {
+        Set<Object> closure = ancestors.get(roleId);
+        return closure == null ? Collections.emptySet() : closure;
+    }
+
+    private Set<Object> getDescendantSet(Object roleId)
+    {
+        Set<Object> closure = new LinkedHashSet<Object>();
+        Deque<Object> pending = new ArrayDeque<Object>();
+        pending.push(roleId);
+
+        while (!pending.isEmpty())
+        {
+            Set<Object> direct = children.get(pending.pop());
+            if (direct != null)
+            {
+                for (Object child : direct)
+                {
+                    if (closure.add(child))
+                    {
+                        pending.push(child);
+                    }
+                }
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * Recompute the closures of a role and all its descendants after the
+     * parents of the role changed, by a search over the direct parents.
+     *
+     * @param roleId the role id
+     */
+    private void recompute(Object roleId)
+    {
+        Set<Object> affected = new LinkedHashSet<Object>();
+        affected.add(roleId);
+        affected.addAll(getDescendantSet(roleId));
+
+        for (Object role : affected)
+        {
+            Set<Object> closure = new HashSet<Object>();
+            Deque<Object> pending = new ArrayDeque<Object>(getParents(role));
+            while (!pending.isEmpty())
+            {
+                Object ancestor = pending.pop();
+                if (closure.add(ancestor))
+                {
+                    pending.addAll(getParents(ancestor));
+                }
+            }
+
+            if (closure.isEmpty())
+            {
+                ancestors.remove(role);
+                inherited.remove(role);
+            }
+            else
+            {
+                ancestors.put(role, closure);
+                inherited.put(role, union(closure));
+            }
+        }
+    }
+
+    private BitmapPermissionSet union(Set<Object> roles)
+    {
+        BitmapPermissionSet set = new BitmapPermissionSet(dictionary);
+        for (Object role : roles)
+        {
+            // word-wise OR of the bitmaps
+            set.addAll(permissions.get(role));
+        }
+        return set;
+    }
+}
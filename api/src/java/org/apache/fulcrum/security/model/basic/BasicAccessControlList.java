@@ -20,8 +20,10 @@ package org.apache.fulcrum.security.model.basic;
  */
 
 import java.io.Serializable;
+import java.util.BitSet;
 
 import org.apache.fulcrum.security.acl.AccessControlList;
+import org.apache.fulcrum.security.acl.AccessControlListBatch;
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.util.GroupSet;
 
@@ -60,4 +62,29 @@ public interface BasicAccessControlList extends Serializable, AccessControlList
      */
     boolean hasGroup(String group);
 
+    /**
+     * Checks a batch of Groups
+     * 
+     * @param groups
+     *            the group names
+     * @return bit <code>i</code> is set if the user is assigned
+     *         <code>groups[i]</code>.
+     */
+    default BitSet hasGroups(String[] groups)
+    {
+        return AccessControlListBatch.each(groups, this::hasGroup);
+    }
+
+    /**
+     * Checks a batch of Groups
+     * 
+     * @param groups
+     *            the Groups
+     * @return bit <code>i</code> is set if the user is assigned
+     *         <code>groups[i]</code>.
+     */
+    default BitSet hasGroups(Group[] groups)
+    {
+        return AccessControlListBatch.each(groups, this::hasGroup);
+    }
 }
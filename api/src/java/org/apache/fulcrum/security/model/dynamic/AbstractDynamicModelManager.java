@@ -19,16 +19,23 @@ package org.apache.fulcrum.security.model.dynamic;
  * under the License.
  */
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
 import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.RoleHierarchy;
 import org.apache.fulcrum.security.model.dynamic.entity.DynamicGroup;
 import org.apache.fulcrum.security.model.dynamic.entity.DynamicPermission;
 import org.apache.fulcrum.security.model.dynamic.entity.DynamicRole;
 import org.apache.fulcrum.security.model.dynamic.entity.DynamicUser;
 import org.apache.fulcrum.security.spi.AbstractManager;
 import org.apache.fulcrum.security.util.DataBackendException;
+import org.apache.fulcrum.security.util.PermissionSet;
+import org.apache.fulcrum.security.util.RoleSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
 
 /**
@@ -42,6 +49,8 @@ import org.apache.fulcrum.security.util.UnknownEntityException;
  */
 public abstract class AbstractDynamicModelManager extends AbstractManager implements DynamicModelManager
 {
+    private RoleHierarchy roleHierarchy;
+
     /**
      * Revokes all roles from a permission
      * 
@@ -173,6 +182,16 @@ public abstract class AbstractDynamicModelManager extends AbstractManager implem
             {
                 revoke(role, (Permission) permission);
             }
+
+            RoleHierarchy hierarchy = getRoleHierarchy();
+            for (Object parentId : hierarchy.getParents(role.getId()))
+            {
+                removeParentRole(role, getRoleManager().getRoleById(parentId));
+            }
+            for (Object childId : hierarchy.getChildren(role.getId()))
+            {
+                removeParentRole(getRoleManager().getRoleById(childId), role);
+            }
         }
         else
         {
@@ -184,7 +203,8 @@ public abstract class AbstractDynamicModelManager extends AbstractManager implem
     /**
      * It is expected the real implementation will overide this and save either
      * side of the function. It is not abstract as a in memory implementation
-     * would not need to do anything.
+     * would not need to do anything. The delegation index of the ACL factory
+     * is updated here.
      */
     public void addDelegate(User delegator, User delegatee) throws DataBackendException, UnknownEntityException
     {
@@ -198,6 +218,12 @@ public abstract class AbstractDynamicModelManager extends AbstractManager implem
             dynamicDelegator.getDelegatees().add(dynamicDelegatee);
             dynamicDelegatee.getDelegators().add(dynamicDelegator);
         }
+
+        DelegationGraph graph = getDelegationGraph();
+        if (graph != null)
+        {
+            graph.addDelegate(dynamicDelegator, dynamicDelegatee);
+        }
     }
 
     /**
@@ -213,6 +239,12 @@ public abstract class AbstractDynamicModelManager extends AbstractManager implem
         {
             dynamicDelegator.getDelegatees().remove(dynamicDelegatee);
             dynamicDelegatee.getDelegators().remove(dynamicDelegator);
+
+            DelegationGraph graph = getDelegationGraph();
+            if (graph != null)
+            {
+                graph.removeDelegate(dynamicDelegator, dynamicDelegatee);
+            }
         }
         else
         {
@@ -220,4 +252,156 @@ public abstract class AbstractDynamicModelManager extends AbstractManager implem
         }
 
     }
+
+    /**
+     * Adds an edge to the role hierarchy. The role inherits all permissions
+     * of the parent and its ancestors from now on.
+     */
+    public synchronized void addParentRole(Role role, Role parent) throws DataBackendException, UnknownEntityException
+    {
+        checkRolesExist(role, parent);
+        RoleHierarchy hierarchy = getRoleHierarchy();
+        if (hierarchy.getParents(role.getId()).contains(parent.getId()))
+        {
+            return;
+        }
+        if (hierarchy.createsCycle(role.getId(), parent.getId()))
+        {
+            throw new DataBackendException("addParentRole('" + role.getName() + "', '" + parent.getName() + "') would create a cycle");
+        }
+
+        DynamicRole current = getRoleManager().getRoleById(parent.getId());
+        saveParentRole(role, parent, true);
+        hierarchy.addParent(role.getId(), parent.getId(), current.getPermissions());
+        invalidateAllACLs();
+    }
+
+    public synchronized void removeParentRole(Role role, Role parent) throws DataBackendException, UnknownEntityException
+    {
+        checkRolesExist(role, parent);
+        RoleHierarchy hierarchy = getRoleHierarchy();
+        if (hierarchy.getParents(role.getId()).contains(parent.getId()))
+        {
+            saveParentRole(role, parent, false);
+            hierarchy.removeParent(role.getId(), parent.getId());
+            invalidateAllACLs();
+        }
+    }
+
+    public RoleSet getParentRoles(Role role) throws DataBackendException
+    {
+        RoleSet roles = new RoleSet();
+        for (Object parentId : getRoleHierarchy().getParents(role.getId()))
+        {
+            try
+            {
+                Role parent = getRoleManager().getRoleById(parentId);
+                roles.add(parent);
+            }
+            catch (UnknownEntityException e)
+            {
+                // removed since the edge was recorded
+            }
+        }
+        return roles;
+    }
+
+    public PermissionSet getInheritedPermissions(Role role) throws DataBackendException
+    {
+        return getRoleHierarchy().getInheritedPermissions(role.getId());
+    }
+
+    /**
+     * Get the role hierarchy, loading it on first use
+     *
+     * @return the role hierarchy
+     * @throws DataBackendException if the hierarchy could not be loaded
+     */
+    protected synchronized RoleHierarchy getRoleHierarchy() throws DataBackendException
+    {
+        if (roleHierarchy == null)
+        {
+            RoleHierarchy hierarchy = new RoleHierarchy(getPermissionManager().getPermissionDictionary());
+            for (Map.Entry<Object, Set<Object>> entry : loadParentRoles().entrySet())
+            {
+                for (Object parentId : entry.getValue())
+                {
+                    try
+                    {
+                        DynamicRole parent = getRoleManager().getRoleById(parentId);
+                        hierarchy.addParent(entry.getKey(), parentId, parent.getPermissions());
+                    }
+                    catch (UnknownEntityException e)
+                    {
+                        throw new DataBackendException("Role hierarchy refers to unknown role " + parentId, e);
+                    }
+                }
+            }
+            roleHierarchy = hierarchy;
+        }
+        return roleHierarchy;
+    }
+
+    /**
+     * Read the persisted role hierarchy. The default implementation keeps
+     * the hierarchy in memory only.
+     *
+     * @return map for "role id" is "ids of the parent roles"
+     * @throws DataBackendException if there was an error accessing the data backend.
+     */
+    protected Map<Object, Set<Object>> loadParentRoles() throws DataBackendException
+    {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Persist an edge of the role hierarchy. The default implementation
+     * keeps the hierarchy in memory only.
+     *
+     * @param role the child role
+     * @param parent the parent role
+     * @param add <code>true</code> to add the edge, <code>false</code> to remove it
+     * @throws DataBackendException if there was an error accessing the data backend.
+     */
+    protected void saveParentRole(Role role, Role parent, boolean add) throws DataBackendException
+    {
+        // nothing to persist
+    }
+
+    /**
+     * Update the permissions the descendants of a role inherit. Must be
+     * called after the permissions of the role have been changed.
+     *
+     * @param role the modified role
+     * @throws DataBackendException if there was an error accessing the data backend.
+     */
+    protected void rolePermissionsChanged(Role role) throws DataBackendException
+    {
+        RoleHierarchy hierarchy = getRoleHierarchy();
+        if (hierarchy.hasChildren(role.getId()))
+        {
+            try
+            {
+                DynamicRole current = getRoleManager().getRoleById(role.getId());
+                hierarchy.setPermissions(role.getId(), current.getPermissions());
+            }
+            catch (UnknownEntityException e)
+            {
+                throw new DataBackendException("Unknown role '" + role.getName() + "'", e);
+            }
+            invalidateAllACLs();
+        }
+    }
+
+    private void checkRolesExist(Role role, Role parent) throws DataBackendException, UnknownEntityException
+    {
+        if (!getRoleManager().checkExists(role))
+        {
+            throw new UnknownEntityException("Unknown role '" + role.getName() + "'");
+        }
+        if (!getRoleManager().checkExists(parent))
+        {
+            throw new UnknownEntityException("Unknown role '" + parent.getName() + "'");
+        }
+    }
 }
@@ -0,0 +1,319 @@
+package org.apache.fulcrum.security.model.dynamic;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.dynamic.entity.DynamicUser;
+
+/**
+ * Index of the delegation relation of the dynamic model. For every user it
+ * keeps the set of users whose roles, groups and permissions the user
+ * assumes, i.e. the transitive closure of {@link DynamicUser#getDelegators()}
+ * up to a maximum number of hops.
+ *
+ * The direct delegators of a user are read from the entities once, when the
+ * user is first seen. Afterwards the graph is kept up to date by
+ * {@link #addDelegate(DynamicUser, DynamicUser)} and
+ * {@link #removeDelegate(DynamicUser, DynamicUser)}, which recompute the
+ * closures of the affected users only. Cycles are allowed, a user is never
+ * its own delegator.
+ *
+ * Users are identified by id and the graph holds ids only, the caller
+ * resolves the delegators through the user manager, so that their current
+ * groups and roles are used. Removed users are dropped by
+ * {@link #removeUser(Object)}. Changes made to the delegation relation
+ * outside of the model manager of this JVM are not reflected.
+ *
+ * @version $Id$
+ */
+public class DelegationGraph
+{
+    /** Maximum number of delegation hops */
+    private final int maxDepth;
+
+    /** Map for "user id" is "ids of the direct delegators", for all loaded users */
+    private final Map<Object, Set<Object>> delegators = new HashMap<Object, Set<Object>>();
+
+    /** Map for "user id" is "ids of all delegators within the maximum depth" */
+    private final Map<Object, Set<Object>> closures = new HashMap<Object, Set<Object>>();
+
+    /** Map for "user id" is "ids of the users whose closure contains it" */
+    private final Map<Object, Set<Object>> dependents = new HashMap<Object, Set<Object>>();
+
+    /**
+     * Create an empty graph
+     *
+     * @param maxDepth the maximum number of delegation hops, 1 for direct
+     *            delegators only. A value less than 1 disables delegation.
+     */
+    public DelegationGraph(int maxDepth)
+    {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @return the maximum number of delegation hops
+     */
+    public int getMaxDepth()
+    {
+        return maxDepth;
+    }
+
+    /**
+     * Get the ids of all users whose roles, groups and permissions the given
+     * user assumes. The user itself is not part of the result.
+     *
+     * @param user the delegatee, must have an id
+     * @return the ids of the delegators within the maximum depth
+     */
+    public synchronized List<Object> getDelegatorIds(DynamicUser user)
+    {
+        Object id = user.getId();
+        Set<Object> closure = closures.get(id);
+        if (closure == null)
+        {
+            load(user);
+            closure = compute(id);
+        }
+
+        return new ArrayList<Object>(closure);
+    }
+
+    /**
+     * Record that the delegatee assumes the roles of the delegator. Must be
+     * called after the entities have been updated.
+     *
+     * @param delegator the delegator
+     * @param delegatee the delegatee
+     */
+    public synchronized void addDelegate(DynamicUser delegator, DynamicUser delegatee)
+    {
+        Set<Object> direct = delegators.get(delegatee.getId());
+        if (direct == null)
+        {
+            // read from the entity on first use
+            return;
+        }
+
+        load(delegator);
+        if (direct.add(delegator.getId()))
+        {
+            recompute(delegatee.getId());
+        }
+    }
+
+    /**
+     * Record that the delegatee no longer assumes the roles of the delegator.
+     *
+     * @param delegator the delegator
+     * @param delegatee the delegatee
+     */
+    public synchronized void removeDelegate(DynamicUser delegator, DynamicUser delegatee)
+    {
+        Set<Object> direct = delegators.get(delegatee.getId());
+        if (direct != null && direct.remove(delegator.getId()))
+        {
+            recompute(delegatee.getId());
+        }
+    }
+
+    /**
+     * Drop a removed user from the graph, including the delegations to and
+     * from it.
+     *
+     * @param id the id of the removed user
+     */
+    public synchronized void removeUser(Object id)
+    {
+        if (id == null)
+        {
+            return;
+        }
+
+        Set<Object> affected = new HashSet<Object>();
+        for (Map.Entry<Object, Set<Object>> entry : delegators.entrySet())
+        {
+            if (entry.getValue().remove(id))
+            {
+                affected.add(entry.getKey());
+            }
+        }
+        Set<Object> dependent = dependents.remove(id);
+        if (dependent != null)
+        {
+            affected.addAll(dependent);
+        }
+
+        delegators.remove(id);
+        Set<Object> closure = closures.remove(id);
+        if (closure != null)
+        {
+            for (Object delegator : closure)
+            {
+                Set<Object> d = dependents.get(delegator);
+                if (d != null)
+                {
+                    d.remove(id);
+                }
+            }
+        }
+
+        affected.remove(id);
+        for (Object user : affected)
+        {
+            if (closures.containsKey(user))
+            {
+                compute(user);
+            }
+        }
+    }
+
+    /**
+     * Drop all state, the graph is read again from the entities
+     */
+    public synchronized void clear()
+    {
+        delegators.clear();
+        closures.clear();
+        dependents.clear();
+    }
+
+    /**
+     * Read the direct delegators of a user and of all users reachable from
+     * it, unless they have been read before. The loaded users are therefore
+     * closed under the delegator relation.
+     *
+     * @param user the user
+     */
+    private void load(DynamicUser user)
+    {
+        Deque<DynamicUser> pending = new ArrayDeque<DynamicUser>();
+        pending.push(user);
+
+        while (!pending.isEmpty())
+        {
+            DynamicUser u = pending.pop();
+            if (delegators.containsKey(u.getId()))
+            {
+                continue;
+            }
+
+            Set<Object> direct = new HashSet<Object>();
+            for (User d : u.getDelegators())
+            {
+                DynamicUser delegator = (DynamicUser) d;
+                direct.add(delegator.getId());
+                pending.push(delegator);
+            }
+            delegators.put(u.getId(), direct);
+        }
+    }
+
+    /**
+     * Recompute the closures which may depend on the direct delegators of
+     * a user: its own closure and those which contain it.
+     *
+     * @param id the user id
+     */
+    private void recompute(Object id)
+    {
+        Set<Object> affected = new HashSet<Object>();
+        if (closures.containsKey(id))
+        {
+            affected.add(id);
+        }
+
+        Set<Object> dependent = dependents.get(id);
+        if (dependent != null)
+        {
+            affected.addAll(dependent);
+        }
+
+        for (Object user : affected)
+        {
+            compute(user);
+        }
+    }
+
+    /**
+     * Compute the closure of a loaded user by a breadth first search over
+     * the direct delegators, limited to the maximum depth.
+     *
+     * @param id the user id
+     * @return the new closure
+     */
+    private Set<Object> compute(Object id)
+    {
+        Set<Object> closure = new LinkedHashSet<Object>();
+        List<Object> level = Collections.singletonList(id);
+
+        for (int depth = 0; depth < maxDepth && !level.isEmpty(); depth++)
+        {
+            List<Object> next = new ArrayList<Object>();
+            for (Object user : level)
+            {
+                Set<Object> direct = delegators.get(user);
+                if (direct == null)
+                {
+                    continue;
+                }
+
+                for (Object delegator : direct)
+                {
+                    if (!delegator.equals(id) && closure.add(delegator))
+                    {
+                        next.add(delegator);
+                    }
+                }
+            }
+            level = next;
+        }
+
+        Set<Object> old = closures.put(id, closure);
+        if (old != null)
+        {
+            for (Object delegator : old)
+            {
+                Set<Object> dependent = dependents.get(delegator);
+                if (dependent != null)
+                {
+                    dependent.remove(id);
+                }
+            }
+        }
+        for (Object delegator : closure)
+        {
+            dependents.computeIfAbsent(delegator, k -> new HashSet<Object>()).add(id);
+        }
+
+        return closure;
+    }
+}
@@ -23,6 +23,14 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.avalon.framework.configuration.Configurable;
+import org.apache.avalon.framework.configuration.Configuration;
+import org.apache.avalon.framework.service.ServiceException;
+import org.apache.fulcrum.security.GroupManager;
+import org.apache.fulcrum.security.ModelManager;
+import org.apache.fulcrum.security.PermissionManager;
+import org.apache.fulcrum.security.RoleManager;
+import org.apache.fulcrum.security.UserManager;
 import org.apache.fulcrum.security.acl.AccessControlList;
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.Role;
@@ -32,6 +40,10 @@ import org.apache.fulcrum.security.model.dynamic.entity.DynamicGroup;
 import org.apache.fulcrum.security.model.dynamic.entity.DynamicRole;
 import org.apache.fulcrum.security.model.dynamic.entity.DynamicUser;
 import org.apache.fulcrum.security.spi.AbstractManager;
+import org.apache.fulcrum.security.util.BitmapPermissionSet;
+import org.apache.fulcrum.security.util.DataBackendException;
+import org.apache.fulcrum.security.util.GroupDictionary;
+import org.apache.fulcrum.security.util.PermissionDictionary;
 import org.apache.fulcrum.security.util.PermissionSet;
 import org.apache.fulcrum.security.util.RoleSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
@@ -40,12 +52,97 @@ import org.apache.fulcrum.security.util.UnknownEntityException;
  *
  * This factory creates instance of the DynamicAccessControlList
  *
+ * The delegators of a user are taken from a {@link DelegationGraph}, which
+ * the dynamic model managers keep up to date. The delegators, their groups
+ * and roles are loaded through the managers, so that their current
+ * assignments apply. Without managers they are read from the entities. The
+ * maximum number of
+ * delegation hops is set with the maxDelegationDepth attribute of the
+ * aclFactory element, it is unlimited by default.
+ *
+ * Roles inherit the permissions of the roles they extend. These are taken
+ * from the precomputed role hierarchy of the dynamic model manager.
+ *
  * @author <a href="mailto:epugh@upstate.com">Eric Pugh </a>
  * @author <a href="mailto:ben@gidley.co.uk">Ben Gidley </a>
  * @version $Id$
  */
-public class DynamicACLFactory extends AbstractManager implements ACLFactory
+public class DynamicACLFactory extends AbstractManager implements ACLFactory, Configurable
 {
+    /** Attribute which limits the number of delegation hops */
+    public static final String MAX_DELEGATION_DEPTH_ATTR_NAME = "maxDelegationDepth";
+
+    /** The delegation index */
+    private DelegationGraph delegationGraph = new DelegationGraph(Integer.MAX_VALUE);
+
+    /** The model manager providing the inherited permissions of roles */
+    private volatile DynamicModelManager modelManager;
+    private volatile boolean modelManagerResolved = false;
+
+    /**
+     * Avalon Service lifecycle method
+     */
+    @Override
+    public void configure(Configuration conf)
+    {
+        delegationGraph = new DelegationGraph(
+                conf.getAttributeAsInteger(MAX_DELEGATION_DEPTH_ATTR_NAME, Integer.MAX_VALUE));
+    }
+
+    /**
+     * @return the delegation index used by this factory
+     */
+    public DelegationGraph getDelegationGraph()
+    {
+        return delegationGraph;
+    }
+
+    /**
+     * @return the dynamic model manager, <code>null</code> if none is
+     *         configured
+     */
+    protected DynamicModelManager getDynamicModelManager()
+    {
+        if (!modelManagerResolved)
+        {
+            if (manager != null && manager.hasService(ModelManager.ROLE))
+            {
+                try
+                {
+                    Object service = manager.lookup(ModelManager.ROLE);
+                    if (service instanceof DynamicModelManager)
+                    {
+                        modelManager = (DynamicModelManager) service;
+                    }
+                    manager.release(service);
+                }
+                catch (ServiceException ce)
+                {
+                    // no model manager, no role hierarchy
+                }
+            }
+            // set after the manager, a thread seeing the flag sees the manager
+            modelManagerResolved = true;
+        }
+        return modelManager;
+    }
+
+    /**
+     * The ACLs share the permission ordinals of the permission manager.
+     *
+     * @return the dictionary of the permission manager, <code>null</code> if
+     *         none is configured
+     * @throws DataBackendException if the permission manager cannot be found
+     */
+    protected PermissionDictionary getPermissionDictionary() throws DataBackendException
+    {
+        if (manager == null || !manager.hasService(PermissionManager.ROLE))
+        {
+            return null;
+        }
+        return getPermissionManager().getPermissionDictionary();
+    }
+
     /**
      * @see org.apache.fulcrum.security.model.ACLFactory#getAccessControlList(org.apache.fulcrum.security.entity.User)
      */
@@ -54,15 +151,31 @@ public class DynamicACLFactory extends AbstractManager implements ACLFactory
         Map<Group, RoleSet> roleSets = new HashMap<Group, RoleSet>();
         Map<Role, PermissionSet> permissionSets = new HashMap<Role, PermissionSet>();
 
-        Set<DynamicUser> users = new HashSet<DynamicUser>();
-
-        // add the root user
-        users.add((DynamicUser) user);
-        addDelegators((DynamicUser) user, users);
+        addRolesAndPermissions(user, roleSets, permissionSets);
 
-        for (DynamicUser aUser : users)
+        if (user.getId() != null && manager != null && manager.hasService(UserManager.ROLE)
+                && manager.hasService(GroupManager.ROLE) && manager.hasService(RoleManager.ROLE))
+        {
+            for (Object id : delegationGraph.getDelegatorIds((DynamicUser) user))
+            {
+                DynamicUser delegator = getDelegator(id);
+                if (delegator != null)
+                {
+                    addDelegatorRolesAndPermissions(delegator, roleSets, permissionSets);
+                }
+            }
+        }
+        else
         {
-            addRolesAndPermissions(aUser, roleSets, permissionSets);
+            // not persisted or nothing to load the delegators with
+            Set<DynamicUser> users = new HashSet<DynamicUser>();
+            addDelegators((DynamicUser) user, users);
+            users.remove(user);
+
+            for (DynamicUser aUser : users)
+            {
+                addRolesAndPermissions(aUser, roleSets, permissionSets);
+            }
         }
 
         try
@@ -77,6 +190,30 @@ public class DynamicACLFactory extends AbstractManager implements ACLFactory
         }
     }
 
+    /**
+     * Load a delegator through the user manager. A user which no longer
+     * exists is dropped from the delegation index.
+     *
+     * @param id the user id
+     * @return the user or <code>null</code> if it has been removed
+     */
+    private DynamicUser getDelegator(Object id)
+    {
+        try
+        {
+            return getUserManager().getUserById(id);
+        }
+        catch (UnknownEntityException uue)
+        {
+            delegationGraph.removeUser(id);
+            return null;
+        }
+        catch (DataBackendException dbe)
+        {
+            throw new RuntimeException(dbe.getMessage(), dbe);
+        }
+    }
+
     /**
      * Construct a new ACL object.
      *
@@ -98,7 +235,10 @@ public class DynamicACLFactory extends AbstractManager implements ACLFactory
     	DynamicAccessControlList accessControlList;
         try
         {
-            accessControlList = new DynamicAccessControlListImpl(roles, permissions);
+            GroupDictionary groupDictionary = (manager != null && manager.hasService(GroupManager.ROLE))
+                    ? getGroupManager().getGroupDictionary() : null;
+            accessControlList = new DynamicAccessControlListImpl(roles, permissions,
+                    getPermissionDictionary(), groupDictionary);
         }
         catch (Exception e)
         {
@@ -108,7 +248,8 @@ public class DynamicACLFactory extends AbstractManager implements ACLFactory
     }
 
     /**
-     * Add delegators to the user list
+     * Add delegators to the user list by walking the entities, without
+     * depth limit
      *
      * @param user
      *            the user to add to
@@ -148,8 +289,92 @@ public class DynamicACLFactory extends AbstractManager implements ACLFactory
             for (Role r : roleSet)
             {
                 DynamicRole role = (DynamicRole) r;
-                permissionSets.put(role, role.getPermissions());
+                permissionSets.put(role, getPermissions(role));
+            }
+        }
+    }
+
+    /**
+     * Adds the roles and permissions of a delegator like
+     * {@link #addRolesAndPermissions(User, Map, Map)}, but loads its groups
+     * and roles through the managers, as the delegator may have been loaded
+     * without them. Groups and roles removed in the meantime are skipped.
+     *
+     * @param delegator the delegator
+     * @param roleSets the roles by group
+     * @param permissionSets the permissions by role
+     */
+    private void addDelegatorRolesAndPermissions(DynamicUser delegator, Map<Group, RoleSet> roleSets,
+            Map<Role, PermissionSet> permissionSets)
+    {
+        try
+        {
+            for (Group g : delegator.getGroups())
+            {
+                DynamicGroup group;
+                try
+                {
+                    group = getGroupManager().getGroupById(g.getId());
+                }
+                catch (UnknownEntityException uue)
+                {
+                    continue;
+                }
+
+                RoleSet roleSet = new RoleSet();
+                for (Role r : group.getRoles())
+                {
+                    try
+                    {
+                        DynamicRole role = getRoleManager().getRoleById(r.getId());
+                        roleSet.add(role);
+                        permissionSets.put(role, getPermissions(role));
+                    }
+                    catch (UnknownEntityException uue)
+                    {
+                        // removed in the meantime
+                    }
+                }
+                roleSets.put(group, roleSet);
+            }
+        }
+        catch (DataBackendException dbe)
+        {
+            throw new RuntimeException(dbe.getMessage(), dbe);
+        }
+    }
+
+    /**
+     * Get the own and the inherited permissions of a role. The inherited
+     * permissions are precomputed by the role hierarchy of the model
+     * manager, so this is a single union for any depth of the hierarchy.
+     *
+     * @param role the role
+     * @return the permissions of the role
+     */
+    private PermissionSet getPermissions(DynamicRole role)
+    {
+        DynamicModelManager mm = getDynamicModelManager();
+        if (mm != null)
+        {
+            try
+            {
+                PermissionSet inherited = mm.getInheritedPermissions(role);
+                if (!inherited.isEmpty())
+                {
+                    PermissionDictionary dictionary = getPermissionDictionary();
+                    PermissionSet permissions = (dictionary == null)
+                            ? new BitmapPermissionSet(role.getPermissions())
+                            : new BitmapPermissionSet(dictionary, role.getPermissions());
+                    permissions.add(inherited);
+                    return permissions;
+                }
+            }
+            catch (DataBackendException e)
+            {
+                throw new RuntimeException(e.getMessage(), e);
             }
         }
+        return role.getPermissions();
     }
 }
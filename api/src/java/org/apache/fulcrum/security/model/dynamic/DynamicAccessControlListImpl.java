@@ -19,46 +19,98 @@ package org.apache.fulcrum.security.model.dynamic;
  * under the License.
  */
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.fulcrum.security.acl.AccessControlListBatch;
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.util.BitmapPermissionSet;
+import org.apache.fulcrum.security.util.GroupDictionary;
+import org.apache.fulcrum.security.util.GroupHandle;
 import org.apache.fulcrum.security.util.GroupSet;
+import org.apache.fulcrum.security.util.PermissionDictionary;
+import org.apache.fulcrum.security.util.PermissionHandle;
 import org.apache.fulcrum.security.util.PermissionSet;
 import org.apache.fulcrum.security.util.RoleSet;
+import org.apache.fulcrum.security.util.SecuritySet;
 
 /**
  * This is a control class that makes it easy to find out if a particular User
  * has a given Permission. It also determines if a User has a a particular Role.
  *
+ * The role and permission maps are compiled at construction: every group of
+ * the user gets a dense ordinal, and the roles and the union of the role
+ * permissions of each group are stored as rows of two bit matrices. Groups,
+ * roles and permissions are resolved by id or case-folded name through hash
+ * maps, so the <code>hasRole</code> and <code>hasPermission</code> checks
+ * against a single group are O(1) and do not allocate.
+ *
  * @author <a href="mailto:epugh@upstate.com">Eric Pugh</a>
  * @version $Id$
  */
 public class DynamicAccessControlListImpl implements DynamicAccessControlList 
 {
-	// TODO Need to rethink the two maps.. Why not just a single list of groups?
-	// That would then cascade down to all the other roles and so on..
-
 	/**
 	 * Serial number
 	 */
-	private static final long serialVersionUID = -5180551537096244085L;
+	private static final long serialVersionUID = -2873440295217466815L;
+
+	/** The dictionary providing the permission ordinals */
+	private transient PermissionDictionary dictionary;
+
+	/** The dictionary providing the group ordinals of handles */
+	private transient GroupDictionary groupDictionary;
+
+	/** The groups of the user, indexed by group ordinal */
+	private final Group[] groups;
+
+	/** The sets of roles that the user has in each group, indexed by group ordinal */
+	private final RoleSet[] groupRoles;
+
+	/** The distinct roles of the user, indexed by role ordinal */
+	private final Role[] roles;
+
+	/** The roles of each group as bitmap over role ordinals */
+	private final long[][] roleMatrix;
+
+	/** The permissions that the user has in each group, indexed by group ordinal */
+	private final BitmapPermissionSet[] groupPermissions;
 
-	/** The sets of roles that the user has in different groups */
-	private Map<? extends Group, ? extends RoleSet> roleSets;
-	
-	/** The sets of permissions that the user has in different groups */
-	private Map<? extends Role, ? extends PermissionSet> permissionSets;
-	
 	/** The distinct list of groups that this user is part of */
-	private GroupSet groupSet = new GroupSet();
+	private final GroupSet groupSet = new GroupSet();
 	
 	/** The distinct list of roles that this user is part of */
-	private RoleSet roleSet = new RoleSet();
+	private final RoleSet roleSet = new RoleSet();
 	
 	/** the distinct list of permissions that this user has */
-	private PermissionSet permissionSet = new PermissionSet();
+	private BitmapPermissionSet permissionSet;
+
+	/** The permissions of each group as bitmap over permission ordinals */
+	private transient long[][] permissionMatrix;
+
+	/** Map for "group id" is "group ordinal" */
+	private transient Map<Object, Integer> groupById;
+
+	/** Map for "case-folded group name" is "group ordinal" */
+	private transient Map<String, Integer> groupByName;
+
+	/** Map for "role id" is "role ordinal" */
+	private transient Map<Object, Integer> roleById;
+
+	/** Map for "case-folded role name" is "role ordinal" */
+	private transient Map<String, Integer> roleByName;
+
+	/** Map for "case-folded permission name" is "permission ordinal" */
+	private transient Map<String, Integer> permissionByName;
+
+	/** Map for "group dictionary ordinal" is "group ordinal", -1 if absent */
+	private transient int[] groupByHandle;
 
 	/**
 	 * Constructs a new AccessControlList.
@@ -79,23 +131,265 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 */
 	public DynamicAccessControlListImpl(Map<? extends Group, ? extends RoleSet> roleSets,
 			Map<? extends Role, ? extends PermissionSet> permissionSets) {
-		this.roleSets = roleSets;
-		this.permissionSets = permissionSets;
+		this(roleSets, permissionSets, null, null);
+	}
+
+	/**
+	 * Constructs a new AccessControlList with the permission and group
+	 * ordinals of the managers.
+	 *
+	 * @param roleSets       a hashtable containing RoleSet objects keyed with Group
+	 *                       objects
+	 * @param permissionSets a hashtable containing PermissionSet objects keyed with
+	 *                       Roles objects
+	 * @param permissionDictionary the dictionary of the permission manager, or
+	 *                       null to use a dictionary of this ACL
+	 * @param groupDictionary the dictionary of the group manager, or null to
+	 *                       use a dictionary of this ACL
+	 */
+	public DynamicAccessControlListImpl(Map<? extends Group, ? extends RoleSet> roleSets,
+			Map<? extends Role, ? extends PermissionSet> permissionSets,
+			PermissionDictionary permissionDictionary, GroupDictionary groupDictionary) {
+		this.dictionary = (permissionDictionary != null) ? permissionDictionary : new PermissionDictionary();
+		this.groupDictionary = (groupDictionary != null) ? groupDictionary : new GroupDictionary();
+		this.permissionSet = new BitmapPermissionSet(dictionary);
+
 		for (Map.Entry<? extends Group, ? extends RoleSet> entry : roleSets.entrySet()) 
 		{
-			Group group = entry.getKey();
-			groupSet.add(group);
-			RoleSet rs = entry.getValue();
-			roleSet.add(rs);
+			groupSet.add(entry.getKey());
+			roleSet.add(entry.getValue());
 		}
-		
+
+		// the permissions of each role are converted to a bitmap once
+		Map<Object, BitmapPermissionSet> rolePermissions = new HashMap<Object, BitmapPermissionSet>();
 		for (Map.Entry<? extends Role, ? extends PermissionSet> entry : permissionSets.entrySet()) 
 		{
 			Role role = entry.getKey();
 			roleSet.add(role);
-			PermissionSet ps = entry.getValue();
+			BitmapPermissionSet ps = new BitmapPermissionSet(dictionary, entry.getValue());
+			rolePermissions.put(role.getId(), ps);
 			permissionSet.add(ps);
 		}
+
+		this.groups = new Group[roleSets.size()];
+		this.groupRoles = new RoleSet[groups.length];
+		this.roles = roleSet.toArray(new Role[0]);
+		this.roleMatrix = new long[groups.length][(roles.length + 63) >>> 6];
+		this.groupPermissions = new BitmapPermissionSet[groups.length];
+
+		Map<Object, Integer> roleOrdinals = new HashMap<Object, Integer>();
+		for (int r = 0; r < roles.length; r++)
+		{
+			roleOrdinals.put(roles[r].getId(), Integer.valueOf(r));
+		}
+
+		int g = 0;
+		for (Map.Entry<? extends Group, ? extends RoleSet> entry : roleSets.entrySet()) 
+		{
+			groups[g] = entry.getKey();
+			groupRoles[g] = new RoleSet(entry.getValue());
+			groupPermissions[g] = new BitmapPermissionSet(dictionary);
+
+			for (Role role : groupRoles[g])
+			{
+				int r = roleOrdinals.get(role.getId()).intValue();
+				roleMatrix[g][r >>> 6] |= 1L << r;
+
+				BitmapPermissionSet ps = rolePermissions.get(role.getId());
+				if (ps != null)
+				{
+					// word-wise OR of the bitmaps
+					groupPermissions[g].add(ps);
+				}
+			}
+
+			g++;
+		}
+
+		compile();
+	}
+
+	/**
+	 * Build the transient lookup structures from the serializable state
+	 */
+	private void compile()
+	{
+		groupById = new HashMap<Object, Integer>();
+		groupByName = new HashMap<String, Integer>();
+		permissionMatrix = new long[groups.length][];
+
+		for (int g = 0; g < groups.length; g++)
+		{
+			Integer ordinal = Integer.valueOf(g);
+			groupById.put(groups[g].getId(), ordinal);
+			if (groups[g].getName() != null)
+			{
+				groupByName.put(SecuritySet.foldName(groups[g].getName()), ordinal);
+			}
+			permissionMatrix[g] = groupPermissions[g].toLongArray();
+		}
+
+		roleById = new HashMap<Object, Integer>();
+		roleByName = new HashMap<String, Integer>();
+		for (int r = 0; r < roles.length; r++)
+		{
+			Integer ordinal = Integer.valueOf(r);
+			roleById.put(roles[r].getId(), ordinal);
+			if (roles[r].getName() != null)
+			{
+				roleByName.put(SecuritySet.foldName(roles[r].getName()), ordinal);
+			}
+		}
+
+		permissionByName = new HashMap<String, Integer>();
+		for (Permission p : permissionSet)
+		{
+			if (p.getName() != null)
+			{
+				permissionByName.put(SecuritySet.foldName(p.getName()), Integer.valueOf(dictionary.ordinalOf(p.getId())));
+			}
+		}
+
+		int[] handles = new int[groups.length];
+		int maxHandle = -1;
+		for (int g = 0; g < groups.length; g++)
+		{
+			handles[g] = groupDictionary.register(groups[g]);
+			maxHandle = Math.max(maxHandle, handles[g]);
+		}
+		groupByHandle = new int[maxHandle + 1];
+		Arrays.fill(groupByHandle, -1);
+		for (int g = 0; g < groups.length; g++)
+		{
+			if (handles[g] >= 0)
+			{
+				groupByHandle[handles[g]] = g;
+			}
+		}
+	}
+
+	/**
+	 * Rebuild the lookup structures after deserialization. Permission
+	 * ordinals are local to the dictionary, the sets are read with
+	 * dictionaries of their own and are moved into a common one.
+	 *
+	 * @param in the stream
+	 * @throws IOException if reading fails
+	 * @throws ClassNotFoundException if a class is unknown
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		dictionary = new PermissionDictionary();
+		groupDictionary = new GroupDictionary();
+		permissionSet = new BitmapPermissionSet(dictionary, permissionSet);
+		for (int g = 0; g < groupPermissions.length; g++)
+		{
+			groupPermissions[g] = new BitmapPermissionSet(dictionary, groupPermissions[g]);
+		}
+		compile();
+	}
+
+	/**
+	 * Test a bit in a bitmap
+	 *
+	 * @param bits the bitmap
+	 * @param ordinal the ordinal, may be negative
+	 * @return true if the bit is set
+	 */
+	private static boolean test(long[] bits, int ordinal)
+	{
+		int word = ordinal >>> 6;
+		return ordinal >= 0 && word < bits.length && (bits[word] & (1L << ordinal)) != 0;
+	}
+
+	/**
+	 * Look up an ordinal
+	 *
+	 * @param map the map
+	 * @param key the key, may be null
+	 * @return the ordinal or -1 if not found
+	 */
+	private static int ordinal(Map<?, Integer> map, Object key)
+	{
+		Integer ordinal = (key == null) ? null : map.get(key);
+		return (ordinal == null) ? -1 : ordinal.intValue();
+	}
+
+	private int groupOrdinal(Group group)
+	{
+		return (group == null) ? -1 : ordinal(groupById, group.getId());
+	}
+
+	private int groupOrdinal(String name)
+	{
+		return (name == null) ? -1 : ordinal(groupByName, SecuritySet.foldName(name));
+	}
+
+	private int roleOrdinal(Role role)
+	{
+		return (role == null) ? -1 : ordinal(roleById, role.getId());
+	}
+
+	private int roleOrdinal(String name)
+	{
+		return (name == null) ? -1 : ordinal(roleByName, SecuritySet.foldName(name));
+	}
+
+	private int permissionOrdinal(Permission permission)
+	{
+		return (permission == null) ? -1 : dictionary.ordinalOf(permission.getId());
+	}
+
+	private int permissionOrdinal(String name)
+	{
+		return (name == null) ? -1 : ordinal(permissionByName, SecuritySet.foldName(name));
+	}
+
+	private boolean hasRole(int r, int g)
+	{
+		return g >= 0 && test(roleMatrix[g], r);
+	}
+
+	private boolean hasRole(int r, GroupSet groupset)
+	{
+		if (r < 0 || groupset == null)
+		{
+			return false;
+		}
+
+		for (int g = 0; g < groups.length; g++)
+		{
+			if (test(roleMatrix[g], r) && groupset.contains(groups[g]))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private boolean hasPermission(int p, int g)
+	{
+		return g >= 0 && test(permissionMatrix[g], p);
+	}
+
+	private boolean hasPermission(int p, GroupSet groupset)
+	{
+		if (p < 0 || groupset == null)
+		{
+			return false;
+		}
+
+		for (int g = 0; g < groups.length; g++)
+		{
+			if (test(permissionMatrix[g], p) && groupset.contains(groups[g]))
+			{
+				return true;
+			}
+		}
+
+		return false;
 	}
 
 	/**
@@ -105,12 +399,8 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 * @return the set of Roles this user has within the Group.
 	 */
 	public RoleSet getRoles(Group group) {
-		if (group == null) 
-		{
-			return null;
-		}
-
-		return roleSets.get(group);
+		int g = groupOrdinal(group);
+		return (g < 0) ? null : groupRoles[g];
 	}
 
 	/**
@@ -126,21 +416,11 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 * Retrieves a set of Permissions an user is assigned in a Group.
 	 *
 	 * @param group the Group
-	 * @return the set of Permissions this user has within the Group.
+	 * @return a copy of the set of Permissions this user has within the Group.
 	 */
 	public PermissionSet getPermissions(Group group) {
-		PermissionSet permissionSet = new PermissionSet();
-		if (roleSets.containsKey(group)) 
-		{
-			for (Role role : roleSets.get(group)) 
-			{
-				if (permissionSets.containsKey(role)) 
-				{
-					permissionSet.add(permissionSets.get(role));
-				}
-			}
-		}
-		return permissionSet;
+		int g = groupOrdinal(group);
+		return (g < 0) ? new BitmapPermissionSet() : new BitmapPermissionSet(groupPermissions[g]);
 	}
 
 	/**
@@ -160,12 +440,7 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 * @return <code>true</code> if the user is assigned the Role in the Group.
 	 */
 	public boolean hasRole(Role role, Group group) {
-		RoleSet set = getRoles(group);
-		if (set == null || role == null) 
-		{
-			return false;
-		}
-		return set.contains(role);
+		return hasRole(roleOrdinal(role), groupOrdinal(group));
 	}
 
 	/**
@@ -177,14 +452,7 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 *         given Groups.
 	 */
 	public boolean hasRole(Role role, GroupSet groupset) {
-		if (role == null) 
-		{
-			return false;
-		}
-
-		return groupset.stream()
-				.map(this::getRoles)
-				.anyMatch(roles -> roles != null && roles.contains(role));
+		return hasRole(roleOrdinal(role), groupset);
 	}
 
 	/**
@@ -195,24 +463,7 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 * @return <code>true</code> if the user is assigned the Role in the Group.
 	 */
 	public boolean hasRole(String role, String group) {
-		boolean roleFound = false;
-		try 
-		{
-			for (Map.Entry<? extends Group, ? extends RoleSet> entry : roleSets.entrySet()) 
-			{
-				Group g = entry.getKey();
-				if (g.getName().equalsIgnoreCase(group)) 
-				{
-					RoleSet rs = entry.getValue();
-					roleFound = rs.containsName(role);
-				}
-			}
-		} 
-		catch (Exception e) 
-		{
-			roleFound = false;
-		}
-		return roleFound;
+		return hasRole(roleOrdinal(role), groupOrdinal(group));
 	}
 
 	/**
@@ -224,24 +475,7 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 *         given Groups.
 	 */
 	public boolean hasRole(String rolename, GroupSet groupset) {
-		Role role;
-		try 
-		{
-			role = roleSet.getByName(rolename);
-		} 
-		catch (Exception e) 
-		{
-			return false;
-		}
-		
-		if (role == null) 
-		{
-			return false;
-		}
-
-		return groupset.stream()
-				.map(this::getRoles)
-				.anyMatch(roles -> roles != null && roles.contains(role));
+		return hasRole(roleOrdinal(rolename), groupset);
 	}
 
 	/**
@@ -252,7 +486,7 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 *         Group.
 	 */
 	public boolean hasRole(Role role) {
-		return roleSet.contains(role);
+		return roleOrdinal(role) >= 0;
 	}
 
 	/**
@@ -262,14 +496,7 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 * @return <code>true</code> if the user is assigned the Role .
 	 */
 	public boolean hasRole(String role) {
-		try 
-		{
-			return roleSet.containsName(role);
-		} 
-		catch (Exception e) 
-		{
-			return false;
-		}
+		return roleOrdinal(role) >= 0;
 	}
 
 	/**
@@ -281,12 +508,7 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 *         Group.
 	 */
 	public boolean hasPermission(Permission permission, Group group) {
-		PermissionSet set = getPermissions(group);
-		if (set == null || permission == null) 
-		{
-			return false;
-		}
-		return set.contains(permission);
+		return hasPermission(permissionOrdinal(permission), groupOrdinal(group));
 	}
 
 	/**
@@ -299,14 +521,7 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 *         the given Groups.
 	 */
 	public boolean hasPermission(Permission permission, GroupSet groupset) {
-		if (permission == null) 
-		{
-			return false;
-		}
-
-		return groupset.stream()
-				.map(this::getPermissions)
-				.anyMatch(permissions -> permissions != null && permissions.contains(permission));
+		return hasPermission(permissionOrdinal(permission), groupset);
 	}
 
 	/**
@@ -318,14 +533,7 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 *         Group.
 	 */
 	public boolean hasPermission(String permission, String group) {
-		try 
-		{
-			return hasPermission(permissionSet.getByName(permission), groupSet.getByName(group));
-		} 
-		catch (Exception e) 
-		{
-			return false;
-		}
+		return hasPermission(permissionOrdinal(permission), groupOrdinal(group));
 	}
 
 	/**
@@ -337,14 +545,7 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 *         Group.
 	 */
 	public boolean hasPermission(String permission, Group group) {
-		try 
-		{
-			return hasPermission(permissionSet.getByName(permission), group);
-		} 
-		catch (Exception e) 
-		{
-			return false;
-		}
+		return hasPermission(permissionOrdinal(permission), groupOrdinal(group));
 	}
 
 	/**
@@ -357,23 +558,7 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 *         the given Groups.
 	 */
 	public boolean hasPermission(String permissionName, GroupSet groupset) {
-		Permission permission;
-		try 
-		{
-			permission = permissionSet.getByName(permissionName);
-		} catch (Exception e) {
-			return false;
-		}
-		
-		if (permission == null) 
-		{
-			return false;
-		}
-
-		return groupset.stream()
-				.map(this::getPermissions)
-				.anyMatch(permissions -> permissions != null
-						&& permissions.contains(permission));
+		return hasPermission(permissionOrdinal(permissionName), groupset);
 	}
 
 	/**
@@ -383,7 +568,7 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 * @return <code>true</code> if the user is assigned the Permission .
 	 */
 	public boolean hasPermission(Permission permission) {
-		return permissionSet.contains(permission);
+		return permissionSet.containsOrdinal(permissionOrdinal(permission));
 	}
 
 	/**
@@ -394,13 +579,64 @@ public class DynamicAccessControlListImpl implements DynamicAccessControlList
 	 *         global Group.
 	 */
 	public boolean hasPermission(String permission) {
-		try 
-		{
-			return permissionSet.containsName(permission);
-		} 
-		catch (Exception e) 
+		return permissionSet.containsOrdinal(permissionOrdinal(permission));
+	}
+
+	/**
+	 * Maps the group handle to its row with an array lookup and tests the bit
+	 * of the permission handle, without resolving names or ids. Handles of
+	 * other dictionaries are checked by id.
+	 */
+	@Override
+	public boolean hasPermission(PermissionHandle permission, GroupHandle group) {
+		if (permission == null || group == null || !permission.isValid() || !group.isValid())
 		{
 			return false;
 		}
+		if (permission.getDictionary() != dictionary || group.getDictionary() != groupDictionary)
+		{
+			return DynamicAccessControlList.super.hasPermission(permission, group);
+		}
+
+		int h = group.getOrdinal();
+		return h < groupByHandle.length && hasPermission(permission.getOrdinal(), groupByHandle[h]);
+	}
+
+	/**
+	 * Resolves every distinct name once, then tests the bit matrix for each pair.
+	 */
+	@Override
+	public BitSet hasPermissions(String[] permissions, String[] groups) {
+		return AccessControlListBatch.pairs(
+				AccessControlListBatch.resolveNames(permissions, this::permissionOrdinal),
+				AccessControlListBatch.resolveNames(groups, this::groupOrdinal),
+				this::hasPermission);
+	}
+
+	@Override
+	public BitSet hasPermissions(Permission[] permissions, Group[] groups) {
+		return AccessControlListBatch.pairs(
+				AccessControlListBatch.resolve(permissions, this::permissionOrdinal),
+				AccessControlListBatch.resolve(groups, this::groupOrdinal),
+				this::hasPermission);
+	}
+
+	/**
+	 * Resolves every name once, then tests the bit matrix for each combination.
+	 */
+	@Override
+	public BitSet hasPermissionsInGroups(String[] permissions, String[] groups) {
+		return AccessControlListBatch.crossProduct(
+				AccessControlListBatch.resolveNames(permissions, this::permissionOrdinal),
+				AccessControlListBatch.resolveNames(groups, this::groupOrdinal),
+				this::hasPermission);
+	}
+
+	@Override
+	public BitSet hasPermissionsInGroups(Permission[] permissions, Group[] groups) {
+		return AccessControlListBatch.crossProduct(
+				AccessControlListBatch.resolve(permissions, this::permissionOrdinal),
+				AccessControlListBatch.resolve(groups, this::groupOrdinal),
+				this::hasPermission);
 	}
 }
@@ -25,6 +25,8 @@ import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
 import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.util.DataBackendException;
+import org.apache.fulcrum.security.util.PermissionSet;
+import org.apache.fulcrum.security.util.RoleSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
 
 /**
@@ -209,4 +211,58 @@ public interface DynamicModelManager extends ModelManager
      *             if the Group is not present.
      */
     void removeDelegate(User delegator, User delegatee) throws DataBackendException, UnknownEntityException;
+
+    /**
+     * Let a Role extend a parent Role. The Role inherits all permissions of
+     * the parent and of its ancestors.
+     *
+     * @param role
+     *            the Role
+     * @param parent
+     *            the parent Role
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend or the
+     *             edge would create a cycle.
+     * @throws UnknownEntityException
+     *             if one of the roles is not present.
+     */
+    void addParentRole(Role role, Role parent) throws DataBackendException, UnknownEntityException;
+
+    /**
+     * Stop a Role from extending a parent Role.
+     *
+     * @param role
+     *            the Role
+     * @param parent
+     *            the parent Role
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     * @throws UnknownEntityException
+     *             if one of the roles is not present.
+     */
+    void removeParentRole(Role role, Role parent) throws DataBackendException, UnknownEntityException;
+
+    /**
+     * Get the Roles a Role directly extends.
+     *
+     * @param role
+     *            the Role
+     * @return the parent Roles
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    RoleSet getParentRoles(Role role) throws DataBackendException;
+
+    /**
+     * Get the Permissions a Role inherits from its ancestors, without its
+     * own Permissions.
+     *
+     * @param role
+     *            the Role
+     * @return a copy of the inherited Permissions, empty if the Role does
+     *         not extend another Role
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    PermissionSet getInheritedPermissions(Role role) throws DataBackendException;
 }
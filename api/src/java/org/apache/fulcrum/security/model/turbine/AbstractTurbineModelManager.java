@@ -19,12 +19,23 @@ package org.apache.fulcrum.security.model.turbine;
  * under the License.
  */
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
 import org.apache.avalon.framework.configuration.Configurable;
 import org.apache.avalon.framework.configuration.Configuration;
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
 import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.RoleHierarchy;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineGroup;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineRole;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineUser;
@@ -32,7 +43,10 @@ import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
 import org.apache.fulcrum.security.spi.AbstractManager;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.EntityExistsException;
+import org.apache.fulcrum.security.util.PermissionSet;
+import org.apache.fulcrum.security.util.RoleSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.fulcrum.security.util.UserSet;
 
 /**
  * Holds shared functionality between different implementations of
@@ -52,7 +66,27 @@ public abstract class AbstractTurbineModelManager extends AbstractManager implem
     private static final long serialVersionUID = 1L;
     
     private String globalGroupName;
+
+    /** The role hierarchy, loaded on first use */
+    private RoleHierarchy roleHierarchy;
+
+    /** The group hierarchy, loaded on first use */
+    private GroupHierarchy groupHierarchy;
     
+    /**
+     * The model manager answers with its own index, which the entity
+     * managers keep up to date on removal. The default implementation keeps
+     * no index.
+     *
+     * @return the reverse index of this manager, <code>null</code> if it
+     *         keeps none
+     */
+    @Override
+    public TurbineAuthorizationIndex getAuthorizationIndex()
+    {
+        return null;
+    }
+
     //private boolean cascadeDelete;
 	// ---------------- Avalon Lifecycle Methods ---------------------
     /**
@@ -143,6 +177,15 @@ public abstract class AbstractTurbineModelManager extends AbstractManager implem
             {
                 revoke(role, (Permission) permission);
             }
+            RoleHierarchy hierarchy = getRoleHierarchy();
+            for (Object parentId : hierarchy.getParents(role.getId()))
+            {
+                removeParentRole(role, getRoleManager().getRoleById(parentId));
+            }
+            for (Object childId : hierarchy.getChildren(role.getId()))
+            {
+                removeParentRole(getRoleManager().getRoleById(childId), role);
+            }
             if (cascadeDelete) {
                 Object userGroupRoles[] = ((TurbineRole) role).getUserGroupRoleSet().toArray();
                 for (Object userGroupRole : userGroupRoles)
@@ -218,6 +261,13 @@ public abstract class AbstractTurbineModelManager extends AbstractManager implem
                 TurbineUserGroupRole ugr = (TurbineUserGroupRole) userGroupRole;
                 revoke(ugr.getUser(), group, ugr.getRole());
             }
+
+            GroupHierarchy hierarchy = getGroupHierarchy();
+            for (Object childId : hierarchy.getChildren(group.getId()))
+            {
+                setParentGroup(getGroupManager().getGroupById(childId), null);
+            }
+            setParentGroup(group, null);
         }
         else
         {
@@ -225,6 +275,398 @@ public abstract class AbstractTurbineModelManager extends AbstractManager implem
         }
     }
 
+    /**
+     * Scans the user/group/role relations of the group. Backends with an
+     * index or a query language should override this.
+     */
+    @Override
+    public Stream<Object> getUserIds(Group group, Role role) throws DataBackendException
+    {
+        Set<Object> ids = new LinkedHashSet<Object>();
+        for (TurbineUserGroupRole ugr : getUserGroupRoles(group.getId()))
+        {
+            if (ugr.getRole().equals(role))
+            {
+                ids.add(ugr.getUser().getId());
+            }
+        }
+        return ids.stream();
+    }
+
+    /**
+     * Scans the user/group/role relations of the group and its ancestors
+     * and reads the permissions of every role in them once. Backends with
+     * an index or a query language should override this.
+     */
+    @Override
+    public Stream<Object> getUserIds(Group group, Permission permission) throws DataBackendException
+    {
+        Map<Object, Boolean> granting = new HashMap<Object, Boolean>();
+        Set<Object> ids = new LinkedHashSet<Object>();
+        for (Object groupId : getGroupIdsWithAncestors(group))
+        {
+            for (TurbineUserGroupRole ugr : getUserGroupRoles(groupId))
+            {
+                Object roleId = ugr.getRole().getId();
+                Boolean grants = granting.get(roleId);
+                if (grants == null)
+                {
+                    try
+                    {
+                        TurbineRole role = getRoleManager().getRoleById(roleId);
+                        grants = Boolean.valueOf(role.getPermissions().contains(permission)
+                                || getInheritedPermissions(role).contains(permission));
+                    }
+                    catch (UnknownEntityException e)
+                    {
+                        grants = Boolean.FALSE;
+                    }
+                    granting.put(roleId, grants);
+                }
+
+                if (grants.booleanValue())
+                {
+                    ids.add(ugr.getUser().getId());
+                }
+            }
+        }
+        return ids.stream();
+    }
+
+    @Override
+    public <T extends User> UserSet<T> getUsers(Group group, Role role) throws DataBackendException
+    {
+        return getUsersById(getUserIds(group, role));
+    }
+
+    @Override
+    public <T extends User> UserSet<T> getUsers(Group group, Permission permission) throws DataBackendException
+    {
+        return getUsersById(getUserIds(group, permission));
+    }
+
+    /**
+     * Adds an edge to the role hierarchy. The role inherits all permissions
+     * of the parent and its ancestors from now on.
+     */
+    @Override
+    public synchronized void addParentRole(Role role, Role parent) throws DataBackendException, UnknownEntityException
+    {
+        checkRolesExist(role, parent);
+        RoleHierarchy hierarchy = getRoleHierarchy();
+        if (hierarchy.getParents(role.getId()).contains(parent.getId()))
+        {
+            return;
+        }
+        if (hierarchy.createsCycle(role.getId(), parent.getId()))
+        {
+            throw new DataBackendException("addParentRole('" + role.getName() + "', '" + parent.getName() + "') would create a cycle");
+        }
+
+        TurbineRole current = getRoleManager().getRoleById(parent.getId());
+        saveParentRole(role, parent, true);
+        hierarchy.addParent(role.getId(), parent.getId(), current.getPermissions());
+        invalidateAllACLs();
+    }
+
+    @Override
+    public synchronized void removeParentRole(Role role, Role parent) throws DataBackendException, UnknownEntityException
+    {
+        checkRolesExist(role, parent);
+        RoleHierarchy hierarchy = getRoleHierarchy();
+        if (hierarchy.getParents(role.getId()).contains(parent.getId()))
+        {
+            saveParentRole(role, parent, false);
+            hierarchy.removeParent(role.getId(), parent.getId());
+            invalidateAllACLs();
+        }
+    }
+
+    @Override
+    public RoleSet getParentRoles(Role role) throws DataBackendException
+    {
+        RoleSet roles = new RoleSet();
+        for (Object parentId : getRoleHierarchy().getParents(role.getId()))
+        {
+            try
+            {
+                Role parent = getRoleManager().getRoleById(parentId);
+                roles.add(parent);
+            }
+            catch (UnknownEntityException e)
+            {
+                // removed since the edge was recorded
+            }
+        }
+        return roles;
+    }
+
+    @Override
+    public PermissionSet getInheritedPermissions(Role role) throws DataBackendException
+    {
+        return getRoleHierarchy().getInheritedPermissions(role.getId());
+    }
+
+    /**
+     * Moves the group with its subtree in the group hierarchy. Permissions
+     * granted in the parent and its ancestors apply in the group from now on.
+     */
+    @Override
+    public synchronized void setParentGroup(Group group, Group parent) throws DataBackendException, UnknownEntityException
+    {
+        if (!getGroupManager().checkExists(group))
+        {
+            throw new UnknownEntityException("Unknown group '" + group.getName() + "'");
+        }
+        if (parent != null && !getGroupManager().checkExists(parent))
+        {
+            throw new UnknownEntityException("Unknown group '" + parent.getName() + "'");
+        }
+
+        GroupHierarchy hierarchy = getGroupHierarchy();
+        Object current = hierarchy.getParent(group.getId());
+        if (parent == null ? current == null : parent.getId().equals(current))
+        {
+            return;
+        }
+        if (parent != null && hierarchy.isDescendant(parent.getId(), group.getId()))
+        {
+            throw new DataBackendException("setParentGroup('" + group.getName() + "', '" + parent.getName() + "') would create a cycle");
+        }
+
+        saveParentGroup(group, parent);
+        hierarchy.setParent(group, parent);
+        invalidateAllACLs();
+    }
+
+    @Override
+    public Group getParentGroup(Group group) throws DataBackendException
+    {
+        Object parentId = getGroupHierarchy().getParent(group.getId());
+        if (parentId != null)
+        {
+            try
+            {
+                return getGroupManager().getGroupById(parentId);
+            }
+            catch (UnknownEntityException e)
+            {
+                // removed since the edge was recorded
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public GroupIntervals getGroupIntervals() throws DataBackendException
+    {
+        return getGroupHierarchy().getIntervals();
+    }
+
+    /**
+     * Retrieve the users of a stream of ids from the user manager. Users
+     * which have been removed in the meantime are skipped.
+     *
+     * @param ids the user ids
+     * @return the users
+     * @throws DataBackendException if there was an error accessing the data backend.
+     */
+    private <T extends User> UserSet<T> getUsersById(Stream<Object> ids) throws DataBackendException
+    {
+        UserSet<T> users = new UserSet<T>();
+        for (Iterator<Object> it = ids.iterator(); it.hasNext();)
+        {
+            try
+            {
+                T user = getUserManager().getUserById(it.next());
+                users.add(user);
+            }
+            catch (UnknownEntityException e)
+            {
+                // removed since the relation was recorded
+            }
+        }
+        return users;
+    }
+
+    private Set<TurbineUserGroupRole> getUserGroupRoles(Object groupId) throws DataBackendException
+    {
+        try
+        {
+            TurbineGroup current = getGroupManager().getGroupById(groupId);
+            return current.getUserGroupRoleSet();
+        }
+        catch (UnknownEntityException e)
+        {
+            return Collections.emptySet();
+        }
+    }
+
+    /**
+     * Permissions held in a group apply in all groups nested in it, so a
+     * permission query on a group has to look at its ancestors as well.
+     *
+     * @param group the group
+     * @return the id of the group followed by the ids of its ancestors
+     * @throws DataBackendException if the hierarchy could not be loaded
+     */
+    protected List<Object> getGroupIdsWithAncestors(Group group) throws DataBackendException
+    {
+        List<Object> ids = new ArrayList<Object>();
+        ids.add(group.getId());
+        ids.addAll(getGroupHierarchy().getAncestors(group.getId()));
+        return ids;
+    }
+
+    /**
+     * Get the role hierarchy, loading it on first use
+     *
+     * @return the role hierarchy
+     * @throws DataBackendException if the hierarchy could not be loaded
+     */
+    protected synchronized RoleHierarchy getRoleHierarchy() throws DataBackendException
+    {
+        if (roleHierarchy == null)
+        {
+            RoleHierarchy hierarchy = new RoleHierarchy(getPermissionManager().getPermissionDictionary());
+            for (Map.Entry<Object, Set<Object>> entry : loadParentRoles().entrySet())
+            {
+                for (Object parentId : entry.getValue())
+                {
+                    try
+                    {
+                        TurbineRole parent = getRoleManager().getRoleById(parentId);
+                        hierarchy.addParent(entry.getKey(), parentId, parent.getPermissions());
+                    }
+                    catch (UnknownEntityException e)
+                    {
+                        throw new DataBackendException("Role hierarchy refers to unknown role " + parentId, e);
+                    }
+                }
+            }
+            roleHierarchy = hierarchy;
+        }
+        return roleHierarchy;
+    }
+
+    /**
+     * Read the persisted role hierarchy. The default implementation keeps
+     * the hierarchy in memory only.
+     *
+     * @return map for "role id" is "ids of the parent roles"
+     * @throws DataBackendException if there was an error accessing the data backend.
+     */
+    protected Map<Object, Set<Object>> loadParentRoles() throws DataBackendException
+    {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Persist an edge of the role hierarchy. The default implementation
+     * keeps the hierarchy in memory only.
+     *
+     * @param role the child role
+     * @param parent the parent role
+     * @param add <code>true</code> to add the edge, <code>false</code> to remove it
+     * @throws DataBackendException if there was an error accessing the data backend.
+     */
+    protected void saveParentRole(Role role, Role parent, boolean add) throws DataBackendException
+    {
+        // nothing to persist
+    }
+
+    /**
+     * Get the group hierarchy, loading it on first use
+     *
+     * @return the group hierarchy
+     * @throws DataBackendException if the hierarchy could not be loaded
+     */
+    protected synchronized GroupHierarchy getGroupHierarchy() throws DataBackendException
+    {
+        if (groupHierarchy == null)
+        {
+            GroupHierarchy hierarchy = new GroupHierarchy();
+            for (Map.Entry<Object, Object> entry : loadParentGroups().entrySet())
+            {
+                try
+                {
+                    Group group = getGroupManager().getGroupById(entry.getKey());
+                    Group parent = getGroupManager().getGroupById(entry.getValue());
+                    hierarchy.setParent(group, parent);
+                }
+                catch (UnknownEntityException e)
+                {
+                    throw new DataBackendException("Group hierarchy refers to unknown group " + entry.getValue(), e);
+                }
+            }
+            groupHierarchy = hierarchy;
+        }
+        return groupHierarchy;
+    }
+
+    /**
+     * Read the persisted group hierarchy. The default implementation keeps
+     * the hierarchy in memory only.
+     *
+     * @return map for "group id" is "id of the parent group"
+     * @throws DataBackendException if there was an error accessing the data backend.
+     */
+    protected Map<Object, Object> loadParentGroups() throws DataBackendException
+    {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Persist the parent of a group. The default implementation keeps the
+     * hierarchy in memory only.
+     *
+     * @param group the group
+     * @param parent the new parent, <code>null</code> if the group is no
+     *            longer nested
+     * @throws DataBackendException if there was an error accessing the data backend.
+     */
+    protected void saveParentGroup(Group group, Group parent) throws DataBackendException
+    {
+        // nothing to persist
+    }
+
+    /**
+     * Update the permissions the descendants of a role inherit. Must be
+     * called after the permissions of the role have been changed.
+     *
+     * @param role the modified role
+     * @throws DataBackendException if there was an error accessing the data backend.
+     */
+    protected void rolePermissionsChanged(Role role) throws DataBackendException
+    {
+        RoleHierarchy hierarchy = getRoleHierarchy();
+        if (hierarchy.hasChildren(role.getId()))
+        {
+            try
+            {
+                TurbineRole current = getRoleManager().getRoleById(role.getId());
+                hierarchy.setPermissions(role.getId(), current.getPermissions());
+            }
+            catch (UnknownEntityException e)
+            {
+                throw new DataBackendException("Unknown role '" + role.getName() + "'", e);
+            }
+            invalidateAllACLs();
+        }
+    }
+
+    private void checkRolesExist(Role role, Role parent) throws DataBackendException, UnknownEntityException
+    {
+        if (!getRoleManager().checkExists(role))
+        {
+            throw new UnknownEntityException("Unknown role '" + role.getName() + "'");
+        }
+        if (!getRoleManager().checkExists(parent))
+        {
+            throw new UnknownEntityException("Unknown role '" + parent.getName() + "'");
+        }
+    }
+
 	@Override
 	public String getGlobalGroupName() {
 		return globalGroupName;
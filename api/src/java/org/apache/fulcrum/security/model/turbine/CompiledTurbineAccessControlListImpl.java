@@ -0,0 +1,822 @@
+package org.apache.fulcrum.security.model.turbine;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.avalon.framework.logger.Logger;
+import org.apache.fulcrum.security.GroupManager;
+import org.apache.fulcrum.security.RoleManager;
+import org.apache.fulcrum.security.acl.AccessControlListBatch;
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.model.turbine.GroupIntervals.Interval;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineRole;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
+import org.apache.fulcrum.security.util.BitmapPermissionSet;
+import org.apache.fulcrum.security.util.FulcrumSecurityException;
+import org.apache.fulcrum.security.util.GroupDictionary;
+import org.apache.fulcrum.security.util.GroupHandle;
+import org.apache.fulcrum.security.util.GroupSet;
+import org.apache.fulcrum.security.util.PermissionDictionary;
+import org.apache.fulcrum.security.util.PermissionHandle;
+import org.apache.fulcrum.security.util.PermissionSet;
+import org.apache.fulcrum.security.util.RoleSet;
+import org.apache.fulcrum.security.util.SecuritySet;
+
+/**
+ * An immutable TurbineAccessControlList which is compiled once from the
+ * user/group/role relations of a user.
+ *
+ * Every group of the user gets a dense ordinal. The roles and permissions of
+ * a group are stored as rows of two bit matrices, indexed by role ordinal and
+ * by the ordinal of the {@link PermissionDictionary} of the permission
+ * manager. Names and ids are
+ * resolved through hash maps built at construction, so all
+ * <code>hasRole</code> and <code>hasPermission</code> checks are O(1) and
+ * do not allocate (given names which are already lower case). Checks against
+ * a {@link GroupSet} iterate over the groups of the user only.
+ *
+ * Permissions granted in a group also apply in the groups nested in it. The
+ * row of a group of the user already includes the permissions of its
+ * ancestors among the groups of the user; for other groups the intervals
+ * of the {@link GroupIntervals} are compared with those of the nested
+ * groups of the user.
+ *
+ * The sets returned by {@link #getRoles(Group)}, {@link #getPermissions(Group)}
+ * and {@link #getGroupSet()} are copies.
+ *
+ * @version $Id$
+ */
+@SuppressWarnings("rawtypes")
+public class CompiledTurbineAccessControlListImpl
+        implements TurbineAccessControlList
+{
+    /** Serial version */
+    private static final long serialVersionUID = 5521389547702314861L;
+
+    /** The dictionary providing the permission ordinals */
+    private transient PermissionDictionary dictionary;
+
+    /** The dictionary providing the group ordinals of handles */
+    private transient GroupDictionary groupDictionary;
+
+    /** The groups of the user, indexed by group ordinal */
+    private final Group[] groups;
+
+    /** The distinct roles of the user, indexed by role ordinal */
+    private final Role[] roles;
+
+    /** The roles of each group as bitmap over role ordinals */
+    private final long[][] roleMatrix;
+
+    /** The permissions of each group, null if the group has no TurbineRole */
+    private final BitmapPermissionSet[] groupPermissions;
+
+    /** The distinct permissions of the user */
+    private BitmapPermissionSet permissionSet;
+
+    /** The global group */
+    private final Group globalGroup;
+
+    /** The group manager */
+    private final transient GroupManager groupManager;
+
+    /** The intervals of the group hierarchy */
+    private final GroupIntervals groupIntervals;
+
+    /** The permissions of each group as bitmap over permission ordinals */
+    private transient long[][] permissionMatrix;
+
+    /** Map for "group id" is "group ordinal" */
+    private transient Map<Object, Integer> groupById;
+
+    /** Map for "case-folded group name" is "group ordinal" */
+    private transient Map<String, Integer> groupByName;
+
+    /** Map for "role id" is "role ordinal" */
+    private transient Map<Object, Integer> roleById;
+
+    /** Map for "case-folded role name" is "role ordinal" */
+    private transient Map<String, Integer> roleByName;
+
+    /** Map for "case-folded permission name" is "permission ordinal" */
+    private transient Map<String, Integer> permissionByName;
+
+    /** Ordinal of the global group, -1 if the user is not a member */
+    private transient int globalOrdinal;
+
+    /** Map for "group dictionary ordinal" is "group ordinal", -1 if absent */
+    private transient int[] groupByHandle;
+
+    /** Ordinals of the groups of the user which are part of the group hierarchy */
+    private transient int[] nestedOrdinals;
+
+    /** The intervals of these groups, parallel to nestedOrdinals */
+    private transient Interval[] nestedIntervals;
+
+    /**
+     * Compiles a new AccessControlList.
+     *
+     * Like {@link TurbineAccessControlListImpl}, this object is immutable.
+     * Changes made to the security settings after construction are not
+     * reflected.
+     *
+     * @param turbineUserGroupRoleSet
+     *            The set of user/group/role relations that this acl is built from
+     * @param groupManager the Group manager
+     * @param roleManager the Role manager
+     * @param modelManager the model Manager
+     * @param logger the logger, may be null
+     *
+     * @throws FulcrumSecurityException if the global group cannot be retrieved
+     */
+    public CompiledTurbineAccessControlListImpl(
+            Set<? extends TurbineUserGroupRole> turbineUserGroupRoleSet,
+            GroupManager groupManager, RoleManager roleManager, TurbineModelManager modelManager, Logger logger) throws FulcrumSecurityException
+    {
+        this(turbineUserGroupRoleSet, groupManager, roleManager, modelManager, null, logger);
+    }
+
+    /**
+     * Compiles a new AccessControlList.
+     *
+     * Like {@link TurbineAccessControlListImpl}, this object is immutable.
+     * Changes made to the security settings after construction are not
+     * reflected.
+     *
+     * @param turbineUserGroupRoleSet
+     *            The set of user/group/role relations that this acl is built from
+     * @param groupManager the Group manager
+     * @param roleManager the Role manager
+     * @param modelManager the model Manager
+     * @param permissionDictionary the dictionary of the permission manager,
+     *            or null to use a dictionary of this ACL
+     * @param logger the logger, may be null
+     *
+     * @throws FulcrumSecurityException if the global group cannot be retrieved
+     */
+    public CompiledTurbineAccessControlListImpl(
+            Set<? extends TurbineUserGroupRole> turbineUserGroupRoleSet,
+            GroupManager groupManager, RoleManager roleManager, TurbineModelManager modelManager,
+            PermissionDictionary permissionDictionary, Logger logger) throws FulcrumSecurityException
+    {
+        this.groupManager = groupManager;
+        this.dictionary = (permissionDictionary != null) ? permissionDictionary : new PermissionDictionary();
+        this.groupDictionary = (groupManager != null) ? groupManager.getGroupDictionary() : new GroupDictionary();
+
+        Map<Object, Group> groupMap = new LinkedHashMap<Object, Group>();
+        Map<Object, Role> roleMap = new LinkedHashMap<Object, Role>();
+        Map<Object, BitmapPermissionSet> rolePermissions = new HashMap<Object, BitmapPermissionSet>();
+        Map<Object, List<Role>> assignments = new HashMap<Object, List<Role>>();
+
+        for (TurbineUserGroupRole ugr : turbineUserGroupRoleSet)
+        {
+            Group group = ugr.getGroup();
+            if (logger != null && groupManager != null && group.getClass() != groupManager.getGroupInstance().getClass())
+            {
+                logger.warn("Turbine group classes do not match, some lookup might fail, check in componentConfiguration.xml. Expected class: " +
+                        groupManager.getGroupInstance().getClass() + ", actual class: " + group.getClass());
+            }
+            groupMap.putIfAbsent(group.getId(), group);
+
+            Role role = roleMap.get(ugr.getRole().getId());
+            if (role == null)
+            {
+                role = ugr.getRole();
+                // get fresh reference from role manager to make sure the related
+                // permissions are populated
+                if (roleManager != null)
+                {
+                    role = roleManager.getRoleById(role.getId());
+                }
+                roleMap.put(role.getId(), role);
+
+                if (role instanceof TurbineRole)
+                {
+                    BitmapPermissionSet ps = new BitmapPermissionSet(dictionary, ((TurbineRole) role).getPermissions());
+                    if (modelManager != null)
+                    {
+                        // precomputed closure of the role hierarchy, one OR for any depth
+                        ps.add(modelManager.getInheritedPermissions(role));
+                    }
+                    rolePermissions.put(role.getId(), ps);
+                }
+            }
+
+            assignments.computeIfAbsent(group.getId(), k -> new ArrayList<Role>()).add(role);
+        }
+
+        this.groups = groupMap.values().toArray(new Group[0]);
+        this.roles = roleMap.values().toArray(new Role[0]);
+        this.roleMatrix = new long[groups.length][(roles.length + 63) >>> 6];
+        this.groupPermissions = new BitmapPermissionSet[groups.length];
+        this.permissionSet = new BitmapPermissionSet(dictionary);
+
+        Map<Object, Integer> roleOrdinals = new HashMap<Object, Integer>();
+        for (int r = 0; r < roles.length; r++)
+        {
+            roleOrdinals.put(roles[r].getId(), Integer.valueOf(r));
+        }
+
+        for (int g = 0; g < groups.length; g++)
+        {
+            for (Role role : assignments.get(groups[g].getId()))
+            {
+                int r = roleOrdinals.get(role.getId()).intValue();
+                roleMatrix[g][r >>> 6] |= 1L << r;
+
+                BitmapPermissionSet ps = rolePermissions.get(role.getId());
+                if (ps != null)
+                {
+                    if (groupPermissions[g] == null)
+                    {
+                        groupPermissions[g] = new BitmapPermissionSet(dictionary);
+                    }
+                    // word-wise OR of the bitmaps
+                    groupPermissions[g].add(ps);
+                    permissionSet.add(ps);
+                }
+            }
+        }
+
+        // this check might be not needed any more, required for custom group
+        this.globalGroup = (modelManager != null) ? modelManager.getGlobalGroup() : null;
+        this.groupIntervals = (modelManager != null) ? modelManager.getGroupIntervals() : GroupIntervals.EMPTY;
+
+        compile();
+    }
+
+    /**
+     * Build the transient lookup structures from the serializable state
+     */
+    private void compile()
+    {
+        groupById = new HashMap<Object, Integer>();
+        groupByName = new HashMap<String, Integer>();
+        permissionMatrix = new long[groups.length][];
+
+        for (int g = 0; g < groups.length; g++)
+        {
+            Integer ordinal = Integer.valueOf(g);
+            groupById.put(groups[g].getId(), ordinal);
+            if (groups[g].getName() != null)
+            {
+                groupByName.put(SecuritySet.foldName(groups[g].getName()), ordinal);
+            }
+            permissionMatrix[g] = (groupPermissions[g] == null) ? new long[0] : groupPermissions[g].toLongArray();
+        }
+
+        roleById = new HashMap<Object, Integer>();
+        roleByName = new HashMap<String, Integer>();
+        for (int r = 0; r < roles.length; r++)
+        {
+            Integer ordinal = Integer.valueOf(r);
+            roleById.put(roles[r].getId(), ordinal);
+            if (roles[r].getName() != null)
+            {
+                roleByName.put(SecuritySet.foldName(roles[r].getName()), ordinal);
+            }
+        }
+
+        permissionByName = new HashMap<String, Integer>();
+        for (Permission p : permissionSet)
+        {
+            if (p.getName() != null)
+            {
+                permissionByName.put(SecuritySet.foldName(p.getName()), Integer.valueOf(dictionary.ordinalOf(p.getId())));
+            }
+        }
+
+        globalOrdinal = groupOrdinal(globalGroup);
+
+        int[] handles = new int[groups.length];
+        int maxHandle = -1;
+        for (int g = 0; g < groups.length; g++)
+        {
+            handles[g] = groupDictionary.register(groups[g]);
+            maxHandle = Math.max(maxHandle, handles[g]);
+        }
+        groupByHandle = new int[maxHandle + 1];
+        Arrays.fill(groupByHandle, -1);
+        for (int g = 0; g < groups.length; g++)
+        {
+            if (handles[g] >= 0)
+            {
+                groupByHandle[handles[g]] = g;
+            }
+        }
+
+        List<Integer> nested = new ArrayList<Integer>();
+        for (int g = 0; g < groups.length; g++)
+        {
+            if (groupIntervals.get(groups[g]) != null)
+            {
+                nested.add(Integer.valueOf(g));
+            }
+        }
+
+        nestedOrdinals = new int[nested.size()];
+        nestedIntervals = new Interval[nested.size()];
+        for (int i = 0; i < nestedOrdinals.length; i++)
+        {
+            nestedOrdinals[i] = nested.get(i).intValue();
+            nestedIntervals[i] = groupIntervals.get(groups[nestedOrdinals[i]]);
+        }
+
+        // merge the own rows of the ancestors into the row of each nested group
+        long[][] own = permissionMatrix.clone();
+        for (int i = 0; i < nestedOrdinals.length; i++)
+        {
+            for (int j = 0; j < nestedOrdinals.length; j++)
+            {
+                if (i != j && nestedIntervals[j].contains(nestedIntervals[i]))
+                {
+                    int g = nestedOrdinals[i];
+                    permissionMatrix[g] = or(permissionMatrix[g] == own[g] ? own[g].clone() : permissionMatrix[g],
+                            own[nestedOrdinals[j]]);
+                }
+            }
+        }
+    }
+
+    /**
+     * OR a bitmap into another one, growing it if necessary
+     *
+     * @param bits the target bitmap, modified if long enough
+     * @param other the bitmap to add
+     * @return the union
+     */
+    private static long[] or(long[] bits, long[] other)
+    {
+        long[] result = (bits.length >= other.length) ? bits : Arrays.copyOf(bits, other.length);
+        for (int i = 0; i < other.length; i++)
+        {
+            result[i] |= other[i];
+        }
+        return result;
+    }
+
+    /**
+     * Rebuild the lookup structures after deserialization. Permission
+     * ordinals are local to the dictionary, the sets are read with
+     * dictionaries of their own and are moved into a common one.
+     *
+     * @param in the stream
+     * @throws IOException if reading fails
+     * @throws ClassNotFoundException if a class is unknown
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        dictionary = new PermissionDictionary();
+        groupDictionary = new GroupDictionary();
+        permissionSet = new BitmapPermissionSet(dictionary, permissionSet);
+        for (int g = 0; g < groupPermissions.length; g++)
+        {
+            if (groupPermissions[g] != null)
+            {
+                groupPermissions[g] = new BitmapPermissionSet(dictionary, groupPermissions[g]);
+            }
+        }
+        compile();
+    }
+
+    /**
+     * Test a bit in a bitmap
+     *
+     * @param bits the bitmap
+     * @param ordinal the ordinal, may be negative
+     * @return true if the bit is set
+     */
+    private static boolean test(long[] bits, int ordinal)
+    {
+        int word = ordinal >>> 6;
+        return ordinal >= 0 && word < bits.length && (bits[word] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Look up an ordinal
+     *
+     * @param map the map
+     * @param key the key, may be null
+     * @return the ordinal or -1 if not found
+     */
+    private static int ordinal(Map<?, Integer> map, Object key)
+    {
+        Integer ordinal = (key == null) ? null : map.get(key);
+        return (ordinal == null) ? -1 : ordinal.intValue();
+    }
+
+    private int groupOrdinal(Group group)
+    {
+        return (group == null) ? -1 : ordinal(groupById, group.getId());
+    }
+
+    private int groupOrdinal(String name)
+    {
+        return (name == null) ? -1 : ordinal(groupByName, SecuritySet.foldName(name));
+    }
+
+    private int roleOrdinal(Role role)
+    {
+        return (role == null) ? -1 : ordinal(roleById, role.getId());
+    }
+
+    private int roleOrdinal(String name)
+    {
+        return (name == null) ? -1 : ordinal(roleByName, SecuritySet.foldName(name));
+    }
+
+    private int permissionOrdinal(Permission permission)
+    {
+        return (permission == null) ? -1 : dictionary.ordinalOf(permission.getId());
+    }
+
+    private int permissionOrdinal(String name)
+    {
+        return (name == null) ? -1 : ordinal(permissionByName, SecuritySet.foldName(name));
+    }
+
+    private boolean hasRole(int r, int g)
+    {
+        return g >= 0 && test(roleMatrix[g], r);
+    }
+
+    private boolean hasRole(int r, GroupSet groupset)
+    {
+        if (r < 0 || groupset == null)
+        {
+            return false;
+        }
+
+        for (int g = 0; g < groups.length; g++)
+        {
+            if (test(roleMatrix[g], r) && groupset.contains(groups[g]))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean hasPermission(int p, int g)
+    {
+        return g >= 0 && test(permissionMatrix[g], p);
+    }
+
+    private boolean hasPermission(int p, GroupSet groupset)
+    {
+        if (p < 0 || groupset == null)
+        {
+            return false;
+        }
+
+        for (int g = 0; g < groups.length; g++)
+        {
+            if (test(permissionMatrix[g], p) && groupset.contains(groups[g]))
+            {
+                return true;
+            }
+        }
+
+        if (nestedOrdinals.length > 0)
+        {
+            for (Group group : groupset)
+            {
+                if (groupOrdinal(group) < 0 && hasPermission(p, groupIntervals.get(group)))
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean hasPermission(int p, Group group)
+    {
+        int g = groupOrdinal(group);
+        return (g >= 0 || nestedOrdinals.length == 0) ? hasPermission(p, g)
+                : hasPermission(p, groupIntervals.get(group));
+    }
+
+    private boolean hasPermission(int p, String groupName)
+    {
+        int g = groupOrdinal(groupName);
+        return (g >= 0 || nestedOrdinals.length == 0) ? hasPermission(p, g)
+                : hasPermission(p, groupIntervals.get(groupName));
+    }
+
+    /**
+     * Check a group outside of this ACL against the nested groups of the
+     * user, two comparisons per nested group.
+     *
+     * @param p the permission ordinal
+     * @param target the interval of the group, may be null
+     * @return true if the permission is granted in an ancestor
+     */
+    private boolean hasPermission(int p, Interval target)
+    {
+        if (p < 0 || target == null)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < nestedOrdinals.length; i++)
+        {
+            if (nestedIntervals[i].contains(target) && test(permissionMatrix[nestedOrdinals[i]], p))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Retrieves a set of Roles an user is assigned in a Group.
+     *
+     * @param group the Group
+     * @return a copy of the set of Roles this user has within the Group.
+     */
+    @Override
+    public RoleSet getRoles(Group group)
+    {
+        int g = groupOrdinal(group);
+        if (g < 0)
+        {
+            return null;
+        }
+
+        RoleSet roleSet = new RoleSet();
+        for (int r = 0; r < roles.length; r++)
+        {
+            if (test(roleMatrix[g], r))
+            {
+                roleSet.add(roles[r]);
+            }
+        }
+        return roleSet;
+    }
+
+    /**
+     * Retrieves a set of Roles an user is assigned in the global Group.
+     *
+     * @return a copy of the set of Roles this user has within the global Group or null.
+     */
+    @Override
+    public RoleSet getRoles()
+    {
+        return getRoles(globalGroup);
+    }
+
+    /**
+     * Retrieves a set of Permissions an user is assigned in a Group.
+     *
+     * @param group the Group
+     * @return a copy of the set of Permissions this user has within the Group.
+     */
+    @Override
+    public PermissionSet getPermissions(Group group)
+    {
+        int g = groupOrdinal(group);
+        if (g < 0 || groupPermissions[g] == null)
+        {
+            return null;
+        }
+        return new BitmapPermissionSet(groupPermissions[g]);
+    }
+
+    /**
+     * Retrieves a set of Permissions an user is assigned in the global Group.
+     *
+     * @return a copy of the set of Permissions this user has within the global Group.
+     */
+    @Override
+    public PermissionSet getPermissions()
+    {
+        return getPermissions(globalGroup);
+    }
+
+    @Override
+    public boolean hasRole(Role role, Group group)
+    {
+        return hasRole(roleOrdinal(role), groupOrdinal(group));
+    }
+
+    @Override
+    public boolean hasRole(Role role, GroupSet groupset)
+    {
+        return hasRole(roleOrdinal(role), groupset);
+    }
+
+    @Override
+    public boolean hasRole(String role, String group)
+    {
+        return hasRole(roleOrdinal(role), groupOrdinal(group));
+    }
+
+    @Override
+    public boolean hasRole(String rolename, GroupSet groupset)
+    {
+        return hasRole(roleOrdinal(rolename), groupset);
+    }
+
+    @Override
+    public boolean hasRole(Role role)
+    {
+        return hasRole(roleOrdinal(role), globalOrdinal);
+    }
+
+    @Override
+    public boolean hasRole(String role)
+    {
+        return hasRole(roleOrdinal(role), globalOrdinal);
+    }
+
+    @Override
+    public boolean hasPermission(Permission permission, Group group)
+    {
+        return hasPermission(permissionOrdinal(permission), group);
+    }
+
+    @Override
+    public boolean hasPermission(Permission permission, GroupSet groupset)
+    {
+        return hasPermission(permissionOrdinal(permission), groupset);
+    }
+
+    @Override
+    public boolean hasPermission(String permission, String group)
+    {
+        return hasPermission(permissionOrdinal(permission), group);
+    }
+
+    @Override
+    public boolean hasPermission(String permission, Group group)
+    {
+        return hasPermission(permissionOrdinal(permission), group);
+    }
+
+    @Override
+    public boolean hasPermission(String permissionName, GroupSet groupset)
+    {
+        return hasPermission(permissionOrdinal(permissionName), groupset);
+    }
+
+    @Override
+    public boolean hasPermission(Permission permission)
+    {
+        return hasPermission(permissionOrdinal(permission), globalOrdinal);
+    }
+
+    @Override
+    public boolean hasPermission(String permission)
+    {
+        return hasPermission(permissionOrdinal(permission), globalOrdinal);
+    }
+
+    /**
+     * Maps the group handle to its row with an array lookup and tests the bit
+     * of the permission handle, without resolving names or ids. Handles of
+     * other dictionaries are checked by id.
+     */
+    @Override
+    public boolean hasPermission(PermissionHandle permission, GroupHandle group)
+    {
+        if (permission == null || group == null || !permission.isValid() || !group.isValid())
+        {
+            return false;
+        }
+        if (permission.getDictionary() != dictionary || group.getDictionary() != groupDictionary)
+        {
+            return TurbineAccessControlList.super.hasPermission(permission, group);
+        }
+
+        int h = group.getOrdinal();
+        int g = (h < groupByHandle.length) ? groupByHandle[h] : -1;
+        return (g >= 0 || nestedOrdinals.length == 0) ? hasPermission(permission.getOrdinal(), g)
+                : hasPermission(permission.getOrdinal(), groupIntervals.get(group.getGroup()));
+    }
+
+    /**
+     * Resolves every distinct name once, then tests the bit matrix for each
+     * pair. Groups outside of this ACL may be nested in its groups, in that
+     * case every pair is checked on its own.
+     */
+    @Override
+    public BitSet hasPermissions(String[] permissions, String[] groups)
+    {
+        if (nestedOrdinals.length > 0)
+        {
+            return TurbineAccessControlList.super.hasPermissions(permissions, groups);
+        }
+
+        return AccessControlListBatch.pairs(
+                AccessControlListBatch.resolveNames(permissions, this::permissionOrdinal),
+                AccessControlListBatch.resolveNames(groups, this::groupOrdinal),
+                this::hasPermission);
+    }
+
+    @Override
+    public BitSet hasPermissions(Permission[] permissions, Group[] groups)
+    {
+        if (nestedOrdinals.length > 0)
+        {
+            return TurbineAccessControlList.super.hasPermissions(permissions, groups);
+        }
+
+        return AccessControlListBatch.pairs(
+                AccessControlListBatch.resolve(permissions, this::permissionOrdinal),
+                AccessControlListBatch.resolve(groups, this::groupOrdinal),
+                this::hasPermission);
+    }
+
+    /**
+     * Resolves every name once, then tests the bit matrix for each combination.
+     */
+    @Override
+    public BitSet hasPermissionsInGroups(String[] permissions, String[] groups)
+    {
+        if (nestedOrdinals.length > 0)
+        {
+            return TurbineAccessControlList.super.hasPermissionsInGroups(permissions, groups);
+        }
+
+        return AccessControlListBatch.crossProduct(
+                AccessControlListBatch.resolveNames(permissions, this::permissionOrdinal),
+                AccessControlListBatch.resolveNames(groups, this::groupOrdinal),
+                this::hasPermission);
+    }
+
+    @Override
+    public BitSet hasPermissionsInGroups(Permission[] permissions, Group[] groups)
+    {
+        if (nestedOrdinals.length > 0)
+        {
+            return TurbineAccessControlList.super.hasPermissionsInGroups(permissions, groups);
+        }
+
+        return AccessControlListBatch.crossProduct(
+                AccessControlListBatch.resolve(permissions, this::permissionOrdinal),
+                AccessControlListBatch.resolve(groups, this::groupOrdinal),
+                this::hasPermission);
+    }
+
+    /**
+     * Returns all groups defined in the system.
+     *
+     * @return A Group [] of all groups in the system.
+     */
+    @Override
+    public Group[] getAllGroups()
+    {
+        try
+        {
+            return (groupManager != null) ? groupManager.getAllGroups().toArray(new Group[0])
+                    : new Group[0];
+        }
+        catch (FulcrumSecurityException e)
+        {
+            return new Group[0];
+        }
+    }
+
+    /**
+     * @return a copy of the set of groups this user is part of
+     */
+    @Override
+    public GroupSet getGroupSet()
+    {
+        return new GroupSet(Arrays.asList(groups));
+    }
+}
@@ -0,0 +1,402 @@
+package org.apache.fulcrum.security.model.turbine;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.model.turbine.GroupIntervals.Interval;
+import org.apache.fulcrum.security.util.SecuritySet;
+
+/**
+ * Index of an optional group hierarchy. A group may be nested in at most one
+ * parent group, the hierarchy is a forest identified by group ids.
+ *
+ * Every nested group is labelled with an interval [left, right] which
+ * strictly contains the intervals of its children, so ancestry checks are two
+ * comparisons. Each interval leaves a free gap behind its last child; a new
+ * child takes half of that gap. Only when a gap is exhausted the nearest
+ * ancestor with enough room is relabelled, spreading its free space evenly
+ * over its subtree again, so inserts relabel rarely and only locally.
+ *
+ * Groups which have neither a parent nor children are not tracked.
+ *
+ * @version $Id$
+ */
+public class GroupHierarchy
+{
+    /** A node of the forest */
+    private static final class Node
+    {
+        private Object id;
+
+        private String name;
+
+        private Node parent;
+
+        private final List<Node> children = new ArrayList<Node>();
+
+        private long left;
+
+        private long right;
+
+        /** number of nodes in the subtree, including this one */
+        private int size = 1;
+    }
+
+    /** The virtual root of all top level groups */
+    private final Node root = new Node();
+
+    /** Map for "group id" is "node" */
+    private final Map<Object, Node> nodes = new HashMap<Object, Node>();
+
+    /** The current snapshot, <code>null</code> after a change */
+    private GroupIntervals snapshot = GroupIntervals.EMPTY;
+
+    /** Number of subtrees relabelled because a gap was exhausted */
+    private long relabelCount = 0;
+
+    /**
+     * Create an empty hierarchy
+     */
+    public GroupHierarchy()
+    {
+        root.left = 0;
+        root.right = Long.MAX_VALUE >>> 1;
+    }
+
+    /**
+     * Nest a group in a parent group, moving it with its whole subtree if
+     * it already has another parent
+     *
+     * @param group the group
+     * @param parent the new parent, <code>null</code> to make the group a
+     *            top level group again
+     * @return true if the parent of the group changed
+     * @throws IllegalArgumentException if the parent is the group or one of
+     *             its descendants
+     */
+    public synchronized boolean setParent(Group group, Group parent)
+    {
+        Node node = nodes.get(group.getId());
+        Node oldParent = (node == null) ? root : node.parent;
+
+        if (parent == null)
+        {
+            if (oldParent == root)
+            {
+                return false;
+            }
+
+            detach(node);
+            attach(node, root);
+            prune(oldParent);
+            prune(node);
+        }
+        else
+        {
+            Node parentNode = nodes.get(parent.getId());
+            if (parentNode != null && parentNode == oldParent)
+            {
+                return false;
+            }
+            if (group.getId().equals(parent.getId())
+                    || (node != null && parentNode != null && contains(node, parentNode)))
+            {
+                throw new IllegalArgumentException("Group " + group.getName()
+                        + " cannot be nested in group " + parent.getName());
+            }
+
+            if (node == null)
+            {
+                node = create(group);
+            }
+            else
+            {
+                detach(node);
+            }
+            if (parentNode == null)
+            {
+                parentNode = create(parent);
+                attach(parentNode, root);
+            }
+
+            attach(node, parentNode);
+            prune(oldParent);
+        }
+
+        snapshot = null;
+        return true;
+    }
+
+    /**
+     * Remove a group from the hierarchy, its children become top level
+     * groups
+     *
+     * @param groupId the group id
+     * @return true if the group was part of the hierarchy
+     */
+    public synchronized boolean remove(Object groupId)
+    {
+        Node node = nodes.get(groupId);
+        if (node == null)
+        {
+            return false;
+        }
+
+        for (Node child : new ArrayList<Node>(node.children))
+        {
+            detach(child);
+            attach(child, root);
+            prune(child);
+        }
+
+        Node oldParent = node.parent;
+        detach(node);
+        nodes.remove(groupId);
+        prune(oldParent);
+
+        snapshot = null;
+        return true;
+    }
+
+    /**
+     * @param groupId the group id
+     * @return the id of the parent group, <code>null</code> for top level
+     *         groups
+     */
+    public synchronized Object getParent(Object groupId)
+    {
+        Node node = nodes.get(groupId);
+        return (node == null || node.parent == root) ? null : node.parent.id;
+    }
+
+    /**
+     * @param groupId the group id
+     * @return the ids of the parent chain of the group, nearest first
+     */
+    public synchronized List<Object> getAncestors(Object groupId)
+    {
+        Node node = nodes.get(groupId);
+        if (node == null)
+        {
+            return Collections.emptyList();
+        }
+
+        List<Object> ids = new ArrayList<Object>();
+        for (Node ancestor = node.parent; ancestor != root; ancestor = ancestor.parent)
+        {
+            ids.add(ancestor.id);
+        }
+        return ids;
+    }
+
+    /**
+     * @param groupId the group id
+     * @return the ids of the groups directly nested in the group
+     */
+    public synchronized Set<Object> getChildren(Object groupId)
+    {
+        Node node = nodes.get(groupId);
+        if (node == null)
+        {
+            return Collections.emptySet();
+        }
+
+        Set<Object> ids = new HashSet<Object>();
+        for (Node child : node.children)
+        {
+            ids.add(child.id);
+        }
+        return ids;
+    }
+
+    /**
+     * @param groupId the group id
+     * @param ancestorId the id of the presumed ancestor
+     * @return true if the group is the ancestor or one of its descendants
+     */
+    public synchronized boolean isDescendant(Object groupId, Object ancestorId)
+    {
+        if (groupId.equals(ancestorId))
+        {
+            return true;
+        }
+
+        Node node = nodes.get(groupId);
+        Node ancestor = nodes.get(ancestorId);
+        return node != null && ancestor != null && contains(ancestor, node);
+    }
+
+    /**
+     * @return an immutable snapshot of the intervals of all nested groups
+     */
+    public synchronized GroupIntervals getIntervals()
+    {
+        if (snapshot == null)
+        {
+            Map<Object, Interval> byId = new HashMap<Object, Interval>();
+            Map<String, Interval> byName = new HashMap<String, Interval>();
+            for (Node node : nodes.values())
+            {
+                Interval interval = new Interval(node.left, node.right);
+                byId.put(node.id, interval);
+                byName.put(SecuritySet.foldName(node.name), interval);
+            }
+            snapshot = byId.isEmpty() ? GroupIntervals.EMPTY : new GroupIntervals(byId, byName);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the number of subtrees relabelled so far
+     */
+    public synchronized long getRelabelCount()
+    {
+        return relabelCount;
+    }
+
+    /**
+     * @return true if no group is nested
+     */
+    public synchronized boolean isEmpty()
+    {
+        return nodes.isEmpty();
+    }
+
+    /**
+     * Drop all state
+     */
+    public synchronized void clear()
+    {
+        nodes.clear();
+        root.children.clear();
+        root.size = 1;
+        snapshot = GroupIntervals.EMPTY;
+    }
+
+    private Node create(Group group)
+    {
+        Node node = new Node();
+        node.id = group.getId();
+        node.name = group.getName();
+        nodes.put(node.id, node);
+        return node;
+    }
+
+    private static boolean contains(Node outer, Node inner)
+    {
+        return outer.left <= inner.left && inner.right <= outer.right;
+    }
+
+    private static long width(Node node)
+    {
+        return node.right - node.left + 1;
+    }
+
+    private void detach(Node node)
+    {
+        Node parent = node.parent;
+        parent.children.remove(node);
+        for (Node ancestor = parent; ancestor != null; ancestor = ancestor.parent)
+        {
+            ancestor.size -= node.size;
+        }
+        node.parent = null;
+    }
+
+    /**
+     * Append a subtree to the children of a parent and label it from the
+     * free gap behind the last child, relabelling an ancestor if the gap is
+     * too small.
+     */
+    private void attach(Node node, Node parent)
+    {
+        long start = parent.children.isEmpty() ? parent.left + 1
+                : parent.children.get(parent.children.size() - 1).right + 1;
+        long free = parent.right - start;
+
+        parent.children.add(node);
+        node.parent = parent;
+        for (Node ancestor = parent; ancestor != null; ancestor = ancestor.parent)
+        {
+            ancestor.size += node.size;
+        }
+
+        long need = 2L * node.size;
+        if (free >= need)
+        {
+            label(node, start, start + need + (free - need) / 2 - 1);
+        }
+        else
+        {
+            Node ancestor = parent;
+            while (ancestor != root && width(ancestor) < 4L * ancestor.size)
+            {
+                ancestor = ancestor.parent;
+            }
+            relabelCount++;
+            label(ancestor, ancestor.left, ancestor.right);
+        }
+    }
+
+    /**
+     * Assign an interval to a node and spread its free space evenly over
+     * its children, keeping one share as a gap behind the last child.
+     */
+    private static void label(Node node, long left, long right)
+    {
+        node.left = left;
+        node.right = right;
+        if (node.children.isEmpty())
+        {
+            return;
+        }
+
+        // two slots per node of the subtree are the minimum
+        long slack = right - left - 1 - 2L * (node.size - 1);
+        long extra = slack / (node.children.size() + 1);
+        long cursor = left + 1;
+        for (Node child : node.children)
+        {
+            long width = 2L * child.size + extra;
+            label(child, cursor, cursor + width - 1);
+            cursor += width;
+        }
+    }
+
+    /**
+     * Stop tracking a top level group without children
+     */
+    private void prune(Node node)
+    {
+        if (node != root && node.parent == root && node.children.isEmpty())
+        {
+            detach(node);
+            nodes.remove(node.id);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.apache.fulcrum.security.model.turbine;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.util.SecuritySet;
+
+/**
+ * Immutable snapshot of the interval encoding of a {@link GroupHierarchy}.
+ * Every nested group is labelled with an interval which contains the
+ * intervals of all its descendants, so "is G a descendant of H" is two
+ * integer comparisons. Groups which are not part of the hierarchy have no
+ * interval.
+ *
+ * @version $Id$
+ */
+public final class GroupIntervals implements Serializable
+{
+    /** Serial version */
+    private static final long serialVersionUID = -1730434937925183214L;
+
+    /** The snapshot of an empty hierarchy */
+    public static final GroupIntervals EMPTY = new GroupIntervals(
+            Collections.<Object, Interval>emptyMap(), Collections.<String, Interval>emptyMap());
+
+    /**
+     * The interval of a group, bounds inclusive
+     */
+    public static final class Interval implements Serializable
+    {
+        /** Serial version */
+        private static final long serialVersionUID = 4388424187744958322L;
+
+        private final long left;
+
+        private final long right;
+
+        Interval(long left, long right)
+        {
+            this.left = left;
+            this.right = right;
+        }
+
+        /**
+         * @return the lower bound
+         */
+        public long getLeft()
+        {
+            return left;
+        }
+
+        /**
+         * @return the upper bound
+         */
+        public long getRight()
+        {
+            return right;
+        }
+
+        /**
+         * @param other another interval
+         * @return true if the group of the other interval is the group of
+         *         this interval or one of its descendants
+         */
+        public boolean contains(Interval other)
+        {
+            return left <= other.left && other.right <= right;
+        }
+    }
+
+    /** Map for "group id" is "interval" */
+    private final Map<Object, Interval> byId;
+
+    /** Map for "case-folded group name" is "interval" */
+    private final Map<String, Interval> byName;
+
+    GroupIntervals(Map<Object, Interval> byId, Map<String, Interval> byName)
+    {
+        this.byId = byId;
+        this.byName = byName;
+    }
+
+    /**
+     * @return true if no group is nested
+     */
+    public boolean isEmpty()
+    {
+        return byId.isEmpty();
+    }
+
+    /**
+     * @param group the group, may be null
+     * @return the interval of the group, <code>null</code> if the group is
+     *         not part of the hierarchy
+     */
+    public Interval get(Group group)
+    {
+        if (group == null)
+        {
+            return null;
+        }
+
+        Interval interval = (group.getId() == null) ? null : byId.get(group.getId());
+        return (interval == null) ? get(group.getName()) : interval;
+    }
+
+    /**
+     * @param groupName the group name, may be null
+     * @return the interval of the group, <code>null</code> if the group is
+     *         not part of the hierarchy
+     */
+    public Interval get(String groupName)
+    {
+        return (groupName == null) ? null : byName.get(SecuritySet.foldName(groupName));
+    }
+
+    /**
+     * @param group the group
+     * @param ancestor the presumed ancestor
+     * @return true if the group is the ancestor or one of its descendants
+     */
+    public boolean isDescendant(Group group, Group ancestor)
+    {
+        Interval inner = get(group);
+        Interval outer = get(ancestor);
+        return inner != null && outer != null && outer.contains(inner);
+    }
+}
@@ -18,15 +18,28 @@ package org.apache.fulcrum.security.model.turbine;
  * specific language governing permissions and limitations
  * under the License.
  */
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.avalon.framework.configuration.Configurable;
+import org.apache.avalon.framework.configuration.Configuration;
+import org.apache.avalon.framework.configuration.ConfigurationException;
 import org.apache.avalon.framework.service.ServiceException;
 import org.apache.fulcrum.security.GroupManager;
 import org.apache.fulcrum.security.ModelManager;
 import org.apache.fulcrum.security.RoleManager;
 import org.apache.fulcrum.security.acl.AccessControlList;
 import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.entity.SecurityEntity;
 import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.ACLCache;
 import org.apache.fulcrum.security.model.ACLFactory;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineUser;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
@@ -34,19 +47,141 @@ import org.apache.fulcrum.security.spi.AbstractManager;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.EntityExistsException;
 import org.apache.fulcrum.security.util.FulcrumSecurityException;
+import org.apache.fulcrum.security.util.PermissionDictionary;
+import org.apache.fulcrum.security.util.PermissionSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
 
 /**
  *
  * This factory creates instance of the TurbineAccessControlList
  *
+ * If the attribute <code>compiled</code> of the component configuration is
+ * set to <code>true</code>, the factory creates instances of
+ * {@link CompiledTurbineAccessControlListImpl} instead of
+ * {@link TurbineAccessControlListImpl}.
+ *
+ * <pre>
+ * &lt;aclFactory compiled="true"/&gt;
+ * </pre>
+ *
+ * If the attribute <code>cacheSize</code> is greater than zero, the factory
+ * keeps up to that many ACLs keyed by user id, evicting the least recently
+ * used ones. The optional attribute <code>cacheTTL</code> limits the time in
+ * milliseconds an ACL is kept. The model manager and the entity managers
+ * invalidate cached ACLs through {@link ACLCache} when users, groups, roles,
+ * permissions or their relations change. Cached ACLs are shared between
+ * callers and must not be modified.
+ *
+ * <pre>
+ * &lt;aclFactory cacheSize="1000" cacheTTL="300000"/&gt;
+ * </pre>
+ *
+ * If the attribute <code>internSize</code> is greater than zero, users with
+ * the same set of (group, role) assignments share one ACL instance. The
+ * factory keeps up to that many ACLs keyed by the assignment set, evicting
+ * the least recently used ones, and drops them on the same invalidations as
+ * the cache. Interning works with or without the cache. It requires the
+ * compiled ACLs, which return copies of their sets, so that one user cannot
+ * change the ACL of another.
+ *
+ * <pre>
+ * &lt;aclFactory compiled="true" internSize="100"/&gt;
+ * </pre>
+ *
  * @author <a href="mailto:tv@apache.org">Thomas Vandahl</a>
  * @version $Id: DynamicACLFactory.java 1374616 2012-08-18 17:26:07Z tv $
  */
-public class TurbineACLFactory extends AbstractManager implements ACLFactory
+public class TurbineACLFactory extends AbstractManager implements ACLFactory, ACLCache, Configurable
 {
-	
+    /** Configuration attribute to select the compiled ACL implementation */
+    public static final String COMPILED_ATTR_NAME = "compiled";
+
+    /** Configuration attribute for the maximum number of cached ACLs */
+    public static final String CACHE_SIZE_ATTR_NAME = "cacheSize";
+
+    /** Configuration attribute for the time to live of a cached ACL in milliseconds */
+    public static final String CACHE_TTL_ATTR_NAME = "cacheTTL";
+
+    /** Configuration attribute for the maximum number of interned ACLs */
+    public static final String INTERN_SIZE_ATTR_NAME = "internSize";
+
     private TurbineModelManager modelManager;
+
+    /** Create compiled ACLs */
+    private boolean compiled = false;
+
+    /** Time to live of a cached ACL in milliseconds, 0 means unlimited */
+    private long cacheTTL = 0;
+
+    /** The ACL cache in access order, keyed by user id, <code>null</code> if disabled */
+    private Map<Object, CacheEntry> cache;
+
+    /** Incremented on every invalidation, guarded by the cache */
+    private long generation = 0;
+
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    private final AtomicLong cacheEvictions = new AtomicLong();
+
+    /** The shared ACLs in access order, keyed by assignment set, <code>null</code> if disabled */
+    private Map<Assignments, CacheEntry> internTable;
+
+    /** Incremented on every invalidation, guarded by the intern table */
+    private long internGeneration = 0;
+
+    private final AtomicLong internHits = new AtomicLong();
+
+    /**
+     * Avalon component lifecycle method
+     */
+    @Override
+    public void configure(Configuration conf) throws ConfigurationException
+    {
+        compiled = conf.getAttributeAsBoolean(COMPILED_ATTR_NAME, false);
+        cacheTTL = Math.max(0, conf.getAttributeAsLong(CACHE_TTL_ATTR_NAME, 0));
+
+        final int cacheSize = conf.getAttributeAsInteger(CACHE_SIZE_ATTR_NAME, 0);
+        if (cacheSize > 0)
+        {
+            cache = new LinkedHashMap<Object, CacheEntry>(16, 0.75f, true)
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, CacheEntry> eldest)
+                {
+                    if (size() > cacheSize)
+                    {
+                        cacheEvictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        final int internSize = conf.getAttributeAsInteger(INTERN_SIZE_ATTR_NAME, 0);
+        if (internSize > 0)
+        {
+            if (!compiled)
+            {
+                throw new ConfigurationException("The " + INTERN_SIZE_ATTR_NAME + " requires "
+                    + COMPILED_ATTR_NAME + "=\"true\"", conf);
+            }
+            internTable = new LinkedHashMap<Assignments, CacheEntry>(16, 0.75f, true)
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Assignments, CacheEntry> eldest)
+                {
+                    return size() > internSize;
+                }
+            };
+        }
+    }
     
     /**
      * @return A model manager
@@ -78,11 +213,55 @@ public class TurbineACLFactory extends AbstractManager implements ACLFactory
         try
         {
             TurbineUser tu = (TurbineUser)user;
+            Object key = user.getId();
+
+            if (cache == null || key == null)
+            {
+                @SuppressWarnings("unchecked")
+                T aclInstance = (T) getSharedAclInstance(tu.getUserGroupRoleSet());
+                return aclInstance;
+            }
+
+            long now = System.currentTimeMillis();
+            long currentGeneration;
+
+            synchronized (cache)
+            {
+                CacheEntry entry = cache.get(key);
+                if (entry != null)
+                {
+                    if (entry.expires > now)
+                    {
+                        cacheHits.incrementAndGet();
+                        @SuppressWarnings("unchecked")
+                        T aclInstance = (T) entry.acl;
+                        return aclInstance;
+                    }
+
+                    cache.remove(key);
+                    cacheEvictions.incrementAndGet();
+                }
+                currentGeneration = generation;
+            }
+
+            cacheMisses.incrementAndGet();
             Set<TurbineUserGroupRole> tugr = tu.getUserGroupRoleSet();
-            
+            TurbineAccessControlList acl = getSharedAclInstance(tugr);
+            CacheEntry entry = new CacheEntry(acl, tugr,
+                    cacheTTL > 0 ? now + cacheTTL : Long.MAX_VALUE);
+
+            synchronized (cache)
+            {
+                // do not cache an ACL which was built while relations changed
+                if (currentGeneration == generation)
+                {
+                    cache.put(key, entry);
+                }
+            }
+
             @SuppressWarnings("unchecked")
-			T aclInstance = (T) getAclInstance(tugr);
-			return aclInstance;
+            T aclInstance = (T) acl;
+            return aclInstance;
         }
         catch (UnknownEntityException uue)
         {
@@ -94,6 +273,57 @@ public class TurbineACLFactory extends AbstractManager implements ACLFactory
         }
     }
 
+    /**
+     * Look up the interned ACL of an assignment set, constructing it if
+     * interning is disabled or the set is not interned yet.
+     *
+     * @param turbineUserGroupRoleSet
+     *            The set of user/group/role relations that this acl is built from
+     *
+     * @return an object implementing ACL interface, possibly shared.
+     * @throws UnknownEntityException
+     *             if the object could not be instantiated.
+     */
+    private TurbineAccessControlList getSharedAclInstance(Set<? extends TurbineUserGroupRole> turbineUserGroupRoleSet) throws UnknownEntityException
+    {
+        if (internTable == null)
+        {
+            return getAclInstance(turbineUserGroupRoleSet);
+        }
+
+        Assignments key = new Assignments(turbineUserGroupRoleSet);
+        long currentGeneration;
+
+        synchronized (internTable)
+        {
+            CacheEntry entry = internTable.get(key);
+            if (entry != null)
+            {
+                internHits.incrementAndGet();
+                return entry.acl;
+            }
+            currentGeneration = internGeneration;
+        }
+
+        TurbineAccessControlList acl = getAclInstance(turbineUserGroupRoleSet);
+        CacheEntry entry = new CacheEntry(acl, turbineUserGroupRoleSet, Long.MAX_VALUE);
+
+        synchronized (internTable)
+        {
+            // do not intern an ACL which was built while relations changed
+            if (currentGeneration == internGeneration)
+            {
+                CacheEntry existing = internTable.putIfAbsent(key, entry);
+                if (existing != null)
+                {
+                    return existing.acl;
+                }
+            }
+        }
+
+        return acl;
+    }
+
     /**
      * Construct a new ACL object.
      *
@@ -112,10 +342,12 @@ public class TurbineACLFactory extends AbstractManager implements ACLFactory
     	GroupManager groupManager = null;
         RoleManager roleManager = null;
         TurbineModelManager modelManager = null;
+        PermissionDictionary permissionDictionary = null;
 
     	try
     	{
     	    roleManager = getRoleManager();
+    	    permissionDictionary = getPermissionManager().getPermissionDictionary();
 			groupManager = getGroupManager();
 			modelManager = getTurbineModelManager();
 
@@ -149,9 +381,18 @@ public class TurbineACLFactory extends AbstractManager implements ACLFactory
     	TurbineAccessControlList accessControlList;
         try
         {
-            accessControlList =
-                new TurbineAccessControlListImpl(turbineUserGroupRoleSet,
-                        groupManager, roleManager, modelManager, getLogger());
+            if (compiled)
+            {
+                accessControlList =
+                    new CompiledTurbineAccessControlListImpl(turbineUserGroupRoleSet,
+                            groupManager, roleManager, modelManager, permissionDictionary, getLogger());
+            }
+            else
+            {
+                accessControlList =
+                    new TurbineAccessControlListImpl(turbineUserGroupRoleSet,
+                            groupManager, roleManager, modelManager, permissionDictionary, getLogger());
+            }
         }
         catch (FulcrumSecurityException e)
         {
@@ -159,5 +400,232 @@ public class TurbineACLFactory extends AbstractManager implements ACLFactory
         }
         return accessControlList;
     }
-    
+
+    /**
+     * Discard all cached ACLs which depend on the given entity.
+     *
+     * @see org.apache.fulcrum.security.model.ACLCache#invalidate(org.apache.fulcrum.security.entity.SecurityEntity)
+     */
+    @Override
+    public void invalidate(SecurityEntity entity)
+    {
+        if (cache != null)
+        {
+            synchronized (cache)
+            {
+                generation++;
+
+                if (entity instanceof User && entity.getId() != null)
+                {
+                    cache.remove(entity.getId());
+                }
+                else
+                {
+                    for (Iterator<CacheEntry> it = cache.values().iterator(); it.hasNext();)
+                    {
+                        if (it.next().dependsOn(entity))
+                        {
+                            it.remove();
+                        }
+                    }
+                }
+            }
+        }
+
+        // interned ACLs are keyed by the assignments, not by the user
+        if (internTable != null && !(entity instanceof User))
+        {
+            synchronized (internTable)
+            {
+                internGeneration++;
+                internTable.values().removeIf(entry -> entry.dependsOn(entity));
+            }
+        }
+    }
+
+    /**
+     * Discard all cached ACLs
+     *
+     * @see org.apache.fulcrum.security.model.ACLCache#invalidateAll()
+     */
+    @Override
+    public void invalidateAll()
+    {
+        if (cache != null)
+        {
+            synchronized (cache)
+            {
+                generation++;
+                cache.clear();
+            }
+        }
+
+        if (internTable != null)
+        {
+            synchronized (internTable)
+            {
+                internGeneration++;
+                internTable.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the number of ACLs served from the cache
+     */
+    public long getCacheHits()
+    {
+        return cacheHits.get();
+    }
+
+    /**
+     * @return the number of ACLs built because they were not cached
+     */
+    public long getCacheMisses()
+    {
+        return cacheMisses.get();
+    }
+
+    /**
+     * @return the number of ACLs removed because of the size limit or the time to live
+     */
+    public long getCacheEvictions()
+    {
+        return cacheEvictions.get();
+    }
+
+    /**
+     * @return the number of currently cached ACLs
+     */
+    public int getCacheSize()
+    {
+        if (cache == null)
+        {
+            return 0;
+        }
+
+        synchronized (cache)
+        {
+            return cache.size();
+        }
+    }
+
+    /**
+     * @return the number of ACLs shared because their assignment set was interned
+     */
+    public long getInternHits()
+    {
+        return internHits.get();
+    }
+
+    /**
+     * @return the number of currently interned ACLs
+     */
+    public int getInternSize()
+    {
+        if (internTable == null)
+        {
+            return 0;
+        }
+
+        synchronized (internTable)
+        {
+            return internTable.size();
+        }
+    }
+
+    /**
+     * The fingerprint of a set of user/group/role relations: the set of
+     * (group id, role id) pairs, independent of the user and of the order.
+     */
+    private static final class Assignments
+    {
+        final Set<Object> pairs = new HashSet<Object>();
+
+        final int hash;
+
+        Assignments(Set<? extends TurbineUserGroupRole> tugr)
+        {
+            for (TurbineUserGroupRole ugr : tugr)
+            {
+                pairs.add(Arrays.asList(ugr.getGroup().getId(), ugr.getRole().getId()));
+            }
+            hash = pairs.hashCode();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            return obj instanceof Assignments
+                    && hash == ((Assignments) obj).hash
+                    && pairs.equals(((Assignments) obj).pairs);
+        }
+    }
+
+    /**
+     * A cached ACL with the ids of the entities it was built from
+     */
+    private static class CacheEntry
+    {
+        final TurbineAccessControlList acl;
+
+        final long expires;
+
+        final Set<Object> groupIds = new HashSet<Object>();
+
+        final Set<Object> roleIds = new HashSet<Object>();
+
+        final Set<Object> permissionIds = new HashSet<Object>();
+
+        CacheEntry(TurbineAccessControlList acl, Set<? extends TurbineUserGroupRole> tugr, long expires)
+        {
+            this.acl = acl;
+            this.expires = expires;
+
+            for (TurbineUserGroupRole ugr : tugr)
+            {
+                groupIds.add(ugr.getGroup().getId());
+                roleIds.add(ugr.getRole().getId());
+            }
+
+            for (Group group : acl.getGroupSet())
+            {
+                PermissionSet permissions = acl.getPermissions(group);
+                if (permissions != null)
+                {
+                    for (Permission permission : permissions)
+                    {
+                        permissionIds.add(permission.getId());
+                    }
+                }
+            }
+        }
+
+        boolean dependsOn(SecurityEntity entity)
+        {
+            if (entity.getId() == null)
+            {
+                return true;
+            }
+            if (entity instanceof Group)
+            {
+                return groupIds.contains(entity.getId());
+            }
+            if (entity instanceof Role)
+            {
+                return roleIds.contains(entity.getId());
+            }
+            if (entity instanceof Permission)
+            {
+                return permissionIds.contains(entity.getId());
+            }
+            return true;
+        }
+    }
 }
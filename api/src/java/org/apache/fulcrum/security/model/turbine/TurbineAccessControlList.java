@@ -22,12 +22,16 @@ package org.apache.fulcrum.security.model.turbine;
 
 
 import java.io.Serializable;
+import java.util.BitSet;
 
 import org.apache.fulcrum.security.acl.AccessControlList;
+import org.apache.fulcrum.security.acl.AccessControlListBatch;
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.util.GroupHandle;
 import org.apache.fulcrum.security.util.GroupSet;
+import org.apache.fulcrum.security.util.PermissionHandle;
 import org.apache.fulcrum.security.util.PermissionSet;
 import org.apache.fulcrum.security.util.RoleSet;
 
@@ -197,6 +201,75 @@ public interface TurbineAccessControlList<T extends TurbineAccessControlList<T>>
      */
     boolean hasPermission(String permission);
 
+    /**
+     * Checks if the user is assigned a specific Permission in the Group,
+     * given handles resolved once by the managers. Handles of removed
+     * entities never match.
+     *
+     * @param permission the handle of the Permission
+     * @param group the handle of the Group
+     * @return <code>true</code> if the user is assigned the Permission in the Group.
+     */
+    default boolean hasPermission(PermissionHandle permission, GroupHandle group)
+    {
+        return permission != null && group != null && permission.isValid() && group.isValid()
+                && hasPermission(permission.getPermission(), group.getGroup());
+    }
+
+    /**
+     * Checks a batch of Permission/Group pairs.
+     *
+     * @param permissions the names of the Permissions
+     * @param groups the names of the Groups, same length as permissions
+     * @return bit <code>i</code> is set if the user is assigned
+     *         <code>permissions[i]</code> in <code>groups[i]</code>.
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    default BitSet hasPermissions(String[] permissions, String[] groups)
+    {
+        return AccessControlListBatch.pairs(permissions, groups, this::hasPermission);
+    }
+
+    /**
+     * Checks a batch of Permission/Group pairs.
+     *
+     * @param permissions the Permissions
+     * @param groups the Groups, same length as permissions
+     * @return bit <code>i</code> is set if the user is assigned
+     *         <code>permissions[i]</code> in <code>groups[i]</code>.
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    default BitSet hasPermissions(Permission[] permissions, Group[] groups)
+    {
+        return AccessControlListBatch.pairs(permissions, groups, this::hasPermission);
+    }
+
+    /**
+     * Checks every Permission in every Group.
+     *
+     * @param permissions the names of the Permissions
+     * @param groups the names of the Groups
+     * @return bit <code>i * groups.length + j</code> is set if the user is
+     *         assigned <code>permissions[i]</code> in <code>groups[j]</code>.
+     */
+    default BitSet hasPermissionsInGroups(String[] permissions, String[] groups)
+    {
+        return AccessControlListBatch.crossProduct(permissions, groups, this::hasPermission);
+    }
+
+    /**
+     * Checks every Permission in every Group.
+     *
+     * @param permissions the Permissions
+     * @param groups the Groups
+     * @return bit <code>i * groups.length + j</code> is set if the user is
+     *         assigned <code>permissions[i]</code> in <code>groups[j]</code>.
+     */
+    default BitSet hasPermissionsInGroups(Permission[] permissions, Group[] groups)
+    {
+        return AccessControlListBatch.crossProduct(permissions, groups, this::hasPermission);
+    }
+
     /**
      * Returns all groups defined in the system.
      *
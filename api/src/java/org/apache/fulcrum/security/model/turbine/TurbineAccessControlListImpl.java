@@ -19,6 +19,7 @@ package org.apache.fulcrum.security.model.turbine;
  * under the License.
  */
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -29,10 +30,13 @@ import org.apache.fulcrum.security.RoleManager;
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.model.turbine.GroupIntervals.Interval;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineRole;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
+import org.apache.fulcrum.security.util.BitmapPermissionSet;
 import org.apache.fulcrum.security.util.FulcrumSecurityException;
 import org.apache.fulcrum.security.util.GroupSet;
+import org.apache.fulcrum.security.util.PermissionDictionary;
 import org.apache.fulcrum.security.util.PermissionSet;
 import org.apache.fulcrum.security.util.RoleSet;
 
@@ -75,8 +79,14 @@ public class TurbineAccessControlListImpl
     private RoleSet roleSet = new RoleSet();
     
     /** the distinct list of permissions that this user has */
-    private PermissionSet permissionSet = new PermissionSet();
+    private PermissionSet permissionSet;
     
+    /** The intervals of the group hierarchy */
+    private GroupIntervals groupIntervals = GroupIntervals.EMPTY;
+
+    /** The groups of this ACL which are part of the group hierarchy */
+    private Map<Group, Interval> nestedGroups = new HashMap<Group, Interval>();
+
     /** the Avalon logger */
     private transient Logger logger;
 
@@ -103,12 +113,46 @@ public class TurbineAccessControlListImpl
     		Set<? extends TurbineUserGroupRole> turbineUserGroupRoleSet,
     		GroupManager groupManager, RoleManager roleManager, TurbineModelManager modelManager, Logger logger) throws FulcrumSecurityException
     {
+        this(turbineUserGroupRoleSet, groupManager, roleManager, modelManager, null, logger);
+    }
+
+    /**
+     * Constructs a new AccessControlList.
+     *
+     * This class follows 'immutable' pattern - it's objects can't be modified
+     * once they are created. This means that the permissions the users have are
+     * in effect form the moment they log in to the moment they log out, and
+     * changes made to the security settings in that time are not reflected
+     * in the state of this object. If you need to reset an user's permissions
+     * you need to invalidate his session. <br>
+     *
+     * @param turbineUserGroupRoleSet
+     *            The set of user/group/role relations that this acl is built from
+     * @param groupManager the Group manager
+     * @param roleManager the Role manager
+     * @param modelManager the model Manager
+     * @param permissionDictionary the dictionary of the permission manager,
+     *            or null to use a dictionary of this ACL
+     * @param logger 
+     *
+     * @throws FulcrumSecurityException if the global group cannot be retrieved
+     */
+    public TurbineAccessControlListImpl(
+    		Set<? extends TurbineUserGroupRole> turbineUserGroupRoleSet,
+    		GroupManager groupManager, RoleManager roleManager, TurbineModelManager modelManager,
+    		PermissionDictionary permissionDictionary, Logger logger) throws FulcrumSecurityException
+    {
+        PermissionDictionary dictionary = (permissionDictionary != null) ? permissionDictionary : new PermissionDictionary();
+        this.permissionSet = new BitmapPermissionSet(dictionary);
         this.roleSets = new HashMap<Group, RoleSet>();
         this.permissionSets = new HashMap<Group, PermissionSet>();
         this.groupManager = groupManager;
         
         this.logger = logger;
 
+        // permissions of each distinct role, converted to a bitmap only once
+        Map<Object, BitmapPermissionSet> rolePermissions = new HashMap<Object, BitmapPermissionSet>();
+
         for (TurbineUserGroupRole ugr : turbineUserGroupRoleSet)
         {
             Group group = ugr.getGroup();
@@ -147,22 +191,43 @@ public class TurbineAccessControlListImpl
             }
             // if required, otherwise skip
             if (role instanceof TurbineRole) {
-	            PermissionSet ps = ((TurbineRole) role).getPermissions();
-	            permissionSet.add(ps);
-	            if (permissionSets.containsKey(group))
+	            BitmapPermissionSet ps = rolePermissions.get(role.getId());
+	            if (ps == null)
 	            {
-	            	permissionSets.get(group).add(ps);
+	                ps = new BitmapPermissionSet(dictionary, ((TurbineRole) role).getPermissions());
+	                if (modelManager != null)
+	                {
+	                    // precomputed closure of the role hierarchy, one OR for any depth
+	                    ps.add(modelManager.getInheritedPermissions(role));
+	                }
+	                rolePermissions.put(role.getId(), ps);
+	                permissionSet.add(ps);
 	            }
-	            else
+	            PermissionSet groupPermissions = permissionSets.get(group);
+	            if (groupPermissions == null)
 	            {
-	            	permissionSets.put(group, ps);
+	                groupPermissions = new BitmapPermissionSet(dictionary);
+	                permissionSets.put(group, groupPermissions);
 	            }
+	            // word-wise OR of the bitmaps
+	            groupPermissions.add(ps);
             }
         }
         // this check might be not needed any more, required for custom group
         if (modelManager != null)
         {
         	this.globalGroup = modelManager.getGlobalGroup();
+
+            // permissions granted in a group also apply in its nested groups
+            this.groupIntervals = modelManager.getGroupIntervals();
+            for (Group group : groupSet)
+            {
+                Interval interval = groupIntervals.get(group);
+                if (interval != null)
+                {
+                    nestedGroups.put(group, interval);
+                }
+            }
         }
     }
 
@@ -343,12 +408,17 @@ public class TurbineAccessControlListImpl
     @Override
     public boolean hasPermission(Permission permission, Group group)
     {
-        PermissionSet set = getPermissions(group);
-        if (set == null || permission == null)
+        if (permission == null)
         {
             return false;
         }
-        return set.contains(permission);
+
+        PermissionSet set = getPermissions(group);
+        if (set != null && set.contains(permission))
+        {
+            return true;
+        }
+        return hasInheritedPermission(permission, groupIntervals.get(group));
     }
 
     /**
@@ -369,8 +439,7 @@ public class TurbineAccessControlListImpl
         }
 
         return groupset.stream()
-                .map(this::getPermissions)
-                .anyMatch(permissions -> permissions != null && permissions.contains(permission));
+                .anyMatch(group -> hasPermission(permission, group));
     }
 
     /**
@@ -385,7 +454,14 @@ public class TurbineAccessControlListImpl
     {
         try
         {
-            return hasPermission(permissionSet.getByName(permission), groupSet.getByName(group));
+            Permission p = permissionSet.getByName(permission);
+            Group g = groupSet.getByName(group);
+            if (g == null)
+            {
+                // not assigned directly, maybe nested in an assigned group
+                return p != null && hasInheritedPermission(p, groupIntervals.get(group));
+            }
+            return hasPermission(p, g);
         }
         catch (Exception e)
         {
@@ -441,9 +517,7 @@ public class TurbineAccessControlListImpl
         }
 
         return groupset.stream()
-                .map(this::getPermissions)
-                .anyMatch(permissions -> permissions != null
-                        && permissions.contains(permission));
+                .anyMatch(group -> hasPermission(permission, group));
     }
 
     /**
@@ -477,6 +551,63 @@ public class TurbineAccessControlListImpl
         }
     }
 
+    /**
+     * Resolves every name once, then checks each combination.
+     * Groups nested in the groups of this ACL are resolved per combination.
+     */
+    @Override
+    public BitSet hasPermissionsInGroups(String[] permissions, String[] groups)
+    {
+        if (!nestedGroups.isEmpty())
+        {
+            // groups outside of this ACL may be nested in one of its groups
+            return TurbineAccessControlList.super.hasPermissionsInGroups(permissions, groups);
+        }
+
+        Permission[] resolvedPermissions = new Permission[permissions.length];
+        for (int i = 0; i < permissions.length; i++)
+        {
+            resolvedPermissions[i] = permissionSet.getByName(permissions[i]);
+        }
+
+        Group[] resolvedGroups = new Group[groups.length];
+        for (int i = 0; i < groups.length; i++)
+        {
+            resolvedGroups[i] = groupSet.getByName(groups[i]);
+        }
+
+        return hasPermissionsInGroups(resolvedPermissions, resolvedGroups);
+    }
+
+    /**
+     * Checks whether a Permission is assigned in one of the groups of this
+     * ACL which contain the target group, two comparisons per nested group.
+     *
+     * @param permission the Permission
+     * @param target the interval of the target group, may be null
+     * @return <code>true</code> if the Permission is inherited
+     */
+    private boolean hasInheritedPermission(Permission permission, Interval target)
+    {
+        if (target == null)
+        {
+            return false;
+        }
+
+        for (Map.Entry<Group, Interval> entry : nestedGroups.entrySet())
+        {
+            if (entry.getValue().contains(target))
+            {
+                PermissionSet set = getPermissions(entry.getKey());
+                if (set != null && set.contains(permission))
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns all groups defined in the system.
      *
@@ -0,0 +1,410 @@
+package org.apache.fulcrum.security.model.turbine;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reverse index of the Turbine model, answering which users hold a role or
+ * a permission in a group without building an ACL per user.
+ *
+ * Every user id gets a dense ordinal. For each (group, role) pair the index
+ * keeps the users as a bitmap over these ordinals. The bitmap of a (group,
+ * permission) pair is the union of the bitmaps of all roles granting the
+ * permission in that group; it is computed on first use and dropped when
+ * one of these roles or its permissions change.
+ *
+ * The index only knows about the relations passed to it, it must be
+ * updated by the model manager on every grant and revoke, and by the entity
+ * managers on every removal.
+ *
+ * @version $Id$
+ */
+public class TurbineAuthorizationIndex
+{
+    /** Map for "user id" is "user ordinal" */
+    private final Map<Object, Integer> userOrdinals = new HashMap<Object, Integer>();
+
+    /** The user ids, indexed by ordinal */
+    private final List<Object> userIds = new ArrayList<Object>();
+
+    /** The ordinals of removed users, reused for new users */
+    private final BitSet freeOrdinals = new BitSet();
+
+    /** Map for "group id" is "role id to users" */
+    private final Map<Object, Map<Object, BitSet>> roleUsers = new HashMap<Object, Map<Object, BitSet>>();
+
+    /** Map for "role id" is "ids of the permissions of the role" */
+    private final Map<Object, Set<Object>> rolePermissions = new HashMap<Object, Set<Object>>();
+
+    /** Map for "permission id" is "ids of the roles granting the permission" */
+    private final Map<Object, Set<Object>> permissionRoles = new HashMap<Object, Set<Object>>();
+
+    /** Map for "group id" is "permission id to users", computed on demand */
+    private final Map<Object, Map<Object, BitSet>> permissionUsers = new HashMap<Object, Map<Object, BitSet>>();
+
+    /**
+     * Record that a user is assigned a role in a group
+     *
+     * @param userId the user id
+     * @param groupId the group id
+     * @param roleId the role id
+     */
+    public synchronized void grant(Object userId, Object groupId, Object roleId)
+    {
+        roleUsers.computeIfAbsent(groupId, k -> new HashMap<Object, BitSet>())
+            .computeIfAbsent(roleId, k -> new BitSet())
+            .set(ordinal(userId));
+        invalidate(groupId, roleId);
+    }
+
+    /**
+     * Record that a user is no longer assigned a role in a group
+     *
+     * @param userId the user id
+     * @param groupId the group id
+     * @param roleId the role id
+     */
+    public synchronized void revoke(Object userId, Object groupId, Object roleId)
+    {
+        Integer ordinal = userOrdinals.get(userId);
+        Map<Object, BitSet> roles = roleUsers.get(groupId);
+        if (ordinal == null || roles == null || !roles.containsKey(roleId))
+        {
+            return;
+        }
+
+        BitSet users = roles.get(roleId);
+        users.clear(ordinal.intValue());
+        if (users.isEmpty())
+        {
+            roles.remove(roleId);
+        }
+        invalidate(groupId, roleId);
+    }
+
+    /**
+     * Record that a role grants a permission
+     *
+     * @param roleId the role id
+     * @param permissionId the permission id
+     */
+    public synchronized void grant(Object roleId, Object permissionId)
+    {
+        if (rolePermissions.computeIfAbsent(roleId, k -> new HashSet<Object>()).add(permissionId))
+        {
+            permissionRoles.computeIfAbsent(permissionId, k -> new HashSet<Object>()).add(roleId);
+            invalidate(permissionId);
+        }
+    }
+
+    /**
+     * Record that a role no longer grants a permission
+     *
+     * @param roleId the role id
+     * @param permissionId the permission id
+     */
+    public synchronized void revoke(Object roleId, Object permissionId)
+    {
+        Set<Object> permissions = rolePermissions.get(roleId);
+        if (permissions != null && permissions.remove(permissionId))
+        {
+            permissionRoles.get(permissionId).remove(roleId);
+            invalidate(permissionId);
+        }
+    }
+
+    /**
+     * Get the ids of all users who are assigned a role in a group
+     *
+     * @param groupId the group id
+     * @param roleId the role id
+     * @return the user ids
+     */
+    public synchronized List<Object> getUserIdsWithRole(Object groupId, Object roleId)
+    {
+        Map<Object, BitSet> roles = roleUsers.get(groupId);
+        return toIds(roles == null ? null : roles.get(roleId));
+    }
+
+    /**
+     * Get the ids of all users who are assigned a permission in a group by
+     * any of their roles in that group
+     *
+     * @param groupId the group id
+     * @param permissionId the permission id
+     * @return the user ids
+     */
+    public synchronized List<Object> getUserIdsWithPermission(Object groupId, Object permissionId)
+    {
+        return toIds(getPermissionUsers(groupId, permissionId));
+    }
+
+    /**
+     * Get the ids of all users who are assigned a permission in any of the
+     * given groups, by a role granting it or by one of the given roles
+     *
+     * @param groupIds the group ids, e.g. a group and its ancestors
+     * @param permissionId the permission id
+     * @param roleIds the ids of further roles to include, e.g. the roles
+     *            inheriting the permission
+     * @return the user ids
+     */
+    public synchronized List<Object> getUserIdsWithPermission(Collection<?> groupIds, Object permissionId,
+            Collection<?> roleIds)
+    {
+        BitSet users = new BitSet();
+        for (Object groupId : groupIds)
+        {
+            BitSet granted = getPermissionUsers(groupId, permissionId);
+            if (granted != null)
+            {
+                users.or(granted);
+            }
+
+            Map<Object, BitSet> roles = roleUsers.get(groupId);
+            if (roles != null)
+            {
+                for (Object roleId : roleIds)
+                {
+                    BitSet roleBits = roles.get(roleId);
+                    if (roleBits != null)
+                    {
+                        users.or(roleBits);
+                    }
+                }
+            }
+        }
+        return toIds(users);
+    }
+
+    /**
+     * Forget a removed user. Its ordinal is reused by the next new user.
+     *
+     * @param userId the user id
+     */
+    public synchronized void removeUser(Object userId)
+    {
+        Integer ordinal = userOrdinals.remove(userId);
+        if (ordinal == null)
+        {
+            return;
+        }
+
+        int bit = ordinal.intValue();
+        for (Map<Object, BitSet> roles : roleUsers.values())
+        {
+            clear(roles, bit);
+        }
+        for (Map<Object, BitSet> permissions : permissionUsers.values())
+        {
+            clear(permissions, bit);
+        }
+        userIds.set(bit, null);
+        freeOrdinals.set(bit);
+    }
+
+    /**
+     * Forget a removed group and the roles assigned in it
+     *
+     * @param groupId the group id
+     */
+    public synchronized void removeGroup(Object groupId)
+    {
+        roleUsers.remove(groupId);
+        permissionUsers.remove(groupId);
+    }
+
+    /**
+     * Forget a removed role, its assignments in all groups and its
+     * permissions
+     *
+     * @param roleId the role id
+     */
+    public synchronized void removeRole(Object roleId)
+    {
+        for (Map.Entry<Object, Map<Object, BitSet>> entry : roleUsers.entrySet())
+        {
+            if (entry.getValue().remove(roleId) != null)
+            {
+                invalidate(entry.getKey(), roleId);
+            }
+        }
+
+        Set<Object> permissions = rolePermissions.remove(roleId);
+        if (permissions != null)
+        {
+            for (Object permissionId : permissions)
+            {
+                permissionRoles.get(permissionId).remove(roleId);
+                invalidate(permissionId);
+            }
+        }
+    }
+
+    /**
+     * Forget a removed permission and its grants to roles
+     *
+     * @param permissionId the permission id
+     */
+    public synchronized void removePermission(Object permissionId)
+    {
+        Set<Object> roles = permissionRoles.remove(permissionId);
+        if (roles != null)
+        {
+            for (Object roleId : roles)
+            {
+                rolePermissions.get(roleId).remove(permissionId);
+            }
+        }
+        invalidate(permissionId);
+    }
+
+    /**
+     * Drop all state
+     */
+    public synchronized void clear()
+    {
+        userOrdinals.clear();
+        userIds.clear();
+        roleUsers.clear();
+        rolePermissions.clear();
+        permissionRoles.clear();
+        permissionUsers.clear();
+        freeOrdinals.clear();
+    }
+
+    private int ordinal(Object userId)
+    {
+        Integer ordinal = userOrdinals.get(userId);
+        if (ordinal == null)
+        {
+            int free = freeOrdinals.nextSetBit(0);
+            if (free >= 0)
+            {
+                freeOrdinals.clear(free);
+                userIds.set(free, userId);
+                ordinal = Integer.valueOf(free);
+            }
+            else
+            {
+                ordinal = Integer.valueOf(userIds.size());
+                userIds.add(userId);
+            }
+            userOrdinals.put(userId, ordinal);
+        }
+        return ordinal.intValue();
+    }
+
+    /**
+     * Get the cached bitmap of the users holding a permission in a group,
+     * computing it from the role bitmaps on first use
+     */
+    private BitSet getPermissionUsers(Object groupId, Object permissionId)
+    {
+        Map<Object, BitSet> roles = roleUsers.get(groupId);
+        Set<Object> granting = permissionRoles.get(permissionId);
+        if (roles == null || granting == null || granting.isEmpty())
+        {
+            return null;
+        }
+
+        Map<Object, BitSet> permissions = permissionUsers.computeIfAbsent(groupId, k -> new HashMap<Object, BitSet>());
+        BitSet users = permissions.get(permissionId);
+        if (users == null)
+        {
+            users = new BitSet();
+            for (Object roleId : granting)
+            {
+                BitSet roleBits = roles.get(roleId);
+                if (roleBits != null)
+                {
+                    users.or(roleBits);
+                }
+            }
+            permissions.put(permissionId, users);
+        }
+        return users;
+    }
+
+    private List<Object> toIds(BitSet users)
+    {
+        if (users == null)
+        {
+            return Collections.emptyList();
+        }
+
+        List<Object> ids = new ArrayList<Object>(users.cardinality());
+        for (int i = users.nextSetBit(0); i >= 0; i = users.nextSetBit(i + 1))
+        {
+            ids.add(userIds.get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Clear a user bit in all bitmaps of a map, dropping emptied bitmaps
+     */
+    private void clear(Map<Object, BitSet> bitmaps, int bit)
+    {
+        for (Iterator<BitSet> it = bitmaps.values().iterator(); it.hasNext();)
+        {
+            BitSet users = it.next();
+            users.clear(bit);
+            if (users.isEmpty())
+            {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop the cached permission bitmaps of a group which depend on a role
+     */
+    private void invalidate(Object groupId, Object roleId)
+    {
+        Map<Object, BitSet> permissions = permissionUsers.get(groupId);
+        Set<Object> granted = rolePermissions.get(roleId);
+        if (permissions != null && granted != null)
+        {
+            permissions.keySet().removeAll(granted);
+        }
+    }
+
+    /**
+     * Drop the cached bitmaps of a permission in all groups
+     */
+    private void invalidate(Object permissionId)
+    {
+        for (Map<Object, BitSet> permissions : permissionUsers.values())
+        {
+            permissions.remove(permissionId);
+        }
+    }
+}
@@ -19,13 +19,18 @@ package org.apache.fulcrum.security.model.turbine;
  * under the License.
  */
 
+import java.util.stream.Stream;
+
 import org.apache.fulcrum.security.ModelManager;
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
 import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.util.DataBackendException;
+import org.apache.fulcrum.security.util.PermissionSet;
+import org.apache.fulcrum.security.util.RoleSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.fulcrum.security.util.UserSet;
 
 /**
  * Describes all the relationships between entities in the "Turbine" model.
@@ -213,4 +218,156 @@ public interface TurbineModelManager extends ModelManager
      */
     void revokeAll( Role role, boolean cascadeDelete )
         throws DataBackendException, UnknownEntityException;
+
+    /**
+     * Get the ids of all users who are assigned a Role in a Group, without
+     * building their access control lists.
+     *
+     * @param group
+     *            the Group
+     * @param role
+     *            the Role
+     * @return a stream of the user ids
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    Stream<Object> getUserIds(Group group, Role role) throws DataBackendException;
+
+    /**
+     * Get the ids of all users who are assigned a Permission in a Group by
+     * any of their Roles in that Group or one of its ancestors, without
+     * building their access control lists.
+     *
+     * @param group
+     *            the Group
+     * @param permission
+     *            the Permission
+     * @return a stream of the user ids
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    Stream<Object> getUserIds(Group group, Permission permission) throws DataBackendException;
+
+    /**
+     * Get all users who are assigned a Role in a Group.
+     *
+     * @param <T> User type
+     * @param group
+     *            the Group
+     * @param role
+     *            the Role
+     * @return the users
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    <T extends User> UserSet<T> getUsers(Group group, Role role) throws DataBackendException;
+
+    /**
+     * Get all users who are assigned a Permission in a Group by any of their
+     * Roles in that Group or one of its ancestors.
+     *
+     * @param <T> User type
+     * @param group
+     *            the Group
+     * @param permission
+     *            the Permission
+     * @return the users
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    <T extends User> UserSet<T> getUsers(Group group, Permission permission) throws DataBackendException;
+
+    /**
+     * Let a Role extend a parent Role. The Role inherits all permissions of
+     * the parent and of its ancestors.
+     *
+     * @param role
+     *            the Role
+     * @param parent
+     *            the parent Role
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend or the
+     *             edge would create a cycle.
+     * @throws UnknownEntityException
+     *             if one of the roles is not present.
+     */
+    void addParentRole(Role role, Role parent) throws DataBackendException, UnknownEntityException;
+
+    /**
+     * Stop a Role from extending a parent Role.
+     *
+     * @param role
+     *            the Role
+     * @param parent
+     *            the parent Role
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     * @throws UnknownEntityException
+     *             if one of the roles is not present.
+     */
+    void removeParentRole(Role role, Role parent) throws DataBackendException, UnknownEntityException;
+
+    /**
+     * Get the Roles a Role directly extends.
+     *
+     * @param role
+     *            the Role
+     * @return the parent Roles
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    RoleSet getParentRoles(Role role) throws DataBackendException;
+
+    /**
+     * Get the Permissions a Role inherits from its ancestors, without its
+     * own Permissions.
+     *
+     * @param role
+     *            the Role
+     * @return a copy of the inherited Permissions, empty if the Role does
+     *         not extend another Role
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    PermissionSet getInheritedPermissions(Role role) throws DataBackendException;
+
+    /**
+     * Nest a Group in a parent Group. Permissions granted in a Group also
+     * apply in all Groups nested in it, directly or indirectly. A Group has
+     * at most one parent, nesting it again moves it with all its nested
+     * Groups.
+     *
+     * @param group
+     *            the Group
+     * @param parent
+     *            the parent Group, <code>null</code> to make the Group a top
+     *            level Group again
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend or the
+     *             parent is nested in the Group.
+     * @throws UnknownEntityException
+     *             if one of the groups is not present.
+     */
+    void setParentGroup(Group group, Group parent) throws DataBackendException, UnknownEntityException;
+
+    /**
+     * Get the Group a Group is nested in.
+     *
+     * @param group
+     *            the Group
+     * @return the parent Group, <code>null</code> for top level Groups
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    Group getParentGroup(Group group) throws DataBackendException;
+
+    /**
+     * Get the interval encoding of the group hierarchy, answering whether a
+     * Group is nested in another one in constant time.
+     *
+     * @return an immutable snapshot of the group hierarchy
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    GroupIntervals getGroupIntervals() throws DataBackendException;
 }
@@ -21,6 +21,7 @@ package org.apache.fulcrum.security.spi;
 import org.apache.avalon.framework.configuration.Configurable;
 import org.apache.avalon.framework.configuration.Configuration;
 import org.apache.avalon.framework.configuration.ConfigurationException;
+import org.apache.fulcrum.security.util.DataBackendException;
 
 /**
  * 
@@ -34,6 +35,15 @@ public abstract class AbstractEntityManager extends AbstractManager implements C
 {
     private String className;
     private static final String CLASS_NAME_KEY = "className";
+
+    /**
+     * Configuration attribute which allows single entities to be looked up by
+     * loading all entities of the manager, if the backend does not implement
+     * a native lookup.
+     */
+    public static final String FULL_SCAN_LOOKUP_ATTR_NAME = "fullScanLookup";
+
+    private boolean fullScanLookup = false;
     
     /**
      * Avalon Service lifecycle method
@@ -41,6 +51,43 @@ public abstract class AbstractEntityManager extends AbstractManager implements C
     public void configure(Configuration conf) throws ConfigurationException
     {
         className = conf.getChild(CLASS_NAME_KEY).getValue();
+        fullScanLookup = conf.getAttributeAsBoolean(FULL_SCAN_LOOKUP_ATTR_NAME, false);
+    }
+
+    /**
+     * Make sure that a single entity lookup may be answered by loading all
+     * entities. This is called by the default implementations of the lookup
+     * hooks, which backends are expected to override.
+     *
+     * @param lookup the name of the lookup hook
+     * @throws DataBackendException if the full scan was not enabled in the
+     *         configuration
+     */
+    protected void checkFullScanLookup(String lookup) throws DataBackendException
+    {
+        if (!fullScanLookup)
+        {
+            throw new DataBackendException(getClass().getName() + " does not implement " + lookup
+                    + ", set the attribute " + FULL_SCAN_LOOKUP_ATTR_NAME
+                    + " to search all entities instead");
+        }
+    }
+
+    /**
+     * @return true if single entities may be looked up by loading all entities
+     */
+    public boolean isFullScanLookup()
+    {
+        return fullScanLookup;
+    }
+
+    /**
+     * @param fullScanLookup
+     *            true if single entities may be looked up by loading all entities
+     */
+    public void setFullScanLookup(boolean fullScanLookup)
+    {
+        this.fullScanLookup = fullScanLookup;
     }
     /**
      * @return Returns the className.
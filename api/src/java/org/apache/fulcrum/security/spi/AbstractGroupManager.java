@@ -21,8 +21,11 @@ package org.apache.fulcrum.security.spi;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.fulcrum.security.GroupManager;
 import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.model.turbine.TurbineAuthorizationIndex;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.EntityExistsException;
+import org.apache.fulcrum.security.util.GroupDictionary;
+import org.apache.fulcrum.security.util.GroupHandle;
 import org.apache.fulcrum.security.util.UnknownEntityException;
 
 /**
@@ -39,6 +42,9 @@ public abstract class AbstractGroupManager extends AbstractEntityManager impleme
 	 */
 	private static final long serialVersionUID = 1L;
 
+    /** The ordinals of the groups of this manager */
+    private final transient GroupDictionary groupDictionary = new GroupDictionary();
+
 	protected abstract <T extends Group> T persistNewGroup(T group) throws DataBackendException;
 
     /**
@@ -102,8 +108,7 @@ public abstract class AbstractGroupManager extends AbstractEntityManager impleme
     @Override
 	public <T extends Group> T getGroupByName(String name) throws DataBackendException, UnknownEntityException
     {
-        @SuppressWarnings("unchecked")
-		T group = (T) getAllGroups().getByName(name);
+        T group = findGroupByName(name);
         if (group == null)
         {
             throw new UnknownEntityException("The specified group does not exist");
@@ -127,8 +132,7 @@ public abstract class AbstractGroupManager extends AbstractEntityManager impleme
     @Override
 	public <T extends Group> T getGroupById(Object id) throws DataBackendException, UnknownEntityException
     {
-        @SuppressWarnings("unchecked")
-		T group = (T) getAllGroups().getById(id);
+        T group = findGroupById(id);
         if (group == null)
         {
             throw new UnknownEntityException("The specified group does not exist");
@@ -136,6 +140,92 @@ public abstract class AbstractGroupManager extends AbstractEntityManager impleme
         return group;
     }
 
+    /**
+     * Resolves the group by name and registers it in the dictionary of this
+     * manager.
+     */
+    @Override
+    public GroupHandle getGroupHandle(String name) throws DataBackendException, UnknownEntityException
+    {
+        return new GroupHandle(groupDictionary, getGroupByName(name));
+    }
+
+    @Override
+    public GroupDictionary getGroupDictionary()
+    {
+        return groupDictionary;
+    }
+
+    /**
+     * Discard the cached ACLs which depend on a renamed group and update it
+     * in the dictionary. To be called by the backends after the rename.
+     *
+     * @param group the renamed group
+     */
+    protected void groupRenamed(Group group)
+    {
+        invalidateACLs(group);
+        groupDictionary.update(group);
+    }
+
+    /**
+     * Discard the cached ACLs and retire the handles which depend on a
+     * removed group. To be called by the backends after removal.
+     *
+     * @param group the removed group
+     */
+    protected void groupRemoved(Group group)
+    {
+        invalidateACLs(group);
+        groupDictionary.retire(group.getId());
+
+        TurbineAuthorizationIndex index = getAuthorizationIndex();
+        if (index != null)
+        {
+            index.removeGroup(group.getId());
+        }
+    }
+
+    /**
+     * Look up a single Group by name in the backend. The default
+     * implementation searches all groups and is only available if the manager
+     * is configured with the attribute fullScanLookup.
+     *
+     * @param <T> group type
+     * @param name
+     *            the name of the Group.
+     * @return the Group or <code>null</code> if it does not exist
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    protected <T extends Group> T findGroupByName(String name) throws DataBackendException
+    {
+        checkFullScanLookup("findGroupByName(String)");
+        @SuppressWarnings("unchecked")
+        T group = (T) getAllGroups().getByName(name);
+        return group;
+    }
+
+    /**
+     * Look up a single Group by id in the backend. The default
+     * implementation searches all groups and is only available if the manager
+     * is configured with the attribute fullScanLookup.
+     *
+     * @param <T> group type
+     * @param id
+     *            the id of the Group.
+     * @return the Group or <code>null</code> if it does not exist
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    protected <T extends Group> T findGroupById(Object id) throws DataBackendException
+    {
+        checkFullScanLookup("findGroupById(Object)");
+        @SuppressWarnings("unchecked")
+        T group = (T) getAllGroups().getById(id);
+        return group;
+    }
+
     /**
      * Creates a new group with specified attributes.
      *
@@ -25,9 +25,17 @@ import org.apache.avalon.framework.service.ServiceManager;
 import org.apache.avalon.framework.service.Serviceable;
 import org.apache.avalon.framework.thread.ThreadSafe;
 import org.apache.fulcrum.security.GroupManager;
+import org.apache.fulcrum.security.ModelManager;
 import org.apache.fulcrum.security.PermissionManager;
 import org.apache.fulcrum.security.RoleManager;
 import org.apache.fulcrum.security.UserManager;
+import org.apache.fulcrum.security.entity.SecurityEntity;
+import org.apache.fulcrum.security.model.ACLCache;
+import org.apache.fulcrum.security.model.ACLFactory;
+import org.apache.fulcrum.security.model.dynamic.DelegationGraph;
+import org.apache.fulcrum.security.model.dynamic.DynamicACLFactory;
+import org.apache.fulcrum.security.model.turbine.AbstractTurbineModelManager;
+import org.apache.fulcrum.security.model.turbine.TurbineAuthorizationIndex;
 import org.apache.fulcrum.security.util.DataBackendException;
 
 /**
@@ -47,6 +55,12 @@ public abstract class AbstractManager extends AbstractLogEnabled implements Serv
     private RoleManager roleManager;
     private GroupManager groupManager;
     private UserManager userManager;
+    private volatile ACLCache aclCache;
+    private volatile boolean aclCacheResolved = false;
+    private volatile DelegationGraph delegationGraph;
+    private volatile boolean delegationGraphResolved = false;
+    private volatile TurbineAuthorizationIndex authorizationIndex;
+    private volatile boolean authorizationIndexResolved = false;
 
     /**
      * @return the service manager
@@ -140,6 +154,128 @@ public abstract class AbstractManager extends AbstractLogEnabled implements Serv
         return groupManager;
     }
 
+    /**
+     * The flag is set after the cache is assigned, so a thread which sees
+     * the flag also sees the cache. Concurrent first calls may resolve the
+     * factory twice, which is harmless.
+     *
+     * @return the ACL factory if it caches ACLs, <code>null</code> otherwise
+     */
+    protected ACLCache getACLCache()
+    {
+        if (!aclCacheResolved)
+        {
+            if (manager != null && manager.hasService(ACLFactory.ROLE))
+            {
+                try
+                {
+                    Object aclFactory = manager.lookup(ACLFactory.ROLE);
+                    if (aclFactory instanceof ACLCache)
+                    {
+                        aclCache = (ACLCache) aclFactory;
+                    }
+                    else
+                    {
+                        manager.release(aclFactory);
+                    }
+                }
+                catch (ServiceException ce)
+                {
+                    // no ACL factory, nothing to invalidate
+                }
+            }
+            aclCacheResolved = true;
+        }
+        return aclCache;
+    }
+
+    /**
+     * @return the delegation index of the ACL factory, <code>null</code> if
+     *         the ACL factory is not a {@link DynamicACLFactory}
+     */
+    protected DelegationGraph getDelegationGraph()
+    {
+        if (!delegationGraphResolved)
+        {
+            if (manager != null && manager.hasService(ACLFactory.ROLE))
+            {
+                try
+                {
+                    Object aclFactory = manager.lookup(ACLFactory.ROLE);
+                    if (aclFactory instanceof DynamicACLFactory)
+                    {
+                        delegationGraph = ((DynamicACLFactory) aclFactory).getDelegationGraph();
+                    }
+                    manager.release(aclFactory);
+                }
+                catch (ServiceException ce)
+                {
+                    // no ACL factory, nothing to maintain
+                }
+            }
+            // set after the graph, a thread seeing the flag sees the graph
+            delegationGraphResolved = true;
+        }
+        return delegationGraph;
+    }
+
+    /**
+     * @return the reverse index of the model manager, <code>null</code> if
+     *         the model manager does not keep one
+     */
+    protected TurbineAuthorizationIndex getAuthorizationIndex()
+    {
+        if (!authorizationIndexResolved)
+        {
+            if (manager != null && manager.hasService(ModelManager.ROLE))
+            {
+                try
+                {
+                    Object modelManager = manager.lookup(ModelManager.ROLE);
+                    if (modelManager instanceof AbstractTurbineModelManager)
+                    {
+                        authorizationIndex = ((AbstractTurbineModelManager) modelManager).getAuthorizationIndex();
+                    }
+                    manager.release(modelManager);
+                }
+                catch (ServiceException ce)
+                {
+                    // no model manager, nothing to maintain
+                }
+            }
+            // set after the index, a thread seeing the flag sees the index
+            authorizationIndexResolved = true;
+        }
+        return authorizationIndex;
+    }
+
+    /**
+     * Discard the cached ACLs which depend on the given entity.
+     *
+     * @param entity the modified user, group, role or permission
+     */
+    protected void invalidateACLs(SecurityEntity entity)
+    {
+        ACLCache cache = getACLCache();
+        if (cache != null && entity != null)
+        {
+            cache.invalidate(entity);
+        }
+    }
+
+    /**
+     * Discard all cached ACLs, for changes whose dependents are not known
+     * to the cache.
+     */
+    protected void invalidateAllACLs()
+    {
+        ACLCache cache = getACLCache();
+        if (cache != null)
+        {
+            cache.invalidateAll();
+        }
+    }
+
     /**
      * Avalon Service lifecycle method
      * @throws ServiceException if fail to connect
@@ -158,6 +294,7 @@ public abstract class AbstractManager extends AbstractLogEnabled implements Serv
         release(permissionManager);
         release(groupManager);
         release(userManager);
+        release(aclCache);
         manager = null;
     }
 
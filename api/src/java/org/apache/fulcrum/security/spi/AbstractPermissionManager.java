@@ -21,8 +21,11 @@ package org.apache.fulcrum.security.spi;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.fulcrum.security.PermissionManager;
 import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.model.turbine.TurbineAuthorizationIndex;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.EntityExistsException;
+import org.apache.fulcrum.security.util.PermissionDictionary;
+import org.apache.fulcrum.security.util.PermissionHandle;
 import org.apache.fulcrum.security.util.UnknownEntityException;
 
 /**
@@ -40,6 +43,9 @@ public abstract class AbstractPermissionManager extends AbstractEntityManager im
      */
     private static final long serialVersionUID = 1L;
 
+    /** The ordinals of the permissions of this manager */
+    private final transient PermissionDictionary permissionDictionary = new PermissionDictionary();
+
     protected abstract <T extends Permission> T persistNewPermission(T permission) throws DataBackendException;
 
     /**
@@ -102,8 +108,7 @@ public abstract class AbstractPermissionManager extends AbstractEntityManager im
     @Override
 	public <T extends Permission> T getPermissionByName(String name) throws DataBackendException, UnknownEntityException
     {
-        @SuppressWarnings("unchecked")
-		T permission = (T) getAllPermissions().getByName(name);
+        T permission = findPermissionByName(name);
         if (permission == null)
         {
             throw new UnknownEntityException("The specified permission does not exist");
@@ -127,8 +132,7 @@ public abstract class AbstractPermissionManager extends AbstractEntityManager im
     @Override
 	public <T extends Permission> T getPermissionById(Object id) throws DataBackendException, UnknownEntityException
     {
-        @SuppressWarnings("unchecked")
-		T permission = (T) getAllPermissions().getById(id);
+        T permission = findPermissionById(id);
         if (permission == null)
         {
             throw new UnknownEntityException("The specified permission does not exist");
@@ -136,6 +140,93 @@ public abstract class AbstractPermissionManager extends AbstractEntityManager im
         return permission;
     }
 
+    /**
+     * Resolves the permission by name and registers it in the dictionary of
+     * this manager.
+     */
+    @Override
+    public PermissionHandle getPermissionHandle(String name) throws DataBackendException, UnknownEntityException
+    {
+        return new PermissionHandle(permissionDictionary, getPermissionByName(name));
+    }
+
+    @Override
+    public PermissionDictionary getPermissionDictionary()
+    {
+        return permissionDictionary;
+    }
+
+    /**
+     * Discard the cached ACLs which depend on a renamed permission and
+     * update its name in the dictionary. To be called by the backends after
+     * the rename.
+     *
+     * @param permission the renamed permission
+     */
+    protected void permissionRenamed(Permission permission)
+    {
+        invalidateACLs(permission);
+        permissionDictionary.update(permission);
+    }
+
+    /**
+     * Discard the cached ACLs and retire the handles which depend on a
+     * removed permission. To be called by the backends after removal.
+     *
+     * @param permission the removed permission
+     */
+    protected void permissionRemoved(Permission permission)
+    {
+        invalidateACLs(permission);
+        permissionDictionary.retire(permission.getId());
+
+        TurbineAuthorizationIndex index = getAuthorizationIndex();
+        if (index != null)
+        {
+            index.removePermission(permission.getId());
+        }
+    }
+
+    /**
+     * Look up a single Permission by name in the backend. The default
+     * implementation searches all permissions and is only available if the manager
+     * is configured with the attribute fullScanLookup.
+     *
+     * @param <T> permission type
+     * @param name
+     *            the name of the Permission.
+     * @return the Permission or <code>null</code> if it does not exist
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    protected <T extends Permission> T findPermissionByName(String name) throws DataBackendException
+    {
+        checkFullScanLookup("findPermissionByName(String)");
+        @SuppressWarnings("unchecked")
+        T permission = (T) getAllPermissions().getByName(name);
+        return permission;
+    }
+
+    /**
+     * Look up a single Permission by id in the backend. The default
+     * implementation searches all permissions and is only available if the manager
+     * is configured with the attribute fullScanLookup.
+     *
+     * @param <T> permission type
+     * @param id
+     *            the id of the Permission.
+     * @return the Permission or <code>null</code> if it does not exist
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    protected <T extends Permission> T findPermissionById(Object id) throws DataBackendException
+    {
+        checkFullScanLookup("findPermissionById(Object)");
+        @SuppressWarnings("unchecked")
+        T permission = (T) getAllPermissions().getById(id);
+        return permission;
+    }
+
     /**
      * Creates a new permission with specified attributes.
      *
@@ -20,9 +20,14 @@ package org.apache.fulcrum.security.spi;
  */
 import org.apache.commons.lang3.StringUtils;
 import org.apache.fulcrum.security.RoleManager;
+import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.model.dynamic.entity.DynamicRole;
+import org.apache.fulcrum.security.model.turbine.TurbineAuthorizationIndex;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineRole;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.EntityExistsException;
+import org.apache.fulcrum.security.util.PermissionSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
 
 /**
@@ -115,8 +120,7 @@ public abstract class AbstractRoleManager extends AbstractEntityManager implemen
     @Override
 	public <T extends Role> T getRoleByName(String name) throws DataBackendException, UnknownEntityException
     {
-        @SuppressWarnings("unchecked")
-		T role = (T) getAllRoles().getByName(name);
+        T role = findRoleByName(name);
         if (role == null)
         {
             throw new UnknownEntityException("The specified role does not exist");
@@ -142,8 +146,7 @@ public abstract class AbstractRoleManager extends AbstractEntityManager implemen
     @Override
 	public <T extends Role> T getRoleById(Object id) throws DataBackendException, UnknownEntityException
     {
-        @SuppressWarnings("unchecked")
-		T role = (T) getAllRoles().getById(id);
+        T role = findRoleById(id);
         if (role == null)
         {
             throw new UnknownEntityException("The specified role does not exist");
@@ -151,6 +154,46 @@ public abstract class AbstractRoleManager extends AbstractEntityManager implemen
         return role;
     }
 
+    /**
+     * Look up a single Role by name in the backend. The default
+     * implementation searches all roles and is only available if the manager
+     * is configured with the attribute fullScanLookup.
+     *
+     * @param <T> role type
+     * @param name
+     *            the name of the Role.
+     * @return the Role or <code>null</code> if it does not exist
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    protected <T extends Role> T findRoleByName(String name) throws DataBackendException
+    {
+        checkFullScanLookup("findRoleByName(String)");
+        @SuppressWarnings("unchecked")
+        T role = (T) getAllRoles().getByName(name);
+        return role;
+    }
+
+    /**
+     * Look up a single Role by id in the backend. The default
+     * implementation searches all roles and is only available if the manager
+     * is configured with the attribute fullScanLookup.
+     *
+     * @param <T> role type
+     * @param id
+     *            the id of the Role.
+     * @return the Role or <code>null</code> if it does not exist
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    protected <T extends Role> T findRoleById(Object id) throws DataBackendException
+    {
+        checkFullScanLookup("findRoleById(Object)");
+        @SuppressWarnings("unchecked")
+        T role = (T) getAllRoles().getById(id);
+        return role;
+    }
+
     /**
      * Creates a new role with specified attributes.
      * 
@@ -210,4 +253,53 @@ public abstract class AbstractRoleManager extends AbstractEntityManager implemen
     {
         return checkExists(role.getName());
     }
+
+    /**
+     * Discard the cached ACLs and the index entries which depend on a
+     * removed role. To be called by the backends after removal.
+     *
+     * @param role the removed role
+     */
+    protected void roleRemoved(Role role)
+    {
+        invalidateACLs(role);
+
+        TurbineAuthorizationIndex index = getAuthorizationIndex();
+        if (index != null)
+        {
+            index.removeRole(role.getId());
+        }
+    }
+
+    /**
+     * Count the roles granting a permission. The default implementation
+     * checks the permissions of every role of {@link #getAllRoles()}, roles
+     * of models without permissions on roles are never counted.
+     *
+     * @see org.apache.fulcrum.security.RoleManager#countRolesWithPermission(org.apache.fulcrum.security.entity.Permission)
+     */
+    @Override
+    public int countRolesWithPermission(Permission permission) throws DataBackendException
+    {
+        int count = 0;
+        for (Role role : getAllRoles())
+        {
+            PermissionSet permissions = null;
+            if (role instanceof TurbineRole)
+            {
+                permissions = ((TurbineRole) role).getPermissions();
+            }
+            else if (role instanceof DynamicRole)
+            {
+                permissions = ((DynamicRole) role).getPermissions();
+            }
+
+            if (permissions != null && permissions.containsId(permission.getId()))
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
 }
@@ -18,16 +18,38 @@ package org.apache.fulcrum.security.spi;
  * specific language governing permissions and limitations
  * under the License.
  */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.avalon.framework.configuration.Configuration;
+import org.apache.avalon.framework.configuration.ConfigurationException;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.fulcrum.security.UserManager;
 import org.apache.fulcrum.security.acl.AccessControlList;
 import org.apache.fulcrum.security.authenticator.Authenticator;
+import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.model.ACLFactory;
+import org.apache.fulcrum.security.model.dynamic.DelegationGraph;
+import org.apache.fulcrum.security.model.turbine.TurbineAuthorizationIndex;
+import org.apache.fulcrum.security.util.CountingBloomFilter;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.EntityExistsException;
 import org.apache.fulcrum.security.util.PasswordMismatchException;
+import org.apache.fulcrum.security.util.SecuritySet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.fulcrum.security.util.UserQuery;
 
 /**
  * This implementation keeps all objects in memory. This is mostly meant to help
@@ -44,6 +66,69 @@ public abstract class AbstractUserManager extends AbstractEntityManager implemen
     /** ID **/
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Configuration attribute for the number of users read at once by
+     * {@link #streamUsers()}
+     */
+    public static final String PAGE_SIZE_ATTR_NAME = "pageSize";
+
+    /** Default number of users read at once */
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    /**
+     * Configuration attribute for the number of user names the name filter is
+     * sized for. The filter is disabled if this is 0.
+     */
+    public static final String NAME_FILTER_SIZE_ATTR_NAME = "nameFilterSize";
+
+    /** Configuration attribute for the false positive rate of the name filter */
+    public static final String NAME_FILTER_FPP_ATTR_NAME = "nameFilterFalsePositiveRate";
+
+    /**
+     * Configuration attribute for the milliseconds after which the name filter
+     * is rebuilt from the backend. It is never rebuilt on time if this is 0.
+     */
+    public static final String NAME_FILTER_REBUILD_INTERVAL_ATTR_NAME = "nameFilterRebuildInterval";
+
+    /** Default false positive rate of the name filter */
+    public static final float DEFAULT_NAME_FILTER_FPP = 0.01f;
+
+    /** Orders users by case-folded name */
+    private static final Comparator<User> BY_NAME = Comparator.comparing(
+            (User user) -> SecuritySet.foldName(user.getName()), Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    private int nameFilterSize = 0;
+
+    private double nameFilterFalsePositiveRate = DEFAULT_NAME_FILTER_FPP;
+
+    private long nameFilterRebuildInterval = 0;
+
+    /** The filter of all user names, null until built */
+    private transient volatile CountingBloomFilter nameFilter;
+
+    /** The filter being built, receives the names added meanwhile */
+    private transient volatile CountingBloomFilter pendingNameFilter;
+
+    /** Time the name filter was built */
+    private transient volatile long nameFilterBuilt;
+
+    /** Guards against concurrent rebuilds */
+    private final AtomicBoolean nameFilterBuilding = new AtomicBoolean();
+
+    /** Lock for updates of the current and the pending name filter */
+    private final Object nameFilterLock = new int[0];
+
+    /** Number of existence checks answered by the name filter alone */
+    private final AtomicLong nameFilterNegatives = new AtomicLong();
+
+    /** Number of existence checks passed on to the backend */
+    private final AtomicLong nameFilterPasses = new AtomicLong();
+
+    /** Number of times the name filter was built */
+    private final AtomicLong nameFilterRebuilds = new AtomicLong();
+
     /**
      * @param user user to persist
      * @param <T> User type
@@ -55,6 +140,32 @@ public abstract class AbstractUserManager extends AbstractEntityManager implemen
     private ACLFactory aclFactory;
     private Authenticator authenticator;
 
+    /**
+     * Avalon Service lifecycle method
+     */
+    @Override
+    public void configure(Configuration conf) throws ConfigurationException
+    {
+        super.configure(conf);
+        pageSize = conf.getAttributeAsInteger(PAGE_SIZE_ATTR_NAME, DEFAULT_PAGE_SIZE);
+        if (pageSize < 1)
+        {
+            throw new ConfigurationException("The " + PAGE_SIZE_ATTR_NAME + " must be positive", conf);
+        }
+
+        nameFilterSize = conf.getAttributeAsInteger(NAME_FILTER_SIZE_ATTR_NAME, 0);
+        nameFilterFalsePositiveRate = conf.getAttributeAsFloat(NAME_FILTER_FPP_ATTR_NAME, DEFAULT_NAME_FILTER_FPP);
+        nameFilterRebuildInterval = conf.getAttributeAsLong(NAME_FILTER_REBUILD_INTERVAL_ATTR_NAME, 0);
+        if (nameFilterSize < 0)
+        {
+            throw new ConfigurationException("The " + NAME_FILTER_SIZE_ATTR_NAME + " must not be negative", conf);
+        }
+        if (!(nameFilterFalsePositiveRate > 0 && nameFilterFalsePositiveRate < 1))
+        {
+            throw new ConfigurationException("The " + NAME_FILTER_FPP_ATTR_NAME + " must be between 0 and 1", conf);
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.apache.fulcrum.security.UserManager#getACL(org.apache.fulcrum.security.entity.User)
      */
@@ -109,8 +220,7 @@ public abstract class AbstractUserManager extends AbstractEntityManager implemen
     @Override
 	public <T extends User> T getUser(String name) throws DataBackendException, UnknownEntityException
     {
-        @SuppressWarnings("unchecked")
-		T user = (T)getAllUsers().getByName(name);
+        T user = findUserByName(name);
         if (user == null)
         {
             throw new UnknownEntityException("The specified user does not exist");
@@ -134,8 +244,7 @@ public abstract class AbstractUserManager extends AbstractEntityManager implemen
     @Override
 	public <T extends User> T getUserById(Object id) throws DataBackendException, UnknownEntityException
     {
-        @SuppressWarnings("unchecked")
-		T user = (T)getAllUsers().getById(id);
+        T user = findUserById(id);
         if (user == null)
         {
             throw new UnknownEntityException("The specified user does not exist");
@@ -143,6 +252,461 @@ public abstract class AbstractUserManager extends AbstractEntityManager implemen
         return user;
     }
 
+    /**
+     * Look up a single User by name in the backend. The default
+     * implementation searches all users and is only available if the manager
+     * is configured with the attribute fullScanLookup.
+     *
+     * @param <T> user type
+     * @param name
+     *            the name of the User.
+     * @return the User or <code>null</code> if it does not exist
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    protected <T extends User> T findUserByName(String name) throws DataBackendException
+    {
+        checkFullScanLookup("findUserByName(String)");
+        @SuppressWarnings("unchecked")
+        T user = (T) getAllUsers().getByName(name);
+        return user;
+    }
+
+    /**
+     * Look up a single User by id in the backend. The default
+     * implementation searches all users and is only available if the manager
+     * is configured with the attribute fullScanLookup.
+     *
+     * @param <T> user type
+     * @param id
+     *            the id of the User.
+     * @return the User or <code>null</code> if it does not exist
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    protected <T extends User> T findUserById(Object id) throws DataBackendException
+    {
+        checkFullScanLookup("findUserById(Object)");
+        @SuppressWarnings("unchecked")
+        T user = (T) getAllUsers().getById(id);
+        return user;
+    }
+
+    /**
+     * Retrieve the users matching a query. The default implementation checks
+     * every user of {@link #streamUsers()} with {@link UserQuery#select(Iterator)}.
+     *
+     * @see org.apache.fulcrum.security.UserManager#retrieveUserList(org.apache.fulcrum.security.util.UserQuery)
+     */
+    @Override
+    public <T extends User> List<T> retrieveUserList(UserQuery query) throws DataBackendException
+    {
+        try (Stream<T> users = streamUsers())
+        {
+            return query.select(users.iterator());
+        }
+    }
+
+    /**
+     * Retrieve one page of users ordered by name. The default implementation
+     * sorts all users by case-folded name and is only available if the
+     * manager is configured with the attribute fullScanLookup.
+     *
+     * @see org.apache.fulcrum.security.UserManager#getUsers(java.lang.String, int)
+     */
+    @Override
+    public <T extends User> List<T> getUsers(String afterName, int limit) throws DataBackendException
+    {
+        checkLimit(limit);
+        checkFullScanLookup("getUsers(String, int)");
+        String after = SecuritySet.foldName(afterName);
+        List<T> users = new ArrayList<T>();
+        for (Object user : getAllUsers())
+        {
+            @SuppressWarnings("unchecked")
+            T candidate = (T) user;
+            if (after == null || SecuritySet.foldName(candidate.getName()).compareTo(after) > 0)
+            {
+                users.add(candidate);
+            }
+        }
+
+        Collections.sort(users, BY_NAME);
+        return users.size() > limit ? new ArrayList<T>(users.subList(0, limit)) : users;
+    }
+
+    /**
+     * Stream all users. The default implementation reads them page by page
+     * with {@link #getUsers(String, int)}, so at most one page of users is
+     * held at a time and no backend resources stay open between pages.
+     *
+     * @see org.apache.fulcrum.security.UserManager#streamUsers()
+     */
+    @Override
+    public <T extends User> Stream<T> streamUsers() throws DataBackendException
+    {
+        return StreamSupport.stream(new UserPageSpliterator<T>(getUsers(null, pageSize)), false);
+    }
+
+    /**
+     * Count all users. The default implementation counts the users of
+     * {@link #streamUsers()}.
+     *
+     * @see org.apache.fulcrum.security.UserManager#countUsers()
+     */
+    @Override
+    public int countUsers() throws DataBackendException
+    {
+        try (Stream<User> users = streamUsers())
+        {
+            return (int) users.count();
+        }
+    }
+
+    /**
+     * Count the members of a group. The default implementation checks every
+     * user of {@link #streamUsers()} with {@link UserQuery#matches(User)}.
+     *
+     * @see org.apache.fulcrum.security.UserManager#countUsersInGroup(org.apache.fulcrum.security.entity.Group)
+     */
+    @Override
+    public int countUsersInGroup(Group group) throws DataBackendException
+    {
+        UserQuery query = new UserQuery().inGroup(group);
+        int count = 0;
+
+        try (Stream<User> users = streamUsers())
+        {
+            for (Iterator<User> i = users.iterator(); i.hasNext();)
+            {
+                if (query.matches(i.next()))
+                {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Make sure that a page limit is valid
+     *
+     * @param limit the maximum number of users of a page
+     * @throws IllegalArgumentException if the limit is less than 1
+     */
+    protected static void checkLimit(int limit)
+    {
+        if (limit < 1)
+        {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
+    }
+
+    /**
+     * @return the number of users read at once by {@link #streamUsers()}
+     */
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+    /**
+     * @param pageSize the number of users read at once by {@link #streamUsers()}
+     */
+    public void setPageSize(int pageSize)
+    {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Check the name filter for a user name before asking the backend.
+     * Backends call this first in {@link #checkExists(String)} and skip the
+     * backend query if it returns false.
+     *
+     * The filter is built from {@link #streamUsers()} on first use and
+     * rebuilt once the rebuild interval has passed or more names have been
+     * added than it was sized for. Users added or removed through this
+     * manager update it right away, changes made by other nodes or directly
+     * in the backend are only seen after a rebuild, so shared backends
+     * need a rebuild interval.
+     *
+     * @param userName the user name
+     * @return false if the user definitely does not exist, true if it may
+     *         exist or the filter is disabled
+     * @throws DataBackendException if the filter could not be built
+     */
+    protected boolean mightExist(String userName) throws DataBackendException
+    {
+        if (nameFilterSize == 0 || userName == null)
+        {
+            return true;
+        }
+
+        CountingBloomFilter filter = nameFilter;
+        if (filter == null || isStale(filter))
+        {
+            rebuildNameFilter();
+            filter = nameFilter;
+        }
+
+        // still being built by another thread
+        if (filter == null || filter.mightContain(SecuritySet.foldName(userName)))
+        {
+            nameFilterPasses.incrementAndGet();
+            return true;
+        }
+
+        nameFilterNegatives.incrementAndGet();
+        return false;
+    }
+
+    private boolean isStale(CountingBloomFilter filter)
+    {
+        return filter.size() > filter.getCapacity()
+                || nameFilterRebuildInterval > 0 && System.currentTimeMillis() - nameFilterBuilt > nameFilterRebuildInterval;
+    }
+
+    /**
+     * Build the name filter from all users of the backend. Checks keep using
+     * the previous filter while the new one is built. The new filter is
+     * sized for twice the current number of names if the configured size is
+     * exceeded.
+     *
+     * @return false if the filter is disabled or being built by another
+     *         thread
+     * @throws DataBackendException if the users could not be read
+     */
+    public boolean rebuildNameFilter() throws DataBackendException
+    {
+        if (nameFilterSize == 0 || !nameFilterBuilding.compareAndSet(false, true))
+        {
+            return false;
+        }
+
+        try
+        {
+            CountingBloomFilter current = nameFilter;
+            int capacity = nameFilterSize;
+            if (current != null && current.size() > capacity)
+            {
+                capacity = (int) Math.min(Integer.MAX_VALUE, 2L * current.size());
+            }
+
+            CountingBloomFilter filter = new CountingBloomFilter(capacity, nameFilterFalsePositiveRate);
+            synchronized (nameFilterLock)
+            {
+                pendingNameFilter = filter;
+            }
+
+            try (Stream<User> users = streamUsers())
+            {
+                users.map(User::getName).filter(Objects::nonNull).map(SecuritySet::foldName).forEach(filter::add);
+            }
+            catch (RuntimeException e)
+            {
+                if (e.getCause() instanceof DataBackendException)
+                {
+                    throw (DataBackendException) e.getCause();
+                }
+                throw e;
+            }
+
+            synchronized (nameFilterLock)
+            {
+                nameFilter = filter;
+                pendingNameFilter = null;
+            }
+            nameFilterBuilt = System.currentTimeMillis();
+            nameFilterRebuilds.incrementAndGet();
+            return true;
+        }
+        finally
+        {
+            pendingNameFilter = null;
+            nameFilterBuilding.set(false);
+        }
+    }
+
+    /**
+     * Add the name of a new user to the name filter. Called by
+     * {@link #addUser(User, String)} once the user has been persisted.
+     *
+     * @param user the new user
+     */
+    protected void userAdded(User user)
+    {
+        if (nameFilterSize == 0 || user.getName() == null)
+        {
+            return;
+        }
+
+        String name = SecuritySet.foldName(user.getName());
+        synchronized (nameFilterLock)
+        {
+            CountingBloomFilter filter = nameFilter;
+            if (filter != null)
+            {
+                filter.add(name);
+            }
+
+            filter = pendingNameFilter;
+            if (filter != null)
+            {
+                filter.add(name);
+            }
+        }
+    }
+
+    /**
+     * Drop a removed user from the delegation index and remove its name from
+     * the name filter. Backends call this once the user has been removed, and
+     * only then, as removing a name which was never added may hide other
+     * names. A filter being built keeps the name if it has already been
+     * read, which only costs a backend query until the next rebuild.
+     *
+     * @param user the removed user
+     */
+    protected void userRemoved(User user)
+    {
+        DelegationGraph graph = getDelegationGraph();
+        if (graph != null)
+        {
+            graph.removeUser(user.getId());
+        }
+
+        TurbineAuthorizationIndex index = getAuthorizationIndex();
+        if (index != null)
+        {
+            index.removeUser(user.getId());
+        }
+
+        if (nameFilterSize == 0 || user.getName() == null)
+        {
+            return;
+        }
+
+        synchronized (nameFilterLock)
+        {
+            CountingBloomFilter filter = nameFilter;
+            if (filter != null)
+            {
+                filter.remove(SecuritySet.foldName(user.getName()));
+            }
+        }
+    }
+
+    /**
+     * @return the number of existence checks answered by the name filter
+     *         without a backend call
+     */
+    public long getNameFilterNegatives()
+    {
+        return nameFilterNegatives.get();
+    }
+
+    /**
+     * @return the number of existence checks passed on to the backend by the
+     *         name filter
+     */
+    public long getNameFilterPasses()
+    {
+        return nameFilterPasses.get();
+    }
+
+    /**
+     * @return the number of times the name filter was built
+     */
+    public long getNameFilterRebuilds()
+    {
+        return nameFilterRebuilds.get();
+    }
+
+    /**
+     * @return the current name filter or null if it is disabled or not built
+     *         yet
+     */
+    public CountingBloomFilter getNameFilter()
+    {
+        return nameFilter;
+    }
+
+    /**
+     * @return the number of user names the name filter is sized for, 0 if
+     *         it is disabled
+     */
+    public int getNameFilterSize()
+    {
+        return nameFilterSize;
+    }
+
+    /**
+     * Enable or disable the name filter. The filter is rebuilt on next use.
+     *
+     * @param nameFilterSize the number of user names the name filter is
+     *        sized for, 0 to disable it
+     */
+    public void setNameFilterSize(int nameFilterSize)
+    {
+        this.nameFilterSize = nameFilterSize;
+        this.nameFilter = null;
+    }
+
+    /**
+     * Walks over the pages of {@link #getUsers(String, int)}, fetching the
+     * next page when the current one is used up.
+     *
+     * @param <T> User type
+     */
+    private class UserPageSpliterator<T extends User> extends Spliterators.AbstractSpliterator<T>
+    {
+        private Iterator<T> page;
+
+        private String lastName;
+
+        private boolean lastPage;
+
+        UserPageSpliterator(List<T> first)
+        {
+            super(Long.MAX_VALUE, Spliterator.NONNULL | Spliterator.DISTINCT);
+            next(first);
+        }
+
+        private void next(List<T> users)
+        {
+            page = users.iterator();
+            lastPage = users.size() < pageSize;
+            if (!users.isEmpty())
+            {
+                lastName = users.get(users.size() - 1).getName();
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action)
+        {
+            if (!page.hasNext() && !lastPage)
+            {
+                try
+                {
+                    next(AbstractUserManager.this.<T>getUsers(lastName, pageSize));
+                }
+                catch (DataBackendException e)
+                {
+                    throw new RuntimeException(e.getMessage(), e);
+                }
+            }
+
+            if (!page.hasNext())
+            {
+                return false;
+            }
+
+            action.accept(page.next());
+            return true;
+        }
+    }
+
     /**
      * Authenticate an User with the specified password. If authentication is
      * successful the method returns nothing. If there are any problems,
@@ -314,7 +878,9 @@ public abstract class AbstractUserManager extends AbstractEntityManager implemen
         user.setPassword(password);
         try
         {
-            return persistNewUser(user);
+            T newUser = persistNewUser(user);
+            userAdded(newUser);
+            return newUser;
         }
         catch (Exception e)
         {
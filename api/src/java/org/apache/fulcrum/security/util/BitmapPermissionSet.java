@@ -0,0 +1,583 @@
+package org.apache.fulcrum.security.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.SecurityEntity;
+
+/**
+ * A PermissionSet which stores its members as a bitmap over the ordinals of
+ * a {@link PermissionDictionary}. Membership tests are a single bit test
+ * and unions with other BitmapPermissionSets of the same dictionary are
+ * word-wise ORs, sets of other dictionaries are added one by one. The set
+ * only holds a <code>long</code> per 64 known permissions instead of two
+ * index maps.
+ *
+ * The entities returned by this set are the instances registered in the
+ * dictionary for the respective id. Permissions without an id cannot be
+ * added. The set is serialized as a list of permissions and read into a
+ * dictionary of its own.
+ *
+ * @version $Id$
+ */
+public class BitmapPermissionSet extends PermissionSet
+{
+    /** Serial version */
+    private static final long serialVersionUID = -3312542851207380185L;
+
+    /** Empty bitmap */
+    private static final long[] EMPTY = new long[0];
+
+    /** The dictionary providing the ordinals */
+    private transient PermissionDictionary dictionary;
+
+    /** Membership bitmap indexed by ordinal */
+    private transient long[] words = EMPTY;
+
+    /** Number of set bits */
+    private transient int size = 0;
+
+    /**
+     * Constructs an empty BitmapPermissionSet with a dictionary of its own
+     */
+    public BitmapPermissionSet()
+    {
+        this(new PermissionDictionary());
+    }
+
+    /**
+     * Constructs an empty BitmapPermissionSet
+     *
+     * @param dictionary the dictionary providing the ordinals
+     */
+    public BitmapPermissionSet(PermissionDictionary dictionary)
+    {
+        super(Collections.<String, Permission>emptyMap(), Collections.<Object, Permission>emptyMap());
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Constructs a new BitmapPermissionSet with specified contents. A copy
+     * of another BitmapPermissionSet shares its dictionary.
+     *
+     * @param permissions
+     *            A collection of permissions to be contained in the set.
+     */
+    public BitmapPermissionSet(Collection<? extends Permission> permissions)
+    {
+        this((permissions instanceof BitmapPermissionSet) ? ((BitmapPermissionSet) permissions).dictionary
+                : new PermissionDictionary(), permissions);
+    }
+
+    /**
+     * Constructs a new BitmapPermissionSet with specified contents.
+     *
+     * @param dictionary the dictionary providing the ordinals
+     * @param permissions
+     *            A collection of permissions to be contained in the set.
+     */
+    public BitmapPermissionSet(PermissionDictionary dictionary, Collection<? extends Permission> permissions)
+    {
+        this(dictionary);
+        addAll(permissions);
+    }
+
+    /**
+     * @return the dictionary providing the ordinals of this set
+     */
+    public PermissionDictionary getDictionary()
+    {
+        return dictionary;
+    }
+
+    /**
+     * Get the bitmap of another set if it uses the same dictionary
+     *
+     * @param collection the other collection
+     * @return the bitmap words or null if they cannot be combined
+     */
+    private long[] sameDictionaryWords(Collection<?> collection)
+    {
+        if (collection instanceof BitmapPermissionSet && ((BitmapPermissionSet) collection).dictionary == dictionary)
+        {
+            return ((BitmapPermissionSet) collection).words;
+        }
+        return null;
+    }
+
+    /**
+     * Test the bit for an ordinal
+     *
+     * @param ordinal the ordinal, may be negative
+     * @return true if the bit is set
+     */
+    private boolean test(int ordinal)
+    {
+        int word = ordinal >>> 6;
+        return ordinal >= 0 && word < words.length && (words[word] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Set the bit for an ordinal
+     *
+     * @param ordinal the ordinal
+     * @return true if the bit was not set before
+     */
+    private boolean set(int ordinal)
+    {
+        int word = ordinal >>> 6;
+        if (word >= words.length)
+        {
+            words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+        }
+
+        long mask = 1L << ordinal;
+        if ((words[word] & mask) != 0)
+        {
+            return false;
+        }
+
+        words[word] |= mask;
+        size++;
+        return true;
+    }
+
+    /**
+     * Clear the bit for an ordinal
+     *
+     * @param ordinal the ordinal, may be negative
+     * @return true if the bit was set before
+     */
+    private boolean unset(int ordinal)
+    {
+        if (!test(ordinal))
+        {
+            return false;
+        }
+
+        words[ordinal >>> 6] &= ~(1L << ordinal);
+        size--;
+        return true;
+    }
+
+    /**
+     * Find the next set bit
+     *
+     * @param from the ordinal to start at
+     * @return the next ordinal or -1 if there is none
+     */
+    private int nextOrdinal(int from)
+    {
+        int word = from >>> 6;
+        if (word >= words.length)
+        {
+            return -1;
+        }
+
+        long bits = words[word] & (-1L << from);
+        while (bits == 0)
+        {
+            if (++word == words.length)
+            {
+                return -1;
+            }
+            bits = words[word];
+        }
+
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Recount the set bits after a bulk operation
+     */
+    private void recount()
+    {
+        int count = 0;
+        for (long word : words)
+        {
+            count += Long.bitCount(word);
+        }
+        size = count;
+    }
+
+    /**
+     * Check whether the set contains the permission with the given ordinal
+     *
+     * @param ordinal the ordinal in the dictionary of this set
+     * @return true if the permission is contained
+     */
+    public boolean containsOrdinal(int ordinal)
+    {
+        return test(ordinal);
+    }
+
+    /**
+     * Returns a copy of the membership bitmap. Bit <code>n</code> of word
+     * <code>n / 64</code> is set if the permission with ordinal
+     * <code>n</code> is contained.
+     *
+     * @return the bitmap words
+     */
+    public long[] toLongArray()
+    {
+        int length = words.length;
+        while (length > 0 && words[length - 1] == 0)
+        {
+            length--;
+        }
+        return Arrays.copyOf(words, length);
+    }
+
+    @Override
+    public boolean add(Permission o)
+    {
+        int ordinal = dictionary.register(o);
+        return ordinal >= 0 && set(ordinal);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Permission> collection)
+    {
+        long[] other = sameDictionaryWords(collection);
+        if (other != null)
+        {
+            if (other.length > words.length)
+            {
+                words = Arrays.copyOf(words, other.length);
+            }
+
+            int before = size;
+            for (int i = 0; i < other.length; i++)
+            {
+                words[i] |= other[i];
+            }
+            recount();
+            return size != before;
+        }
+
+        return super.addAll(collection);
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        return (o instanceof SecurityEntity) && containsId(((SecurityEntity) o).getId());
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> collection)
+    {
+        long[] other = sameDictionaryWords(collection);
+        if (other != null)
+        {
+            for (int i = 0; i < other.length; i++)
+            {
+                long mine = (i < words.length) ? words[i] : 0L;
+                if ((other[i] & ~mine) != 0)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        return super.containsAll(collection);
+    }
+
+    @Override
+    public boolean containsId(Object id)
+    {
+        return test(dictionary.ordinalOf(id));
+    }
+
+    @Override
+    public boolean containsId(int id)
+    {
+        return test(dictionary.ordinalOf(Integer.valueOf(id)));
+    }
+
+    @Override
+    public Permission getById(Object id)
+    {
+        int ordinal = dictionary.ordinalOf(id);
+        return test(ordinal) ? dictionary.get(ordinal) : null;
+    }
+
+    @Override
+    public Permission getById(int id)
+    {
+        return getById(Integer.valueOf(id));
+    }
+
+    @Override
+    public boolean containsName(String name)
+    {
+        return StringUtils.isNotEmpty(name) && getByName(name) != null;
+    }
+
+    @Override
+    public Permission getByName(String name)
+    {
+        if (name == null)
+        {
+            return null;
+        }
+
+        int ordinal = dictionary.ordinalOfName(name);
+        if (test(ordinal))
+        {
+            return dictionary.get(ordinal);
+        }
+
+        if (dictionary.hasAmbiguousNames())
+        {
+            // another permission of this set may share the name
+            for (Permission p : this)
+            {
+                if (name.equalsIgnoreCase(p.getName()))
+                {
+                    return p;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        return (o instanceof SecurityEntity) && unset(dictionary.ordinalOf(((SecurityEntity) o).getId()));
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> collection)
+    {
+        long[] other = sameDictionaryWords(collection);
+        if (other != null)
+        {
+            int before = size;
+            for (int i = 0; i < Math.min(words.length, other.length); i++)
+            {
+                words[i] &= ~other[i];
+            }
+            recount();
+            return size != before;
+        }
+
+        return super.removeAll(collection);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> collection)
+    {
+        int before = size;
+        long[] other = sameDictionaryWords(collection);
+        if (other != null)
+        {
+            for (int i = 0; i < words.length; i++)
+            {
+                words[i] &= (i < other.length) ? other[i] : 0L;
+            }
+            recount();
+        }
+        else
+        {
+            for (Iterator<Permission> it = iterator(); it.hasNext();)
+            {
+                if (!collection.contains(it.next()))
+                {
+                    it.remove();
+                }
+            }
+        }
+
+        return size != before;
+    }
+
+    @Override
+    public void clear()
+    {
+        words = EMPTY;
+        size = 0;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    @Override
+    public Iterator<Permission> iterator()
+    {
+        return new Iterator<Permission>()
+        {
+            private int next = nextOrdinal(0);
+
+            private int last = -1;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next >= 0;
+            }
+
+            @Override
+            public Permission next()
+            {
+                if (next < 0)
+                {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = nextOrdinal(next + 1);
+                return dictionary.get(last);
+            }
+
+            @Override
+            public void remove()
+            {
+                if (last < 0)
+                {
+                    throw new IllegalStateException();
+                }
+                unset(last);
+                last = -1;
+            }
+        };
+    }
+
+    @Override
+    public Set<Permission> getSet()
+    {
+        return new HashSet<Permission>(this);
+    }
+
+    @Override
+    public Set<String> getNames()
+    {
+        Set<String> names = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        for (Permission p : this)
+        {
+            if (p.getName() != null)
+            {
+                names.add(p.getName());
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public Set<Object> getIds()
+    {
+        Set<Object> ids = new LinkedHashSet<Object>();
+        for (Permission p : this)
+        {
+            ids.add(p.getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public List<Permission> getSortedByName()
+    {
+        TreeMap<String, Permission> sorted = new TreeMap<String, Permission>();
+        for (Permission p : this)
+        {
+            if (p.getName() != null)
+            {
+                sorted.put(foldName(p.getName()), p);
+            }
+        }
+        return new ArrayList<Permission>(sorted.values());
+    }
+
+    @Override
+    public List<Permission> getSortedById()
+    {
+        TreeMap<Object, Permission> sorted = new TreeMap<Object, Permission>();
+        for (Permission p : this)
+        {
+            sorted.put(p.getId(), p);
+        }
+        return new ArrayList<Permission>(sorted.values());
+    }
+
+    /**
+     * Write the members as a list of permissions
+     *
+     * @param out the stream
+     * @throws IOException if writing fails
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (Permission p : this)
+        {
+            out.writeObject(p);
+        }
+    }
+
+    /**
+     * Read the members and register them with a new dictionary
+     *
+     * @param in the stream
+     * @throws IOException if reading fails
+     * @throws ClassNotFoundException if a permission class is unknown
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        dictionary = new PermissionDictionary();
+        words = EMPTY;
+        size = 0;
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++)
+        {
+            add((Permission) in.readObject());
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package org.apache.fulcrum.security.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counting Bloom filter of names. Every name increments k of m counters,
+ * chosen by double hashing of a 64 bit hash of the name. A name with one of
+ * its counters at zero has definitely not been added, any other name may
+ * have been added.
+ *
+ * Removing a name decrements its counters again. Counters are 4 bits wide
+ * and stick at their maximum once reached, so that removals never produce
+ * false negatives. Removing a name which was never added can produce false
+ * negatives for other names; callers must only remove names they added.
+ *
+ * Sixteen counters are packed into a long and updated lock free, so the
+ * filter takes half a byte per counter, about 1.2 MB for a million names at
+ * a false positive rate of 1%.
+ *
+ * @version $Id$
+ */
+public final class CountingBloomFilter
+{
+    /** Counters per word of the counter array */
+    private static final int COUNTERS_PER_WORD = 16;
+
+    /** Mask and maximum value of a counter */
+    private static final long COUNTER_MASK = 0xFL;
+
+    private final AtomicLongArray words;
+
+    /** Number of counters, m */
+    private final int counters;
+
+    /** Number of counters per name, k */
+    private final int hashes;
+
+    /** Number of names the filter was sized for */
+    private final int capacity;
+
+    /** Number of names added and not removed */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Create a filter with the optimal number of counters and hash functions
+     * for the expected number of names and false positive rate
+     *
+     * @param expectedNames the number of names the filter is sized for
+     * @param falsePositiveRate the false positive rate at that number of
+     *        names, between 0 and 1
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public CountingBloomFilter(int expectedNames, double falsePositiveRate)
+    {
+        if (expectedNames < 1)
+        {
+            throw new IllegalArgumentException("Expected number of names must be positive: " + expectedNames);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+        {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+
+        double ln2 = Math.log(2);
+        double optimal = Math.ceil(-expectedNames * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.counters = (int) Math.min(optimal, Integer.MAX_VALUE - COUNTERS_PER_WORD);
+        this.hashes = Math.max(1, (int) Math.round((double) counters / expectedNames * ln2));
+        this.capacity = expectedNames;
+        this.words = new AtomicLongArray((counters + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+    }
+
+    /**
+     * Add a name
+     *
+     * @param name the name
+     */
+    public void add(String name)
+    {
+        long hash = hash(name);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++)
+        {
+            increment(Math.floorMod(h1 + i * h2, counters));
+        }
+        size.incrementAndGet();
+    }
+
+    /**
+     * Remove a name which was added before. Names which are definitely not
+     * contained are ignored.
+     *
+     * @param name the name
+     * @return false if the name was definitely not contained
+     */
+    public boolean remove(String name)
+    {
+        if (!mightContain(name))
+        {
+            return false;
+        }
+
+        long hash = hash(name);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++)
+        {
+            decrement(Math.floorMod(h1 + i * h2, counters));
+        }
+        size.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * @param name the name
+     * @return false if the name has definitely not been added, true if it
+     *         may have been added
+     */
+    public boolean mightContain(String name)
+    {
+        long hash = hash(name);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++)
+        {
+            if (counter(Math.floorMod(h1 + i * h2, counters)) == 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of names added and not removed
+     */
+    public int size()
+    {
+        return size.get();
+    }
+
+    /**
+     * @return the number of names the filter was sized for
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @return the number of counters
+     */
+    public int getCounterCount()
+    {
+        return counters;
+    }
+
+    /**
+     * @return the number of counters per name
+     */
+    public int getHashCount()
+    {
+        return hashes;
+    }
+
+    /**
+     * @return the false positive rate expected at the current number of
+     *         names
+     */
+    public double getExpectedFalsePositiveRate()
+    {
+        return Math.pow(1 - Math.exp(-(double) hashes * Math.max(0, size()) / counters), hashes);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CountingBloomFilter[size=" + size() + ", capacity=" + capacity
+                + ", counters=" + counters + ", hashes=" + hashes + "]";
+    }
+
+    private long counter(int index)
+    {
+        return (words.get(index / COUNTERS_PER_WORD) >>> shift(index)) & COUNTER_MASK;
+    }
+
+    private void increment(int index)
+    {
+        int word = index / COUNTERS_PER_WORD;
+        int shift = shift(index);
+        long current;
+        do
+        {
+            current = words.get(word);
+            if (((current >>> shift) & COUNTER_MASK) == COUNTER_MASK)
+            {
+                return;
+            }
+        }
+        while (!words.compareAndSet(word, current, current + (1L << shift)));
+    }
+
+    private void decrement(int index)
+    {
+        int word = index / COUNTERS_PER_WORD;
+        int shift = shift(index);
+        long current;
+        do
+        {
+            current = words.get(word);
+            long counter = (current >>> shift) & COUNTER_MASK;
+            if (counter == 0 || counter == COUNTER_MASK)
+            {
+                return;
+            }
+        }
+        while (!words.compareAndSet(word, current, current - (1L << shift)));
+    }
+
+    private static int shift(int index)
+    {
+        return (index % COUNTERS_PER_WORD) * 4;
+    }
+
+    /**
+     * 64 bit FNV-1a over the characters, followed by the finalizer of
+     * MurmurHash3 to spread the bits over both halves
+     */
+    private static long hash(String name)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++)
+        {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
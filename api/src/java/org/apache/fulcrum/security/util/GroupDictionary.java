@@ -0,0 +1,204 @@
+package org.apache.fulcrum.security.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.fulcrum.security.entity.Group;
+
+/**
+ * A dictionary which assigns every {@link Group} a dense ordinal, starting
+ * at 0, like the {@link PermissionDictionary} does for permissions. Groups
+ * are identified by their id.
+ *
+ * Every group manager owns a dictionary, see
+ * {@link org.apache.fulcrum.security.GroupManager#getGroupDictionary()}, so
+ * ordinals of unrelated managers in the same JVM never mix and the
+ * dictionary lives as long as its manager.
+ *
+ * The dictionary keeps the instance first registered for an id, only the
+ * owner replaces it through {@link #update(Group)}, e.g. after a rename.
+ * Ordinals are never reused: the ordinal of a removed group is retired for
+ * good, so that a {@link GroupHandle} to it never matches again, and a group
+ * re-created with the same id gets a new ordinal.
+ *
+ * Lookups are lock free, registration is synchronized.
+ *
+ * @version $Id$
+ */
+public final class GroupDictionary
+{
+    /** Map for "id" is "current ordinal" */
+    private final ConcurrentHashMap<Object, Integer> ordinalById = new ConcurrentHashMap<Object, Integer>();
+
+    /** Groups by ordinal */
+    private volatile Group[] groups = new Group[64];
+
+    /** Number of assigned ordinals */
+    private volatile int size = 0;
+
+    /** Bitmap of the retired ordinals, replaced on every change */
+    private volatile long[] retired = new long[0];
+
+    /**
+     * Create an empty dictionary
+     */
+    public GroupDictionary()
+    {
+        // nothing registered yet
+    }
+
+    /**
+     * Register a group and return its ordinal. A group with an id which is
+     * already known gets the existing ordinal, the registered instance is
+     * not replaced. A group whose ordinal was retired gets a new ordinal.
+     *
+     * @param group the group
+     * @return the ordinal of the group or -1 if the group has no id
+     */
+    public int register(Group group)
+    {
+        Object id = group.getId();
+        if (id == null)
+        {
+            return -1;
+        }
+
+        Integer ordinal = ordinalById.get(id);
+        if (ordinal != null && !isRetired(ordinal.intValue()))
+        {
+            return ordinal.intValue();
+        }
+
+        synchronized (this)
+        {
+            ordinal = ordinalById.get(id);
+            if (ordinal != null && !isRetired(ordinal.intValue()))
+            {
+                return ordinal.intValue();
+            }
+
+            int index = size;
+            if (index == groups.length)
+            {
+                groups = Arrays.copyOf(groups, index * 2);
+            }
+
+            // publish the instance before the ordinal becomes visible
+            groups[index] = group;
+            size = index + 1;
+            ordinalById.put(id, Integer.valueOf(index));
+
+            return index;
+        }
+    }
+
+    /**
+     * Replace the registered instance of a group, e.g. after it has been
+     * renamed. Unknown and removed groups are ignored.
+     *
+     * @param group the group
+     * @return true if the group was registered and not retired
+     */
+    public synchronized boolean update(Group group)
+    {
+        Integer ordinal = (group.getId() == null) ? null : ordinalById.get(group.getId());
+        if (ordinal == null || isRetired(ordinal.intValue()))
+        {
+            return false;
+        }
+
+        groups[ordinal.intValue()] = group;
+        return true;
+    }
+
+    /**
+     * Retire the ordinal of a removed group. A retired ordinal is never
+     * assigned again.
+     *
+     * @param id the group id
+     * @return true if the id was registered and not retired yet
+     */
+    public synchronized boolean retire(Object id)
+    {
+        int ordinal = ordinalOf(id);
+        if (ordinal < 0 || isRetired(ordinal))
+        {
+            return false;
+        }
+
+        long[] bits = Arrays.copyOf(retired, Math.max(retired.length, (ordinal >>> 6) + 1));
+        bits[ordinal >>> 6] |= 1L << ordinal;
+        retired = bits;
+        return true;
+    }
+
+    /**
+     * Check whether the group of an ordinal has been removed
+     *
+     * @param ordinal the ordinal
+     * @return true if the ordinal is retired
+     */
+    public boolean isRetired(int ordinal)
+    {
+        long[] bits = retired;
+        int word = ordinal >>> 6;
+        return ordinal >= 0 && word < bits.length && (bits[word] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Get the current ordinal of a group id
+     *
+     * @param id the group id
+     * @return the ordinal or -1 if the id is not registered
+     */
+    public int ordinalOf(Object id)
+    {
+        Integer ordinal = (id == null) ? null : ordinalById.get(id);
+        return (ordinal == null) ? -1 : ordinal.intValue();
+    }
+
+    /**
+     * Get the group registered for an ordinal
+     *
+     * @param ordinal the ordinal
+     * @return the group
+     * @throws IndexOutOfBoundsException if the ordinal was never assigned
+     */
+    public Group get(int ordinal)
+    {
+        if (ordinal < 0 || ordinal >= size)
+        {
+            throw new IndexOutOfBoundsException("Unknown group ordinal " + ordinal);
+        }
+        return groups[ordinal];
+    }
+
+    /**
+     * Get the number of assigned ordinals, including retired ones
+     *
+     * @return the number of assigned ordinals
+     */
+    public int size()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,99 @@
+package org.apache.fulcrum.security.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.fulcrum.security.entity.Group;
+
+/**
+ * A group resolved once into its ordinal of the {@link GroupDictionary} of
+ * a group manager, for checks on hot paths. Handles do not depend on a particular ACL and
+ * stay valid when ACLs are rebuilt. Once the group is removed the handle is
+ * no longer valid and never matches.
+ *
+ * Ordinals are local to the JVM, so handles are not serializable.
+ *
+ * @see org.apache.fulcrum.security.GroupManager#getGroupHandle(String)
+ * @version $Id$
+ */
+public final class GroupHandle
+{
+    /** The dictionary providing the ordinal */
+    private final GroupDictionary dictionary;
+
+    private final Group group;
+
+    private final int ordinal;
+
+    /**
+     * Resolve a group
+     *
+     * @param dictionary the dictionary providing the ordinal
+     * @param group the group
+     * @throws IllegalArgumentException if the group has no id
+     */
+    public GroupHandle(GroupDictionary dictionary, Group group)
+    {
+        this.dictionary = dictionary;
+        this.group = group;
+        this.ordinal = dictionary.register(group);
+        if (ordinal < 0)
+        {
+            throw new IllegalArgumentException("Group " + group.getName() + " has no id");
+        }
+    }
+
+    /**
+     * @return the dictionary providing the ordinal
+     */
+    public GroupDictionary getDictionary()
+    {
+        return dictionary;
+    }
+
+    /**
+     * @return the ordinal of the group in the dictionary
+     */
+    public int getOrdinal()
+    {
+        return ordinal;
+    }
+
+    /**
+     * @return the group as resolved
+     */
+    public Group getGroup()
+    {
+        return group;
+    }
+
+    /**
+     * @return false if the group has been removed
+     */
+    public boolean isValid()
+    {
+        return !dictionary.isRetired(ordinal);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "GroupHandle[" + group.getName() + " -> " + ordinal + "]";
+    }
+}
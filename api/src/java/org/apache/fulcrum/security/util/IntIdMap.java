@@ -0,0 +1,465 @@
+package org.apache.fulcrum.security.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map from primitive int keys to values, used as id index of
+ * {@link SecuritySet} as long as all ids are {@link Integer}s.
+ *
+ * Entries are stored in insertion order in two dense arrays. An open
+ * addressing table with linear probing maps the key to the position in the
+ * dense arrays. Lookups therefore neither box the key nor walk a tree, and
+ * iteration follows insertion order like a {@link java.util.LinkedHashMap}.
+ *
+ * Only {@link Integer} keys and non-null values are supported.
+ *
+ * @param <V> the type of the values
+ * @version $Id$
+ */
+final class IntIdMap<V> extends AbstractMap<Object, V> implements Serializable
+{
+    /** Serial version */
+    private static final long serialVersionUID = -2906573407227843217L;
+
+    /** Initial capacity of the dense arrays */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /** Keys in insertion order */
+    private int[] keys;
+
+    /** Values in insertion order, null marks a removed entry */
+    private Object[] values;
+
+    /** Number of used positions in the dense arrays, including removed ones */
+    private int used;
+
+    /** Number of live entries */
+    private int size;
+
+    /** Open addressing table holding dense positions + 1, 0 marks a free slot */
+    private int[] table;
+
+    /** Structural modification counter for fail-fast iterators */
+    private transient int modCount;
+
+    /**
+     * Constructs an empty map
+     */
+    IntIdMap()
+    {
+        keys = new int[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        table = new int[INITIAL_CAPACITY * 2];
+    }
+
+    /**
+     * Spread the bits of the key so that sequential ids do not cluster
+     *
+     * @param key the key
+     * @return the start slot in the table
+     */
+    private int slot(int key)
+    {
+        return (key * 0x9E3779B9) >>> (Integer.numberOfLeadingZeros(table.length) + 1);
+    }
+
+    /**
+     * Find the position of a key in the dense arrays
+     *
+     * @param key the key
+     * @return the position or -1 if the key is not contained
+     */
+    private int indexOf(int key)
+    {
+        int mask = table.length - 1;
+        for (int slot = slot(key); ; slot = (slot + 1) & mask)
+        {
+            int entry = table[slot];
+            if (entry == 0)
+            {
+                return -1;
+            }
+            if (keys[entry - 1] == key)
+            {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Check whether the map contains a key
+     *
+     * @param key the key
+     * @return true if the key is contained
+     */
+    public boolean containsKey(int key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Get the value for a key
+     *
+     * @param key the key
+     * @return the value or null if the key is not contained
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key)
+    {
+        int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    /**
+     * Associate a value with a key
+     *
+     * @param key the key
+     * @param value the value, must not be null
+     * @return the previous value or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException("Null values are not supported");
+        }
+
+        int index = indexOf(key);
+        if (index >= 0)
+        {
+            V old = (V) values[index];
+            values[index] = value;
+            return old;
+        }
+
+        if (used == keys.length)
+        {
+            if (size < used / 2)
+            {
+                compact();
+            }
+            else
+            {
+                keys = Arrays.copyOf(keys, used * 2);
+                values = Arrays.copyOf(values, used * 2);
+            }
+        }
+
+        keys[used] = key;
+        values[used] = value;
+        used++;
+        size++;
+        modCount++;
+
+        if (size * 2 > table.length)
+        {
+            rehash(table.length * 2);
+        }
+        else
+        {
+            insert(used - 1);
+        }
+
+        return null;
+    }
+
+    /**
+     * Remove a key
+     *
+     * @param key the key
+     * @return the removed value or null if the key was not contained
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key)
+    {
+        int mask = table.length - 1;
+        int slot = slot(key);
+        for (; table[slot] != 0; slot = (slot + 1) & mask)
+        {
+            if (keys[table[slot] - 1] == key)
+            {
+                break;
+            }
+        }
+
+        if (table[slot] == 0)
+        {
+            return null;
+        }
+
+        int index = table[slot] - 1;
+        V old = (V) values[index];
+        values[index] = null;
+        size--;
+        modCount++;
+
+        // trim trailing removed entries
+        while (used > 0 && values[used - 1] == null)
+        {
+            used--;
+        }
+
+        // backward shift deletion keeps probe sequences intact
+        int free = slot;
+        for (int next = (free + 1) & mask; table[next] != 0; next = (next + 1) & mask)
+        {
+            int home = slot(keys[table[next] - 1]);
+            if (((next - home) & mask) >= ((next - free) & mask))
+            {
+                table[free] = table[next];
+                free = next;
+            }
+        }
+        table[free] = 0;
+
+        return old;
+    }
+
+    /**
+     * Insert the dense position into the table
+     *
+     * @param index position in the dense arrays
+     */
+    private void insert(int index)
+    {
+        int mask = table.length - 1;
+        int slot = slot(keys[index]);
+        while (table[slot] != 0)
+        {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    /**
+     * Rebuild the table with the given capacity
+     *
+     * @param capacity a power of two
+     */
+    private void rehash(int capacity)
+    {
+        table = new int[capacity];
+        for (int i = 0; i < used; i++)
+        {
+            if (values[i] != null)
+            {
+                insert(i);
+            }
+        }
+    }
+
+    /**
+     * Move all live entries to the front of the dense arrays
+     */
+    private void compact()
+    {
+        int j = 0;
+        for (int i = 0; i < used; i++)
+        {
+            if (values[i] != null)
+            {
+                keys[j] = keys[i];
+                values[j] = values[i];
+                j++;
+            }
+        }
+        Arrays.fill(values, j, used, null);
+        used = j;
+        rehash(table.length);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return key instanceof Integer && containsKey(((Integer) key).intValue());
+    }
+
+    @Override
+    public V get(Object key)
+    {
+        return key instanceof Integer ? get(((Integer) key).intValue()) : null;
+    }
+
+    @Override
+    public V put(Object key, V value)
+    {
+        if (!(key instanceof Integer))
+        {
+            throw new IllegalArgumentException("Only Integer keys are supported: " + key);
+        }
+        return put(((Integer) key).intValue(), value);
+    }
+
+    @Override
+    public V remove(Object key)
+    {
+        return key instanceof Integer ? remove(((Integer) key).intValue()) : null;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    @Override
+    public void clear()
+    {
+        Arrays.fill(values, 0, used, null);
+        Arrays.fill(table, 0);
+        used = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Collection<V> values()
+    {
+        return new AbstractCollection<V>()
+        {
+            @Override
+            public Iterator<V> iterator()
+            {
+                return new DenseIterator<V>()
+                {
+                    @SuppressWarnings("unchecked")
+                    @Override
+                    V get(int index)
+                    {
+                        return (V) values[index];
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Object, V>> entrySet()
+    {
+        return new AbstractSet<Entry<Object, V>>()
+        {
+            @Override
+            public Iterator<Entry<Object, V>> iterator()
+            {
+                return new DenseIterator<Entry<Object, V>>()
+                {
+                    @SuppressWarnings("unchecked")
+                    @Override
+                    Entry<Object, V> get(int index)
+                    {
+                        return new SimpleImmutableEntry<Object, V>(Integer.valueOf(keys[index]), (V) values[index]);
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Iterates the live entries of the dense arrays in insertion order
+     */
+    private abstract class DenseIterator<E> implements Iterator<E>
+    {
+        private int next = advance(0);
+
+        private int last = -1;
+
+        private int expectedModCount = modCount;
+
+        abstract E get(int index);
+
+        private int advance(int from)
+        {
+            int i = from;
+            while (i < used && values[i] == null)
+            {
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return next < used;
+        }
+
+        @Override
+        public E next()
+        {
+            if (modCount != expectedModCount)
+            {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= used)
+            {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = advance(next + 1);
+            return get(last);
+        }
+
+        @Override
+        public void remove()
+        {
+            if (last < 0)
+            {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount)
+            {
+                throw new ConcurrentModificationException();
+            }
+            IntIdMap.this.remove(keys[last]);
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+}
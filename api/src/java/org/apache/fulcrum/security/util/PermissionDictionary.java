@@ -0,0 +1,261 @@
+package org.apache.fulcrum.security.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.fulcrum.security.entity.Permission;
+
+/**
+ * A dictionary which assigns every {@link Permission} a dense ordinal,
+ * starting at 0. Permissions are identified by their id, like in
+ * {@link SecuritySet}. Ordinals are never reused, so they can be stored in
+ * bitmaps like {@link BitmapPermissionSet}.
+ *
+ * Every permission manager owns a dictionary, see
+ * {@link org.apache.fulcrum.security.PermissionManager#getPermissionDictionary()},
+ * so ordinals of unrelated managers in the same JVM never mix and the
+ * dictionary lives as long as its manager. Sets created without a
+ * dictionary use one of their own.
+ *
+ * The dictionary keeps the instance first registered for an id. Registering
+ * another instance with the same id returns the existing ordinal and
+ * leaves the stored instance alone, only the owner of the dictionary
+ * replaces it through {@link #update(Permission)}, e.g. after a rename.
+ * Lookups are lock free, registration is synchronized.
+ *
+ * The ordinal of a removed permission is retired for good, so that a
+ * {@link PermissionHandle} to it never matches again. A permission
+ * re-created with the same id gets a new ordinal.
+ *
+ * @version $Id$
+ */
+public final class PermissionDictionary
+{
+    /** Map for "id" is "current ordinal" */
+    private final ConcurrentHashMap<Object, Integer> ordinalById = new ConcurrentHashMap<Object, Integer>();
+
+    /** Map for "case-folded name" is "ordinal" */
+    private final ConcurrentHashMap<String, Integer> ordinalByName = new ConcurrentHashMap<String, Integer>();
+
+    /** Permissions by ordinal */
+    private volatile Permission[] permissions = new Permission[64];
+
+    /** Case-folded names by ordinal, as indexed at registration */
+    private volatile String[] names = new String[64];
+
+    /** Number of assigned ordinals */
+    private volatile int size = 0;
+
+    /** Bitmap of the retired ordinals, replaced on every change */
+    private volatile long[] retired = new long[0];
+
+    /** Set when two registered permissions share a name */
+    private volatile boolean ambiguousNames = false;
+
+    /**
+     * Create an empty dictionary
+     */
+    public PermissionDictionary()
+    {
+        // nothing registered yet
+    }
+
+    /**
+     * Register a permission and return its ordinal. A permission with an id
+     * which is already known gets the existing ordinal, the registered
+     * instance is not replaced. A permission whose ordinal was retired gets
+     * a new ordinal.
+     *
+     * @param permission the permission
+     * @return the ordinal of the permission or -1 if the permission has no id
+     */
+    public int register(Permission permission)
+    {
+        Object id = permission.getId();
+        if (id == null)
+        {
+            return -1;
+        }
+
+        Integer ordinal = ordinalById.get(id);
+        if (ordinal != null && !isRetired(ordinal.intValue()))
+        {
+            return ordinal.intValue();
+        }
+
+        synchronized (this)
+        {
+            ordinal = ordinalById.get(id);
+            if (ordinal != null && !isRetired(ordinal.intValue()))
+            {
+                return ordinal.intValue();
+            }
+
+            int index = size;
+            if (index == permissions.length)
+            {
+                permissions = Arrays.copyOf(permissions, index * 2);
+                names = Arrays.copyOf(names, index * 2);
+            }
+
+            // publish the instance before the ordinal becomes visible
+            String name = (permission.getName() == null) ? null : SecuritySet.foldName(permission.getName());
+            permissions[index] = permission;
+            names[index] = name;
+            size = index + 1;
+            ordinal = Integer.valueOf(index);
+            ordinalById.put(id, ordinal);
+            indexName(name, ordinal);
+
+            return index;
+        }
+    }
+
+    /**
+     * Replace the registered instance of a permission, e.g. after it has
+     * been renamed. Unknown and removed permissions are ignored.
+     *
+     * @param permission the permission
+     * @return true if the permission was registered and not retired
+     */
+    public synchronized boolean update(Permission permission)
+    {
+        Integer ordinal = (permission.getId() == null) ? null : ordinalById.get(permission.getId());
+        if (ordinal == null || isRetired(ordinal.intValue()))
+        {
+            return false;
+        }
+
+        int index = ordinal.intValue();
+        String name = (permission.getName() == null) ? null : SecuritySet.foldName(permission.getName());
+        if (names[index] != null)
+        {
+            ordinalByName.remove(names[index], ordinal);
+        }
+        permissions[index] = permission;
+        names[index] = name;
+        indexName(name, ordinal);
+        return true;
+    }
+
+    private void indexName(String name, Integer ordinal)
+    {
+        if (name != null)
+        {
+            Integer previous = ordinalByName.put(name, ordinal);
+            if (previous != null && !previous.equals(ordinal) && !isRetired(previous.intValue()))
+            {
+                ambiguousNames = true;
+            }
+        }
+    }
+
+    /**
+     * Retire the ordinal of a removed permission. A retired ordinal is
+     * never assigned again.
+     *
+     * @param id the permission id
+     * @return true if the id was registered and not retired yet
+     */
+    public synchronized boolean retire(Object id)
+    {
+        int ordinal = ordinalOf(id);
+        if (ordinal < 0 || isRetired(ordinal))
+        {
+            return false;
+        }
+
+        long[] bits = Arrays.copyOf(retired, Math.max(retired.length, (ordinal >>> 6) + 1));
+        bits[ordinal >>> 6] |= 1L << ordinal;
+        retired = bits;
+        return true;
+    }
+
+    /**
+     * @param ordinal the ordinal
+     * @return true if the permission of the ordinal has been removed
+     */
+    public boolean isRetired(int ordinal)
+    {
+        long[] bits = retired;
+        int word = ordinal >>> 6;
+        return ordinal >= 0 && word < bits.length && (bits[word] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Get the current ordinal of a permission id
+     *
+     * @param id the permission id
+     * @return the ordinal or -1 if the id is not registered
+     */
+    public int ordinalOf(Object id)
+    {
+        Integer ordinal = (id == null) ? null : ordinalById.get(id);
+        return (ordinal == null) ? -1 : ordinal.intValue();
+    }
+
+    /**
+     * Get the ordinal of the permission most recently registered with the
+     * given name, ignoring case
+     *
+     * @param name the permission name
+     * @return the ordinal or -1 if the name is not registered
+     */
+    public int ordinalOfName(String name)
+    {
+        Integer ordinal = (name == null) ? null : ordinalByName.get(SecuritySet.foldName(name));
+        return (ordinal == null) ? -1 : ordinal.intValue();
+    }
+
+    /**
+     * Get the permission registered for an ordinal
+     *
+     * @param ordinal the ordinal
+     * @return the permission
+     * @throws IndexOutOfBoundsException if the ordinal was never assigned
+     */
+    public Permission get(int ordinal)
+    {
+        if (ordinal < 0 || ordinal >= size)
+        {
+            throw new IndexOutOfBoundsException("Unknown permission ordinal " + ordinal);
+        }
+        return permissions[ordinal];
+    }
+
+    /**
+     * @return the number of assigned ordinals
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return true if two registered permissions share a name, so that
+     *         {@link #ordinalOfName(String)} is not conclusive
+     */
+    public boolean hasAmbiguousNames()
+    {
+        return ambiguousNames;
+    }
+}
@@ -0,0 +1,100 @@
+package org.apache.fulcrum.security.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.fulcrum.security.entity.Permission;
+
+/**
+ * A permission resolved once into its ordinal of the
+ * {@link PermissionDictionary} of a permission manager, for checks on hot
+ * paths. Handles do not depend on a particular ACL and stay valid when ACLs
+ * are rebuilt. Once the permission is removed the handle is no longer valid
+ * and never matches.
+ *
+ * Ordinals are local to the JVM, so handles are not serializable.
+ *
+ * @see org.apache.fulcrum.security.PermissionManager#getPermissionHandle(String)
+ * @version $Id$
+ */
+public final class PermissionHandle
+{
+    /** The dictionary providing the ordinal */
+    private final PermissionDictionary dictionary;
+
+    private final Permission permission;
+
+    private final int ordinal;
+
+    /**
+     * Resolve a permission
+     *
+     * @param dictionary the dictionary providing the ordinal
+     * @param permission the permission
+     * @throws IllegalArgumentException if the permission has no id
+     */
+    public PermissionHandle(PermissionDictionary dictionary, Permission permission)
+    {
+        this.dictionary = dictionary;
+        this.permission = permission;
+        this.ordinal = dictionary.register(permission);
+        if (ordinal < 0)
+        {
+            throw new IllegalArgumentException("Permission " + permission.getName() + " has no id");
+        }
+    }
+
+    /**
+     * @return the dictionary providing the ordinal
+     */
+    public PermissionDictionary getDictionary()
+    {
+        return dictionary;
+    }
+
+    /**
+     * @return the ordinal of the permission in the dictionary
+     */
+    public int getOrdinal()
+    {
+        return ordinal;
+    }
+
+    /**
+     * @return the permission as resolved
+     */
+    public Permission getPermission()
+    {
+        return permission;
+    }
+
+    /**
+     * @return false if the permission has been removed
+     */
+    public boolean isValid()
+    {
+        return !dictionary.isRetired(ordinal);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PermissionHandle[" + permission.getName() + " -> " + ordinal + "]";
+    }
+}
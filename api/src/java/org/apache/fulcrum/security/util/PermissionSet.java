@@ -19,6 +19,7 @@ package org.apache.fulcrum.security.util;
  * under the License.
  */
 import java.util.Collection;
+import java.util.Map;
 
 import org.apache.fulcrum.security.entity.Permission;
 
@@ -49,6 +50,17 @@ public class PermissionSet extends SecuritySet<Permission>
         super();
     }
 
+    /**
+     * Constructs an empty PermissionSet with the given indexes
+     *
+     * @param nameMap the name index
+     * @param idMap the id index
+     */
+    protected PermissionSet(Map<String, Permission> nameMap, Map<Object, Permission> idMap)
+    {
+        super(nameMap, idMap);
+    }
+
     /**
      * Constructs a new PermissionSet with specified contents.
      * 
@@ -20,12 +20,16 @@ package org.apache.fulcrum.security.util;
  */
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.fulcrum.security.entity.SecurityEntity;
@@ -38,6 +42,17 @@ import org.apache.fulcrum.security.entity.SecurityEntity;
  * to get away from requiring an ID and a name... Nothing should force Name to
  * be unique in the basic architecture of Fulcrum Security.
  *
+ * Names are indexed in a hash map keyed by the case-folded name, which is
+ * computed once when an entity is added. Lookups by name or id are therefore
+ * O(1) and still case insensitive. Iteration follows insertion order; callers
+ * that need a sorted order can use {@link #getSortedByName()} or
+ * {@link #getSortedById()}.
+ *
+ * As long as all ids are {@link Integer}s, which is the case for most
+ * database backed implementations, ids are indexed in a primitive int map
+ * which avoids boxing and tree walks. The first non-Integer id switches the
+ * set to a generic hash map.
+ *
  * @author <a href="mailto:epugh@upstate.com">Eric Pugh</a>
  * @author <a href="mailto:jmcnally@collab.net">John D. McNally</a>
  * @author <a href="mailto:bmclaugh@algx.net">Brett McLaughlin</a>
@@ -49,7 +64,7 @@ public abstract class SecuritySet<T extends SecurityEntity> implements Serializa
 	/** Serial version */
 	private static final long serialVersionUID = 2251987059226422569L;
 
-	/** Map for "name" is "security object" */
+	/** Map for "case-folded name" is "security object" */
 	protected Map<String, T> nameMap = null;
 
 	/** Map for "id" is "security object" */
@@ -60,8 +75,67 @@ public abstract class SecuritySet<T extends SecurityEntity> implements Serializa
 	 */
 	public SecuritySet() 
 	{
-		nameMap = new TreeMap<String, T>(String.CASE_INSENSITIVE_ORDER);
-		idMap = new TreeMap<Object, T>();
+		nameMap = new LinkedHashMap<String, T>();
+		idMap = new IntIdMap<T>();
+	}
+
+	/**
+	 * Constructs an empty Set with the given indexes. This allows subclasses
+	 * with a different storage to skip the default indexes.
+	 *
+	 * @param nameMap the name index
+	 * @param idMap the id index
+	 */
+	protected SecuritySet(Map<String, T> nameMap, Map<Object, T> idMap) 
+	{
+		this.nameMap = nameMap;
+		this.idMap = idMap;
+	}
+
+	/**
+	 * Folds a name into the key used by the name index. The folding is
+	 * equivalent to {@link String#CASE_INSENSITIVE_ORDER}, i.e. two names are
+	 * folded to the same key if and only if they are equal ignoring case.
+	 * Names which are already folded are returned as is without allocating.
+	 *
+	 * @param name the name to fold, may be null
+	 * @return the case-folded name
+	 */
+	public static String foldName(String name) 
+	{
+		if (name == null) 
+		{
+			return null;
+		}
+
+		int length = name.length();
+		for (int i = 0; i < length; i++) 
+		{
+			char c = name.charAt(i);
+			if (fold(c) != c) 
+			{
+				char[] chars = name.toCharArray();
+				for (int j = i; j < length; j++) 
+				{
+					chars[j] = fold(chars[j]);
+				}
+				return new String(chars);
+			}
+		}
+
+		return name;
+	}
+
+	/**
+	 * Folds a single character the same way {@link String#CASE_INSENSITIVE_ORDER}
+	 * compares characters.
+	 *
+	 * @param c the character
+	 * @return the folded character
+	 */
+	private static char fold(char c) 
+	{
+		return Character.toLowerCase(Character.toUpperCase(c));
 	}
 
 	/**
@@ -76,13 +150,19 @@ public abstract class SecuritySet<T extends SecurityEntity> implements Serializa
 	}
 
 	/**
-	 * Returns a set of Names in this Object.
+	 * Returns a set of Names in this Object. The returned set is a copy, sorted
+	 * and compared ignoring case.
 	 *
-	 * @return The Set of Names in this Object, backed by the actual data.
+	 * @return The Set of Names in this Object.
 	 */
 	public Set<String> getNames() 
 	{
-		return nameMap.keySet();
+		Set<String> names = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		for (T o : nameMap.values()) 
+		{
+			names.add(o.getName());
+		}
+		return names;
 	}
 
 	/**
@@ -102,7 +182,7 @@ public abstract class SecuritySet<T extends SecurityEntity> implements Serializa
 	public void clear() 
 	{
 		nameMap.clear();
-		idMap.clear();
+		idMap = new IntIdMap<T>();
 	}
 
 	/**
@@ -113,7 +193,7 @@ public abstract class SecuritySet<T extends SecurityEntity> implements Serializa
 	 */
 	public boolean containsName(String name) 
 	{
-		return StringUtils.isNotEmpty(name) ? nameMap.containsKey(name) : false;
+		return StringUtils.isNotEmpty(name) ? nameMap.containsKey(foldName(name)) : false;
 	}
 
 	/**
@@ -127,6 +207,22 @@ public abstract class SecuritySet<T extends SecurityEntity> implements Serializa
 		return (id == null) ? false : idMap.containsKey(id);
 	}
 
+	/**
+	 * Searches if an Object with a given int Id is in the Set
+	 *
+	 * @param id Id of the Security Object.
+	 * @return True if argument matched an Object in this Set; false if no match.
+	 */
+	public boolean containsId(int id) 
+	{
+		if (idMap instanceof IntIdMap) 
+		{
+			return ((IntIdMap<T>) idMap).containsKey(id);
+		}
+
+		return idMap.containsKey(Integer.valueOf(id));
+	}
+
 	/**
 	 * Returns an Iterator for Objects in this Set.
 	 *
@@ -186,14 +282,19 @@ public abstract class SecuritySet<T extends SecurityEntity> implements Serializa
 			return false;
 		}
 
-		if (o.getId() != null) 
+		Object id = o.getId();
+		if (id != null) 
 		{
-			idMap.put(o.getId(), o);
+			if (!(id instanceof Integer) && idMap instanceof IntIdMap) 
+			{
+				idMap = new LinkedHashMap<Object, T>(idMap);
+			}
+			idMap.put(id, o);
 		}
 		
 		if (o.getName() != null) 
 		{
-			nameMap.put(o.getName(), o);
+			nameMap.put(foldName(o.getName()), o);
 		}
 
 		return true;
@@ -306,7 +407,11 @@ public abstract class SecuritySet<T extends SecurityEntity> implements Serializa
 		{
 			boolean res = contains(o);
 			idMap.remove(((SecurityEntity) o).getId());
-			nameMap.remove(((SecurityEntity) o).getName());
+			String name = ((SecurityEntity) o).getName();
+			if (name != null) 
+			{
+				nameMap.remove(foldName(name));
+			}
 			return res;
 		}
 
@@ -331,7 +436,7 @@ public abstract class SecuritySet<T extends SecurityEntity> implements Serializa
 	 */
 	public T getByName(String name) 
 	{
-		return nameMap.get(name);
+		return (name == null) ? null : nameMap.get(foldName(name));
 	}
 
 	/**
@@ -344,4 +449,45 @@ public abstract class SecuritySet<T extends SecurityEntity> implements Serializa
 	{
 		return idMap.get(id);
 	}
+
+	/**
+	 * Returns an entity with the given int id, if it is contained in this
+	 * SecuritySet.
+	 *
+	 * @param id ID of entity.
+	 * @return entity if argument matched an entity in this Set; null if no match.
+	 */
+	public T getById(int id) 
+	{
+		if (idMap instanceof IntIdMap) 
+		{
+			return ((IntIdMap<T>) idMap).get(id);
+		}
+
+		return idMap.get(Integer.valueOf(id));
+	}
+
+	/**
+	 * Returns the entities of this SecuritySet sorted by name, ignoring case.
+	 * This is a snapshot, changes to this SecuritySet are not reflected.
+	 *
+	 * @return a sorted list of the named entities in this Set
+	 */
+	public List<T> getSortedByName() 
+	{
+		return new ArrayList<T>(new TreeMap<String, T>(nameMap).values());
+	}
+
+	/**
+	 * Returns the entities of this SecuritySet sorted by id. This is the
+	 * iteration order of earlier versions of this class. This is a snapshot,
+	 * changes to this SecuritySet are not reflected.
+	 *
+	 * @return a sorted list of the entities in this Set
+	 * @throws ClassCastException if the ids of this Set are not mutually comparable
+	 */
+	public List<T> getSortedById() 
+	{
+		return new ArrayList<T>(new TreeMap<Object, T>(idMap).values());
+	}
 }
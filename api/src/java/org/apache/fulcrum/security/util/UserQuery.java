@@ -0,0 +1,336 @@
+package org.apache.fulcrum.security.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.fulcrum.security.entity.ExtendedUser;
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.basic.entity.BasicUser;
+import org.apache.fulcrum.security.model.dynamic.entity.DynamicGroup;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineUser;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
+
+/**
+ * A typed query for users, which the user managers translate into a query
+ * of their backend. All conditions must hold. Names and email addresses are
+ * matched ignoring case.
+ *
+ * <pre>
+ * List&lt;User&gt; users = userManager.retrieveUserList(new UserQuery()
+ *         .nameStartsWith("adm")
+ *         .withRole(admin, global)
+ *         .orderByName(true)
+ *         .limit(50));
+ * </pre>
+ *
+ * Backends which cannot translate a condition evaluate it with
+ * {@link #select(Iterator)} instead.
+ *
+ * @see org.apache.fulcrum.security.UserManager#retrieveUserList(UserQuery)
+ * @version $Id$
+ */
+public class UserQuery implements Serializable
+{
+    /** Serial version */
+    private static final long serialVersionUID = -4120317958360728315L;
+
+    /** The order of the result */
+    public enum Order
+    {
+        /** Any order */
+        NONE,
+        /** Ascending by name, ignoring case */
+        NAME_ASCENDING,
+        /** Descending by name, ignoring case */
+        NAME_DESCENDING
+    }
+
+    /** Orders users by case-folded name */
+    private static final Comparator<User> BY_NAME = Comparator.comparing(
+            (User user) -> SecuritySet.foldName(user.getName()), Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private String namePrefix;
+
+    private String namePart;
+
+    private String email;
+
+    private Group group;
+
+    private Role role;
+
+    private Order order = Order.NONE;
+
+    private int limit = 0;
+
+    /**
+     * Only users whose name starts with a prefix
+     *
+     * @param prefix the prefix
+     * @return this query
+     */
+    public UserQuery nameStartsWith(String prefix)
+    {
+        this.namePrefix = prefix;
+        return this;
+    }
+
+    /**
+     * Only users whose name contains a string
+     *
+     * @param part the part of the name
+     * @return this query
+     */
+    public UserQuery nameContains(String part)
+    {
+        this.namePart = part;
+        return this;
+    }
+
+    /**
+     * Only users with an email address
+     *
+     * @param email the email address
+     * @return this query
+     */
+    public UserQuery email(String email)
+    {
+        this.email = email;
+        return this;
+    }
+
+    /**
+     * Only users who are members of a group
+     *
+     * @param group the group
+     * @return this query
+     */
+    public UserQuery inGroup(Group group)
+    {
+        this.group = group;
+        this.role = null;
+        return this;
+    }
+
+    /**
+     * Only users who are assigned a role in a group. In the dynamic model
+     * roles belong to groups, there this matches the members of the group
+     * if the group has the role.
+     *
+     * @param role the role
+     * @param group the group
+     * @return this query
+     */
+    public UserQuery withRole(Role role, Group group)
+    {
+        if (role == null || group == null)
+        {
+            throw new IllegalArgumentException("Role and group are required");
+        }
+        this.group = group;
+        this.role = role;
+        return this;
+    }
+
+    /**
+     * Order the result by name
+     *
+     * @param ascending true for ascending order
+     * @return this query
+     */
+    public UserQuery orderByName(boolean ascending)
+    {
+        this.order = ascending ? Order.NAME_ASCENDING : Order.NAME_DESCENDING;
+        return this;
+    }
+
+    /**
+     * Return at most a number of users
+     *
+     * @param limit the maximum number of users, at least 1
+     * @return this query
+     */
+    public UserQuery limit(int limit)
+    {
+        if (limit < 1)
+        {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * @return the name prefix or <code>null</code>
+     */
+    public String getNamePrefix()
+    {
+        return namePrefix;
+    }
+
+    /**
+     * @return the part of the name or <code>null</code>
+     */
+    public String getNamePart()
+    {
+        return namePart;
+    }
+
+    /**
+     * @return the email address or <code>null</code>
+     */
+    public String getEmail()
+    {
+        return email;
+    }
+
+    /**
+     * @return the group or <code>null</code>
+     */
+    public Group getGroup()
+    {
+        return group;
+    }
+
+    /**
+     * @return the role or <code>null</code>
+     */
+    public Role getRole()
+    {
+        return role;
+    }
+
+    /**
+     * @return the order of the result
+     */
+    public Order getOrder()
+    {
+        return order;
+    }
+
+    /**
+     * @return the maximum number of users, 0 if unlimited
+     */
+    public int getLimit()
+    {
+        return limit;
+    }
+
+    /**
+     * Check a user against all conditions of this query
+     *
+     * @param user the user
+     * @return true if the user matches
+     * @throws DataBackendException if the relations of the user cannot be read
+     */
+    public boolean matches(User user) throws DataBackendException
+    {
+        String name = SecuritySet.foldName(user.getName());
+        if (namePrefix != null && (name == null || !name.startsWith(SecuritySet.foldName(namePrefix))))
+        {
+            return false;
+        }
+
+        if (namePart != null && (name == null || !name.contains(SecuritySet.foldName(namePart))))
+        {
+            return false;
+        }
+
+        if (email != null && !(user instanceof ExtendedUser && email.equalsIgnoreCase(((ExtendedUser) user).getEmail())))
+        {
+            return false;
+        }
+
+        return group == null || isMember(user);
+    }
+
+    /**
+     * Select the users matching this query, in the order and up to the
+     * limit of this query
+     *
+     * @param <T> User type
+     * @param users the candidates
+     * @return the matching users
+     * @throws DataBackendException if the relations of a user cannot be read
+     */
+    public <T extends User> List<T> select(Iterator<T> users) throws DataBackendException
+    {
+        List<T> result = new ArrayList<T>();
+        while (users.hasNext())
+        {
+            T user = users.next();
+            if (matches(user))
+            {
+                result.add(user);
+                if (order == Order.NONE && result.size() == limit)
+                {
+                    break;
+                }
+            }
+        }
+
+        if (order != Order.NONE)
+        {
+            result.sort(order == Order.NAME_ASCENDING ? BY_NAME : BY_NAME.reversed());
+            if (limit > 0 && result.size() > limit)
+            {
+                result = new ArrayList<T>(result.subList(0, limit));
+            }
+        }
+
+        return result;
+    }
+
+    private boolean isMember(User user) throws DataBackendException
+    {
+        if (user instanceof TurbineUser)
+        {
+            for (Object o : ((TurbineUser) user).getUserGroupRoleSet())
+            {
+                TurbineUserGroupRole ugr = (TurbineUserGroupRole) o;
+                if (group.getId().equals(ugr.getGroup().getId())
+                        && (role == null || role.getId().equals(ugr.getRole().getId())))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        if (user instanceof BasicUser)
+        {
+            Group member = ((BasicUser) user).getGroups().getById(group.getId());
+            if (member == null || role == null)
+            {
+                return member != null;
+            }
+            return member instanceof DynamicGroup && ((DynamicGroup) member).getRoles().getById(role.getId()) != null;
+        }
+
+        return false;
+    }
+}
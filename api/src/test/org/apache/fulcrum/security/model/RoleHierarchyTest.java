@@ -0,0 +1,151 @@
+package org.apache.fulcrum.security.model;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbinePermissionImpl;
+import org.apache.fulcrum.security.util.PermissionSet;
+
+/**
+ * Test the precomputed closure of the role hierarchy
+ *
+ * @version $Id$
+ */
+public class RoleHierarchyTest extends TestCase
+{
+    private static Permission permission(String name)
+    {
+        Permission p = new TurbinePermissionImpl();
+        p.setName(name);
+        p.setId("RoleHierarchyTest." + name);
+        return p;
+    }
+
+    private static PermissionSet permissions(Permission... permissions)
+    {
+        return new PermissionSet(Arrays.asList(permissions));
+    }
+
+    private static Set<Object> ids(Object... values)
+    {
+        return new HashSet<Object>(Arrays.asList(values));
+    }
+
+    public void testChain()
+    {
+        Permission read = permission("read");
+        Permission write = permission("write");
+        Permission admin = permission("admin");
+        RoleHierarchy hierarchy = new RoleHierarchy();
+
+        // editor extends reader, manager extends editor
+        assertTrue(hierarchy.addParent("editor", "reader", permissions(read)));
+        assertFalse(hierarchy.addParent("editor", "reader", permissions(read)));
+        assertTrue(hierarchy.addParent("manager", "editor", permissions(write)));
+
+        assertEquals(ids("reader", "editor"), hierarchy.getAncestors("manager"));
+        assertEquals(ids("editor", "manager"), hierarchy.getDescendants("reader"));
+        assertEquals(ids("editor"), hierarchy.getParents("manager"));
+
+        PermissionSet inherited = hierarchy.getInheritedPermissions("manager");
+        assertEquals(2, inherited.size());
+        assertTrue(inherited.contains(read));
+        assertTrue(inherited.contains(write));
+        assertTrue(hierarchy.getInheritedPermissions("reader").isEmpty());
+
+        // a permission granted to the root reaches all descendants
+        assertTrue(hierarchy.setPermissions("reader", permissions(read, admin)));
+        assertTrue(hierarchy.getInheritedPermissions("manager").contains(admin));
+        assertTrue(hierarchy.getInheritedPermissions("editor").contains(admin));
+        assertEquals(ids("editor", "manager"), hierarchy.getInheritingRoles(admin.getId()));
+
+        // roles without children are not tracked
+        assertFalse(hierarchy.setPermissions("manager", permissions(admin)));
+
+        // the returned set is a copy
+        hierarchy.getInheritedPermissions("manager").clear();
+        assertEquals(3, hierarchy.getInheritedPermissions("manager").size());
+
+        assertTrue(hierarchy.removeParent("editor", "reader"));
+        assertFalse(hierarchy.removeParent("editor", "reader"));
+        assertEquals(ids("editor"), hierarchy.getAncestors("manager"));
+        PermissionSet remaining = hierarchy.getInheritedPermissions("manager");
+        assertEquals(1, remaining.size());
+        assertTrue(remaining.contains(write));
+        assertTrue(hierarchy.getInheritedPermissions("editor").isEmpty());
+        assertFalse(hierarchy.hasChildren("reader"));
+    }
+
+    public void testDiamond()
+    {
+        Permission read = permission("read");
+        Permission write = permission("write");
+        RoleHierarchy hierarchy = new RoleHierarchy();
+
+        hierarchy.addParent("left", "root", permissions(read));
+        hierarchy.addParent("right", "root", permissions(read));
+        hierarchy.addParent("bottom", "left", permissions());
+        hierarchy.addParent("bottom", "right", permissions(write));
+
+        assertEquals(ids("left", "right", "root"), hierarchy.getAncestors("bottom"));
+        assertEquals(2, hierarchy.getInheritedPermissions("bottom").size());
+
+        // still reachable through the other path
+        hierarchy.removeParent("left", "root");
+        assertEquals(ids("left", "right", "root"), hierarchy.getAncestors("bottom"));
+        assertTrue(hierarchy.getInheritedPermissions("bottom").contains(read));
+
+        hierarchy.removeRole("right");
+        assertEquals(ids("left"), hierarchy.getAncestors("bottom"));
+        assertTrue(hierarchy.getInheritedPermissions("bottom").isEmpty());
+        assertTrue(hierarchy.getParents("right").isEmpty());
+
+        hierarchy.clear();
+        assertTrue(hierarchy.isEmpty());
+    }
+
+    public void testCycles()
+    {
+        RoleHierarchy hierarchy = new RoleHierarchy();
+        hierarchy.addParent("b", "a", permissions());
+        hierarchy.addParent("c", "b", permissions());
+
+        assertTrue(hierarchy.createsCycle("a", "a"));
+        assertTrue(hierarchy.createsCycle("a", "c"));
+        assertFalse(hierarchy.createsCycle("c", "a"));
+
+        try
+        {
+            hierarchy.addParent("a", "c", permissions());
+            fail("Cycle should have been rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        assertTrue(hierarchy.getAncestors("a").isEmpty());
+    }
+}
@@ -0,0 +1,192 @@
+package org.apache.fulcrum.security.model.dynamic;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.fulcrum.security.model.dynamic.entity.DynamicUser;
+import org.apache.fulcrum.security.model.dynamic.entity.impl.DynamicUserImpl;
+
+/**
+ * Test the incrementally maintained delegation closure
+ *
+ * @version $Id$
+ */
+public class DelegationGraphTest extends TestCase
+{
+    private static DynamicUser user(int id)
+    {
+        DynamicUser user = new DynamicUserImpl();
+        user.setName("user" + id);
+        user.setId(Integer.valueOf(id));
+        return user;
+    }
+
+    /** Update the entities like AbstractDynamicModelManager does */
+    private static void delegate(DelegationGraph graph, DynamicUser delegator, DynamicUser delegatee)
+    {
+        delegator.getDelegatees().add(delegatee);
+        delegatee.getDelegators().add(delegator);
+        graph.addDelegate(delegator, delegatee);
+    }
+
+    private static void undelegate(DelegationGraph graph, DynamicUser delegator, DynamicUser delegatee)
+    {
+        delegator.getDelegatees().remove(delegatee);
+        delegatee.getDelegators().remove(delegator);
+        graph.removeDelegate(delegator, delegatee);
+    }
+
+    private static Set<Object> ids(List<Object> ids)
+    {
+        return new HashSet<Object>(ids);
+    }
+
+    private static Set<Object> ids(int... values)
+    {
+        Set<Object> ids = new HashSet<Object>();
+        for (int value : values)
+        {
+            ids.add(Integer.valueOf(value));
+        }
+        return ids;
+    }
+
+    public void testLoadsExistingChain()
+    {
+        DynamicUser a = user(1);
+        DynamicUser b = user(2);
+        DynamicUser c = user(3);
+        // relations which existed before the graph was created
+        b.getDelegators().add(a);
+        c.getDelegators().add(b);
+
+        DelegationGraph graph = new DelegationGraph(Integer.MAX_VALUE);
+        assertEquals(ids(1, 2), ids(graph.getDelegatorIds(c)));
+        assertEquals(ids(1), ids(graph.getDelegatorIds(b)));
+        assertTrue(graph.getDelegatorIds(a).isEmpty());
+    }
+
+    public void testIncrementalUpdates()
+    {
+        DynamicUser a = user(1);
+        DynamicUser b = user(2);
+        DynamicUser c = user(3);
+        DynamicUser d = user(4);
+        DelegationGraph graph = new DelegationGraph(Integer.MAX_VALUE);
+
+        assertTrue(graph.getDelegatorIds(c).isEmpty());
+        delegate(graph, b, c);
+        assertEquals(ids(2), ids(graph.getDelegatorIds(c)));
+
+        // an edge below b extends the closure of c
+        delegate(graph, a, b);
+        assertEquals(ids(1, 2), ids(graph.getDelegatorIds(c)));
+
+        // d was never seen before, its delegators are read on first use
+        d.getDelegators().add(a);
+        delegate(graph, d, c);
+        assertEquals(ids(1, 2, 4), ids(graph.getDelegatorIds(c)));
+
+        undelegate(graph, b, c);
+        assertEquals(ids(1, 4), ids(graph.getDelegatorIds(c)));
+        assertEquals(ids(1), ids(graph.getDelegatorIds(b)));
+
+        undelegate(graph, a, b);
+        assertTrue(graph.getDelegatorIds(b).isEmpty());
+        assertEquals(ids(1, 4), ids(graph.getDelegatorIds(c)));
+    }
+
+    public void testCycles()
+    {
+        DynamicUser a = user(1);
+        DynamicUser b = user(2);
+        DynamicUser c = user(3);
+        DelegationGraph graph = new DelegationGraph(Integer.MAX_VALUE);
+
+        delegate(graph, a, b);
+        delegate(graph, b, c);
+        assertEquals(ids(1, 2), ids(graph.getDelegatorIds(c)));
+        assertEquals(ids(1), ids(graph.getDelegatorIds(b)));
+
+        delegate(graph, c, a);
+        assertEquals(ids(1, 2), ids(graph.getDelegatorIds(c)));
+        assertEquals(ids(2, 3), ids(graph.getDelegatorIds(a)));
+        assertEquals(ids(1, 3), ids(graph.getDelegatorIds(b)));
+
+        // a user is never its own delegator
+        delegate(graph, a, a);
+        assertEquals(ids(2, 3), ids(graph.getDelegatorIds(a)));
+
+        undelegate(graph, c, a);
+        assertTrue(graph.getDelegatorIds(a).isEmpty());
+        assertEquals(ids(1), ids(graph.getDelegatorIds(b)));
+    }
+
+    public void testDepthLimit()
+    {
+        DynamicUser a = user(1);
+        DynamicUser b = user(2);
+        DynamicUser c = user(3);
+        DynamicUser d = user(4);
+        DelegationGraph graph = new DelegationGraph(2);
+
+        delegate(graph, c, d);
+        delegate(graph, b, c);
+        delegate(graph, a, b);
+        assertEquals(ids(2, 3), ids(graph.getDelegatorIds(d)));
+        assertEquals(ids(1, 2), ids(graph.getDelegatorIds(c)));
+
+        // a shorter path brings a within reach
+        delegate(graph, a, c);
+        assertEquals(ids(1, 2, 3), ids(graph.getDelegatorIds(d)));
+
+        undelegate(graph, a, c);
+        assertEquals(ids(2, 3), ids(graph.getDelegatorIds(d)));
+
+        DelegationGraph disabled = new DelegationGraph(0);
+        assertTrue(disabled.getDelegatorIds(d).isEmpty());
+    }
+
+    public void testRemoveUser()
+    {
+        DynamicUser a = user(1);
+        DynamicUser b = user(2);
+        DynamicUser c = user(3);
+        DelegationGraph graph = new DelegationGraph(Integer.MAX_VALUE);
+        delegate(graph, a, b);
+        delegate(graph, b, c);
+        assertEquals(ids(1, 2), ids(graph.getDelegatorIds(c)));
+
+        // the entities of removed users are not touched
+        graph.removeUser(b.getId());
+        assertTrue(graph.getDelegatorIds(c).isEmpty());
+        assertTrue(graph.getDelegatorIds(a).isEmpty());
+
+        graph.removeUser(Integer.valueOf(42));
+        graph.removeUser(null);
+        delegate(graph, a, c);
+        assertEquals(ids(1), ids(graph.getDelegatorIds(c)));
+    }
+}
@@ -121,6 +121,29 @@ public abstract class AbstractDynamicModelManagerTest extends BaseUnit5Test
         assertTrue(((DynamicRole) role).getPermissions().contains(permission));
     }
 	@Test
+    public void testCountRolesAndUsers() throws Exception
+    {
+        Permission permission = permissionManager.getPermissionInstance("COUNT_PERMISSION");
+        permissionManager.addPermission(permission);
+        Role first = roleManager.getRoleInstance("COUNT_FIRST");
+        roleManager.addRole(first);
+        Role second = roleManager.getRoleInstance("COUNT_SECOND");
+        roleManager.addRole(second);
+        modelManager.grant(first, permission);
+        modelManager.grant(second, permission);
+        assertEquals(2, roleManager.countRolesWithPermission(permission));
+        modelManager.revoke(second, permission);
+        assertEquals(1, roleManager.countRolesWithPermission(permission));
+
+        Group group = groupManager.getGroupInstance("COUNT_GROUP");
+        groupManager.addGroup(group);
+        User user = userManager.getUserInstance("countmember");
+        userManager.addUser(user, "member");
+        assertEquals(0, userManager.countUsersInGroup(group));
+        modelManager.grant(user, group);
+        assertEquals(1, userManager.countUsersInGroup(group));
+    }
+	@Test
     public void testRevokeRolePermission() throws Exception
     {
         Permission permission = securityService.getPermissionManager().getPermissionInstance();
@@ -388,4 +411,52 @@ public abstract class AbstractDynamicModelManagerTest extends BaseUnit5Test
         }
         assertTrue(thrown);
     }
+
+    @Test
+    public void testRoleHierarchy() throws Exception
+    {
+        Group group = groupManager.getGroupInstance("HIERARCHY_GROUP");
+        groupManager.addGroup(group);
+        Role reader = roleManager.getRoleInstance("HIERARCHY_READER");
+        roleManager.addRole(reader);
+        Role editor = roleManager.getRoleInstance("HIERARCHY_EDITOR");
+        roleManager.addRole(editor);
+        Permission read = permissionManager.getPermissionInstance("HIERARCHY_READ");
+        permissionManager.addPermission(read);
+        Permission write = permissionManager.getPermissionInstance("HIERARCHY_WRITE");
+        permissionManager.addPermission(write);
+        User user = userManager.getUserInstance("hierarchy1");
+        userManager.addUser(user, "secret");
+
+        modelManager.grant(reader, read);
+        modelManager.grant(editor, write);
+        modelManager.addParentRole(editor, reader);
+        modelManager.grant(group, editor);
+        modelManager.grant(user, group);
+
+        assertTrue(modelManager.getParentRoles(editor).containsName("HIERARCHY_READER"));
+        assertTrue(modelManager.getInheritedPermissions(editor).contains(read));
+
+        DynamicAccessControlList acl = (DynamicAccessControlList) userManager.getACL(user);
+        assertTrue(acl.hasPermission(read));
+        assertTrue(acl.hasPermission(write));
+        assertFalse(acl.hasRole(reader));
+
+        boolean thrown = false;
+        try
+        {
+            modelManager.addParentRole(reader, editor);
+        }
+        catch (DataBackendException e)
+        {
+            thrown = true;
+        }
+        assertTrue(thrown);
+
+        modelManager.removeParentRole(editor, reader);
+        assertTrue(modelManager.getParentRoles(editor).isEmpty());
+        acl = (DynamicAccessControlList) userManager.getACL(user);
+        assertFalse(acl.hasPermission(read));
+        assertTrue(acl.hasPermission(write));
+    }
 }
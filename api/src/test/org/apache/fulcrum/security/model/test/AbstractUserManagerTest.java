@@ -22,9 +22,15 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
 import org.apache.fulcrum.security.SecurityService;
 import org.apache.fulcrum.security.UserManager;
 import org.apache.fulcrum.security.acl.AccessControlList;
@@ -32,6 +38,7 @@ import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.util.EntityExistsException;
 import org.apache.fulcrum.security.util.PasswordMismatchException;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.fulcrum.security.util.UserQuery;
 import org.apache.fulcrum.security.util.UserSet;
 import org.apache.fulcrum.testcontainer.BaseUnit5Test;
 import org.junit.jupiter.api.Test;
@@ -122,6 +129,42 @@ public abstract class AbstractUserManagerTest extends BaseUnit5Test
         assertEquals(size + 1, userSet.size());
     }
     @Test
+    public void testGetUsersPaged() throws Exception
+    {
+        for (String name : new String[] { "PagedAnna", "PagedBert", "PagedCarl" })
+        {
+            userManager.addUser(userManager.getUserInstance(name), "");
+        }
+
+        Set<Object> ids = new HashSet<Object>();
+        List<User> page = userManager.getUsers(null, 2);
+        while (!page.isEmpty())
+        {
+            assertTrue(page.size() <= 2);
+            for (User pagedUser : page)
+            {
+                assertTrue(ids.add(pagedUser.getId()), "User returned twice: " + pagedUser.getName());
+            }
+            page = userManager.getUsers(page.get(page.size() - 1).getName(), 2);
+        }
+        assertEquals(userManager.getAllUsers().size(), ids.size());
+        assertThrows(IllegalArgumentException.class, () -> userManager.getUsers(null, 0));
+    }
+    @Test
+    public void testStreamUsers() throws Exception
+    {
+        user = userManager.getUserInstance("Streamed");
+        userManager.addUser(user, "");
+        try (Stream<User> users = userManager.streamUsers())
+        {
+            assertEquals(userManager.getAllUsers().size(), users.count());
+        }
+        try (Stream<User> users = userManager.streamUsers())
+        {
+            assertTrue(users.anyMatch(streamed -> streamed.getId().equals(user.getId())));
+        }
+    }
+    @Test
     public void testRetrieveUserList() throws Exception
     {
         int size = userManager.getAllUsers().size();
@@ -135,6 +178,40 @@ public abstract class AbstractUserManagerTest extends BaseUnit5Test
         assertEquals(2, userSet.size());
     }
     @Test
+    public void testRetrieveUserListQuery() throws Exception
+    {
+        for (String name : new String[] { "queryanna", "queryanton", "querybert" })
+        {
+            userManager.addUser(userManager.getUserInstance(name), "");
+        }
+
+        List<User> users = userManager.retrieveUserList(new UserQuery().nameStartsWith("queryan").orderByName(false));
+        assertEquals(2, users.size());
+        assertEquals("queryanton", users.get(0).getName());
+        assertEquals("queryanna", users.get(1).getName());
+
+        users = userManager.retrieveUserList(new UserQuery().nameStartsWith("queryan").orderByName(true).limit(1));
+        assertEquals(1, users.size());
+        assertEquals("queryanna", users.get(0).getName());
+
+        users = userManager.retrieveUserList(new UserQuery().nameStartsWith("query").nameContains("ber"));
+        assertEquals(1, users.size());
+        assertEquals("querybert", users.get(0).getName());
+
+        assertTrue(userManager.retrieveUserList(new UserQuery().nameStartsWith("query*")).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new UserQuery().limit(0));
+    }
+    @Test
+    public void testCountUsers() throws Exception
+    {
+        int count = userManager.countUsers();
+        assertEquals(userManager.getAllUsers().size(), count);
+        userManager.addUser(userManager.getUserInstance("counted"), "");
+        assertEquals(count + 1, userManager.countUsers());
+        assertTrue(userManager.checkExists("counted"));
+        assertFalse(userManager.checkExists("uncounted"));
+    }
+    @Test
     public void testAuthenticate() throws Exception
     {
         user = userManager.getUserInstance("Kay");
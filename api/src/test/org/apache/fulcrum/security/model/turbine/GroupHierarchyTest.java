@@ -0,0 +1,154 @@
+package org.apache.fulcrum.security.model.turbine;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbineGroupImpl;
+
+/**
+ * Test the interval encoding of the group hierarchy
+ *
+ * @version $Id$
+ */
+public class GroupHierarchyTest extends TestCase
+{
+    private static Group group(String name)
+    {
+        Group g = new TurbineGroupImpl();
+        g.setName(name);
+        g.setId("GroupHierarchyTest." + name);
+        return g;
+    }
+
+    public void testNesting()
+    {
+        Group company = group("company");
+        Group sales = group("sales");
+        Group emea = group("emea");
+        Group it = group("it");
+        GroupHierarchy hierarchy = new GroupHierarchy();
+
+        assertTrue(hierarchy.setParent(sales, company));
+        assertFalse(hierarchy.setParent(sales, company));
+        assertTrue(hierarchy.setParent(emea, sales));
+        assertTrue(hierarchy.setParent(it, company));
+
+        GroupIntervals intervals = hierarchy.getIntervals();
+        assertTrue(intervals.isDescendant(emea, company));
+        assertTrue(intervals.isDescendant(emea, sales));
+        assertTrue(intervals.isDescendant(emea, emea));
+        assertFalse(intervals.isDescendant(emea, it));
+        assertFalse(intervals.isDescendant(company, emea));
+        assertNotNull(intervals.get("EMEA"));
+        assertNull(intervals.get(group("unknown")));
+        assertEquals(sales.getId(), hierarchy.getParent(emea.getId()));
+        assertNull(hierarchy.getParent(company.getId()));
+        assertEquals(Arrays.asList(sales.getId(), company.getId()), hierarchy.getAncestors(emea.getId()));
+        assertTrue(hierarchy.getAncestors(company.getId()).isEmpty());
+
+        // move a subtree, the old snapshot is unchanged
+        assertTrue(hierarchy.setParent(sales, it));
+        assertTrue(hierarchy.getIntervals().isDescendant(emea, it));
+        assertFalse(intervals.isDescendant(emea, it));
+
+        try
+        {
+            hierarchy.setParent(it, emea);
+            fail("Cycle should have been rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+
+        // detached groups without children are no longer tracked
+        assertTrue(hierarchy.setParent(emea, null));
+        assertNull(hierarchy.getIntervals().get(emea));
+
+        assertTrue(hierarchy.remove(it.getId()));
+        assertNull(hierarchy.getParent(sales.getId()));
+        assertTrue(hierarchy.isEmpty());
+        assertTrue(hierarchy.getIntervals().isEmpty());
+    }
+
+    public void testRelabel()
+    {
+        GroupHierarchy hierarchy = new GroupHierarchy();
+        Group[] chain = new Group[200];
+        chain[0] = group("g0");
+        for (int i = 1; i < chain.length; i++)
+        {
+            chain[i] = group("g" + i);
+            hierarchy.setParent(chain[i], chain[i - 1]);
+        }
+
+        // a deep chain exhausts the gaps and forces relabelling
+        assertTrue(hierarchy.getRelabelCount() > 0);
+        GroupIntervals intervals = hierarchy.getIntervals();
+        for (int i = 1; i < chain.length; i++)
+        {
+            assertTrue(intervals.isDescendant(chain[chain.length - 1], chain[i]));
+            assertFalse(intervals.isDescendant(chain[i - 1], chain[i]));
+        }
+    }
+
+    public void testRandomForest()
+    {
+        Random random = new Random(42);
+        GroupHierarchy hierarchy = new GroupHierarchy();
+        Group[] groups = new Group[300];
+        for (int i = 0; i < groups.length; i++)
+        {
+            groups[i] = group("g" + i);
+        }
+
+        for (int step = 0; step < 3000; step++)
+        {
+            Group child = groups[random.nextInt(groups.length)];
+            Group parent = (random.nextInt(10) == 0) ? null : groups[random.nextInt(groups.length)];
+            if (parent != null && hierarchy.isDescendant(parent.getId(), child.getId()))
+            {
+                continue;
+            }
+            hierarchy.setParent(child, parent);
+        }
+
+        // the intervals agree with the parent links
+        GroupIntervals intervals = hierarchy.getIntervals();
+        for (Group group : groups)
+        {
+            for (Group ancestor : groups)
+            {
+                boolean expected = false;
+                for (Object id = group.getId(); id != null; id = hierarchy.getParent(id))
+                {
+                    expected |= id.equals(ancestor.getId());
+                }
+                assertEquals(expected && intervals.get(group) != null,
+                        intervals.isDescendant(group, ancestor));
+            }
+        }
+    }
+}
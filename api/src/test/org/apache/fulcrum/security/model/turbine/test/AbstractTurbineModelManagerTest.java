@@ -21,9 +21,15 @@ package org.apache.fulcrum.security.model.turbine.test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.fulcrum.security.GroupManager;
 import org.apache.fulcrum.security.PermissionManager;
@@ -34,12 +40,15 @@ import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
 import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
 import org.apache.fulcrum.security.model.turbine.TurbineModelManager;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineGroup;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineRole;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineUser;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
+import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.PermissionSet;
+import org.apache.fulcrum.security.util.UserQuery;
 import org.apache.fulcrum.security.util.UserSet;
 import org.apache.fulcrum.testcontainer.BaseUnit5Test;
 import org.junit.jupiter.api.BeforeEach;
@@ -259,6 +268,68 @@ public abstract class AbstractTurbineModelManagerTest extends BaseUnit5Test
         assertTrue(ugrTest.getUser().equals(user));
     }
     @Test
+    public void testRetrieveUserListByGroupRole() throws Exception
+    {
+        Group group = groupManager.getGroupInstance("QUERY_GROUP");
+        groupManager.addGroup(group);
+        Role member = roleManager.getRoleInstance("QUERY_MEMBER");
+        roleManager.addRole(member);
+        Role admin = roleManager.getRoleInstance("QUERY_ADMIN");
+        roleManager.addRole(admin);
+        User first = userManager.getUserInstance("querymember");
+        userManager.addUser(first, "first");
+        User second = userManager.getUserInstance("queryadmin");
+        userManager.addUser(second, "second");
+        User outsider = userManager.getUserInstance("queryoutsider");
+        userManager.addUser(outsider, "outsider");
+        modelManager.grant(first, group, member);
+        modelManager.grant(second, group, admin);
+
+        List<User> users = userManager.retrieveUserList(new UserQuery().inGroup(group).orderByName(true));
+        assertEquals(2, users.size());
+        assertEquals("queryadmin", users.get(0).getName());
+        assertEquals("querymember", users.get(1).getName());
+
+        users = userManager.retrieveUserList(new UserQuery().withRole(admin, group));
+        assertEquals(1, users.size());
+        assertEquals(second.getId(), users.get(0).getId());
+
+        users = userManager.retrieveUserList(new UserQuery().nameStartsWith("querym").inGroup(group));
+        assertEquals(1, users.size());
+        assertEquals(first.getId(), users.get(0).getId());
+    }
+    @Test
+    public void testCountUsersAndRoles() throws Exception
+    {
+        Group group = groupManager.getGroupInstance("COUNT_GROUP");
+        groupManager.addGroup(group);
+        Role first = roleManager.getRoleInstance("COUNT_FIRST");
+        roleManager.addRole(first);
+        Role second = roleManager.getRoleInstance("COUNT_SECOND");
+        roleManager.addRole(second);
+        Permission permission = permissionManager.getPermissionInstance("COUNT_PERMISSION");
+        permissionManager.addPermission(permission);
+        User member = userManager.getUserInstance("countmember");
+        userManager.addUser(member, "member");
+        User other = userManager.getUserInstance("countother");
+        userManager.addUser(other, "other");
+
+        assertEquals(0, userManager.countUsersInGroup(group));
+        modelManager.grant(member, group, first);
+        modelManager.grant(member, group, second);
+        modelManager.grant(other, group, second);
+        assertEquals(2, userManager.countUsersInGroup(group));
+        modelManager.revoke(other, group, second);
+        assertEquals(1, userManager.countUsersInGroup(group));
+
+        assertEquals(0, roleManager.countRolesWithPermission(permission));
+        modelManager.grant(first, permission);
+        modelManager.grant(second, permission);
+        assertEquals(2, roleManager.countRolesWithPermission(permission));
+        modelManager.revoke(first, permission);
+        assertEquals(1, roleManager.countRolesWithPermission(permission));
+    }
+    @Test
     public void testRevokeUserGroupRole() throws Exception
     {
         Group group = securityService.getGroupManager().getGroupInstance();
@@ -333,6 +404,195 @@ public abstract class AbstractTurbineModelManagerTest extends BaseUnit5Test
     }
     
     
+    @Test
+    public void testGetUsersByRoleAndPermission() throws Exception
+    {
+        Group group = groupManager.getGroupInstance("REVERSE_GROUP");
+        groupManager.addGroup(group);
+        Group group2 = groupManager.getGroupInstance("REVERSE_GROUP2");
+        groupManager.addGroup(group2);
+        Role approver = roleManager.getRoleInstance("REVERSE_APPROVER");
+        roleManager.addRole(approver);
+        Role auditor = roleManager.getRoleInstance("REVERSE_AUDITOR");
+        roleManager.addRole(auditor);
+        Permission approve = permissionManager.getPermissionInstance("REVERSE_APPROVE");
+        permissionManager.addPermission(approve);
+        User user = userManager.getUserInstance("reverse1");
+        userManager.addUser(user, "secret");
+        User user2 = userManager.getUserInstance("reverse2");
+        userManager.addUser(user2, "secret");
+        User user3 = userManager.getUserInstance("reverse3");
+        userManager.addUser(user3, "secret");
+
+        modelManager.grant(approver, approve);
+        modelManager.grant(auditor, approve);
+        modelManager.grant(user, group, approver);
+        modelManager.grant(user2, group, auditor);
+        modelManager.grant(user2, group, approver);
+        modelManager.grant(user3, group2, approver);
+
+        Set<Object> ids = modelManager.getUserIds(group, approver).collect(Collectors.toSet());
+        assertEquals(2, ids.size());
+        assertTrue(ids.contains(user.getId()));
+        assertTrue(ids.contains(user2.getId()));
+        assertEquals(1, modelManager.getUserIds(group, auditor).count());
+        assertEquals(2, modelManager.getUserIds(group, approve).count());
+
+        UserSet<User> users = modelManager.getUsers(group, approve);
+        assertEquals(2, users.size());
+        assertTrue(users.containsName("reverse1"));
+        assertTrue(users.containsName("reverse2"));
+        assertEquals(1, modelManager.getUsers(group2, approve).size());
+
+        modelManager.revoke(approver, approve);
+        users = modelManager.getUsers(group, approve);
+        assertEquals(1, users.size());
+        assertTrue(users.containsName("reverse2"));
+        assertEquals(0, modelManager.getUsers(group2, approve).size());
+
+        modelManager.revoke(user2, group, auditor);
+        assertEquals(0, modelManager.getUserIds(group, approve).count());
+        assertEquals(2, modelManager.getUsers(group, approver).size());
+    }
+
+    @Test
+    public void testRoleHierarchy() throws Exception
+    {
+        Group group = groupManager.getGroupInstance("HIERARCHY_GROUP");
+        groupManager.addGroup(group);
+        Role reader = roleManager.getRoleInstance("HIERARCHY_READER");
+        roleManager.addRole(reader);
+        Role editor = roleManager.getRoleInstance("HIERARCHY_EDITOR");
+        roleManager.addRole(editor);
+        Role chief = roleManager.getRoleInstance("HIERARCHY_CHIEF");
+        roleManager.addRole(chief);
+        Permission read = permissionManager.getPermissionInstance("HIERARCHY_READ");
+        permissionManager.addPermission(read);
+        Permission write = permissionManager.getPermissionInstance("HIERARCHY_WRITE");
+        permissionManager.addPermission(write);
+        User user = userManager.getUserInstance("hierarchy1");
+        userManager.addUser(user, "secret");
+
+        modelManager.grant(reader, read);
+        modelManager.grant(editor, write);
+        modelManager.addParentRole(editor, reader);
+        modelManager.addParentRole(chief, editor);
+        modelManager.grant(user, group, chief);
+
+        assertEquals(1, modelManager.getParentRoles(chief).size());
+        assertTrue(modelManager.getParentRoles(chief).containsName("HIERARCHY_EDITOR"));
+        PermissionSet inherited = modelManager.getInheritedPermissions(chief);
+        assertEquals(2, inherited.size());
+        assertTrue(inherited.contains(read));
+        assertTrue(modelManager.getInheritedPermissions(reader).isEmpty());
+
+        TurbineAccessControlList acl = userManager.getACL(user);
+        assertTrue(acl.hasPermission(read, group));
+        assertTrue(acl.hasPermission(write, group));
+        assertFalse(acl.hasRole(editor, group));
+        assertEquals(1, modelManager.getUserIds(group, read).count());
+        assertEquals(1, modelManager.getUsers(group, write).size());
+
+        try
+        {
+            modelManager.addParentRole(reader, chief);
+            fail("Cycle should have been rejected");
+        }
+        catch (DataBackendException e)
+        {
+            // expected
+        }
+
+        // permissions granted to an ancestor are inherited at once
+        Permission publish = permissionManager.getPermissionInstance("HIERARCHY_PUBLISH");
+        permissionManager.addPermission(publish);
+        modelManager.grant(reader, publish);
+        assertTrue(modelManager.getInheritedPermissions(chief).contains(publish));
+        acl = userManager.getACL(user);
+        assertTrue(acl.hasPermission(publish, group));
+
+        modelManager.removeParentRole(editor, reader);
+        assertFalse(modelManager.getInheritedPermissions(chief).contains(read));
+        acl = userManager.getACL(user);
+        assertFalse(acl.hasPermission(read, group));
+        assertTrue(acl.hasPermission(write, group));
+        assertEquals(0, modelManager.getUserIds(group, read).count());
+
+        modelManager.revokeAll(editor);
+        assertTrue(modelManager.getParentRoles(chief).isEmpty());
+        assertTrue(modelManager.getInheritedPermissions(chief).isEmpty());
+        modelManager.revokeAll(reader);
+    }
+
+    @Test
+    public void testNestedGroups() throws Exception
+    {
+        Group company = groupManager.getGroupInstance("NESTED_COMPANY");
+        groupManager.addGroup(company);
+        Group sales = groupManager.getGroupInstance("NESTED_SALES");
+        groupManager.addGroup(sales);
+        Group emea = groupManager.getGroupInstance("NESTED_EMEA");
+        groupManager.addGroup(emea);
+        Group other = groupManager.getGroupInstance("NESTED_OTHER");
+        groupManager.addGroup(other);
+        Role role = roleManager.getRoleInstance("NESTED_ROLE");
+        roleManager.addRole(role);
+        Permission view = permissionManager.getPermissionInstance("NESTED_VIEW");
+        permissionManager.addPermission(view);
+        User user = userManager.getUserInstance("nested1");
+        userManager.addUser(user, "secret");
+
+        modelManager.grant(role, view);
+        modelManager.grant(user, company, role);
+        modelManager.setParentGroup(sales, company);
+        modelManager.setParentGroup(emea, sales);
+
+        assertEquals(sales.getId(), modelManager.getParentGroup(emea).getId());
+        assertNull(modelManager.getParentGroup(company));
+        assertTrue(modelManager.getGroupIntervals().isDescendant(emea, company));
+
+        TurbineAccessControlList acl = userManager.getACL(user);
+        assertTrue(acl.hasPermission(view, emea));
+        assertTrue(acl.hasPermission("NESTED_VIEW", "NESTED_EMEA"));
+        assertTrue(acl.hasPermission("NESTED_VIEW", sales));
+        assertFalse(acl.hasPermission(view, other));
+        assertFalse(acl.hasRole(role, emea));
+        BitSet batch = acl.hasPermissionsInGroups(new String[] { "NESTED_VIEW" },
+                new String[] { "NESTED_EMEA", "NESTED_OTHER", "NESTED_SALES" });
+        assertTrue(batch.get(0));
+        assertFalse(batch.get(1));
+        assertTrue(batch.get(2));
+
+        // the users holding a permission in a group include those of its ancestors
+        assertEquals(Collections.singletonList(user.getId()),
+                modelManager.getUserIds(emea, view).collect(Collectors.toList()));
+        assertTrue(modelManager.getUsers(emea, view).contains(user));
+        assertEquals(0, modelManager.getUserIds(other, view).count());
+
+        try
+        {
+            modelManager.setParentGroup(company, emea);
+            fail("Cycle should have been rejected");
+        }
+        catch (DataBackendException e)
+        {
+            // expected
+        }
+
+        // moving a subtree takes effect in new ACLs
+        modelManager.setParentGroup(sales, other);
+        acl = userManager.getACL(user);
+        assertFalse(acl.hasPermission(view, emea));
+        assertTrue(modelManager.getGroupIntervals().isDescendant(emea, other));
+        assertEquals(0, modelManager.getUserIds(emea, view).count());
+
+        modelManager.revokeAll(sales);
+        assertNull(modelManager.getParentGroup(sales));
+        assertNull(modelManager.getParentGroup(emea));
+        modelManager.revokeAll(company);
+        modelManager.revokeAll(role);
+    }
+
     @Test
     public void testReplaceUserGroupRole() throws Exception
     {
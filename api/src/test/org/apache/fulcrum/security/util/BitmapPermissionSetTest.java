@@ -0,0 +1,220 @@
+package org.apache.fulcrum.security.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbinePermissionImpl;
+
+/**
+ * Test the bitmap based PermissionSet
+ *
+ * @version $Id$
+ */
+public class BitmapPermissionSetTest extends TestCase
+{
+    private static Permission permission(String name)
+    {
+        Permission p = new TurbinePermissionImpl();
+        p.setName(name);
+        p.setId("BitmapPermissionSetTest." + name);
+        return p;
+    }
+
+    public void testAddContainsRemove()
+    {
+        Permission read = permission("read");
+        Permission write = permission("write");
+        BitmapPermissionSet set = new BitmapPermissionSet();
+
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(read));
+        assertFalse(set.add(read));
+        assertEquals(1, set.size());
+
+        assertTrue(set.contains(read));
+        assertFalse(set.contains(write));
+        assertTrue(set.containsName("READ"));
+        assertSame(read, set.getByName("Read"));
+        assertSame(read, set.getById(read.getId()));
+        assertNull(set.getByName("write"));
+
+        assertTrue(set.remove(read));
+        assertFalse(set.remove(read));
+        assertTrue(set.isEmpty());
+    }
+
+    public void testPermissionWithoutId()
+    {
+        Permission p = new TurbinePermissionImpl();
+        p.setName("noid");
+        BitmapPermissionSet set = new BitmapPermissionSet();
+
+        assertFalse(set.add(p));
+        assertEquals(0, set.size());
+    }
+
+    public void testRenamedPermission()
+    {
+        PermissionDictionary dictionary = new PermissionDictionary();
+        Permission p = permission("beforeRename");
+        new BitmapPermissionSet(dictionary).add(p);
+
+        // another instance with the same id does not replace the stored one
+        Permission renamed = permission("afterRename");
+        renamed.setId(p.getId());
+        BitmapPermissionSet set = new BitmapPermissionSet(dictionary);
+        set.add(renamed);
+        assertSame(p, set.getById(p.getId()));
+        assertSame(p, set.getByName("beforeRename"));
+        assertNull(set.getByName("afterRename"));
+
+        assertTrue(dictionary.update(renamed));
+        assertSame(renamed, set.getByName("afterRename"));
+        assertNull(set.getByName("beforeRename"));
+    }
+
+    public void testSeparateDictionaries()
+    {
+        PermissionDictionary first = new PermissionDictionary();
+        PermissionDictionary second = new PermissionDictionary();
+        Permission read = permission("read");
+        Permission write = permission("write");
+
+        BitmapPermissionSet a = new BitmapPermissionSet(first);
+        BitmapPermissionSet b = new BitmapPermissionSet(second);
+        a.add(read);
+        b.add(write);
+
+        // both permissions have the first ordinal of their dictionary
+        assertEquals(first.ordinalOf(read.getId()), second.ordinalOf(write.getId()));
+        assertFalse(a.contains(write));
+        assertFalse(a.containsAll(b));
+
+        a.add(b);
+        assertEquals(2, a.size());
+        assertTrue(a.containsAll(b));
+        assertEquals(1, b.size());
+        assertEquals(-1, second.ordinalOf(read.getId()));
+    }
+
+    public void testUnion()
+    {
+        PermissionDictionary dictionary = new PermissionDictionary();
+        BitmapPermissionSet a = new BitmapPermissionSet(dictionary);
+        BitmapPermissionSet b = new BitmapPermissionSet(dictionary);
+        for (int i = 0; i < 200; i++)
+        {
+            Permission p = permission("union" + i);
+            if (i % 2 == 0)
+            {
+                a.add(p);
+            }
+            if (i % 3 == 0)
+            {
+                b.add(p);
+            }
+        }
+
+        assertEquals(100, a.size());
+        assertEquals(67, b.size());
+
+        BitmapPermissionSet union = new BitmapPermissionSet(dictionary);
+        assertTrue(union.add(a));
+        assertTrue(union.add(b));
+        assertFalse(union.add(b));
+
+        // 100 even + 67 multiples of 3 - 34 multiples of 6
+        assertEquals(133, union.size());
+        assertTrue(union.containsAll(a));
+        assertTrue(union.containsAll(b));
+        assertFalse(a.containsAll(union));
+
+        assertTrue(union.removeAll(b));
+        assertEquals(66, union.size());
+        assertFalse(union.retainAll(a));
+        assertEquals(66, union.size());
+        assertTrue(union.retainAll(b));
+        assertTrue(union.isEmpty());
+    }
+
+    public void testMixedWithPermissionSet()
+    {
+        PermissionSet plain = new PermissionSet();
+        plain.add(permission("mixed1"));
+        plain.add(permission("mixed2"));
+
+        BitmapPermissionSet set = new BitmapPermissionSet(plain);
+        assertEquals(2, set.size());
+        assertTrue(set.containsAll(plain));
+        assertTrue(plain.containsAll(set));
+    }
+
+    public void testIterator()
+    {
+        BitmapPermissionSet set = new BitmapPermissionSet();
+        for (int i = 0; i < 100; i++)
+        {
+            set.add(permission("iterate" + i));
+        }
+
+        int count = 0;
+        for (Iterator<Permission> it = set.iterator(); it.hasNext();)
+        {
+            it.next();
+            if (count++ % 2 == 0)
+            {
+                it.remove();
+            }
+        }
+
+        assertEquals(100, count);
+        assertEquals(50, set.size());
+        assertEquals(50, set.getNames().size());
+    }
+
+    public void testSerialization() throws Exception
+    {
+        BitmapPermissionSet set = new BitmapPermissionSet();
+        set.add(permission("serial1"));
+        set.add(permission("serial2"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(set);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+        {
+            BitmapPermissionSet copy = (BitmapPermissionSet) in.readObject();
+            assertEquals(2, copy.size());
+            assertTrue(copy.containsName("serial1"));
+            assertTrue(copy.containsName("serial2"));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.apache.fulcrum.security.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import junit.framework.TestCase;
+
+/**
+ * Test the counting Bloom filter used in front of user existence checks
+ *
+ * @version $Id$
+ */
+public class CountingBloomFilterTest extends TestCase
+{
+    public void testSizing()
+    {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        assertEquals(1000, filter.getCapacity());
+        assertEquals(9586, filter.getCounterCount());
+        assertEquals(7, filter.getHashCount());
+        assertEquals(0, filter.size());
+        assertEquals(0.0, filter.getExpectedFalsePositiveRate(), 0.0);
+    }
+
+    public void testAddAndRemove()
+    {
+        CountingBloomFilter filter = new CountingBloomFilter(100, 0.01);
+        assertFalse(filter.mightContain("anton"));
+        assertFalse(filter.remove("anton"));
+
+        filter.add("anton");
+        filter.add("berta");
+        assertTrue(filter.mightContain("anton"));
+        assertTrue(filter.mightContain("berta"));
+        assertEquals(2, filter.size());
+
+        assertTrue(filter.remove("anton"));
+        assertFalse(filter.mightContain("anton"));
+        assertTrue(filter.mightContain("berta"));
+        assertEquals(1, filter.size());
+    }
+
+    public void testNoFalseNegatives()
+    {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++)
+        {
+            filter.add("user" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++)
+        {
+            assertTrue(filter.mightContain("user" + i));
+            if (filter.mightContain("other" + i))
+            {
+                falsePositives++;
+            }
+        }
+        assertTrue("Too many false positives: " + falsePositives, falsePositives < 50);
+
+        // removing half of the names keeps the others
+        for (int i = 0; i < 1000; i += 2)
+        {
+            assertTrue(filter.remove("user" + i));
+        }
+        for (int i = 1; i < 1000; i += 2)
+        {
+            assertTrue(filter.mightContain("user" + i));
+        }
+        assertEquals(500, filter.size());
+    }
+
+    public void testSaturatedCounters()
+    {
+        CountingBloomFilter filter = new CountingBloomFilter(1, 0.5);
+        for (int i = 0; i < 20; i++)
+        {
+            filter.add("anton");
+        }
+        for (int i = 0; i < 20; i++)
+        {
+            filter.remove("anton");
+        }
+
+        // counters at their maximum are never decremented
+        assertTrue(filter.mightContain("anton"));
+    }
+
+    public void testIllegalArguments()
+    {
+        try
+        {
+            new CountingBloomFilter(0, 0.01);
+            fail("Should have thrown IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // good
+        }
+
+        try
+        {
+            new CountingBloomFilter(100, 1.0);
+            fail("Should have thrown IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // good
+        }
+    }
+}
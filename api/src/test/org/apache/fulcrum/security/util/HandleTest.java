@@ -0,0 +1,142 @@
+package org.apache.fulcrum.security.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import junit.framework.TestCase;
+
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbineGroupImpl;
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbinePermissionImpl;
+
+/**
+ * Test the permission and group handles and the retirement of ordinals
+ *
+ * @version $Id$
+ */
+public class HandleTest extends TestCase
+{
+    private static Permission permission(String name)
+    {
+        Permission p = new TurbinePermissionImpl();
+        p.setName(name);
+        p.setId("HandleTest." + name);
+        return p;
+    }
+
+    private static Group group(String name)
+    {
+        Group g = new TurbineGroupImpl();
+        g.setName(name);
+        g.setId("HandleTest." + name);
+        return g;
+    }
+
+    public void testPermissionHandle()
+    {
+        PermissionDictionary dictionary = new PermissionDictionary();
+        Permission read = permission("read");
+        PermissionHandle handle = new PermissionHandle(dictionary, read);
+        assertSame(dictionary, handle.getDictionary());
+        assertEquals(dictionary.ordinalOf(read.getId()), handle.getOrdinal());
+        assertSame(read, handle.getPermission());
+        assertTrue(handle.isValid());
+
+        assertTrue(dictionary.retire(read.getId()));
+        assertFalse(dictionary.retire(read.getId()));
+        assertFalse(handle.isValid());
+
+        // a permission re-created with the same id gets a new ordinal
+        PermissionHandle again = new PermissionHandle(dictionary, permission("read"));
+        assertTrue(handle.getOrdinal() != again.getOrdinal());
+        assertEquals(again.getOrdinal(), dictionary.ordinalOf(read.getId()));
+        assertTrue(again.isValid());
+        assertFalse(handle.isValid());
+    }
+
+    public void testGroupHandle()
+    {
+        GroupDictionary dictionary = new GroupDictionary();
+        Group sales = group("sales");
+        Group hr = group("hr");
+        GroupHandle handle = new GroupHandle(dictionary, sales);
+        GroupHandle other = new GroupHandle(dictionary, hr);
+        assertSame(dictionary, handle.getDictionary());
+        assertTrue(handle.getOrdinal() != other.getOrdinal());
+        assertSame(sales, dictionary.get(handle.getOrdinal()));
+        assertEquals(handle.getOrdinal(), new GroupHandle(dictionary, sales).getOrdinal());
+
+        // another instance with the same id does not replace the stored one
+        Group renamed = group("marketing");
+        renamed.setId(sales.getId());
+        assertEquals(handle.getOrdinal(), new GroupHandle(dictionary, renamed).getOrdinal());
+        assertSame(sales, dictionary.get(handle.getOrdinal()));
+        assertTrue(dictionary.update(renamed));
+        assertSame(renamed, dictionary.get(handle.getOrdinal()));
+
+        assertTrue(dictionary.retire(sales.getId()));
+        assertFalse(handle.isValid());
+        assertTrue(other.isValid());
+        assertFalse(dictionary.retire("HandleTest.unknown"));
+        assertFalse(dictionary.update(sales));
+    }
+
+    public void testRetirementIsFinal()
+    {
+        GroupDictionary dictionary = new GroupDictionary();
+        Group sales = group("sales");
+        GroupHandle handle = new GroupHandle(dictionary, sales);
+        assertTrue(dictionary.retire(sales.getId()));
+
+        // a group re-created with the same id does not revive old handles
+        GroupHandle again = new GroupHandle(dictionary, group("sales"));
+        assertTrue(handle.getOrdinal() != again.getOrdinal());
+        assertFalse(handle.isValid());
+        assertTrue(again.isValid());
+        assertEquals(2, dictionary.size());
+    }
+
+    public void testSeparateDictionaries()
+    {
+        GroupDictionary first = new GroupDictionary();
+        GroupDictionary second = new GroupDictionary();
+        GroupHandle sales = new GroupHandle(first, group("sales"));
+        GroupHandle hr = new GroupHandle(second, group("hr"));
+        assertEquals(sales.getOrdinal(), hr.getOrdinal());
+
+        assertTrue(first.retire(sales.getGroup().getId()));
+        assertFalse(sales.isValid());
+        assertTrue(hr.isValid());
+    }
+
+    public void testNoId()
+    {
+        try
+        {
+            new GroupHandle(new GroupDictionary(), new TurbineGroupImpl());
+            fail("Expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException expected)
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.apache.fulcrum.security.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Test the primitive id index of SecuritySet against a LinkedHashMap
+ *
+ * @version $Id$
+ */
+public class IntIdMapTest extends TestCase
+{
+    public void testPutGetRemove()
+    {
+        IntIdMap<String> map = new IntIdMap<String>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(-7, "minus seven"));
+        assertEquals("one", map.put(1, "uno"));
+
+        assertEquals(2, map.size());
+        assertEquals("uno", map.get(1));
+        assertEquals("uno", map.get(Integer.valueOf(1)));
+        assertNull(map.get(Long.valueOf(1)));
+        assertTrue(map.containsKey(-7));
+        assertFalse(map.containsKey("1"));
+
+        assertEquals("minus seven", map.remove(-7));
+        assertNull(map.remove(-7));
+        assertEquals(1, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+    }
+
+    public void testNonIntegerKey()
+    {
+        IntIdMap<String> map = new IntIdMap<String>();
+        try
+        {
+            map.put("1", "one");
+            fail("Non-Integer keys must be rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    public void testRandomOperations()
+    {
+        Random random = new Random(4711);
+        IntIdMap<Integer> map = new IntIdMap<Integer>();
+        Map<Integer, Integer> reference = new LinkedHashMap<Integer, Integer>();
+
+        for (int i = 0; i < 100000; i++)
+        {
+            Integer key = Integer.valueOf(random.nextInt(2000) - 1000);
+            switch (random.nextInt(3))
+            {
+                case 0:
+                    assertEquals(reference.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(reference.put(key, Integer.valueOf(i)), map.put(key, Integer.valueOf(i)));
+                    break;
+            }
+            assertEquals(reference.size(), map.size());
+        }
+
+        for (int key = -1000; key < 1000; key++)
+        {
+            assertEquals(reference.get(Integer.valueOf(key)), map.get(key));
+        }
+
+        // iteration follows insertion order
+        assertEquals(new ArrayList<Integer>(reference.keySet()), new ArrayList<Object>(map.keySet()));
+        assertEquals(new ArrayList<Integer>(reference.values()), new ArrayList<Integer>(map.values()));
+    }
+
+    public void testIteratorRemove()
+    {
+        IntIdMap<String> map = new IntIdMap<String>();
+        for (int i = 0; i < 100; i++)
+        {
+            map.put(i, "v" + i);
+        }
+
+        for (Iterator<String> it = map.values().iterator(); it.hasNext();)
+        {
+            String value = it.next();
+            if (Integer.parseInt(value.substring(1)) % 2 == 0)
+            {
+                it.remove();
+            }
+        }
+
+        assertEquals(50, map.size());
+        assertNull(map.get(10));
+        assertEquals("v11", map.get(11));
+    }
+}
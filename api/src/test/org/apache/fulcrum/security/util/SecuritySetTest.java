@@ -103,6 +103,86 @@ public class SecuritySetTest extends TestCase
         assertTrue(securitySet.add(g));
     }
 
+    public void testGetByNameIgnoresCase() throws Exception
+    {
+        SecuritySet<Group> securitySet = new GroupSet();
+        Group g = new MixedCaseGroup();
+        g.setName("Admins");
+        g.setId("1");
+        securitySet.add(g);
+
+        assertSame(g, securitySet.getByName("admins"));
+        assertSame(g, securitySet.getByName("ADMINS"));
+        assertNull(securitySet.getByName("admin"));
+        assertNull(securitySet.getByName(null));
+        assertTrue(securitySet.getNames().contains("Admins"));
+        assertTrue(securitySet.getNames().contains("aDMINS"));
+
+        assertTrue(securitySet.remove(g));
+        assertFalse(securitySet.containsName("Admins"));
+        assertEquals(0, securitySet.size());
+    }
+
+    public void testFoldName() throws Exception
+    {
+        String folded = "already folded";
+        assertSame(folded, SecuritySet.foldName(folded));
+        assertEquals("mixed case", SecuritySet.foldName("MiXeD CaSe"));
+        assertNull(SecuritySet.foldName(null));
+    }
+
+    public void testSortedViews() throws Exception
+    {
+        SecuritySet<Group> securitySet = new GroupSet();
+        String[] names = { "Charlie", "alpha", "Bravo" };
+        String[] ids = { "3", "1", "2" };
+        for (int i = 0; i < names.length; i++)
+        {
+            Group g = new MixedCaseGroup();
+            g.setName(names[i]);
+            g.setId(ids[i]);
+            securitySet.add(g);
+        }
+
+        // iteration follows insertion order
+        assertEquals("Charlie", securitySet.iterator().next().getName());
+
+        assertEquals("alpha", securitySet.getSortedByName().get(0).getName());
+        assertEquals("Bravo", securitySet.getSortedByName().get(1).getName());
+        assertEquals("Charlie", securitySet.getSortedByName().get(2).getName());
+
+        assertEquals("1", securitySet.getSortedById().get(0).getId());
+        assertEquals("3", securitySet.getSortedById().get(2).getId());
+    }
+
+    public void testIntegerAndOtherIds() throws Exception
+    {
+        SecuritySet<Group> securitySet = new GroupSet();
+        for (int i = 0; i < 20; i++)
+        {
+            Group g = new DynamicGroupImpl();
+            g.setName("group" + i);
+            g.setId(Integer.valueOf(i));
+            securitySet.add(g);
+        }
+
+        assertTrue(securitySet.containsId(5));
+        assertTrue(securitySet.containsId(Integer.valueOf(5)));
+        assertFalse(securitySet.containsId(Long.valueOf(5)));
+        assertEquals("group7", securitySet.getById(7).getName());
+
+        // a non-Integer id switches to the generic index
+        Group g = new DynamicGroupImpl();
+        g.setName("other");
+        g.setId("other");
+        assertTrue(securitySet.add(g));
+
+        assertEquals(21, securitySet.size());
+        assertSame(g, securitySet.getById("other"));
+        assertEquals("group7", securitySet.getById(7).getName());
+        assertEquals("group0", securitySet.iterator().next().getName());
+    }
+
     private SecuritySet<Group> getTestData()
     {
         SecuritySet<Group> securitySet = new GroupSet();
@@ -121,4 +201,25 @@ public class SecuritySetTest extends TestCase
         return securitySet;
     }
 
+    /**
+     * A group which keeps the case of its name
+     */
+    private static class MixedCaseGroup extends DynamicGroupImpl
+    {
+        private static final long serialVersionUID = 1L;
+
+        private String name;
+
+        @Override
+        public String getName()
+        {
+            return name;
+        }
+
+        @Override
+        public void setName(String name)
+        {
+            this.name = name;
+        }
+    }
 }
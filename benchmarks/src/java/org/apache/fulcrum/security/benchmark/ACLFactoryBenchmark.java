@@ -0,0 +1,230 @@
+package org.apache.fulcrum.security.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.security.GroupManager;
+import org.apache.fulcrum.security.PermissionManager;
+import org.apache.fulcrum.security.RoleManager;
+import org.apache.fulcrum.security.SecurityService;
+import org.apache.fulcrum.security.UserManager;
+import org.apache.fulcrum.security.acl.AccessControlList;
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.basic.BasicModelManager;
+import org.apache.fulcrum.security.model.dynamic.DynamicModelManager;
+import org.apache.fulcrum.security.model.turbine.TurbineModelManager;
+import org.apache.fulcrum.security.util.FulcrumSecurityException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the construction of an ACL by the ACL factory of each model,
+ * with the entities and relations kept by the memory backend.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ACLFactoryBenchmark
+{
+    /** The model, which selects BasicACLFactory, DynamicACLFactory or TurbineACLFactory */
+    @Param({ "basic", "dynamic", "turbine" })
+    public String model;
+
+    /** Number of groups the user is assigned to */
+    @Param({ "10", "100" })
+    public int groups;
+
+    /** Number of roles per group, not used by the basic model */
+    @Param({ "5" })
+    public int rolesPerGroup;
+
+    /** Number of permissions per role, not used by the basic model */
+    @Param({ "20" })
+    public int permissionsPerRole;
+
+    private SecurityContainer container;
+
+    private UserManager userManager;
+
+    private User user;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        container = SecurityContainer.start(SecurityContainer.MEMORY, model);
+        SecurityService securityService = container.getSecurityService();
+        userManager = securityService.getUserManager();
+
+        user = userManager.addUser(userManager.getUserInstance("user"), "secret");
+
+        GroupManager groupManager = securityService.getGroupManager();
+        Group[] groupArray = new Group[groups];
+        for (int i = 0; i < groups; i++)
+        {
+            groupArray[i] = groupManager.addGroup(groupManager.getGroupInstance("group" + i));
+        }
+
+        if ("basic".equals(model))
+        {
+            BasicModelManager modelManager = securityService.getModelManager();
+            for (Group group : groupArray)
+            {
+                modelManager.grant(user, group);
+            }
+            return;
+        }
+
+        Random random = new Random(42);
+        RoleManager roleManager = securityService.getRoleManager();
+        PermissionManager permissionManager = securityService.getPermissionManager();
+
+        Role[] roles = new Role[Math.max(1, groups * rolesPerGroup / 2)];
+        for (int i = 0; i < roles.length; i++)
+        {
+            roles[i] = roleManager.addRole(roleManager.getRoleInstance("role" + i));
+        }
+
+        Permission[] permissions = new Permission[1000];
+        for (int i = 0; i < permissions.length; i++)
+        {
+            permissions[i] = permissionManager.addPermission(permissionManager.getPermissionInstance("permission" + i));
+        }
+
+        if ("dynamic".equals(model))
+        {
+            DynamicModelManager modelManager = securityService.getModelManager();
+            for (Group group : groupArray)
+            {
+                modelManager.grant(user, group);
+                for (int i = 0; i < rolesPerGroup; i++)
+                {
+                    grantQuietly(modelManager, group, roles[random.nextInt(roles.length)]);
+                }
+            }
+            for (Role role : roles)
+            {
+                for (int i = 0; i < permissionsPerRole; i++)
+                {
+                    grantQuietly(modelManager, role, permissions[random.nextInt(permissions.length)]);
+                }
+            }
+        }
+        else
+        {
+            TurbineModelManager modelManager = securityService.getModelManager();
+            for (Group group : groupArray)
+            {
+                for (int i = 0; i < rolesPerGroup; i++)
+                {
+                    grantQuietly(modelManager, group, roles[random.nextInt(roles.length)]);
+                }
+            }
+            for (Role role : roles)
+            {
+                for (int i = 0; i < permissionsPerRole; i++)
+                {
+                    grantQuietly(modelManager, role, permissions[random.nextInt(permissions.length)]);
+                }
+            }
+        }
+    }
+
+    /** The random relations may contain duplicates, which some managers reject */
+    private void grantQuietly(DynamicModelManager modelManager, Group group, Role role)
+    {
+        try
+        {
+            modelManager.grant(group, role);
+        }
+        catch (FulcrumSecurityException e)
+        {
+            // duplicate
+        }
+    }
+
+    private void grantQuietly(DynamicModelManager modelManager, Role role, Permission permission)
+    {
+        try
+        {
+            modelManager.grant(role, permission);
+        }
+        catch (FulcrumSecurityException e)
+        {
+            // duplicate
+        }
+    }
+
+    private void grantQuietly(TurbineModelManager modelManager, Group group, Role role)
+    {
+        try
+        {
+            modelManager.grant(user, group, role);
+        }
+        catch (FulcrumSecurityException e)
+        {
+            // duplicate
+        }
+    }
+
+    private void grantQuietly(TurbineModelManager modelManager, Role role, Permission permission)
+    {
+        try
+        {
+            modelManager.grant(role, permission);
+        }
+        catch (FulcrumSecurityException e)
+        {
+            // duplicate
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        container.close();
+    }
+
+    @Benchmark
+    public AccessControlList getACL() throws FulcrumSecurityException
+    {
+        return userManager.getACL(user);
+    }
+}
@@ -0,0 +1,111 @@
+package org.apache.fulcrum.security.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.model.basic.BasicAccessControlList;
+import org.apache.fulcrum.security.model.basic.BasicAccessControlListImpl;
+import org.apache.fulcrum.security.util.GroupSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures every lookup of {@link BasicAccessControlListImpl}.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BasicAccessControlListBenchmark
+{
+    /** Number of groups the user is assigned to */
+    @Param({ "10", "1000" })
+    public int groups;
+
+    private GroupSet groupSet;
+
+    private BasicAccessControlList acl;
+
+    private Group[] probes;
+
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        // the user is a member of every other group
+        SyntheticModel model = new SyntheticModel(2 * groups, 0, 0);
+        groupSet = new GroupSet();
+        for (int i = 0; i < groups; i++)
+        {
+            groupSet.add(model.getGroups()[2 * i]);
+        }
+
+        acl = construct();
+
+        Random random = new Random(42);
+        probes = new Group[1024];
+        for (int i = 0; i < 1024; i++)
+        {
+            probes[i] = model.getGroups()[random.nextInt(2 * groups)];
+        }
+    }
+
+    private int nextIndex()
+    {
+        next = (next + 1) & 1023;
+        return next;
+    }
+
+    @Benchmark
+    public BasicAccessControlList construct()
+    {
+        return new BasicAccessControlListImpl(groupSet);
+    }
+
+    @Benchmark
+    public boolean hasGroup()
+    {
+        return acl.hasGroup(probes[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean hasGroupName()
+    {
+        return acl.hasGroup(probes[nextIndex()].getName());
+    }
+}
@@ -0,0 +1,232 @@
+package org.apache.fulcrum.security.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.model.dynamic.DynamicAccessControlList;
+import org.apache.fulcrum.security.model.dynamic.DynamicAccessControlListImpl;
+import org.apache.fulcrum.security.util.GroupSet;
+import org.apache.fulcrum.security.util.PermissionSet;
+import org.apache.fulcrum.security.util.RoleSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures every lookup of {@link DynamicAccessControlListImpl}. The ACL is
+ * built from synthetic role and permission sets without any manager.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DynamicAccessControlListBenchmark
+{
+    /** Number of groups the user is assigned to */
+    @Param({ "10", "100" })
+    public int groups;
+
+    /** Number of roles per group */
+    @Param({ "5" })
+    public int rolesPerGroup;
+
+    /** Number of permissions per role */
+    @Param({ "20" })
+    public int permissionsPerRole;
+
+    private Map<Group, RoleSet> roleSets;
+
+    private Map<Role, PermissionSet> permissionSets;
+
+    private DynamicAccessControlList acl;
+
+    private GroupSet queryGroups;
+
+    private Permission[] permissions;
+
+    private Group[] groupArray;
+
+    private Role[] roles;
+
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        SyntheticModel model = new SyntheticModel(groups, groups * rolesPerGroup / 2, 1000);
+        Random random = new Random(42);
+
+        roleSets = new HashMap<Group, RoleSet>();
+        for (Group group : model.getGroups())
+        {
+            RoleSet roleSet = new RoleSet();
+            for (int i = 0; i < rolesPerGroup; i++)
+            {
+                roleSet.add(model.getRoles()[random.nextInt(model.getRoles().length)]);
+            }
+            roleSets.put(group, roleSet);
+        }
+
+        permissionSets = new HashMap<Role, PermissionSet>();
+        for (Role role : model.getRoles())
+        {
+            PermissionSet permissionSet = new PermissionSet();
+            for (int i = 0; i < permissionsPerRole; i++)
+            {
+                permissionSet.add(model.getPermissions()[random.nextInt(model.getPermissions().length)]);
+            }
+            permissionSets.put(role, permissionSet);
+        }
+
+        acl = construct();
+
+        queryGroups = new GroupSet();
+        for (int i = 0; i < Math.min(5, groups); i++)
+        {
+            queryGroups.add(model.getGroups()[random.nextInt(groups)]);
+        }
+
+        // lookups mix hits and misses
+        permissions = new Permission[1024];
+        groupArray = new Group[1024];
+        roles = new Role[1024];
+        for (int i = 0; i < 1024; i++)
+        {
+            permissions[i] = model.getPermissions()[random.nextInt(model.getPermissions().length)];
+            groupArray[i] = model.getGroups()[random.nextInt(groups)];
+            roles[i] = model.getRoles()[random.nextInt(model.getRoles().length)];
+        }
+    }
+
+    private int nextIndex()
+    {
+        next = (next + 1) & 1023;
+        return next;
+    }
+
+    @Benchmark
+    public DynamicAccessControlList construct()
+    {
+        return new DynamicAccessControlListImpl(roleSets, permissionSets);
+    }
+
+    @Benchmark
+    public boolean hasPermission()
+    {
+        return acl.hasPermission(permissions[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean hasPermissionName()
+    {
+        return acl.hasPermission(permissions[nextIndex()].getName());
+    }
+
+    @Benchmark
+    public boolean hasPermissionGroup()
+    {
+        int i = nextIndex();
+        return acl.hasPermission(permissions[i], groupArray[i]);
+    }
+
+    @Benchmark
+    public boolean hasPermissionNames()
+    {
+        int i = nextIndex();
+        return acl.hasPermission(permissions[i].getName(), groupArray[i].getName());
+    }
+
+    @Benchmark
+    public boolean hasPermissionNameGroup()
+    {
+        int i = nextIndex();
+        return acl.hasPermission(permissions[i].getName(), groupArray[i]);
+    }
+
+    @Benchmark
+    public boolean hasPermissionGroupSet()
+    {
+        return acl.hasPermission(permissions[nextIndex()], queryGroups);
+    }
+
+    @Benchmark
+    public boolean hasPermissionNameGroupSet()
+    {
+        return acl.hasPermission(permissions[nextIndex()].getName(), queryGroups);
+    }
+
+    @Benchmark
+    public boolean hasRole()
+    {
+        return acl.hasRole(roles[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean hasRoleName()
+    {
+        return acl.hasRole(roles[nextIndex()].getName());
+    }
+
+    @Benchmark
+    public boolean hasRoleGroup()
+    {
+        int i = nextIndex();
+        return acl.hasRole(roles[i], groupArray[i]);
+    }
+
+    @Benchmark
+    public boolean hasRoleNames()
+    {
+        int i = nextIndex();
+        return acl.hasRole(roles[i].getName(), groupArray[i].getName());
+    }
+
+    @Benchmark
+    public boolean hasRoleGroupSet()
+    {
+        return acl.hasRole(roles[nextIndex()], queryGroups);
+    }
+
+    @Benchmark
+    public boolean hasRoleNameGroupSet()
+    {
+        return acl.hasRole(roles[nextIndex()].getName(), queryGroups);
+    }
+}
@@ -0,0 +1,158 @@
+package org.apache.fulcrum.security.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.security.GroupManager;
+import org.apache.fulcrum.security.UserManager;
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.util.DataBackendException;
+import org.apache.fulcrum.security.util.FulcrumSecurityException;
+import org.apache.fulcrum.security.util.GroupSet;
+import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.fulcrum.security.util.UserSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the create, read and delete operations of the user and group
+ * managers of the turbine model, on the memory backend and on the Torque
+ * backend with an in-memory HSQLDB database.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ManagerCrudBenchmark
+{
+    /** The backend */
+    @Param({ SecurityContainer.MEMORY, SecurityContainer.TORQUE })
+    public String backend;
+
+    /** Number of users and groups stored before the measurement */
+    @Param({ "100", "1000" })
+    public int size;
+
+    private SecurityContainer container;
+
+    private UserManager userManager;
+
+    private GroupManager groupManager;
+
+    private User[] users;
+
+    private int next = 0;
+
+    private int created = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        container = SecurityContainer.start(backend, "turbine");
+        userManager = container.getSecurityService().getUserManager();
+        groupManager = container.getSecurityService().getGroupManager();
+
+        users = new User[size];
+        for (int i = 0; i < size; i++)
+        {
+            users[i] = userManager.addUser(userManager.getUserInstance("user" + i), "secret");
+            groupManager.addGroup(groupManager.getGroupInstance("group" + i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        container.close();
+    }
+
+    private int nextIndex()
+    {
+        next = (next + 1) % size;
+        return next;
+    }
+
+    @Benchmark
+    public User addAndRemoveUser() throws FulcrumSecurityException
+    {
+        User user = userManager.addUser(userManager.getUserInstance("new" + created++), "secret");
+        userManager.removeUser(user);
+        return user;
+    }
+
+    @Benchmark
+    public User getUser() throws FulcrumSecurityException
+    {
+        return userManager.getUser(users[nextIndex()].getName());
+    }
+
+    @Benchmark
+    public User getUserById() throws FulcrumSecurityException
+    {
+        return userManager.getUserById(users[nextIndex()].getId());
+    }
+
+    @Benchmark
+    public boolean checkExists() throws DataBackendException
+    {
+        return userManager.checkExists(users[nextIndex()].getName());
+    }
+
+    @Benchmark
+    public boolean checkExistsMissing() throws DataBackendException
+    {
+        return userManager.checkExists("missing" + nextIndex());
+    }
+
+    @Benchmark
+    public Group getGroupByName() throws DataBackendException, UnknownEntityException
+    {
+        return groupManager.getGroupByName("group" + nextIndex());
+    }
+
+    @Benchmark
+    public UserSet getAllUsers() throws DataBackendException
+    {
+        return userManager.getAllUsers();
+    }
+
+    @Benchmark
+    public GroupSet getAllGroups() throws DataBackendException
+    {
+        return groupManager.getAllGroups();
+    }
+}
@@ -0,0 +1,160 @@
+package org.apache.fulcrum.security.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Scanner;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.apache.fulcrum.security.SecurityService;
+import org.apache.fulcrum.yaafi.framework.container.ServiceContainer;
+import org.apache.fulcrum.yaafi.framework.factory.ServiceContainerConfiguration;
+import org.apache.fulcrum.yaafi.framework.factory.ServiceContainerFactory;
+import org.apache.fulcrum.yaafi.framework.logger.Log4j2Logger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.torque.Torque;
+import org.apache.torque.util.Transaction;
+
+/**
+ * Starts a YAAFI container with the security service for one backend and
+ * model. The Torque backend runs on an in-memory HSQLDB database, which is
+ * created from scratch for every container.
+ *
+ * @version $Id$
+ */
+public class SecurityContainer implements AutoCloseable
+{
+    /** The memory backend */
+    public static final String MEMORY = "memory";
+
+    /** The Torque backend */
+    public static final String TORQUE = "torque";
+
+    private static final String RESOURCE_PATH = "/org/apache/fulcrum/security/benchmark/";
+
+    private final ServiceContainer container;
+
+    private final boolean torque;
+
+    private SecurityContainer(ServiceContainer container, boolean torque)
+    {
+        this.container = container;
+        this.torque = torque;
+    }
+
+    /**
+     * Start a container
+     *
+     * @param backend {@link #MEMORY} or {@link #TORQUE}
+     * @param model basic, dynamic or turbine. Torque supports turbine only.
+     * @return the running container
+     * @throws Exception if the container cannot be started
+     */
+    public static SecurityContainer start(String backend, String model) throws Exception
+    {
+        boolean torque = TORQUE.equals(backend);
+
+        if (torque)
+        {
+            if (!"turbine".equals(model))
+            {
+                throw new IllegalArgumentException("The Torque benchmarks support the turbine model only");
+            }
+            initTorque();
+        }
+
+        String prefix = RESOURCE_PATH + backend + "-" + model;
+        ServiceContainerConfiguration config = new ServiceContainerConfiguration();
+        config.setComponentRolesLocation(prefix + "-roles.xml");
+        config.setComponentConfigurationLocation(prefix + "-components.xml");
+        config.setLogger(new Log4j2Logger(LogManager.getLogger("avalon")));
+
+        return new SecurityContainer(ServiceContainerFactory.create(config), torque);
+    }
+
+    /**
+     * @return the security service of the container
+     * @throws Exception if the service cannot be looked up
+     */
+    public SecurityService getSecurityService() throws Exception
+    {
+        return (SecurityService) container.lookup(SecurityService.ROLE);
+    }
+
+    @Override
+    public void close() throws Exception
+    {
+        ServiceContainerFactory.dispose(container);
+
+        if (torque)
+        {
+            Torque.shutdown();
+        }
+    }
+
+    private static void initTorque() throws Exception
+    {
+        BaseConfiguration conf = new BaseConfiguration();
+        conf.setProperty("torque.database.default", "default");
+        conf.setProperty("torque.database.default.adapter", "hsqldb");
+        conf.setProperty("torque.dsfactory.default.factory",
+                "org.apache.torque.dsfactory.SharedPool2DataSourceFactory");
+        conf.setProperty("torque.dsfactory.default.connection.driver", "org.hsqldb.jdbcDriver");
+        conf.setProperty("torque.dsfactory.default.connection.url", "jdbc:hsqldb:mem:fulcrum-benchmark");
+        conf.setProperty("torque.dsfactory.default.connection.user", "sa");
+        conf.setProperty("torque.dsfactory.default.connection.password", "");
+        conf.setProperty("torque.manager.useCache", "true");
+        Torque.init(conf);
+
+        Connection con = Transaction.begin();
+        try (InputStream in = SecurityContainer.class.getResourceAsStream(RESOURCE_PATH + "torque-turbine-schema.sql");
+             Scanner scanner = new Scanner(in, StandardCharsets.UTF_8.name());
+             Statement statement = con.createStatement())
+        {
+            StringBuilder sql = new StringBuilder();
+            while (scanner.hasNextLine())
+            {
+                String line = scanner.nextLine().trim();
+                if (!line.isEmpty() && !line.startsWith("--"))
+                {
+                    sql.append(line).append('\n');
+                }
+            }
+
+            for (String command : sql.toString().split(";"))
+            {
+                if (!command.trim().isEmpty())
+                {
+                    statement.executeUpdate(command);
+                }
+            }
+
+            Transaction.commit(con);
+        }
+        catch (Exception e)
+        {
+            Transaction.safeRollback(con);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package org.apache.fulcrum.security.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.security.entity.SecurityEntity;
+import org.apache.fulcrum.security.util.GroupSet;
+import org.apache.fulcrum.security.util.PermissionSet;
+import org.apache.fulcrum.security.util.RoleSet;
+import org.apache.fulcrum.security.util.SecuritySet;
+import org.apache.fulcrum.security.util.UserSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the operations of {@link SecuritySet} on a {@link PermissionSet},
+ * {@link RoleSet}, {@link GroupSet} or {@link UserSet} of synthetic entities.
+ * The benchmarks ending in TreeMap measure the former layout of two case
+ * insensitive {@link TreeMap}s for comparison.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecuritySetBenchmark
+{
+    /** Type of the set */
+    @Param({ "Permission", "Role", "Group", "User" })
+    public String type;
+
+    /** Number of entities in the set */
+    @Param({ "100", "10000", "1000000" })
+    public int size;
+
+    private SecurityEntity[] entities;
+
+    private SecuritySet<SecurityEntity> set;
+
+    private SecuritySet<SecurityEntity> other;
+
+    private TreeMapLayout treeMap;
+
+    private String[] names;
+
+    private Integer[] ids;
+
+    private SecurityEntity[] probes;
+
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        // the second half of the entities is not in the set
+        SecurityEntity[] all = createEntities(2 * size);
+        entities = Arrays.copyOf(all, size);
+        set = newSet();
+        set.add(Arrays.asList(entities));
+
+        // half of the entities overlap with the set
+        other = newSet();
+        other.add(Arrays.asList(entities).subList(size / 2, size));
+        treeMap = buildTreeMap();
+
+        // lookups mix hits and misses, names with different case
+        Random random = new Random(42);
+        names = new String[1024];
+        ids = new Integer[1024];
+        probes = new SecurityEntity[1024];
+        for (int i = 0; i < 1024; i++)
+        {
+            SecurityEntity entity = entities[random.nextInt(size)];
+            boolean miss = random.nextInt(4) == 0;
+            names[i] = miss ? "missing" + i : entity.getName().toUpperCase();
+            ids[i] = miss ? Integer.valueOf(-i) : (Integer) entity.getId();
+            probes[i] = miss ? all[size + random.nextInt(size)] : entity;
+        }
+    }
+
+    private SecurityEntity[] createEntities(int count)
+    {
+        switch (type)
+        {
+            case "Permission":
+                return new SyntheticModel(0, 0, count).getPermissions();
+            case "Role":
+                return new SyntheticModel(0, count, 0).getRoles();
+            case "Group":
+                return new SyntheticModel(count, 0, 0).getGroups();
+            case "User":
+                return SyntheticModel.createUsers(count);
+            default:
+                throw new IllegalArgumentException("Unknown set type " + type);
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private SecuritySet<SecurityEntity> newSet()
+    {
+        switch (type)
+        {
+            case "Permission":
+                return (SecuritySet) new PermissionSet();
+            case "Role":
+                return (SecuritySet) new RoleSet();
+            case "Group":
+                return (SecuritySet) new GroupSet();
+            case "User":
+                return (SecuritySet) new UserSet();
+            default:
+                throw new IllegalArgumentException("Unknown set type " + type);
+        }
+    }
+
+    private int nextIndex()
+    {
+        next = (next + 1) & 1023;
+        return next;
+    }
+
+    @Benchmark
+    public SecuritySet<SecurityEntity> build()
+    {
+        SecuritySet<SecurityEntity> result = newSet();
+        for (SecurityEntity entity : entities)
+        {
+            result.add(entity);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public SecuritySet<SecurityEntity> addAll()
+    {
+        SecuritySet<SecurityEntity> result = newSet();
+        result.add(set);
+        result.add(other);
+        return result;
+    }
+
+    @Benchmark
+    public boolean containsName()
+    {
+        return set.containsName(names[nextIndex()]);
+    }
+
+    @Benchmark
+    public SecurityEntity getByName()
+    {
+        return set.getByName(names[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean containsId()
+    {
+        return set.containsId(ids[nextIndex()]);
+    }
+
+    @Benchmark
+    public SecurityEntity getById()
+    {
+        return set.getById(ids[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean contains()
+    {
+        return set.contains(probes[nextIndex()]);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole)
+    {
+        for (SecurityEntity entity : set)
+        {
+            blackhole.consume(entity);
+        }
+    }
+
+    @Benchmark
+    public SecuritySet<SecurityEntity> removeAll()
+    {
+        SecuritySet<SecurityEntity> result = newSet();
+        result.add(set);
+        result.removeAll(other);
+        return result;
+    }
+
+    @Benchmark
+    public TreeMapLayout buildTreeMap()
+    {
+        TreeMapLayout result = new TreeMapLayout();
+        for (SecurityEntity entity : entities)
+        {
+            result.add(entity);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public boolean containsNameTreeMap()
+    {
+        return treeMap.containsName(names[nextIndex()]);
+    }
+
+    @Benchmark
+    public SecurityEntity getByIdTreeMap()
+    {
+        return treeMap.getById(ids[nextIndex()]);
+    }
+
+    /**
+     * The index layout of SecuritySet before it was hash based
+     */
+    public static class TreeMapLayout
+    {
+        private final Map<String, SecurityEntity> nameMap = new TreeMap<String, SecurityEntity>(String.CASE_INSENSITIVE_ORDER);
+
+        private final Map<Object, SecurityEntity> idMap = new TreeMap<Object, SecurityEntity>();
+
+        public boolean add(SecurityEntity entity)
+        {
+            if (idMap.containsKey(entity.getId()))
+            {
+                return false;
+            }
+
+            idMap.put(entity.getId(), entity);
+            nameMap.put(entity.getName(), entity);
+            return true;
+        }
+
+        public boolean containsName(String name)
+        {
+            return nameMap.containsKey(name);
+        }
+
+        public SecurityEntity getById(Object id)
+        {
+            return idMap.get(id);
+        }
+    }
+}
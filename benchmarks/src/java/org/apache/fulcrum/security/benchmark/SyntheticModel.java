@@ -0,0 +1,155 @@
+package org.apache.fulcrum.security.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineRole;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbineGroupImpl;
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbinePermissionImpl;
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbineRoleImpl;
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbineUserImpl;
+
+/**
+ * Synthetic Turbine model entities with Integer ids, as a database backend
+ * would create them.
+ *
+ * @version $Id$
+ */
+public class SyntheticModel
+{
+    /** Offset so that ids of different entity types do not overlap */
+    private static final int ID_OFFSET = 1_000_000;
+
+    private final User user;
+
+    private final Group[] groups;
+
+    private final Role[] roles;
+
+    private final Permission[] permissions;
+
+    /**
+     * Create the entities
+     *
+     * @param groupCount number of groups
+     * @param roleCount number of roles
+     * @param permissionCount number of permissions
+     */
+    public SyntheticModel(int groupCount, int roleCount, int permissionCount)
+    {
+        user = new TurbineUserImpl();
+        user.setName("user");
+        user.setId(Integer.valueOf(0));
+
+        groups = new Group[groupCount];
+        for (int i = 0; i < groupCount; i++)
+        {
+            groups[i] = new TurbineGroupImpl();
+            groups[i].setName("group" + i);
+            groups[i].setId(Integer.valueOf(ID_OFFSET + i));
+        }
+
+        roles = new Role[Math.max(1, roleCount)];
+        for (int i = 0; i < roles.length; i++)
+        {
+            roles[i] = new TurbineRoleImpl();
+            roles[i].setName("role" + i);
+            roles[i].setId(Integer.valueOf(2 * ID_OFFSET + i));
+        }
+
+        permissions = new Permission[permissionCount];
+        for (int i = 0; i < permissionCount; i++)
+        {
+            permissions[i] = new TurbinePermissionImpl();
+            permissions[i].setName("permission" + i);
+            permissions[i].setId(Integer.valueOf(3 * ID_OFFSET + i));
+        }
+    }
+
+    /**
+     * Create a user/group/role relation for the user of this model
+     *
+     * @param group the group
+     * @param role the role
+     * @return the relation
+     */
+    public TurbineUserGroupRole assign(Group group, Role role)
+    {
+        TurbineUserGroupRole ugr = new TurbineUserGroupRole();
+        ugr.setUser(user);
+        ugr.setGroup(group);
+        ugr.setRole(role);
+        return ugr;
+    }
+
+    /**
+     * Grant a permission to a role
+     *
+     * @param role the role
+     * @param permission the permission
+     */
+    public void grant(Role role, Permission permission)
+    {
+        ((TurbineRole) role).addPermission(permission);
+    }
+
+    public User getUser()
+    {
+        return user;
+    }
+
+    public Group[] getGroups()
+    {
+        return groups;
+    }
+
+    public Role[] getRoles()
+    {
+        return roles;
+    }
+
+    public Permission[] getPermissions()
+    {
+        return permissions;
+    }
+
+    /**
+     * Create users with ids which do not overlap with the other entities of
+     * a model
+     *
+     * @param count number of users
+     * @return the users
+     */
+    public static User[] createUsers(int count)
+    {
+        User[] users = new User[count];
+        for (int i = 0; i < count; i++)
+        {
+            users[i] = new TurbineUserImpl();
+            users[i].setName("user" + i);
+            users[i].setId(Integer.valueOf(4 * ID_OFFSET + i));
+        }
+        return users;
+    }
+}
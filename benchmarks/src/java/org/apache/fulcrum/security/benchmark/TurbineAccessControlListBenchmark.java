@@ -0,0 +1,243 @@
+package org.apache.fulcrum.security.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.model.turbine.CompiledTurbineAccessControlListImpl;
+import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
+import org.apache.fulcrum.security.model.turbine.TurbineAccessControlListImpl;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
+import org.apache.fulcrum.security.util.FulcrumSecurityException;
+import org.apache.fulcrum.security.util.GroupSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link TurbineAccessControlListImpl} with
+ * {@link CompiledTurbineAccessControlListImpl}. The ACL is built from
+ * synthetic user/group/role relations without any manager.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TurbineAccessControlListBenchmark
+{
+    /** The ACL implementation */
+    @Param({ "default", "compiled" })
+    public String implementation;
+
+    /** Number of groups the user is assigned to */
+    @Param({ "10", "100" })
+    public int groups;
+
+    /** Number of roles per group */
+    @Param({ "5" })
+    public int rolesPerGroup;
+
+    /** Number of permissions per role */
+    @Param({ "20" })
+    public int permissionsPerRole;
+
+    private SyntheticModel model;
+
+    private Set<TurbineUserGroupRole> assignments;
+
+    private TurbineAccessControlList acl;
+
+    private GroupSet queryGroups;
+
+    private Permission[] permissions;
+
+    private Group[] groupArray;
+
+    private Role[] roles;
+
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        model = new SyntheticModel(groups, groups * rolesPerGroup / 2, 1000);
+        assignments = new HashSet<TurbineUserGroupRole>();
+        Random random = new Random(42);
+
+        for (Group group : model.getGroups())
+        {
+            for (int i = 0; i < rolesPerGroup; i++)
+            {
+                Role role = model.getRoles()[random.nextInt(model.getRoles().length)];
+                assignments.add(model.assign(group, role));
+            }
+        }
+
+        for (Role role : model.getRoles())
+        {
+            for (int i = 0; i < permissionsPerRole; i++)
+            {
+                model.grant(role, model.getPermissions()[random.nextInt(model.getPermissions().length)]);
+            }
+        }
+
+        acl = build();
+
+        queryGroups = new GroupSet();
+        for (int i = 0; i < Math.min(5, groups); i++)
+        {
+            queryGroups.add(model.getGroups()[random.nextInt(groups)]);
+        }
+
+        // lookups mix hits and misses
+        permissions = new Permission[1024];
+        groupArray = new Group[1024];
+        roles = new Role[1024];
+        for (int i = 0; i < 1024; i++)
+        {
+            permissions[i] = model.getPermissions()[random.nextInt(model.getPermissions().length)];
+            groupArray[i] = model.getGroups()[random.nextInt(groups)];
+            roles[i] = model.getRoles()[random.nextInt(model.getRoles().length)];
+        }
+    }
+
+    private TurbineAccessControlList build() throws FulcrumSecurityException
+    {
+        if ("compiled".equals(implementation))
+        {
+            return new CompiledTurbineAccessControlListImpl(assignments, null, null, null, null);
+        }
+        return new TurbineAccessControlListImpl(assignments, null, null, null, null);
+    }
+
+    private int nextIndex()
+    {
+        next = (next + 1) & 1023;
+        return next;
+    }
+
+    @Benchmark
+    public TurbineAccessControlList construct() throws FulcrumSecurityException
+    {
+        return build();
+    }
+
+    @Benchmark
+    public boolean hasPermissionGroup()
+    {
+        int i = nextIndex();
+        return acl.hasPermission(permissions[i], groupArray[i]);
+    }
+
+    @Benchmark
+    public boolean hasPermissionNames()
+    {
+        int i = nextIndex();
+        return acl.hasPermission(permissions[i].getName(), groupArray[i].getName());
+    }
+
+    @Benchmark
+    public boolean hasPermissionNameGroup()
+    {
+        int i = nextIndex();
+        return acl.hasPermission(permissions[i].getName(), groupArray[i]);
+    }
+
+    @Benchmark
+    public boolean hasPermissionGroupSet()
+    {
+        return acl.hasPermission(permissions[nextIndex()], queryGroups);
+    }
+
+    @Benchmark
+    public boolean hasPermissionNameGroupSet()
+    {
+        return acl.hasPermission(permissions[nextIndex()].getName(), queryGroups);
+    }
+
+    @Benchmark
+    public boolean hasPermission()
+    {
+        return acl.hasPermission(permissions[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean hasPermissionName()
+    {
+        return acl.hasPermission(permissions[nextIndex()].getName());
+    }
+
+    @Benchmark
+    public boolean hasRole()
+    {
+        return acl.hasRole(roles[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean hasRoleName()
+    {
+        return acl.hasRole(roles[nextIndex()].getName());
+    }
+
+    @Benchmark
+    public boolean hasRoleGroup()
+    {
+        int i = nextIndex();
+        return acl.hasRole(roles[i], groupArray[i]);
+    }
+
+    @Benchmark
+    public boolean hasRoleNames()
+    {
+        int i = nextIndex();
+        return acl.hasRole(roles[i].getName(), groupArray[i].getName());
+    }
+
+    @Benchmark
+    public boolean hasRoleGroupSet()
+    {
+        return acl.hasRole(roles[nextIndex()], queryGroups);
+    }
+
+    @Benchmark
+    public boolean hasRoleNameGroupSet()
+    {
+        return acl.hasRole(roles[nextIndex()].getName(), queryGroups);
+    }
+}
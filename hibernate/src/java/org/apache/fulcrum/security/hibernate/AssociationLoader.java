@@ -0,0 +1,379 @@
+package org.apache.fulcrum.security.hibernate;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.EntityMode;
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.HibernateProxyHelper;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.ComponentType;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+/**
+ * Loads the associations of entities read through a stateless session, so
+ * they can be navigated after the session has been closed.
+ *
+ * Associations are loaded level by level with one query per mapped
+ * collection and batch of owners. Every entity is represented by exactly one
+ * instance, and collections are replaced by plain collections. Associations
+ * below the fetch depth are left as they are.
+ *
+ * @version $Id$
+ */
+class AssociationLoader
+{
+    /** Maximum number of ids in one IN clause */
+    private static final int BATCH_SIZE = 500;
+
+    private final SessionFactory sessionFactory;
+
+    private final StatelessSession session;
+
+    /** The loaded entities per entity name and key */
+    private final Map<String, Map<Object, Object>> entities = new HashMap<String, Map<Object, Object>>();
+
+    /** Entities found on the current level whose associations are loaded next */
+    private List<Object> nextLevel = new ArrayList<Object>();
+
+    /**
+     * Constructor
+     *
+     * @param sessionFactory
+     *            the session factory providing the mapping metadata
+     * @param session
+     *            the open stateless session the entities were read with
+     */
+    AssociationLoader(SessionFactory sessionFactory, StatelessSession session)
+    {
+        this.sessionFactory = sessionFactory;
+        this.session = session;
+    }
+
+    /**
+     * Load the associations of the given entities
+     *
+     * @param results
+     *            the result of a query, entities are replaced by their canonical
+     *            instance
+     * @param depth
+     *            the number of association levels to load
+     * @throws HibernateException
+     *             if a query fails
+     */
+    void load(List<Object> results, int depth) throws HibernateException
+    {
+        for (int i = 0; i < results.size(); i++)
+        {
+            results.set(i, canonical(results.get(i)));
+        }
+
+        for (int level = 0; level < depth && !nextLevel.isEmpty(); level++)
+        {
+            List<Object> owners = nextLevel;
+            nextLevel = new ArrayList<Object>();
+
+            Map<ClassMetadata, List<Object>> byEntity = new LinkedHashMap<ClassMetadata, List<Object>>();
+            for (Object owner : owners)
+            {
+                ClassMetadata metadata = getMetadata(owner);
+                List<Object> list = byEntity.get(metadata);
+                if (list == null)
+                {
+                    list = new ArrayList<Object>();
+                    byEntity.put(metadata, list);
+                }
+                list.add(owner);
+            }
+
+            for (Map.Entry<ClassMetadata, List<Object>> entry : byEntity.entrySet())
+            {
+                loadReferences(entry.getKey(), entry.getValue());
+                loadCollections(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Replace the many-to-one references of the owners, including those in a
+     * composite identifier, by loaded instances
+     */
+    private void loadReferences(ClassMetadata metadata, List<Object> owners) throws HibernateException
+    {
+        Type idType = metadata.getIdentifierType();
+        ComponentType keyType = null;
+        if (!metadata.hasIdentifierProperty() && idType instanceof ComponentType)
+        {
+            keyType = (ComponentType) idType;
+        }
+
+        String[] names = metadata.getPropertyNames();
+        Type[] types = metadata.getPropertyTypes();
+
+        // first collect and load all missing references in batches
+        Map<String, List<Serializable>> missing = new HashMap<String, List<Serializable>>();
+        for (Object owner : owners)
+        {
+            if (keyType != null)
+            {
+                Type[] keyTypes = keyType.getSubtypes();
+                Object[] values = keyType.getPropertyValues(owner, EntityMode.POJO);
+                for (int i = 0; i < values.length; i++)
+                {
+                    if (keyTypes[i] instanceof EntityType)
+                    {
+                        collectMissing(values[i], missing);
+                    }
+                }
+            }
+
+            for (int i = 0; i < names.length; i++)
+            {
+                if (types[i] instanceof EntityType)
+                {
+                    collectMissing(metadata.getPropertyValue(owner, names[i], EntityMode.POJO), missing);
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<Serializable>> entry : missing.entrySet())
+        {
+            List<Serializable> ids = entry.getValue();
+            for (int from = 0; from < ids.size(); from += BATCH_SIZE)
+            {
+                List<?> loaded = session.createQuery("from " + entry.getKey() + " e where e.id in (:ids)")
+                        .setParameterList("ids", ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())))
+                        .list();
+                for (Object entity : loaded)
+                {
+                    canonical(entity);
+                }
+            }
+        }
+
+        // then point the owners to the loaded instances
+        for (Object owner : owners)
+        {
+            if (keyType != null)
+            {
+                Type[] keyTypes = keyType.getSubtypes();
+                Object[] values = keyType.getPropertyValues(owner, EntityMode.POJO);
+                for (int i = 0; i < values.length; i++)
+                {
+                    if (keyTypes[i] instanceof EntityType)
+                    {
+                        values[i] = resolve(values[i]);
+                    }
+                }
+                keyType.setPropertyValues(owner, values, EntityMode.POJO);
+            }
+
+            for (int i = 0; i < names.length; i++)
+            {
+                if (types[i] instanceof EntityType)
+                {
+                    Object value = metadata.getPropertyValue(owner, names[i], EntityMode.POJO);
+                    metadata.setPropertyValue(owner, names[i], resolve(value), EntityMode.POJO);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace the mapped collections of the owners by plain collections of
+     * loaded instances
+     */
+    private void loadCollections(ClassMetadata metadata, List<Object> owners) throws HibernateException
+    {
+        if (!metadata.hasIdentifierProperty())
+        {
+            return;
+        }
+
+        String[] names = metadata.getPropertyNames();
+        Type[] types = metadata.getPropertyTypes();
+
+        for (int i = 0; i < names.length; i++)
+        {
+            if (!(types[i] instanceof CollectionType) || Map.class.isAssignableFrom(types[i].getReturnedClass()))
+            {
+                continue;
+            }
+
+            Map<Serializable, Collection<Object>> collections = new HashMap<Serializable, Collection<Object>>();
+            List<Serializable> ids = new ArrayList<Serializable>(owners.size());
+            for (Object owner : owners)
+            {
+                Serializable id = metadata.getIdentifier(owner, EntityMode.POJO);
+                Collection<Object> collection = List.class.isAssignableFrom(types[i].getReturnedClass())
+                        ? new ArrayList<Object>() : new HashSet<Object>();
+                collections.put(id, collection);
+                ids.add(id);
+            }
+
+            String hql = "select e.id, c from " + metadata.getEntityName() + " e join e." + names[i]
+                    + " c where e.id in (:ids)";
+            for (int from = 0; from < ids.size(); from += BATCH_SIZE)
+            {
+                List<?> rows = session.createQuery(hql)
+                        .setParameterList("ids", ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())))
+                        .list();
+                for (Object row : rows)
+                {
+                    Object[] columns = (Object[]) row;
+                    collections.get(columns[0]).add(canonical(columns[1]));
+                }
+            }
+
+            for (Object owner : owners)
+            {
+                metadata.setPropertyValue(owner, names[i],
+                        collections.get(metadata.getIdentifier(owner, EntityMode.POJO)), EntityMode.POJO);
+            }
+        }
+    }
+
+    /**
+     * Remember the id of a referenced entity which has not been loaded yet
+     */
+    private void collectMissing(Object value, Map<String, List<Serializable>> missing)
+    {
+        if (value instanceof HibernateProxy)
+        {
+            String entityName = ((HibernateProxy) value).getHibernateLazyInitializer().getEntityName();
+            Serializable id = ((HibernateProxy) value).getHibernateLazyInitializer().getIdentifier();
+            Map<Object, Object> loaded = entities.get(entityName);
+
+            if (loaded == null || !loaded.containsKey(id))
+            {
+                List<Serializable> ids = missing.get(entityName);
+                if (ids == null)
+                {
+                    ids = new ArrayList<Serializable>();
+                    missing.put(entityName, ids);
+                }
+                if (!ids.contains(id))
+                {
+                    ids.add(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the loaded instance of a referenced entity
+     */
+    private Object resolve(Object value)
+    {
+        if (value instanceof HibernateProxy)
+        {
+            String entityName = ((HibernateProxy) value).getHibernateLazyInitializer().getEntityName();
+            Serializable id = ((HibernateProxy) value).getHibernateLazyInitializer().getIdentifier();
+            Map<Object, Object> loaded = entities.get(entityName);
+            Object entity = loaded == null ? null : loaded.get(id);
+
+            // an entity which no longer exists stays a proxy
+            return entity == null ? value : entity;
+        }
+
+        return canonical(value);
+    }
+
+    /**
+     * @return the canonical instance of an entity, registering it for the next
+     *         level if it has not been seen before
+     */
+    private Object canonical(Object entity)
+    {
+        ClassMetadata metadata = entity == null || entity instanceof HibernateProxy ? null : getMetadata(entity);
+        if (metadata == null)
+        {
+            return entity;
+        }
+
+        Map<Object, Object> loaded = entities.get(metadata.getEntityName());
+        if (loaded == null)
+        {
+            loaded = new HashMap<Object, Object>();
+            entities.put(metadata.getEntityName(), loaded);
+        }
+
+        Object key = getKey(metadata, entity);
+        Object known = loaded.get(key);
+        if (known == null)
+        {
+            loaded.put(key, entity);
+            nextLevel.add(entity);
+            known = entity;
+        }
+
+        return known;
+    }
+
+    /**
+     * @return the key of an entity, composite identifiers are keyed by the ids
+     *         of the entities they reference
+     */
+    private Object getKey(ClassMetadata metadata, Object entity)
+    {
+        Type idType = metadata.getIdentifierType();
+        if (metadata.hasIdentifierProperty() || !(idType instanceof ComponentType))
+        {
+            return metadata.getIdentifier(entity, EntityMode.POJO);
+        }
+
+        ComponentType keyType = (ComponentType) idType;
+        Type[] keyTypes = keyType.getSubtypes();
+        Object[] values = keyType.getPropertyValues(entity, EntityMode.POJO);
+        for (int i = 0; i < values.length; i++)
+        {
+            if (keyTypes[i] instanceof EntityType && values[i] != null)
+            {
+                values[i] = values[i] instanceof HibernateProxy
+                        ? ((HibernateProxy) values[i]).getHibernateLazyInitializer().getIdentifier()
+                        : getMetadata(values[i]).getIdentifier(values[i], EntityMode.POJO);
+            }
+        }
+
+        return Arrays.asList(values);
+    }
+
+    /**
+     * @return the mapping metadata of an entity or <code>null</code> for values
+     */
+    private ClassMetadata getMetadata(Object entity)
+    {
+        return sessionFactory.getClassMetadata(HibernateProxyHelper.getClassWithoutInitializingProxy(entity));
+    }
+}
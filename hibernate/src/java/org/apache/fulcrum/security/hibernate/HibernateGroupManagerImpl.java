@@ -18,6 +18,7 @@ package org.apache.fulcrum.security.hibernate;
  * specific language governing permissions and limitations
  * under the License.
  */
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.fulcrum.security.entity.Group;
@@ -27,6 +28,7 @@ import org.apache.fulcrum.security.util.EntityExistsException;
 import org.apache.fulcrum.security.util.GroupSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
 import org.hibernate.HibernateException;
+import org.hibernate.StatelessSession;
 
 /**
  * This implementation persists to a database via Hibernate.
@@ -58,22 +60,13 @@ public class HibernateGroupManagerImpl extends AbstractGroupManager
     @Override
     public Group getGroupByName(String name) throws DataBackendException, UnknownEntityException
     {
-        Group group = null;
-        try
+        List<Group> groups = getPersistenceHelper().retrieveEntities("from " + Group.class.getName() + " g where g.name=:name",
+                Collections.singletonMap("name", name.toLowerCase()));
+        if (groups.size() == 0)
         {
-            List<Group> groups = getPersistenceHelper().retrieveSession()
-                    .createQuery("from " + Group.class.getName() + " g where g.name=:name").setString("name", name.toLowerCase()).list();
-            if (groups.size() == 0)
-            {
-                throw new UnknownEntityException("Could not find group" + name);
-            }
-            group = groups.get(0);
+            throw new UnknownEntityException("Could not find group" + name);
         }
-        catch (HibernateException e)
-        {
-            throw new DataBackendException("Error retrieving group information", e);
-        }
-        return group;
+        return groups.get(0);
     }
 
     /**
@@ -86,16 +79,8 @@ public class HibernateGroupManagerImpl extends AbstractGroupManager
     public GroupSet getAllGroups() throws DataBackendException
     {
         GroupSet groupSet = new GroupSet();
-        try
-        {
-
-            List<Group> groups = getPersistenceHelper().retrieveSession().createQuery("from " + Group.class.getName()).list();
-            groupSet.add(groups);
-        }
-        catch (HibernateException e)
-        {
-            throw new DataBackendException("Error retrieving group information", e);
-        }
+        List<Group> groups = getPersistenceHelper().retrieveEntities("from " + Group.class.getName(), Collections.<String, Object>emptyMap());
+        groupSet.add(groups);
         return groupSet;
     }
 
@@ -112,6 +97,7 @@ public class HibernateGroupManagerImpl extends AbstractGroupManager
     public synchronized void removeGroup(Group group) throws DataBackendException, UnknownEntityException
     {
         getPersistenceHelper().removeEntity(group);
+        groupRemoved(group);
     }
 
     /**
@@ -134,6 +120,7 @@ public class HibernateGroupManagerImpl extends AbstractGroupManager
         {
             group.setName(name);
             getPersistenceHelper().updateEntity(group);
+            groupRenamed(group);
         }
         else
         {
@@ -152,21 +139,31 @@ public class HibernateGroupManagerImpl extends AbstractGroupManager
      */
     public boolean checkExists(String groupName) throws DataBackendException
     {
-        List<Group> groups;
+        long count;
+        StatelessSession session = null;
         try
         {
-            groups = getPersistenceHelper().retrieveSession().createQuery("from " + Group.class.getName() + " sg where sg.name=:name")
-                    .setString("name", groupName).list();
+            session = getPersistenceHelper().openStatelessSession();
+            Number result = (Number) session.createQuery("select count(*) from " + Group.class.getName() + " sg where sg.name=:name")
+                    .setString("name", groupName).uniqueResult();
+            count = result.longValue();
         }
         catch (HibernateException e)
         {
             throw new DataBackendException("Error retrieving user information", e);
         }
-        if (groups.size() > 1)
+        finally
+        {
+            if (session != null)
+            {
+                session.close();
+            }
+        }
+        if (count > 1)
         {
             throw new DataBackendException("Multiple groups with same name '" + groupName + "'");
         }
-        return (groups.size() == 1);
+        return (count == 1);
     }
 
     /**
@@ -216,21 +213,13 @@ public class HibernateGroupManagerImpl extends AbstractGroupManager
 
         if (id != null)
         {
-            try
-            {
-                List<Group> groups = getPersistenceHelper().retrieveSession()
-                        .createQuery("from " + Group.class.getName() + " sr where sr.id=:id").setLong("id", ((Long) id).longValue()).list();
-                if (groups.size() == 0)
-                {
-                    throw new UnknownEntityException("Could not find group by id " + id);
-                }
-                group = groups.get(0);
-
-            }
-            catch (HibernateException e)
+            List<Group> groups = getPersistenceHelper().retrieveEntities("from " + Group.class.getName() + " sr where sr.id=:id",
+                    Collections.singletonMap("id", (Long) id));
+            if (groups.size() == 0)
             {
-                throw new DataBackendException("Error retrieving group information", e);
+                throw new UnknownEntityException("Could not find group by id " + id);
             }
+            group = groups.get(0);
         }
 
         return group;
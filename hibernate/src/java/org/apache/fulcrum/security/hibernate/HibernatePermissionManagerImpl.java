@@ -18,6 +18,7 @@ package org.apache.fulcrum.security.hibernate;
  * specific language governing permissions and limitations
  * under the License.
  */
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.fulcrum.security.entity.Permission;
@@ -27,6 +28,7 @@ import org.apache.fulcrum.security.util.EntityExistsException;
 import org.apache.fulcrum.security.util.PermissionSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
 import org.hibernate.HibernateException;
+import org.hibernate.StatelessSession;
 
 /**
  * This implementation persists to a database via Hibernate.
@@ -50,15 +52,8 @@ public class HibernatePermissionManagerImpl extends AbstractPermissionManager
     public PermissionSet getAllPermissions() throws DataBackendException
     {
         PermissionSet permissionSet = new PermissionSet();
-        try
-        {
-            List<Permission> permissions = getPersistenceHelper().retrieveSession().createQuery("from " + Permission.class.getName()).list();
-            permissionSet.add(permissions);
-        }
-        catch (HibernateException e)
-        {
-            throw new DataBackendException("Error retrieving permission information", e);
-        }
+        List<Permission> permissions = getPersistenceHelper().retrieveEntities("from " + Permission.class.getName(), Collections.<String, Object>emptyMap());
+        permissionSet.add(permissions);
         return permissionSet;
     }
 
@@ -82,6 +77,7 @@ public class HibernatePermissionManagerImpl extends AbstractPermissionManager
         {
             permission.setName(name);
             getPersistenceHelper().updateEntity(permission);
+            permissionRenamed(permission);
         }
         else
         {
@@ -100,21 +96,31 @@ public class HibernatePermissionManagerImpl extends AbstractPermissionManager
      */
     public boolean checkExists(String permissionName) throws DataBackendException
     {
-        List<Permission> permissions;
+        long count;
+        StatelessSession session = null;
         try
         {
-            permissions = getPersistenceHelper().retrieveSession()
-                    .createQuery("from " + Permission.class.getName() + " sp where sp.name=:name").setString("name", permissionName).list();
+            session = getPersistenceHelper().openStatelessSession();
+            Number result = (Number) session.createQuery("select count(*) from " + Permission.class.getName() + " sp where sp.name=:name")
+                    .setString("name", permissionName).uniqueResult();
+            count = result.longValue();
         }
         catch (HibernateException e)
         {
             throw new DataBackendException("Error retrieving permission information", e);
         }
-        if (permissions.size() > 1)
+        finally
+        {
+            if (session != null)
+            {
+                session.close();
+            }
+        }
+        if (count > 1)
         {
             throw new DataBackendException("Multiple permissions with same name '" + permissionName + "'");
         }
-        return (permissions.size() == 1);
+        return (count == 1);
     }
 
     /**
@@ -134,6 +140,7 @@ public class HibernatePermissionManagerImpl extends AbstractPermissionManager
         if (permissionExists)
         {
             getPersistenceHelper().removeEntity(permission);
+            permissionRemoved(permission);
         }
         else
         {
@@ -188,24 +195,32 @@ public class HibernatePermissionManagerImpl extends AbstractPermissionManager
 
         if (id != null)
         {
-            try
+            List<Permission> permissions = getPersistenceHelper().retrieveEntities("from " + Permission.class.getName() + " sp where sp.id=:id",
+                    Collections.singletonMap("id", (Long) id));
+            if (permissions.size() == 0)
             {
-                List<Permission> permissions = getPersistenceHelper().retrieveSession()
-                        .createQuery("from " + Permission.class.getName() + " sp where sp.id=:id").setLong("id", ((Long) id).longValue())
-                        .list();
-                if (permissions.size() == 0)
-                {
-                    throw new UnknownEntityException("Could not find permission by id " + id);
-                }
-                permission = permissions.get(0);
-
-            }
-            catch (HibernateException e)
-            {
-                throw new DataBackendException("Error retrieving permission information", e);
+                throw new UnknownEntityException("Could not find permission by id " + id);
             }
+            permission = permissions.get(0);
         }
 
         return permission;
     }
+
+    /**
+     * Look up a permission by name with a single query
+     *
+     * @param name
+     *            the name of the Permission.
+     * @return the Permission or <code>null</code> if it does not exist
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    @Override
+    protected <T extends Permission> T findPermissionByName(String name) throws DataBackendException
+    {
+        List<T> permissions = getPersistenceHelper().retrieveEntities("from " + Permission.class.getName() + " sp where sp.name=:name",
+                Collections.singletonMap("name", name.toLowerCase()));
+        return permissions.isEmpty() ? null : permissions.get(0);
+    }
 }
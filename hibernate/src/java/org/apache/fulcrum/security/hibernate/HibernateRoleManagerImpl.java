@@ -18,6 +18,7 @@ package org.apache.fulcrum.security.hibernate;
  * specific language governing permissions and limitations
  * under the License.
  */
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.fulcrum.security.entity.Role;
@@ -27,6 +28,7 @@ import org.apache.fulcrum.security.util.EntityExistsException;
 import org.apache.fulcrum.security.util.RoleSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
 import org.hibernate.HibernateException;
+import org.hibernate.StatelessSession;
 
 /**
  * 
@@ -60,6 +62,7 @@ public class HibernateRoleManagerImpl extends AbstractRoleManager
         {
             role.setName(name);
             getPersistenceHelper().updateEntity(role);
+            invalidateACLs(role);
             return;
         }
         else
@@ -79,21 +82,31 @@ public class HibernateRoleManagerImpl extends AbstractRoleManager
      */
     public boolean checkExists(String roleName) throws DataBackendException
     {
-        List<Role> roles;
+        long count;
+        StatelessSession session = null;
         try
         {
-            roles = getPersistenceHelper().retrieveSession().createQuery("from " + Role.class.getName() + " sr where sr.name=:name")
-                    .setString("name", roleName).list();
+            session = getPersistenceHelper().openStatelessSession();
+            Number result = (Number) session.createQuery("select count(*) from " + Role.class.getName() + " sr where sr.name=:name")
+                    .setString("name", roleName).uniqueResult();
+            count = result.longValue();
         }
         catch (HibernateException e)
         {
             throw new DataBackendException("Error retrieving role information", e);
         }
-        if (roles.size() > 1)
+        finally
+        {
+            if (session != null)
+            {
+                session.close();
+            }
+        }
+        if (count > 1)
         {
             throw new DataBackendException("Multiple roles with same name '" + roleName + "'");
         }
-        return (roles.size() == 1);
+        return (count == 1);
     }
 
     /**
@@ -106,15 +119,8 @@ public class HibernateRoleManagerImpl extends AbstractRoleManager
     public RoleSet getAllRoles() throws DataBackendException
     {
         RoleSet roleSet = new RoleSet();
-        try
-        {
-            List<Role> roles = getPersistenceHelper().retrieveSession().createQuery("from " + Role.class.getName()).list();
-            roleSet.add(roles);
-        }
-        catch (HibernateException e)
-        {
-            throw new DataBackendException("Error retrieving role information", e);
-        }
+        List<Role> roles = getPersistenceHelper().retrieveEntities("from " + Role.class.getName(), Collections.<String, Object>emptyMap());
+        roleSet.add(roles);
         return roleSet;
     }
 
@@ -153,6 +159,7 @@ public class HibernateRoleManagerImpl extends AbstractRoleManager
             if (roleExists)
             {
                 getPersistenceHelper().removeEntity(role);
+                roleRemoved(role);
             }
             else
             {
@@ -196,23 +203,32 @@ public class HibernateRoleManagerImpl extends AbstractRoleManager
 
         if (id != null)
         {
-            try
+            List<Role> roles = getPersistenceHelper().retrieveEntities("from " + Role.class.getName() + " sr where sr.id=:id",
+                    Collections.singletonMap("id", (Long) id));
+            if (roles.size() == 0)
             {
-                List<Role> roles = getPersistenceHelper().retrieveSession()
-                        .createQuery("from " + Role.class.getName() + " sr where sr.id=:id").setLong("id", ((Long) id).longValue()).list();
-                if (roles.size() == 0)
-                {
-                    throw new UnknownEntityException("Could not find role by id " + id);
-                }
-                role = roles.get(0);
-
-            }
-            catch (HibernateException e)
-            {
-                throw new DataBackendException("Error retrieving role information", e);
+                throw new UnknownEntityException("Could not find role by id " + id);
             }
+            role = roles.get(0);
         }
 
         return role;
     }
+
+    /**
+     * Look up a role by name with a single query
+     *
+     * @param name
+     *            the name of the Role.
+     * @return the Role or <code>null</code> if it does not exist
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    @Override
+    protected <T extends Role> T findRoleByName(String name) throws DataBackendException
+    {
+        List<T> roles = getPersistenceHelper().retrieveEntities("from " + Role.class.getName() + " sr where sr.name=:name",
+                Collections.singletonMap("name", name.toLowerCase()));
+        return roles.isEmpty() ? null : roles.get(0);
+    }
 }
@@ -18,7 +18,9 @@ package org.apache.fulcrum.security.hibernate;
  * specific language governing permissions and limitations
  * under the License.
  */
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.spi.AbstractUserManager;
@@ -27,6 +29,7 @@ import org.apache.fulcrum.security.util.EntityExistsException;
 import org.apache.fulcrum.security.util.UnknownEntityException;
 import org.apache.fulcrum.security.util.UserSet;
 import org.hibernate.HibernateException;
+import org.hibernate.StatelessSession;
 
 /**
  * This implementation persists to a database via Hibernate.
@@ -52,21 +55,36 @@ public class HibernateUserManagerImpl extends AbstractUserManager
      */
     public boolean checkExists(String userName) throws DataBackendException
     {
-        List<User> users = null;
+        if (!mightExist(userName))
+        {
+            return false;
+        }
+
+        long count;
+        StatelessSession session = null;
         try
         {
-            users = getPersistenceHelper().retrieveSession().createQuery("from " + User.class.getName() + " su where su.name=:name")
-                    .setString("name", userName.toLowerCase()).list();
+            session = getPersistenceHelper().openStatelessSession();
+            Number result = (Number) session.createQuery("select count(*) from " + User.class.getName() + " su where su.name=:name")
+                    .setString("name", userName.toLowerCase()).uniqueResult();
+            count = result.longValue();
         }
         catch (HibernateException e)
         {
             throw new DataBackendException("Error retrieving user information", e);
         }
-        if (users.size() > 1)
+        finally
+        {
+            if (session != null)
+            {
+                session.close();
+            }
+        }
+        if (count > 1)
         {
             throw new DataBackendException("Multiple Users with same username '" + userName + "'");
         }
-        return (users.size() == 1);
+        return (count == 1);
     }
 
     /**
@@ -83,16 +101,8 @@ public class HibernateUserManagerImpl extends AbstractUserManager
     @Override
     public User getUser(String userName) throws UnknownEntityException, DataBackendException
     {
-        List<User> users = null;
-        try
-        {
-            users = getPersistenceHelper().retrieveSession().createQuery("from " + User.class.getName() + " su where su.name=:name")
-                    .setString("name", userName.toLowerCase()).list();
-        }
-        catch (HibernateException e)
-        {
-            throw new DataBackendException("Error retrieving user information", e);
-        }
+        List<User> users = getPersistenceHelper().retrieveEntities("from " + User.class.getName() + " su where su.name=:name",
+                Collections.singletonMap("name", userName.toLowerCase()));
         if (users.size() > 1)
         {
             throw new DataBackendException("Multiple Users with same username '" + userName + "'");
@@ -114,16 +124,53 @@ public class HibernateUserManagerImpl extends AbstractUserManager
     public UserSet getAllUsers() throws DataBackendException
     {
         UserSet userSet = new UserSet();
+        List<User> users = getPersistenceHelper().retrieveEntities("from " + User.class.getName(), Collections.<String, Object>emptyMap());
+        userSet.add(users);
+        return userSet;
+    }
+
+    /**
+     * Read one page with a keyset condition on the user name.
+     *
+     * @see org.apache.fulcrum.security.UserManager#getUsers(java.lang.String, int)
+     */
+    @Override
+    public <T extends User> List<T> getUsers(String afterName, int limit) throws DataBackendException
+    {
+        checkLimit(limit);
+        Map<String, Object> parameters = afterName == null ? Collections.<String, Object>emptyMap()
+                : Collections.<String, Object>singletonMap("name", afterName.toLowerCase());
+        return getPersistenceHelper().retrieveEntities("from " + User.class.getName() + " su"
+                + (afterName == null ? "" : " where su.name>:name") + " order by su.name", parameters, limit);
+    }
+
+    /**
+     * Count the users with a count query.
+     *
+     * @see org.apache.fulcrum.security.UserManager#countUsers()
+     */
+    @Override
+    public int countUsers() throws DataBackendException
+    {
+        StatelessSession session = null;
         try
         {
-            List<User> users = getPersistenceHelper().retrieveSession().createQuery("from " + User.class.getName()).list();
-            userSet.add(users);
+            session = getPersistenceHelper().openStatelessSession();
+            Number count = (Number) session.createQuery("select count(*) from " + User.class.getName())
+                    .uniqueResult();
+            return count.intValue();
         }
         catch (HibernateException e)
         {
-            throw new DataBackendException("Error retrieving all users", e);
+            throw new DataBackendException("Error counting users", e);
+        }
+        finally
+        {
+            if (session != null)
+            {
+                session.close();
+            }
         }
-        return userSet;
     }
 
     /**
@@ -139,6 +186,8 @@ public class HibernateUserManagerImpl extends AbstractUserManager
     public void removeUser(User user) throws DataBackendException, UnknownEntityException
     {
         getPersistenceHelper().removeEntity(user);
+        userRemoved(user);
+        invalidateACLs(user);
     }
 
     /**
@@ -211,21 +260,13 @@ public class HibernateUserManagerImpl extends AbstractUserManager
 
         if (id != null)
         {
-            try
-            {
-                List<User> users = getPersistenceHelper().retrieveSession()
-                        .createQuery("from " + User.class.getName() + " su where su.id=:id").setLong("id", ((Long) id).longValue()).list();
-                if (users.size() == 0)
-                {
-                    throw new UnknownEntityException("Could not find user by id " + id);
-                }
-                user = users.get(0);
-                // session.close();
-            }
-            catch (HibernateException e)
+            List<User> users = getPersistenceHelper().retrieveEntities("from " + User.class.getName() + " su where su.id=:id",
+                    Collections.singletonMap("id", (Long) id));
+            if (users.size() == 0)
             {
-                throw new DataBackendException("Error retrieving user information", e);
+                throw new UnknownEntityException("Could not find user by id " + id);
             }
+            user = users.get(0);
         }
 
         return user;
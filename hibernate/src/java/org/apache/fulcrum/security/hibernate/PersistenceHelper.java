@@ -19,10 +19,15 @@ package org.apache.fulcrum.security.hibernate;
  * under the License.
  */
 
+import java.util.List;
+import java.util.Map;
+
 import org.apache.fulcrum.security.entity.SecurityEntity;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.cfg.Configuration;
 
 /**
@@ -43,5 +48,71 @@ public interface PersistenceHelper
 
     Configuration getConfiguration();
 
+    /**
+     * @return the session factory of this helper
+     * @throws HibernateException generic exception
+     */
+    SessionFactory getSessionFactory() throws HibernateException;
+
+    /**
+     * Stores changes made to several objects in one transaction.
+     *
+     * @param entities the objects to be saved
+     * @throws DataBackendException if there was an error accessing the data backend
+     */
+    void updateEntities(SecurityEntity... entities) throws DataBackendException;
+
+    /**
+     * Runs a read-only query on a stateless session. The associations of the
+     * returned entities are loaded, so they can be used after the session has
+     * been closed.
+     *
+     * @param query the HQL query
+     * @param parameters the named parameters of the query
+     * @return the query result
+     * @throws DataBackendException if there was an error accessing the data backend
+     */
+    <T> List<T> retrieveEntities(String query, Map<String, ?> parameters) throws DataBackendException;
+
+    /**
+     * Runs a read-only query on a stateless session, returning at most
+     * <code>maxResults</code> results.
+     *
+     * @param query the HQL query
+     * @param parameters the named parameters of the query
+     * @param maxResults the maximum number of results, 0 for all
+     * @return the query result
+     * @throws DataBackendException if there was an error accessing the data backend
+     * @see #retrieveEntities(String, Map)
+     */
+    <T> List<T> retrieveEntities(String query, Map<String, ?> parameters, int maxResults) throws DataBackendException;
+
+    /**
+     * Opens a hibernate session for one unit of work. The caller has to close
+     * it.
+     *
+     * @return an open hibernate session
+     * @throws HibernateException generic exception
+     */
+    Session openSession() throws HibernateException;
+
+    /**
+     * Opens a hibernate session. Sessions are no longer shared, so the caller
+     * has to close the returned session.
+     *
+     * @return an open hibernate session
+     * @throws HibernateException generic exception
+     * @deprecated use {@link #openSession()}
+     */
+    @Deprecated
     Session retrieveSession() throws HibernateException;
+
+    /**
+     * Opens a stateless session for read-only queries which do not need the
+     * first level cache. The caller has to close it.
+     *
+     * @return an open stateless session
+     * @throws HibernateException generic exception
+     */
+    StatelessSession openStatelessSession() throws HibernateException;
 }
@@ -18,6 +18,11 @@ package org.apache.fulcrum.security.hibernate;
  * specific language governing permissions and limitations
  * under the License.
  */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 import org.apache.avalon.framework.activity.Disposable;
 import org.apache.avalon.framework.activity.Initializable;
 import org.apache.avalon.framework.configuration.Configurable;
@@ -25,10 +30,11 @@ import org.apache.avalon.framework.configuration.ConfigurationException;
 import org.apache.fulcrum.security.entity.SecurityEntity;
 import org.apache.fulcrum.security.spi.AbstractManager;
 import org.apache.fulcrum.security.util.DataBackendException;
-import org.apache.fulcrum.security.util.UnknownEntityException;
 import org.hibernate.HibernateException;
+import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
 
@@ -36,6 +42,11 @@ import org.hibernate.cfg.Configuration;
  * 
  * This persistenceHelper expects you to either pass in a SessionFactory to use,
  * or it will create one from a hibernate.cfg.xml in the root of the classpath.
+ *
+ * Every write opens its own session and every read runs on a stateless
+ * session, so no session outlives the operation it was opened for. The
+ * <code>fetchDepth</code> attribute sets how many levels of associations are
+ * loaded with the entities returned by a read, defaulting to 3.
  * 
  * @author <a href="mailto:epugh@upstate.com">Eric Pugh</a>
  * @version $Id: PersistenceHelperDefaultImpl.java 1374014 2012-08-16 19:47:27Z
@@ -43,9 +54,15 @@ import org.hibernate.cfg.Configuration;
  */
 public class PersistenceHelperDefaultImpl extends AbstractManager implements PersistenceHelper, Configurable, Initializable, Disposable
 {
+    /** Configuration attribute for the number of association levels loaded with an entity */
+    public static final String FETCH_DEPTH_ATTR_NAME = "fetchDepth";
+
+    /** Default fetch depth, enough to get from a user to its permissions */
+    public static final int DEFAULT_FETCH_DEPTH = 3;
+
     private Configuration configuration;
     private SessionFactory sessionFactory;
-    private Session session;
+    private int fetchDepth = DEFAULT_FETCH_DEPTH;
 
     /**
      * Deletes an entity object
@@ -57,11 +74,12 @@ public class PersistenceHelperDefaultImpl extends AbstractManager implements Per
      */
     public void removeEntity(SecurityEntity entity) throws DataBackendException
     {
+        Session session = null;
         Transaction transaction = null;
 
         try
         {
-            Session session = retrieveSession();
+            session = openSession();
             transaction = session.beginTransaction();
             session.delete(entity);
             transaction.commit();
@@ -73,10 +91,7 @@ public class PersistenceHelperDefaultImpl extends AbstractManager implements Per
         }
         finally
         {
-            if (transaction != null)
-            {
-                transaction.rollback();
-            }
+            close(session, transaction);
         }
     }
 
@@ -90,34 +105,40 @@ public class PersistenceHelperDefaultImpl extends AbstractManager implements Per
      */
     public void updateEntity(SecurityEntity entity) throws DataBackendException
     {
+        updateEntities(entity);
+    }
+
+    /**
+     * Stores changes made to several objects in one transaction
+     * 
+     * @param entities
+     *            The objects to be saved
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    public void updateEntities(SecurityEntity... entities) throws DataBackendException
+    {
+        Session session = null;
         Transaction transaction = null;
 
         try
         {
-            Session session = retrieveSession();
+            session = openSession();
             transaction = session.beginTransaction();
-            session.update(entity);
+            for (SecurityEntity entity : entities)
+            {
+                session.update(entity);
+            }
             transaction.commit();
             transaction = null;
         }
         catch (HibernateException he)
         {
-            if (he.getMessage().indexOf("Another object was associated with this id") > -1)
-            {
-                session.close();
-                updateEntity(entity);
-            }
-            else
-            {
-                throw new DataBackendException("updateEntity(" + entity + ")", he);
-            }
+            throw new DataBackendException("updateEntities(" + Arrays.toString(entities) + ")", he);
         }
         finally
         {
-            if (transaction != null)
-            {
-                transaction.rollback();
-            }
+            close(session, transaction);
         }
     }
 
@@ -131,11 +152,12 @@ public class PersistenceHelperDefaultImpl extends AbstractManager implements Per
      */
     public void addEntity(SecurityEntity entity) throws DataBackendException
     {
+        Session session = null;
         Transaction transaction = null;
 
         try
         {
-            Session session = retrieveSession();
+            session = openSession();
             transaction = session.beginTransaction();
             session.save(entity);
             transaction.commit();
@@ -147,26 +169,142 @@ public class PersistenceHelperDefaultImpl extends AbstractManager implements Per
         }
         finally
         {
-            if (transaction != null)
+            close(session, transaction);
+        }
+    }
+
+    /**
+     * Runs a read-only query on a stateless session and loads the associations
+     * of the returned entities up to the configured fetch depth, so they can
+     * be used after the session has been closed.
+     * 
+     * @param query
+     *            the HQL query
+     * @param parameters
+     *            the named parameters of the query
+     * @return the query result
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    public <T> List<T> retrieveEntities(String query, Map<String, ?> parameters) throws DataBackendException
+    {
+        return retrieveEntities(query, parameters, 0);
+    }
+
+    /**
+     * Runs a read-only query on a stateless session and loads the associations
+     * of the returned entities up to the configured fetch depth, so they can
+     * be used after the session has been closed.
+     * 
+     * @param query
+     *            the HQL query
+     * @param parameters
+     *            the named parameters of the query
+     * @param maxResults
+     *            the maximum number of results, 0 for all
+     * @return the query result
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> retrieveEntities(String query, Map<String, ?> parameters, int maxResults)
+            throws DataBackendException
+    {
+        StatelessSession session = null;
+
+        try
+        {
+            session = openStatelessSession();
+            Query q = session.createQuery(query);
+            for (Map.Entry<String, ?> parameter : parameters.entrySet())
             {
-                transaction.rollback();
+                q.setParameter(parameter.getKey(), parameter.getValue());
+            }
+            if (maxResults > 0)
+            {
+                q.setMaxResults(maxResults);
+            }
+
+            List<Object> result = new ArrayList<Object>(q.list());
+            new AssociationLoader(getSessionFactory(), session).load(result, fetchDepth);
+            return (List<T>) result;
+        }
+        catch (HibernateException he)
+        {
+            throw new DataBackendException("retrieveEntities(" + query + ")", he);
+        }
+        finally
+        {
+            if (session != null)
+            {
+                session.close();
             }
         }
     }
 
     /**
-     * Returns a hibernate session, or if is null, opens one.
+     * Opens a hibernate session for one unit of work, which must be closed by
+     * the caller.
      * 
-     * @return An Open hibernate session.
+     * @return An open hibernate session.
      * @throws HibernateException generic exception
      */
+    public Session openSession() throws HibernateException
+    {
+        return getSessionFactory().openSession();
+    }
+
+    /**
+     * Opens a hibernate session, which must be closed by the caller.
+     * 
+     * @return An open hibernate session.
+     * @throws HibernateException generic exception
+     * @deprecated use {@link #openSession()}
+     */
+    @Deprecated
     public Session retrieveSession() throws HibernateException
     {
-        if (session == null)
+        return openSession();
+    }
+
+    /**
+     * Opens a stateless session, which must be closed by the caller.
+     *
+     * @return An open stateless session.
+     * @throws HibernateException generic exception
+     */
+    public StatelessSession openStatelessSession() throws HibernateException
+    {
+        return getSessionFactory().openStatelessSession();
+    }
+
+    /**
+     * Rolls back an unfinished transaction and closes the session
+     */
+    private void close(Session session, Transaction transaction)
+    {
+        try
+        {
+            if (transaction != null)
+            {
+                transaction.rollback();
+            }
+        }
+        finally
         {
-            session = getSessionFactory().openSession();
+            if (session != null)
+            {
+                session.close();
+            }
         }
-        return session;
+    }
+
+    /**
+     * @return the number of association levels loaded with an entity
+     */
+    public int getFetchDepth()
+    {
+        return fetchDepth;
     }
 
     /**
@@ -221,6 +359,12 @@ public class PersistenceHelperDefaultImpl extends AbstractManager implements Per
      */
     public void configure(org.apache.avalon.framework.configuration.Configuration conf) throws ConfigurationException
     {
+        fetchDepth = conf.getAttributeAsInteger(FETCH_DEPTH_ATTR_NAME, DEFAULT_FETCH_DEPTH);
+        if (fetchDepth < 0)
+        {
+            throw new ConfigurationException("The fetch depth must not be negative", conf);
+        }
+
         configuration = new Configuration();
 
         // read properties
@@ -27,8 +27,6 @@ import org.apache.fulcrum.security.model.basic.entity.BasicUser;
 import org.apache.fulcrum.security.spi.AbstractManager;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.UnknownEntityException;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
 
 /**
  * This implementation persists to a database via Hibernate.
@@ -57,7 +55,6 @@ public class HibernateModelManagerImpl extends AbstractManager implements BasicM
     {
         boolean groupExists = false;
         boolean userExists = false;
-        Transaction transaction = null;
 
         try
         {
@@ -65,27 +62,15 @@ public class HibernateModelManagerImpl extends AbstractManager implements BasicM
             userExists = getUserManager().checkExists(user);
             if (groupExists && userExists)
             {
-                Session session = getPersistenceHelper().retrieveSession();
-                transaction = session.beginTransaction();
                 ((BasicUser) user).addGroup(group);
                 ((BasicGroup) group).addUser(user);
-                session.update(user);
-                session.update(group);
-                transaction.commit();
-                transaction = null;
+                getPersistenceHelper().updateEntities(user, group);
             }
         }
         catch (Exception e)
         {
             throw new DataBackendException("grant(Role,Permission) failed", e);
         }
-        finally
-        {
-            if (transaction != null)
-            {
-                transaction.rollback();
-            }
-        }
         if (!groupExists)
         {
             throw new UnknownEntityException("Unknown group '" + group.getName() + "'");
@@ -112,7 +97,6 @@ public class HibernateModelManagerImpl extends AbstractManager implements BasicM
     {
         boolean groupExists = false;
         boolean userExists = false;
-        Transaction transaction = null;
 
         try
         {
@@ -120,27 +104,15 @@ public class HibernateModelManagerImpl extends AbstractManager implements BasicM
             userExists = getUserManager().checkExists(user);
             if (groupExists && userExists)
             {
-                Session session = getPersistenceHelper().retrieveSession();
-                transaction = session.beginTransaction();
                 ((BasicUser) user).removeGroup(group);
                 ((BasicGroup) group).removeUser(user);
-                session.update(user);
-                session.update(group);
-                transaction.commit();
-                transaction = null;
+                getPersistenceHelper().updateEntities(user, group);
             }
         }
         catch (Exception e)
         {
             throw new DataBackendException("grant(Role,Permission) failed", e);
         }
-        finally
-        {
-            if (transaction != null)
-            {
-                transaction.rollback();
-            }
-        }
         if (!groupExists)
         {
             throw new UnknownEntityException("Unknown group '" + group.getName() + "'");
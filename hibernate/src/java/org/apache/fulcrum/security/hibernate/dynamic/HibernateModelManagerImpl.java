@@ -18,6 +18,12 @@ package org.apache.fulcrum.security.hibernate.dynamic;
  * specific language governing permissions and limitations
  * under the License.
  */
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
@@ -31,8 +37,10 @@ import org.apache.fulcrum.security.model.dynamic.entity.DynamicRole;
 import org.apache.fulcrum.security.model.dynamic.entity.DynamicUser;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.UnknownEntityException;
-import org.hibernate.Session;
+import org.hibernate.HibernateException;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
+import org.hibernate.type.Type;
 
 /**
  * This implementation persists to a database via Hibernate.
@@ -43,6 +51,9 @@ import org.hibernate.Transaction;
  */
 public class HibernateModelManagerImpl extends AbstractDynamicModelManager implements DynamicModelManager
 {
+    /** The table holding the role hierarchy, one row per parent of a role */
+    public static final String ROLE_HIERARCHY_TABLE = "ROLE_HIERARCHY";
+
     private PersistenceHelper persistenceHelper;
 
     /**
@@ -114,6 +125,8 @@ public class HibernateModelManagerImpl extends AbstractDynamicModelManager imple
                 ((DynamicPermission) permission).addRole(role);
                 getPersistenceHelper().updateEntity(permission);
                 getPersistenceHelper().updateEntity(role);
+                invalidateACLs(role);
+                rolePermissionsChanged(role);
             }
         }
         catch (DataBackendException e)
@@ -156,6 +169,8 @@ public class HibernateModelManagerImpl extends AbstractDynamicModelManager imple
                 ((DynamicPermission) permission).removeRole(role);
                 getPersistenceHelper().updateEntity(role);
                 getPersistenceHelper().updateEntity(permission);
+                invalidateACLs(role);
+                rolePermissionsChanged(role);
             }
         }
         catch (DataBackendException e)
@@ -230,7 +245,6 @@ public class HibernateModelManagerImpl extends AbstractDynamicModelManager imple
     {
         boolean groupExists = false;
         boolean userExists = false;
-        Transaction transaction = null;
 
         try
         {
@@ -238,27 +252,15 @@ public class HibernateModelManagerImpl extends AbstractDynamicModelManager imple
             userExists = getUserManager().checkExists(user);
             if (groupExists && userExists)
             {
-                Session session = getPersistenceHelper().retrieveSession();
-                transaction = session.beginTransaction();
                 ((DynamicUser) user).removeGroup(group);
                 ((DynamicGroup) group).removeUser(user);
-                session.update(user);
-                session.update(group);
-                transaction.commit();
-                transaction = null;
+                getPersistenceHelper().updateEntities(user, group);
             }
         }
         catch (DataBackendException e)
         {
             throw new DataBackendException("grant(Role,Permission) failed", e);
         }
-        finally
-        {
-            if (transaction != null)
-            {
-                transaction.rollback();
-            }
-        }
         if (!groupExists)
         {
             throw new UnknownEntityException("Unknown group '" + group.getName() + "'");
@@ -350,4 +352,91 @@ public class HibernateModelManagerImpl extends AbstractDynamicModelManager imple
         getPersistenceHelper().updateEntity(delegator);
         getPersistenceHelper().updateEntity(delegatee);
     }
+
+    /**
+     * Read the role hierarchy from the table {@value #ROLE_HIERARCHY_TABLE},
+     * which the hibernate mapping has to declare, e.g. as a
+     * <code>database-object</code>.
+     *
+     * @see org.apache.fulcrum.security.model.dynamic.AbstractDynamicModelManager#loadParentRoles()
+     */
+    @Override
+    protected Map<Object, Set<Object>> loadParentRoles() throws DataBackendException
+    {
+        Map<Object, Set<Object>> parents = new HashMap<Object, Set<Object>>();
+        StatelessSession session = null;
+
+        try
+        {
+            Type idType = getPersistenceHelper().getSessionFactory()
+                .getClassMetadata(getRoleManager().getRoleInstance().getClass()).getIdentifierType();
+            session = getPersistenceHelper().openStatelessSession();
+            List<?> edges = session.createSQLQuery("SELECT ROLE_ID, PARENT_ROLE_ID FROM " + ROLE_HIERARCHY_TABLE)
+                .addScalar("ROLE_ID", idType)
+                .addScalar("PARENT_ROLE_ID", idType)
+                .list();
+
+            for (Object edge : edges)
+            {
+                Object[] ids = (Object[]) edge;
+                parents.computeIfAbsent(ids[0], k -> new HashSet<Object>()).add(ids[1]);
+            }
+        }
+        catch (HibernateException e)
+        {
+            throw new DataBackendException("Error loading the role hierarchy", e);
+        }
+        finally
+        {
+            if (session != null)
+            {
+                session.close();
+            }
+        }
+
+        return parents;
+    }
+
+    /**
+     * Store an edge of the role hierarchy in the table
+     * {@value #ROLE_HIERARCHY_TABLE}.
+     *
+     * @see org.apache.fulcrum.security.model.dynamic.AbstractDynamicModelManager#saveParentRole(org.apache.fulcrum.security.entity.Role, org.apache.fulcrum.security.entity.Role, boolean)
+     */
+    @Override
+    protected void saveParentRole(Role role, Role parent, boolean add) throws DataBackendException
+    {
+        StatelessSession session = null;
+        Transaction transaction = null;
+
+        try
+        {
+            session = getPersistenceHelper().openStatelessSession();
+            transaction = session.beginTransaction();
+            String sql = add
+                ? "INSERT INTO " + ROLE_HIERARCHY_TABLE + " (ROLE_ID, PARENT_ROLE_ID) VALUES (?, ?)"
+                : "DELETE FROM " + ROLE_HIERARCHY_TABLE + " WHERE ROLE_ID = ? AND PARENT_ROLE_ID = ?";
+            session.createSQLQuery(sql)
+                .setParameter(0, role.getId())
+                .setParameter(1, parent.getId())
+                .executeUpdate();
+            transaction.commit();
+            transaction = null;
+        }
+        catch (HibernateException e)
+        {
+            throw new DataBackendException("Error saving the parent of role '" + role.getName() + "'", e);
+        }
+        finally
+        {
+            if (transaction != null)
+            {
+                transaction.rollback();
+            }
+            if (session != null)
+            {
+                session.close();
+            }
+        }
+    }
 }
@@ -18,6 +18,12 @@ package org.apache.fulcrum.security.hibernate.turbine;
  * specific language governing permissions and limitations
  * under the License.
  */
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
@@ -32,6 +38,11 @@ import org.apache.fulcrum.security.model.turbine.entity.TurbineUser;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
 
 /**
  * This implementation persists to a database via Hibernate.
@@ -42,6 +53,9 @@ import org.apache.fulcrum.security.util.UnknownEntityException;
  */
 public class HibernateModelManagerImpl extends AbstractTurbineModelManager implements TurbineModelManager
 {
+    /** The table holding the role hierarchy, one row per parent of a role */
+    public static final String ROLE_HIERARCHY_TABLE = "ROLE_HIERARCHY";
+
     private PersistenceHelper persistenceHelper;
 
     /**
@@ -71,6 +85,8 @@ public class HibernateModelManagerImpl extends AbstractTurbineModelManager imple
                 ((TurbinePermission) permission).addRole(role);
                 getPersistenceHelper().updateEntity(permission);
                 getPersistenceHelper().updateEntity(role);
+                invalidateACLs(role);
+                rolePermissionsChanged(role);
                 return;
             }
         }
@@ -114,6 +130,8 @@ public class HibernateModelManagerImpl extends AbstractTurbineModelManager imple
                 ((TurbinePermission) permission).removeRole(role);
                 getPersistenceHelper().updateEntity(role);
                 getPersistenceHelper().updateEntity(permission);
+                invalidateACLs(role);
+                rolePermissionsChanged(role);
             }
         }
         catch (DataBackendException e)
@@ -175,9 +193,8 @@ public class HibernateModelManagerImpl extends AbstractTurbineModelManager imple
                 ((TurbineUser) user).addUserGroupRole(ugr);
                 ((TurbineGroup) group).addUserGroupRole(ugr);
                 ((TurbineRole) role).addUserGroupRole(ugr);
-                getPersistenceHelper().updateEntity(user);
-                getPersistenceHelper().updateEntity(group);
-                getPersistenceHelper().updateEntity(role);
+                saveUserGroupRole(ugr, true);
+                invalidateACLs(user);
             }
         }
         catch (DataBackendException e)
@@ -235,9 +252,7 @@ public class HibernateModelManagerImpl extends AbstractTurbineModelManager imple
                         ((TurbineGroup) group).removeUserGroupRole(ugr);
                         ((TurbineRole) role).removeUserGroupRole(ugr);
 
-                        getPersistenceHelper().updateEntity(user);
-                        getPersistenceHelper().updateEntity(group);
-                        getPersistenceHelper().updateEntity(role);
+                        saveUserGroupRole(ugr, false);
 
                         break;
                     }
@@ -247,6 +262,7 @@ public class HibernateModelManagerImpl extends AbstractTurbineModelManager imple
                     throw new UnknownEntityException("Could not find User/Group/Role");
                 }
 
+                invalidateACLs(user);
                 return;
             }
         }
@@ -268,6 +284,54 @@ public class HibernateModelManagerImpl extends AbstractTurbineModelManager imple
         }
     }
 
+    /**
+     * Store or delete an assignment. The sets of user, group and role are the
+     * inverse side of the assignment and are not written by Hibernate.
+     *
+     * @param ugr
+     *            the assignment
+     * @param add
+     *            <code>true</code> to store, <code>false</code> to delete it
+     * @throws DataBackendException
+     *             if there was an error accessing the data backend.
+     */
+    private void saveUserGroupRole(TurbineUserGroupRole ugr, boolean add) throws DataBackendException
+    {
+        Session session = null;
+        Transaction transaction = null;
+
+        try
+        {
+            session = getPersistenceHelper().openSession();
+            transaction = session.beginTransaction();
+            if (add)
+            {
+                session.save(ugr);
+            }
+            else
+            {
+                session.delete(ugr);
+            }
+            transaction.commit();
+            transaction = null;
+        }
+        catch (HibernateException e)
+        {
+            throw new DataBackendException("Error saving the assignment " + ugr, e);
+        }
+        finally
+        {
+            if (transaction != null)
+            {
+                transaction.rollback();
+            }
+            if (session != null)
+            {
+                session.close();
+            }
+        }
+    }
+
     @Override
     public void replace( User user, Role oldRole, Role newRole )
         throws DataBackendException, UnknownEntityException
@@ -276,4 +340,91 @@ public class HibernateModelManagerImpl extends AbstractTurbineModelManager imple
         revoke( user, group, oldRole );
         grant( user, group, newRole );
     }
+
+    /**
+     * Read the role hierarchy from the table {@value #ROLE_HIERARCHY_TABLE},
+     * which the hibernate mapping has to declare, e.g. as a
+     * <code>database-object</code>.
+     *
+     * @see org.apache.fulcrum.security.model.turbine.AbstractTurbineModelManager#loadParentRoles()
+     */
+    @Override
+    protected Map<Object, Set<Object>> loadParentRoles() throws DataBackendException
+    {
+        Map<Object, Set<Object>> parents = new HashMap<Object, Set<Object>>();
+        StatelessSession session = null;
+
+        try
+        {
+            Type idType = getPersistenceHelper().getSessionFactory()
+                .getClassMetadata(getRoleManager().getRoleInstance().getClass()).getIdentifierType();
+            session = getPersistenceHelper().openStatelessSession();
+            List<?> edges = session.createSQLQuery("SELECT ROLE_ID, PARENT_ROLE_ID FROM " + ROLE_HIERARCHY_TABLE)
+                .addScalar("ROLE_ID", idType)
+                .addScalar("PARENT_ROLE_ID", idType)
+                .list();
+
+            for (Object edge : edges)
+            {
+                Object[] ids = (Object[]) edge;
+                parents.computeIfAbsent(ids[0], k -> new HashSet<Object>()).add(ids[1]);
+            }
+        }
+        catch (HibernateException e)
+        {
+            throw new DataBackendException("Error loading the role hierarchy", e);
+        }
+        finally
+        {
+            if (session != null)
+            {
+                session.close();
+            }
+        }
+
+        return parents;
+    }
+
+    /**
+     * Store an edge of the role hierarchy in the table
+     * {@value #ROLE_HIERARCHY_TABLE}.
+     *
+     * @see org.apache.fulcrum.security.model.turbine.AbstractTurbineModelManager#saveParentRole(org.apache.fulcrum.security.entity.Role, org.apache.fulcrum.security.entity.Role, boolean)
+     */
+    @Override
+    protected void saveParentRole(Role role, Role parent, boolean add) throws DataBackendException
+    {
+        StatelessSession session = null;
+        Transaction transaction = null;
+
+        try
+        {
+            session = getPersistenceHelper().openStatelessSession();
+            transaction = session.beginTransaction();
+            String sql = add
+                ? "INSERT INTO " + ROLE_HIERARCHY_TABLE + " (ROLE_ID, PARENT_ROLE_ID) VALUES (?, ?)"
+                : "DELETE FROM " + ROLE_HIERARCHY_TABLE + " WHERE ROLE_ID = ? AND PARENT_ROLE_ID = ?";
+            session.createSQLQuery(sql)
+                .setParameter(0, role.getId())
+                .setParameter(1, parent.getId())
+                .executeUpdate();
+            transaction.commit();
+            transaction = null;
+        }
+        catch (HibernateException e)
+        {
+            throw new DataBackendException("Error saving the parent of role '" + role.getName() + "'", e);
+        }
+        finally
+        {
+            if (transaction != null)
+            {
+                transaction.rollback();
+            }
+            if (session != null)
+            {
+                session.close();
+            }
+        }
+    }
 }
@@ -18,9 +18,28 @@ package org.apache.fulcrum.security.hibernate;
  * specific language governing permissions and limitations
  * under the License.
  */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.fulcrum.security.GroupManager;
+import org.apache.fulcrum.security.PermissionManager;
+import org.apache.fulcrum.security.RoleManager;
 import org.apache.fulcrum.security.SecurityService;
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.model.dynamic.DynamicModelManager;
+import org.apache.fulcrum.security.model.dynamic.entity.DynamicGroup;
+import org.apache.fulcrum.security.model.dynamic.entity.DynamicPermission;
+import org.apache.fulcrum.security.model.dynamic.entity.DynamicRole;
 import org.apache.fulcrum.testcontainer.BaseUnit5Test;
 import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
@@ -33,7 +52,6 @@ import org.junit.jupiter.api.Test;
 public class PersistenceHelperDefaultImplTest extends BaseUnit5Test
 {
 
-    @SuppressWarnings("unused")
     @Test
     public void testPassingInExternalHibernateService() throws Exception
     {
@@ -45,6 +63,68 @@ public class PersistenceHelperDefaultImplTest extends BaseUnit5Test
         PersistenceHelper persistenceHelper = groupManager.getPersistenceHelper();
         assertTrue(persistenceHelper instanceof PersistenceHelperDefaultImpl);
         PersistenceHelperDefaultImpl persistenceHelperFromGroupManager = (PersistenceHelperDefaultImpl) persistenceHelper;
-        Session s = persistenceHelper.retrieveSession();
+        assertEquals(PersistenceHelperDefaultImpl.DEFAULT_FETCH_DEPTH, persistenceHelperFromGroupManager.getFetchDepth());
+
+        Session s = persistenceHelper.openSession();
+        assertTrue(s.isOpen());
+        s.close();
+        assertFalse(s.isOpen());
+    }
+
+    @Test
+    public void testEntitiesAreUsableAfterRead() throws Exception
+    {
+        this.setRoleFileName("src/test/DynamicHibernateRoleConfig.xml");
+        this.setConfigurationFileName("src/test/DynamicHibernateComponentConfig.xml");
+
+        PersistenceHelper persistenceHelper = (PersistenceHelper) lookup(PersistenceHelper.ROLE);
+        HibernateHelper.exportSchema(persistenceHelper.getConfiguration());
+
+        SecurityService securityService = (SecurityService) lookup(SecurityService.ROLE);
+        final GroupManager groupManager = securityService.getGroupManager();
+        RoleManager roleManager = securityService.getRoleManager();
+        PermissionManager permissionManager = securityService.getPermissionManager();
+        DynamicModelManager modelManager = (DynamicModelManager) securityService.getModelManager();
+
+        Group group = groupManager.addGroup(groupManager.getGroupInstance("readers"));
+        Role role = roleManager.addRole(roleManager.getRoleInstance("reader"));
+        Permission permission = permissionManager.addPermission(permissionManager.getPermissionInstance("read"));
+        modelManager.grant(role, permission);
+        modelManager.grant(group, role);
+
+        // every read runs on its own session, which is closed on return
+        DynamicGroup readers = groupManager.getGroupByName("readers");
+        DynamicRole reader = (DynamicRole) readers.getRoles().getByName("reader");
+        assertEquals(1, reader.getPermissions().size());
+        DynamicPermission read = (DynamicPermission) reader.getPermissions().getByName("read");
+        assertTrue(read.getRoles().contains(reader));
+
+        // the entities read before can be stored again
+        modelManager.revoke(readers, reader);
+        assertEquals(0, ((DynamicGroup) groupManager.getGroupByName("readers")).getRoles().size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 8; i++)
+            {
+                results.add(executor.submit(new Callable<Integer>()
+                {
+                    public Integer call() throws Exception
+                    {
+                        return groupManager.getAllGroups().size();
+                    }
+                }));
+            }
+            for (Future<Integer> result : results)
+            {
+                assertEquals(1, result.get().intValue());
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
     }
 }
@@ -22,11 +22,9 @@ package org.apache.fulcrum.security.hibernate.basic;
 import org.apache.fulcrum.security.SecurityService;
 import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.hibernate.HibernateHelper;
-import org.apache.fulcrum.security.hibernate.HibernateUserManagerImpl;
 import org.apache.fulcrum.security.hibernate.PersistenceHelper;
 import org.apache.fulcrum.security.model.basic.entity.BasicUser;
 import org.apache.fulcrum.security.model.basic.test.AbstractModelManagerTest;
-import org.hibernate.Transaction;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -57,12 +55,8 @@ public class HibernateBasicModelManagerTest extends AbstractModelManagerTest
     public void testRevokeAllUser() throws Exception
     {
         super.testRevokeAllUser();
-        // FIXME: Why is this here?
-        // ((HibernateUserManagerImpl)userManager).getPersistenceHelper().retrieveSession().close();
-        Transaction tx = ((HibernateUserManagerImpl) userManager).getPersistenceHelper().retrieveSession().beginTransaction();
         User user = userManager.getUserInstance("Clint2");
         assertEquals(0, ((BasicUser) user).getGroups().size());
-        tx.commit();
     }
 
     @Override
@@ -21,12 +21,17 @@ import static org.junit.jupiter.api.Assertions.fail;
  * under the License.
  */
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 import org.apache.fulcrum.security.SecurityService;
+import org.apache.fulcrum.security.entity.Role;
 import org.apache.fulcrum.security.hibernate.HibernateHelper;
 import org.apache.fulcrum.security.hibernate.PersistenceHelper;
 import org.apache.fulcrum.security.model.dynamic.test.AbstractDynamicModelManagerTest;
+import org.hibernate.StatelessSession;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 
 
 /**
@@ -72,5 +77,32 @@ public class HibernateDynamicModelManagerTest extends AbstractDynamicModelManage
         securityService = null;
     }
 
+    @Test
+    public void testPersistedRoleHierarchy() throws Exception
+    {
+        Role reader = roleManager.getRoleInstance("PERSISTED_READER");
+        roleManager.addRole(reader);
+        Role editor = roleManager.getRoleInstance("PERSISTED_EDITOR");
+        roleManager.addRole(editor);
+
+        modelManager.addParentRole(editor, reader);
+        assertEquals(1, countParentRoles());
 
+        modelManager.removeParentRole(editor, reader);
+        assertEquals(0, countParentRoles());
+    }
+
+    private int countParentRoles() throws Exception
+    {
+        PersistenceHelper helper = (PersistenceHelper) lookup(PersistenceHelper.ROLE);
+        StatelessSession session = helper.openStatelessSession();
+        try
+        {
+            return session.createSQLQuery("SELECT ROLE_ID FROM ROLE_HIERARCHY").list().size();
+        }
+        finally
+        {
+            session.close();
+        }
+    }
 }
@@ -59,7 +59,8 @@ public class LDAPAuthenticator extends AbstractLogEnabled implements Authenticat
     {
         try
         {
-            userManager.bind(userManager.getDN(user), password);
+            // only the bind itself is of interest, do not leak the connection
+            userManager.bind(userManager.getDN(user), password).close();
         }
         catch (NamingException ex)
         {
@@ -0,0 +1,384 @@
+package org.apache.fulcrum.security.ldap;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.DirContext;
+
+/**
+ * A pool of bound LDAP contexts, so that not every request has to open a
+ * connection and bind to the server.
+ *
+ * Idle contexts are closed when they have not been used for longer than the
+ * maximum idle time, but at least the minimum number of idle contexts is
+ * kept open. A context which has been idle for longer than the validation
+ * interval is checked with a lookup of the root DSE before it is handed out
+ * again.
+ *
+ * @version $Id$
+ */
+public class LDAPContextPool
+{
+    /**
+     * Creates new bound contexts for the pool
+     */
+    @FunctionalInterface
+    public interface ContextFactory
+    {
+        /**
+         * Open a connection and bind
+         *
+         * @return a new bound context
+         * @throws NamingException if the server cannot be reached or the bind fails
+         */
+        DirContext create() throws NamingException;
+    }
+
+    /** An idle context and the time it was returned to the pool */
+    private static class IdleContext
+    {
+        final DirContext ctx;
+        final long since;
+
+        IdleContext(DirContext ctx, long since)
+        {
+            this.ctx = ctx;
+            this.since = since;
+        }
+    }
+
+    private static final String[] NO_ATTRIBUTES = new String[0];
+
+    private final ContextFactory factory;
+
+    private final int minIdle;
+
+    private final int maxSize;
+
+    private final long maxIdleTime;
+
+    private final long validationInterval;
+
+    private final long maxWait;
+
+    /** Idle contexts, the most recently used first */
+    private final LinkedList<IdleContext> idle = new LinkedList<IdleContext>();
+
+    /** Contexts handed out and not returned yet */
+    private final Map<DirContext, Boolean> active = new IdentityHashMap<DirContext, Boolean>();
+
+    /** Contexts being created right now */
+    private int creating = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Constructor
+     *
+     * @param factory creates the contexts
+     * @param minIdle the number of idle contexts which are never evicted
+     * @param maxSize the maximum number of open contexts
+     * @param maxIdleTime the time in milliseconds after which an idle context is closed
+     * @param validationInterval the idle time in milliseconds after which a context is checked before use
+     * @param maxWait the time in milliseconds to wait for a free context if the pool is exhausted
+     */
+    public LDAPContextPool(ContextFactory factory, int minIdle, int maxSize,
+            long maxIdleTime, long validationInterval, long maxWait)
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+
+        this.factory = factory;
+        this.minIdle = Math.max(0, Math.min(minIdle, maxSize));
+        this.maxSize = maxSize;
+        this.maxIdleTime = maxIdleTime;
+        this.validationInterval = validationInterval;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Take a context from the pool, or open a new one if there is no idle
+     * context and the pool is not exhausted. The context must be returned
+     * with {@link #release(DirContext)}.
+     *
+     * @return a bound context
+     * @throws NamingException if no context can be opened or the pool stays exhausted
+     */
+    public DirContext borrow() throws NamingException
+    {
+        long deadline = System.currentTimeMillis() + maxWait;
+
+        while (true)
+        {
+            IdleContext candidate = null;
+
+            synchronized (this)
+            {
+                while (true)
+                {
+                    if (closed)
+                    {
+                        throw new ServiceUnavailableException("The LDAP context pool has been closed");
+                    }
+
+                    evictIdle(System.currentTimeMillis());
+
+                    if (!idle.isEmpty())
+                    {
+                        candidate = idle.removeFirst();
+                        active.put(candidate.ctx, Boolean.TRUE);
+                        break;
+                    }
+
+                    if (active.size() + creating < maxSize)
+                    {
+                        creating++;
+                        break;
+                    }
+
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0)
+                    {
+                        throw new ServiceUnavailableException("No LDAP context available within "
+                                + maxWait + "ms, pool size is " + maxSize);
+                    }
+
+                    try
+                    {
+                        wait(wait);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new ServiceUnavailableException("Interrupted while waiting for an LDAP context");
+                    }
+                }
+            }
+
+            if (candidate == null)
+            {
+                return create();
+            }
+
+            if (System.currentTimeMillis() - candidate.since <= validationInterval
+                    || isValid(candidate.ctx))
+            {
+                return candidate.ctx;
+            }
+
+            invalidate(candidate.ctx);
+        }
+    }
+
+    /**
+     * Return a context to the pool
+     *
+     * @param ctx the context, may be <code>null</code>
+     */
+    public void release(DirContext ctx)
+    {
+        if (ctx == null)
+        {
+            return;
+        }
+
+        boolean keep;
+
+        synchronized (this)
+        {
+            if (active.remove(ctx) == null)
+            {
+                // not ours or released twice
+                return;
+            }
+
+            keep = !closed;
+
+            if (keep)
+            {
+                idle.addFirst(new IdleContext(ctx, System.currentTimeMillis()));
+                evictIdle(System.currentTimeMillis());
+            }
+
+            notifyAll();
+        }
+
+        if (!keep)
+        {
+            closeQuietly(ctx);
+        }
+    }
+
+    /**
+     * Close a context instead of returning it to the pool, e.g. after the
+     * connection has been lost
+     *
+     * @param ctx the context, may be <code>null</code>
+     */
+    public void invalidate(DirContext ctx)
+    {
+        if (ctx == null)
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            active.remove(ctx);
+            notifyAll();
+        }
+
+        closeQuietly(ctx);
+    }
+
+    /**
+     * Close all idle contexts whose maximum idle time has passed
+     */
+    public void evict()
+    {
+        synchronized (this)
+        {
+            evictIdle(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Close the pool and all idle contexts. Contexts still in use are closed
+     * when they are returned.
+     */
+    public void close()
+    {
+        List<IdleContext> toClose;
+
+        synchronized (this)
+        {
+            closed = true;
+            toClose = new ArrayList<IdleContext>(idle);
+            idle.clear();
+            notifyAll();
+        }
+
+        for (IdleContext ic : toClose)
+        {
+            closeQuietly(ic.ctx);
+        }
+    }
+
+    /**
+     * @return the number of idle contexts
+     */
+    public synchronized int getIdleCount()
+    {
+        return idle.size();
+    }
+
+    /**
+     * @return the number of contexts in use
+     */
+    public synchronized int getActiveCount()
+    {
+        return active.size();
+    }
+
+    private DirContext create() throws NamingException
+    {
+        DirContext ctx = null;
+
+        try
+        {
+            ctx = factory.create();
+            return ctx;
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                creating--;
+
+                if (ctx != null)
+                {
+                    active.put(ctx, Boolean.TRUE);
+                }
+
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Health check of a context which has been idle for a while
+     */
+    private boolean isValid(DirContext ctx)
+    {
+        try
+        {
+            ctx.getAttributes("", NO_ATTRIBUTES);
+            return true;
+        }
+        catch (NamingException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Close the idle contexts beyond the minimum which have been idle for
+     * too long. The oldest contexts are at the end of the list. Must be
+     * called while holding the lock.
+     */
+    private void evictIdle(long now)
+    {
+        Iterator<IdleContext> it = idle.descendingIterator();
+
+        while (it.hasNext() && idle.size() > minIdle)
+        {
+            IdleContext ic = it.next();
+
+            if (now - ic.since <= maxIdleTime)
+            {
+                break;
+            }
+
+            it.remove();
+            closeQuietly(ic.ctx);
+        }
+    }
+
+    private static void closeQuietly(DirContext ctx)
+    {
+        try
+        {
+            ctx.close();
+        }
+        catch (NamingException e)
+        {
+            // ignore, the context is discarded anyway
+        }
+    }
+}
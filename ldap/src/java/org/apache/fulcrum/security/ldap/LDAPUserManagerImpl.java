@@ -18,11 +18,23 @@ package org.apache.fulcrum.security.ldap;
  * specific language governing permissions and limitations
  * under the License.
  */
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Hashtable;
-
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.naming.CommunicationException;
 import javax.naming.Context;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.SizeLimitExceededException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.BasicAttribute;
@@ -30,6 +42,12 @@ import javax.naming.directory.BasicAttributes;
 import javax.naming.directory.DirContext;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import javax.naming.ldap.SortControl;
 
 import org.apache.avalon.framework.configuration.Configuration;
 import org.apache.avalon.framework.configuration.ConfigurationException;
@@ -37,7 +55,9 @@ import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.spi.AbstractUserManager;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.PasswordMismatchException;
+import org.apache.fulcrum.security.util.SecuritySet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.fulcrum.security.util.UserQuery;
 import org.apache.fulcrum.security.util.UserSet;
 
 /**
@@ -142,6 +162,39 @@ public class LDAPUserManagerImpl extends AbstractUserManager
     /** Property default value */
     public static final String LDAP_USER_PASSWORD_DEFAULT = "userPassword";
 
+    /** Property group key */
+    public static final String LDAP_POOL_KEY = "pool";
+
+    /** Property key */
+    public static final String LDAP_POOL_MIN_IDLE_KEY = "minIdle";
+
+    /** Property default value */
+    public static final int LDAP_POOL_MIN_IDLE_DEFAULT = 0;
+
+    /** Property key */
+    public static final String LDAP_POOL_MAX_SIZE_KEY = "maxSize";
+
+    /** Property default value */
+    public static final int LDAP_POOL_MAX_SIZE_DEFAULT = 8;
+
+    /** Property key, in milliseconds */
+    public static final String LDAP_POOL_MAX_IDLE_TIME_KEY = "maxIdleTime";
+
+    /** Property default value */
+    public static final long LDAP_POOL_MAX_IDLE_TIME_DEFAULT = 300000L;
+
+    /** Property key, in milliseconds */
+    public static final String LDAP_POOL_VALIDATION_INTERVAL_KEY = "validationInterval";
+
+    /** Property default value */
+    public static final long LDAP_POOL_VALIDATION_INTERVAL_DEFAULT = 30000L;
+
+    /** Property key, in milliseconds */
+    public static final String LDAP_POOL_MAX_WAIT_KEY = "maxWait";
+
+    /** Property default value */
+    public static final long LDAP_POOL_MAX_WAIT_DEFAULT = 10000L;
+
 
     /** Credentials to use for admin binding */
     protected String ldapAdminUsername;
@@ -185,6 +238,9 @@ public class LDAPUserManagerImpl extends AbstractUserManager
     /** LDAP Attribute to use for the users password */
     protected String ldapPassword;
 
+    /** Pool of contexts bound as the admin user */
+    private LDAPContextPool adminPool;
+
     /** Our Unique ID counter */
     private static int uniqueId = 0;
 
@@ -207,16 +263,152 @@ public class LDAPUserManagerImpl extends AbstractUserManager
      */
     public boolean checkExists(String userName) throws DataBackendException
     {
+        if (!mightExist(userName))
+        {
+            return false;
+        }
+
+        DirContext ctx = null;
+        NamingEnumeration<SearchResult> answer = null;
+
         try
         {
-            getUser(userName);
+            ctx = borrowAdminContext();
+
+            String filter = "(" + this.ldapUsername + "=" + escapeFilter(userName) + ")";
+
+            /*
+             * Only the existence of an entry is of interest
+             */
+            SearchControls ctls = new SearchControls();
+            ctls.setReturningAttributes(new String[0]);
+
+            answer = ctx.search(this.ldapBasesearch, filter, ctls);
+            boolean exists = answer.hasMore();
+
+            return exists;
         }
-        catch (UnknownEntityException ex)
+        catch (NamingException ex)
         {
-            return false;
+            ctx = discardAdminContext(ctx, ex);
+            throw new DataBackendException(
+                    "The LDAP server specified is unavailable", ex);
         }
+        finally
+        {
+            closeAnswer(answer);
+            releaseAdminContext(ctx);
+        }
+    }
+
+    /**
+     * Count the users with a paged search which requests no attributes.
+     *
+     * @see org.apache.fulcrum.security.UserManager#countUsers()
+     */
+    @Override
+    public int countUsers() throws DataBackendException
+    {
+        LdapContext ctx = null;
 
-        return true;
+        try
+        {
+            ctx = (LdapContext) borrowAdminContext();
+
+            String filter = "(" + this.ldapUsername + "=*)";
+            SearchControls ctls = new SearchControls();
+            ctls.setReturningAttributes(new String[0]);
+
+            int count = 0;
+            byte[] cookie = null;
+            do
+            {
+                ctx.setRequestControls(new Control[] {
+                        new PagedResultsControl(getPageSize(), cookie, Control.CRITICAL) });
+                NamingEnumeration<SearchResult> answer =
+                        ctx.search(this.ldapBasesearch, filter, ctls);
+                try
+                {
+                    while (answer.hasMore())
+                    {
+                        answer.next();
+                        count++;
+                    }
+                }
+                finally
+                {
+                    closeAnswer(answer);
+                }
+                cookie = getCookie(ctx);
+            }
+            while (cookie != null && cookie.length > 0);
+
+            return count;
+        }
+        catch (NamingException ex)
+        {
+            ctx = (LdapContext) discardAdminContext(ctx, ex);
+            throw new DataBackendException(
+                    "The LDAP server specified is unavailable", ex);
+        }
+        catch (IOException ex)
+        {
+            throw new DataBackendException(
+                    "The LDAP server specified is unavailable", ex);
+        }
+        finally
+        {
+            releaseControlledContext(ctx);
+        }
+    }
+
+    /**
+     * Remove the request controls from a pooled admin context and return it
+     * to the pool. A context whose controls cannot be reset is closed.
+     *
+     * @param ctx the context, may be <code>null</code>
+     */
+    private void releaseControlledContext(LdapContext ctx)
+    {
+        if (ctx != null)
+        {
+            try
+            {
+                ctx.setRequestControls(null);
+            }
+            catch (NamingException ex)
+            {
+                getLogger().warn("Could not reset the LDAP request controls", ex);
+                adminPool.invalidate(ctx);
+                return;
+            }
+        }
+
+        releaseAdminContext(ctx);
+    }
+
+    /**
+     * Get the cookie for the next page of a paged search
+     *
+     * @param ctx the context of the search
+     * @return the cookie or <code>null</code> if the server did not send one
+     * @throws NamingException if the response controls cannot be read
+     */
+    private static byte[] getCookie(LdapContext ctx) throws NamingException
+    {
+        Control[] controls = ctx.getResponseControls();
+        if (controls != null)
+        {
+            for (Control control : controls)
+            {
+                if (control instanceof PagedResultsResponseControl)
+                {
+                    return ((PagedResultsResponseControl) control).getCookie();
+                }
+            }
+        }
+
+        return null;
     }
 
     /**
@@ -229,10 +421,12 @@ public class LDAPUserManagerImpl extends AbstractUserManager
     public UserSet getAllUsers() throws DataBackendException
     {
         UserSet users = new UserSet();
+        DirContext ctx = null;
+        NamingEnumeration<SearchResult> answer = null;
 
         try
         {
-            DirContext ctx = bindAsAdmin();
+            ctx = borrowAdminContext();
 
             String filter = "(" + this.ldapUsername + "=*)";
 
@@ -241,8 +435,7 @@ public class LDAPUserManagerImpl extends AbstractUserManager
              */
             SearchControls ctls = new SearchControls();
 
-            NamingEnumeration<SearchResult> answer =
-                    ctx.search(this.ldapBasesearch, filter, ctls);
+            answer = ctx.search(this.ldapBasesearch, filter, ctls);
 
             while (answer.hasMore())
             {
@@ -257,13 +450,123 @@ public class LDAPUserManagerImpl extends AbstractUserManager
         }
         catch (NamingException ex)
         {
+            ctx = discardAdminContext(ctx, ex);
             throw new DataBackendException(
                     "The LDAP server specified is unavailable", ex);
         }
+        finally
+        {
+            closeAnswer(answer);
+            releaseAdminContext(ctx);
+        }
 
         return users;
     }
 
+    /**
+     * Read one page with a range filter on the user name, sorted by the
+     * server with the server side sort control. The server has to support
+     * the control and an ordering rule for the user name attribute.
+     *
+     * @see org.apache.fulcrum.security.UserManager#getUsers(java.lang.String, int)
+     */
+    @Override
+    public <T extends User> List<T> getUsers(String afterName, int limit) throws DataBackendException
+    {
+        checkLimit(limit);
+        String after = SecuritySet.foldName(afterName);
+        List<T> page = new ArrayList<T>(limit);
+        LdapContext ctx = null;
+        NamingEnumeration<SearchResult> answer = null;
+
+        try
+        {
+            ctx = (LdapContext) borrowAdminContext();
+
+            String filter = after == null
+                    ? "(" + this.ldapUsername + "=*)"
+                    : "(&(" + this.ldapUsername + ">=" + escapeFilter(after) + ")(!("
+                            + this.ldapUsername + "=" + escapeFilter(after) + ")))";
+            SearchControls ctls = new SearchControls();
+            ctls.setCountLimit(limit);
+
+            ctx.setRequestControls(new Control[] {
+                    new SortControl(this.ldapUsername, Control.CRITICAL) });
+            answer = ctx.search(this.ldapBasesearch, filter, ctls);
+
+            try
+            {
+                while (answer.hasMore())
+                {
+                    T ldapUser = getUserInstance();
+                    setLDAPAttributes(ldapUser, answer.next().getAttributes());
+                    page.add(ldapUser);
+                }
+            }
+            catch (SizeLimitExceededException ex)
+            {
+                // the page is full
+            }
+        }
+        catch (NamingException ex)
+        {
+            ctx = (LdapContext) discardAdminContext(ctx, ex);
+            throw new DataBackendException(
+                    "The LDAP server specified is unavailable", ex);
+        }
+        catch (IOException ex)
+        {
+            throw new DataBackendException(
+                    "The LDAP server specified is unavailable", ex);
+        }
+        finally
+        {
+            closeAnswer(answer);
+            releaseControlledContext(ctx);
+        }
+
+        // the server collation may differ from the folded names
+        page.sort(Comparator.comparing(user -> SecuritySet.foldName(user.getName())));
+        return page;
+    }
+
+    /**
+     * Stream the users with the LDAP paged results control, one page of
+     * pageSize entries per request. The stream holds a pooled admin context,
+     * which is returned to the pool after the last page has been read, on an
+     * error or when the stream is closed, whichever comes first.
+     *
+     * @see org.apache.fulcrum.security.UserManager#streamUsers()
+     */
+    @Override
+    public <T extends User> Stream<T> streamUsers() throws DataBackendException
+    {
+        LdapContext ctx = null;
+
+        try
+        {
+            ctx = (LdapContext) borrowAdminContext();
+            UserPages<T> pages = new UserPages<T>(ctx);
+            ctx = null;
+            return StreamSupport.stream(pages, false).onClose(pages::close);
+        }
+        catch (NamingException ex)
+        {
+            ctx = (LdapContext) discardAdminContext(ctx, ex);
+            throw new DataBackendException(
+                    "The LDAP server specified is unavailable", ex);
+        }
+        catch (IOException ex)
+        {
+            throw new DataBackendException(
+                    "The LDAP server specified is unavailable", ex);
+        }
+        finally
+        {
+            releaseControlledContext(ctx);
+        }
+    }
+
     /**
      * Removes an user account from the system.
      *
@@ -282,18 +585,26 @@ public class LDAPUserManagerImpl extends AbstractUserManager
                     + user.getName() + "' does not exist");
         }
 
+        DirContext ctx = null;
+
         try
         {
             String name = getDN(user);
 
-            DirContext ctx = bindAsAdmin();
+            ctx = borrowAdminContext();
 
             ctx.unbind(name);
+            userRemoved(user);
         }
         catch (NamingException ex)
         {
+            ctx = discardAdminContext(ctx, ex);
             throw new DataBackendException("NamingException caught", ex);
         }
+        finally
+        {
+            releaseAdminContext(ctx);
+        }
     }
 
     /**
@@ -325,19 +636,26 @@ public class LDAPUserManagerImpl extends AbstractUserManager
             user.setId(getUniqueId());
         }
 
+        DirContext ctx = null;
+
         try
         {
             Attributes attrs = getLDAPAttributes(user);
             String name = getDN(user);
 
-            DirContext ctx = bindAsAdmin();
+            ctx = borrowAdminContext();
 
             ctx.bind(name, null, attrs);
         }
         catch (NamingException ex)
         {
+            ctx = discardAdminContext(ctx, ex);
             throw new DataBackendException("NamingException caught", ex);
         }
+        finally
+        {
+            releaseAdminContext(ctx);
+        }
 
         return user;
     }
@@ -360,19 +678,26 @@ public class LDAPUserManagerImpl extends AbstractUserManager
                     + user.getName() + "' does not exist");
         }
 
+        DirContext ctx = null;
+
         try
         {
             Attributes attrs = getLDAPAttributes(user);
             String name = getDN(user);
 
-            DirContext ctx = bindAsAdmin();
+            ctx = borrowAdminContext();
 
             ctx.modifyAttributes(name, DirContext.REPLACE_ATTRIBUTE, attrs);
         }
         catch (NamingException ex)
         {
+            ctx = discardAdminContext(ctx, ex);
             throw new DataBackendException("NamingException caught", ex);
         }
+        finally
+        {
+            releaseAdminContext(ctx);
+        }
     }
 
     /**
@@ -410,9 +735,12 @@ public class LDAPUserManagerImpl extends AbstractUserManager
      */
     public <T extends User> T getUser(String name) throws DataBackendException, UnknownEntityException
     {
+        DirContext ctx = null;
+        NamingEnumeration<SearchResult> answer = null;
+
         try
         {
-            DirContext ctx = bindAsAdmin();
+            ctx = borrowAdminContext();
 
             /*
              * Define the search.
@@ -424,8 +752,7 @@ public class LDAPUserManagerImpl extends AbstractUserManager
              */
             SearchControls ctls = new SearchControls();
 
-            NamingEnumeration<SearchResult> answer =
-                    ctx.search(this.ldapBasesearch, filter, ctls);
+            answer = ctx.search(this.ldapBasesearch, filter, ctls);
 
             if (answer.hasMore())
             {
@@ -445,9 +772,15 @@ public class LDAPUserManagerImpl extends AbstractUserManager
         }
         catch (NamingException ex)
         {
+            ctx = discardAdminContext(ctx, ex);
             throw new DataBackendException(
                     "The LDAP server specified is unavailable", ex);
         }
+        finally
+        {
+            closeAnswer(answer);
+            releaseAdminContext(ctx);
+        }
     }
 
     /**
@@ -462,9 +795,12 @@ public class LDAPUserManagerImpl extends AbstractUserManager
      */
     public <T extends User> T getUserById(Object id) throws DataBackendException, UnknownEntityException
     {
+        DirContext ctx = null;
+        NamingEnumeration<SearchResult> answer = null;
+
         try
         {
-            DirContext ctx = bindAsAdmin();
+            ctx = borrowAdminContext();
 
             /*
              * Define the search.
@@ -476,8 +812,7 @@ public class LDAPUserManagerImpl extends AbstractUserManager
              */
             SearchControls ctls = new SearchControls();
 
-            NamingEnumeration<SearchResult> answer =
-                    ctx.search(this.ldapBasesearch, filter, ctls);
+            answer = ctx.search(this.ldapBasesearch, filter, ctls);
 
             if (answer.hasMore())
             {
@@ -497,9 +832,15 @@ public class LDAPUserManagerImpl extends AbstractUserManager
         }
         catch (NamingException ex)
         {
+            ctx = discardAdminContext(ctx, ex);
             throw new DataBackendException(
                     "The LDAP server specified is unavailable", ex);
         }
+        finally
+        {
+            closeAnswer(answer);
+            releaseAdminContext(ctx);
+        }
     }
     
     @Override
@@ -508,6 +849,118 @@ public class LDAPUserManagerImpl extends AbstractUserManager
         throw new DataBackendException("Not implemented yet");
     }
 
+    /**
+     * Translate the name and email conditions into a search filter. The
+     * server stops after the limit of the query unless the result has to be
+     * sorted. LDAP users have no groups, so group conditions are evaluated
+     * by the default implementation.
+     *
+     * @see org.apache.fulcrum.security.UserManager#retrieveUserList(org.apache.fulcrum.security.util.UserQuery)
+     */
+    @Override
+    public <T extends User> List<T> retrieveUserList(UserQuery query) throws DataBackendException
+    {
+        if (query.getGroup() != null)
+        {
+            return super.retrieveUserList(query);
+        }
+
+        StringBuilder filter = new StringBuilder("(&(").append(this.ldapUsername).append("=*)");
+        if (query.getNamePrefix() != null)
+        {
+            filter.append('(').append(this.ldapUsername).append('=')
+                .append(escapeFilter(query.getNamePrefix())).append("*)");
+        }
+        if (query.getNamePart() != null)
+        {
+            filter.append('(').append(this.ldapUsername).append("=*")
+                .append(escapeFilter(query.getNamePart())).append("*)");
+        }
+        if (query.getEmail() != null)
+        {
+            filter.append('(').append(this.ldapEmail).append('=')
+                .append(escapeFilter(query.getEmail())).append(')');
+        }
+        filter.append(')');
+
+        SearchControls ctls = new SearchControls();
+        if (query.getOrder() == UserQuery.Order.NONE)
+        {
+            ctls.setCountLimit(query.getLimit());
+        }
+
+        List<T> users = new ArrayList<T>();
+        DirContext ctx = null;
+        NamingEnumeration<SearchResult> answer = null;
+
+        try
+        {
+            ctx = borrowAdminContext();
+
+            answer = ctx.search(this.ldapBasesearch, filter.toString(), ctls);
+
+            while (answer.hasMore())
+            {
+                T ldapUser = getUserInstance();
+                setLDAPAttributes(ldapUser, answer.next().getAttributes());
+                users.add(ldapUser);
+            }
+        }
+        catch (SizeLimitExceededException ex)
+        {
+            // the limit of the query has been reached
+        }
+        catch (NamingException ex)
+        {
+            ctx = discardAdminContext(ctx, ex);
+            throw new DataBackendException(
+                    "The LDAP server specified is unavailable", ex);
+        }
+        finally
+        {
+            closeAnswer(answer);
+            releaseAdminContext(ctx);
+        }
+
+        return query.select(users.iterator());
+    }
+
+    /**
+     * Escape a value for a search filter as required by RFC 4515
+     *
+     * @param value the literal value
+     * @return the escaped value
+     */
+    private static String escapeFilter(String value)
+    {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+                case '*':
+                    escaped.append("\\2a");
+                    break;
+                case '(':
+                    escaped.append("\\28");
+                    break;
+                case ')':
+                    escaped.append("\\29");
+                    break;
+                case '\\':
+                    escaped.append("\\5c");
+                    break;
+                case '\0':
+                    escaped.append("\\00");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
     /**
      * Avalon Service lifecycle method
      *
@@ -573,10 +1026,98 @@ public class LDAPUserManagerImpl extends AbstractUserManager
             this.ldapEmail = ldapUser.getChild(LDAP_USER_EMAIL_KEY).getValue(LDAP_USER_EMAIL_DEFAULT);
             this.ldapPassword = ldapUser.getChild(LDAP_USER_PASSWORD_KEY).getValue(LDAP_USER_PASSWORD_DEFAULT);
         }
+
+        Configuration pool = ldap.getChild(LDAP_POOL_KEY);
+
+        this.adminPool = new LDAPContextPool(this::bindAsAdmin,
+                pool.getChild(LDAP_POOL_MIN_IDLE_KEY).getValueAsInteger(LDAP_POOL_MIN_IDLE_DEFAULT),
+                pool.getChild(LDAP_POOL_MAX_SIZE_KEY).getValueAsInteger(LDAP_POOL_MAX_SIZE_DEFAULT),
+                pool.getChild(LDAP_POOL_MAX_IDLE_TIME_KEY).getValueAsLong(LDAP_POOL_MAX_IDLE_TIME_DEFAULT),
+                pool.getChild(LDAP_POOL_VALIDATION_INTERVAL_KEY).getValueAsLong(LDAP_POOL_VALIDATION_INTERVAL_DEFAULT),
+                pool.getChild(LDAP_POOL_MAX_WAIT_KEY).getValueAsLong(LDAP_POOL_MAX_WAIT_DEFAULT));
+    }
+
+    /**
+     * Avalon Service lifecycle method, closes the pooled admin contexts
+     *
+     * @see org.apache.fulcrum.security.spi.AbstractManager#dispose()
+     */
+    @Override
+    public void dispose()
+    {
+        if (adminPool != null)
+        {
+            adminPool.close();
+        }
+
+        super.dispose();
+    }
+
+    /**
+     * Close a search result before its context goes back to the pool.
+     *
+     * @param answer the search result, may be <code>null</code>
+     */
+    protected void closeAnswer(NamingEnumeration<?> answer)
+    {
+        if (answer != null)
+        {
+            try
+            {
+                answer.close();
+            }
+            catch (NamingException ex)
+            {
+                getLogger().warn("Could not close LDAP search result", ex);
+            }
+        }
+    }
+
+    /**
+     * Take a context bound as the admin user from the pool. It must be
+     * returned with {@link #releaseAdminContext(DirContext)}.
+     *
+     * @throws NamingException when an error occurs with the named server.
+     * @return a pooled DirContext.
+     */
+    protected DirContext borrowAdminContext()
+            throws NamingException
+    {
+        return adminPool.borrow();
+    }
+
+    /**
+     * Return a context to the admin pool.
+     *
+     * @param ctx the context, may be <code>null</code>
+     */
+    protected void releaseAdminContext(DirContext ctx)
+    {
+        adminPool.release(ctx);
+    }
+
+    /**
+     * Close a pooled admin context if the error shows that its connection
+     * is broken, so that it is not handed out again.
+     *
+     * @param ctx the context, may be <code>null</code>
+     * @param ex the error which occurred while using the context
+     * @return the context if it can still be returned to the pool, <code>null</code> otherwise
+     */
+    protected DirContext discardAdminContext(DirContext ctx, NamingException ex)
+    {
+        if (ex instanceof CommunicationException || ex instanceof ServiceUnavailableException)
+        {
+            adminPool.invalidate(ctx);
+            return null;
+        }
+
+        return ctx;
     }
 
     /**
-     * Bind as the admin user.
+     * Bind as the admin user. The caller has to close the returned context,
+     * the user manager itself takes its admin contexts from a pool.
      *
      * @throws NamingException when an error occurs with the named server.
      * @return a new DirContext.
@@ -612,7 +1153,7 @@ public class LDAPUserManagerImpl extends AbstractUserManager
         env.put(Context.SECURITY_PRINCIPAL, username);
         env.put(Context.SECURITY_CREDENTIALS, password);
 
-        DirContext ctx = new javax.naming.directory.InitialDirContext(env);
+        DirContext ctx = new InitialLdapContext(env, null);
 
         return ctx;
     }
@@ -773,4 +1314,87 @@ public class LDAPUserManagerImpl extends AbstractUserManager
 
         return dn;
     }
+
+    /**
+     * Reads the users page by page, requesting the next page with the
+     * cookie of the previous one when the current page is used up.
+     *
+     * @param <T> User type
+     */
+    private class UserPages<T extends User> extends Spliterators.AbstractSpliterator<T>
+    {
+        private LdapContext ctx;
+
+        private final String filter = "(" + ldapUsername + "=*)";
+
+        private final SearchControls ctls = new SearchControls();
+
+        private NamingEnumeration<SearchResult> answer;
+
+        UserPages(LdapContext ctx) throws NamingException, IOException
+        {
+            super(Long.MAX_VALUE, Spliterator.NONNULL);
+            this.ctx = ctx;
+            search(null);
+        }
+
+        private void search(byte[] cookie) throws NamingException, IOException
+        {
+            closeAnswer(answer);
+            ctx.setRequestControls(new Control[] {
+                    new PagedResultsControl(getPageSize(), cookie, Control.CRITICAL) });
+            answer = ctx.search(ldapBasesearch, filter, ctls);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action)
+        {
+            if (ctx == null)
+            {
+                return false;
+            }
+
+            try
+            {
+                while (!answer.hasMore())
+                {
+                    byte[] cookie = getCookie(ctx);
+                    if (cookie == null || cookie.length == 0)
+                    {
+                        // the last page is consumed, the stream may never be closed
+                        close();
+                        return false;
+                    }
+                    search(cookie);
+                }
+
+                T ldapUser = getUserInstance();
+                setLDAPAttributes(ldapUser, answer.next().getAttributes());
+                action.accept(ldapUser);
+                return true;
+            }
+            catch (NamingException ex)
+            {
+                ctx = (LdapContext) discardAdminContext(ctx, ex);
+                close();
+                throw new RuntimeException(ex.getMessage(), ex);
+            }
+            catch (IOException | DataBackendException ex)
+            {
+                throw new RuntimeException(ex.getMessage(), ex);
+            }
+        }
+
+        /**
+         * Return the context to the pool, only the first call has an effect
+         */
+        void close()
+        {
+            closeAnswer(answer);
+            answer = null;
+            LdapContext pooled = ctx;
+            ctx = null;
+            releaseControlledContext(pooled);
+        }
+    }
 }
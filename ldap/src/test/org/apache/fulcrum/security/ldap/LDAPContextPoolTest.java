@@ -0,0 +1,215 @@
+package org.apache.fulcrum.security.ldap;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the pooling of LDAP contexts without an LDAP server
+ *
+ * @version $Id$
+ */
+public class LDAPContextPoolTest
+{
+    /** State of a fake context */
+    private static class FakeContext implements InvocationHandler
+    {
+        boolean closed = false;
+        boolean broken = false;
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            String name = method.getName();
+
+            if ("close".equals(name))
+            {
+                closed = true;
+                return null;
+            }
+            if ("getAttributes".equals(name))
+            {
+                if (broken || closed)
+                {
+                    throw new CommunicationException("connection lost");
+                }
+                return new BasicAttributes();
+            }
+            if ("equals".equals(name))
+            {
+                return Boolean.valueOf(proxy == args[0]);
+            }
+            if ("hashCode".equals(name))
+            {
+                return Integer.valueOf(System.identityHashCode(proxy));
+            }
+            if ("toString".equals(name))
+            {
+                return "FakeContext@" + System.identityHashCode(proxy);
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+
+    private List<FakeContext> created;
+
+    private LDAPContextPool.ContextFactory factory;
+
+    @Before
+    public void setUp()
+    {
+        created = new ArrayList<FakeContext>();
+        factory = new LDAPContextPool.ContextFactory()
+        {
+            public DirContext create() throws NamingException
+            {
+                FakeContext fake = new FakeContext();
+                created.add(fake);
+                return (DirContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] { DirContext.class }, fake);
+            }
+        };
+    }
+
+    @Test
+    public void testReuse() throws Exception
+    {
+        LDAPContextPool pool = new LDAPContextPool(factory, 0, 2, 60000, 60000, 0);
+
+        DirContext ctx = pool.borrow();
+        pool.release(ctx);
+        assertSame(ctx, pool.borrow());
+        assertEquals(1, created.size());
+        assertEquals(1, pool.getActiveCount());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void testMaxSize() throws Exception
+    {
+        LDAPContextPool pool = new LDAPContextPool(factory, 0, 2, 60000, 60000, 10);
+
+        DirContext ctx1 = pool.borrow();
+        DirContext ctx2 = pool.borrow();
+        assertNotSame(ctx1, ctx2);
+
+        try
+        {
+            pool.borrow();
+            fail("Pool should be exhausted");
+        }
+        catch (ServiceUnavailableException e)
+        {
+            // expected
+        }
+
+        pool.release(ctx2);
+        assertSame(ctx2, pool.borrow());
+        assertEquals(2, created.size());
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception
+    {
+        LDAPContextPool pool = new LDAPContextPool(factory, 1, 3, 0, 60000, 0);
+
+        DirContext ctx1 = pool.borrow();
+        DirContext ctx2 = pool.borrow();
+        pool.release(ctx1);
+        pool.release(ctx2);
+        Thread.sleep(5);
+        pool.evict();
+
+        // the minimum idle context survives
+        assertEquals(1, pool.getIdleCount());
+        assertTrue(created.get(0).closed);
+        assertTrue(!created.get(1).closed);
+    }
+
+    @Test
+    public void testHealthCheck() throws Exception
+    {
+        LDAPContextPool pool = new LDAPContextPool(factory, 0, 2, 60000, 0, 0);
+
+        DirContext ctx = pool.borrow();
+        pool.release(ctx);
+        created.get(0).broken = true;
+        Thread.sleep(5);
+
+        DirContext fresh = pool.borrow();
+        assertNotSame(ctx, fresh);
+        assertTrue(created.get(0).closed);
+        assertEquals(2, created.size());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception
+    {
+        LDAPContextPool pool = new LDAPContextPool(factory, 0, 1, 60000, 60000, 0);
+
+        DirContext ctx = pool.borrow();
+        pool.invalidate(ctx);
+        assertTrue(created.get(0).closed);
+        assertNotSame(ctx, pool.borrow());
+    }
+
+    @Test
+    public void testClose() throws Exception
+    {
+        LDAPContextPool pool = new LDAPContextPool(factory, 0, 2, 60000, 60000, 0);
+
+        DirContext ctx1 = pool.borrow();
+        DirContext ctx2 = pool.borrow();
+        pool.release(ctx1);
+        pool.close();
+        assertTrue(created.get(0).closed);
+
+        // still in use when the pool was closed
+        pool.release(ctx2);
+        assertTrue(created.get(1).closed);
+
+        try
+        {
+            pool.borrow();
+            fail("Pool should be closed");
+        }
+        catch (ServiceUnavailableException e)
+        {
+            // expected
+        }
+    }
+}
@@ -18,8 +18,6 @@ package org.apache.fulcrum.security.memory;
  * specific language governing permissions and limitations
  * under the License.
  */
-import java.util.ArrayList;
-import java.util.List;
 
 import org.apache.fulcrum.security.GroupManager;
 import org.apache.fulcrum.security.entity.Group;
@@ -37,13 +35,8 @@ import org.apache.fulcrum.security.util.UnknownEntityException;
  */
 public class MemoryGroupManagerImpl extends AbstractGroupManager implements GroupManager
 {
-    // static to simulate database ?
-    private static List<Group> groups = new ArrayList<Group>();
-    
-    public MemoryGroupManagerImpl() {
-        // reset
-        groups = new ArrayList<Group>();
-    }
+    /** The groups of this manager */
+    private final MemoryStore<Group> groups = new MemoryStore<Group>();
 
     /** Our Unique ID counter */
     // private static int uniqueId = 0;
@@ -57,7 +50,7 @@ public class MemoryGroupManagerImpl extends AbstractGroupManager implements Grou
      */
     public GroupSet getAllGroups() throws DataBackendException
     {
-        return new GroupSet(groups);
+        return new GroupSet(groups.view());
     }
 
     /**
@@ -79,6 +72,7 @@ public class MemoryGroupManagerImpl extends AbstractGroupManager implements Grou
             if (groupExists)
             {
                 groups.remove(group);
+                groupRemoved(group);
                 return;
             }
             else
@@ -113,9 +107,8 @@ public class MemoryGroupManagerImpl extends AbstractGroupManager implements Grou
             groupExists = checkExists(group);
             if (groupExists)
             {
-                groups.remove(group);
-                group.setName(name);
-                groups.add(group);
+                groups.rename(group, name);
+                groupRenamed(group);
             }
             else
             {
@@ -139,7 +132,7 @@ public class MemoryGroupManagerImpl extends AbstractGroupManager implements Grou
      */
     public boolean checkExists(String groupName) throws DataBackendException
     {
-        return MemoryHelper.checkExists(groups, groupName);
+        return groups.containsName(groupName);
     }
 
     /**
@@ -154,11 +147,31 @@ public class MemoryGroupManagerImpl extends AbstractGroupManager implements Grou
     @Override
     protected synchronized <T extends Group> T persistNewGroup(T group) throws DataBackendException
     {
-        group.setId(MemoryHelper.getUniqueId());
         groups.add(group);
         // return the object with correct id
         return group;
 
     }
 
+    /**
+     * @see org.apache.fulcrum.security.spi.AbstractGroupManager#findGroupByName(java.lang.String)
+     */
+    @Override
+    protected <T extends Group> T findGroupByName(String name)
+    {
+        @SuppressWarnings("unchecked")
+        T group = (T) groups.getByName(name);
+        return group;
+    }
+
+    /**
+     * @see org.apache.fulcrum.security.spi.AbstractGroupManager#findGroupById(java.lang.Object)
+     */
+    @Override
+    protected <T extends Group> T findGroupById(Object id)
+    {
+        @SuppressWarnings("unchecked")
+        T group = (T) groups.getById(id);
+        return group;
+    }
 }
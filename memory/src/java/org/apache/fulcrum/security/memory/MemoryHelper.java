@@ -19,9 +19,7 @@ package org.apache.fulcrum.security.memory;
  * under the License.
  */
 
-import java.util.List;
-
-import org.apache.fulcrum.security.entity.SecurityEntity;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 
@@ -34,29 +32,14 @@ import org.apache.fulcrum.security.entity.SecurityEntity;
 public class MemoryHelper
 {
 
-    /** Our Unique ID counter */
-    private static int uniqueId = 0;
-
-    public static Integer getUniqueId()
-    {
-        return new Integer(++uniqueId);
-    }
+    /** Our Unique ID counter, shared by all entity types */
+    private static final AtomicInteger uniqueId = new AtomicInteger();
 
     /**
-     * @param securityEntities list of security entities
-     * @param name the name
-     * @return <code>true</code> if exists
+     * @return a new id, unique across all memory managers
      */
-    public static boolean checkExists(List<? extends SecurityEntity> securityEntities, String name)
+    public static Integer getUniqueId()
     {
-        boolean exists = false;
-        for (SecurityEntity securityEntity : securityEntities)
-        {
-            if (securityEntity.getName().equalsIgnoreCase(name))
-            {
-                exists = true;
-            }
-        }
-        return exists;
+        return Integer.valueOf(uniqueId.incrementAndGet());
     }
 }
@@ -18,8 +18,6 @@ package org.apache.fulcrum.security.memory;
  * specific language governing permissions and limitations
  * under the License.
  */
-import java.util.ArrayList;
-import java.util.List;
 
 import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.spi.AbstractPermissionManager;
@@ -38,12 +36,8 @@ import org.apache.fulcrum.security.util.UnknownEntityException;
  */
 public class MemoryPermissionManagerImpl extends AbstractPermissionManager
 {
-    // static to simulate database ?
-    private static List<Permission> permissions = new ArrayList<Permission>();
-    
-    public MemoryPermissionManagerImpl() {
-        permissions.clear();
-    }
+    /** The permissions of this manager */
+    private final MemoryStore<Permission> permissions = new MemoryStore<Permission>();
 
     /** Our Unique ID counter */
     // private static int uniqueId = 0;
@@ -57,7 +51,7 @@ public class MemoryPermissionManagerImpl extends AbstractPermissionManager
      */
     public PermissionSet getAllPermissions() throws DataBackendException
     {
-        return new PermissionSet(permissions);
+        return new PermissionSet(permissions.view());
     }
 
     /**
@@ -80,9 +74,8 @@ public class MemoryPermissionManagerImpl extends AbstractPermissionManager
             permissionExists = checkExists(permission);
             if (permissionExists)
             {
-                permissions.remove(permission);
-                permission.setName(name);
-                permissions.add(permission);
+                permissions.rename(permission, name);
+                permissionRenamed(permission);
                 return;
             }
         }
@@ -105,7 +98,7 @@ public class MemoryPermissionManagerImpl extends AbstractPermissionManager
      */
     public boolean checkExists(String permissionName) throws DataBackendException
     {
-        return MemoryHelper.checkExists(permissions, permissionName);
+        return permissions.containsName(permissionName);
     }
 
     /**
@@ -127,6 +120,7 @@ public class MemoryPermissionManagerImpl extends AbstractPermissionManager
             if (permissionExists)
             {
                 permissions.remove(permission);
+                permissionRemoved(permission);
                 return;
             }
         }
@@ -150,8 +144,29 @@ public class MemoryPermissionManagerImpl extends AbstractPermissionManager
     @Override
     protected synchronized <T extends Permission> T persistNewPermission(T permission) throws DataBackendException
     {
-        permission.setId(MemoryHelper.getUniqueId());
         permissions.add(permission);
         return permission;
     }
+
+    /**
+     * @see org.apache.fulcrum.security.spi.AbstractPermissionManager#findPermissionByName(java.lang.String)
+     */
+    @Override
+    protected <T extends Permission> T findPermissionByName(String name)
+    {
+        @SuppressWarnings("unchecked")
+        T permission = (T) permissions.getByName(name);
+        return permission;
+    }
+
+    /**
+     * @see org.apache.fulcrum.security.spi.AbstractPermissionManager#findPermissionById(java.lang.Object)
+     */
+    @Override
+    protected <T extends Permission> T findPermissionById(Object id)
+    {
+        @SuppressWarnings("unchecked")
+        T permission = (T) permissions.getById(id);
+        return permission;
+    }
 }
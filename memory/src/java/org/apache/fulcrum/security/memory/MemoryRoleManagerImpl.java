@@ -18,10 +18,11 @@ package org.apache.fulcrum.security.memory;
  * specific language governing permissions and limitations
  * under the License.
  */
-import java.util.ArrayList;
-import java.util.List;
 
+import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.model.dynamic.entity.DynamicPermission;
+import org.apache.fulcrum.security.model.turbine.entity.TurbinePermission;
 import org.apache.fulcrum.security.spi.AbstractRoleManager;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.EntityExistsException;
@@ -38,13 +39,8 @@ import org.apache.fulcrum.security.util.UnknownEntityException;
  */
 public class MemoryRoleManagerImpl extends AbstractRoleManager
 {
-    /** List to store all our roles in */
-    private static List<Role> roles = new ArrayList<Role>();
-    
-    public MemoryRoleManagerImpl() {
-        // reset
-        roles.clear();
-    }
+    /** The roles of this manager */
+    private final MemoryStore<Role> roles = new MemoryStore<Role>();
 
     /** Our Unique ID counter */
     // private static int uniqueId = 0;
@@ -69,9 +65,8 @@ public class MemoryRoleManagerImpl extends AbstractRoleManager
             roleExists = checkExists(role);
             if (roleExists)
             {
-                roles.remove(role);
-                role.setName(name);
-                roles.add(role);
+                roles.rename(role, name);
+                invalidateACLs(role);
                 return;
             }
         }
@@ -92,7 +87,50 @@ public class MemoryRoleManagerImpl extends AbstractRoleManager
      */
     public boolean checkExists(String roleName)
     {
-        return MemoryHelper.checkExists(roles, roleName);
+        return roles.containsName(roleName);
+    }
+
+    /**
+     * Answered from the roles recorded on the stored permission, which the
+     * memory model managers update on every grant and revoke. Roles removed
+     * meanwhile are not counted.
+     *
+     * @see org.apache.fulcrum.security.RoleManager#countRolesWithPermission(org.apache.fulcrum.security.entity.Permission)
+     */
+    @Override
+    public int countRolesWithPermission(Permission permission) throws DataBackendException
+    {
+        RoleSet granting = null;
+        try
+        {
+            Permission stored = getPermissionManager().getPermissionById(permission.getId());
+            if (stored instanceof TurbinePermission)
+            {
+                granting = ((TurbinePermission) stored).getRoles();
+            }
+            else if (stored instanceof DynamicPermission)
+            {
+                granting = ((DynamicPermission) stored).getRoles();
+            }
+        }
+        catch (UnknownEntityException e)
+        {
+            return 0;
+        }
+
+        int count = 0;
+        if (granting != null)
+        {
+            for (Object id : granting.getIds())
+            {
+                if (roles.getById(id) != null)
+                {
+                    count++;
+                }
+            }
+        }
+
+        return count;
     }
 
     /**
@@ -104,7 +142,7 @@ public class MemoryRoleManagerImpl extends AbstractRoleManager
      */
     public RoleSet getAllRoles() throws DataBackendException
     {
-        return new RoleSet(roles);
+        return new RoleSet(roles.view());
     }
 
     /**
@@ -119,10 +157,7 @@ public class MemoryRoleManagerImpl extends AbstractRoleManager
     @Override
     protected synchronized <T extends Role> T persistNewRole(T role) throws DataBackendException
     {
-        role.setId(MemoryHelper.getUniqueId());
         roles.add(role);
-        // add the role to system-wide cache
-        getAllRoles().add(role);
         // return the object with correct id
         return role;
     }
@@ -146,7 +181,7 @@ public class MemoryRoleManagerImpl extends AbstractRoleManager
             if (roleExists)
             {
                 roles.remove(role);
-                getAllRoles().remove(role);
+                roleRemoved(role);
                 return;
             }
         }
@@ -157,4 +192,26 @@ public class MemoryRoleManagerImpl extends AbstractRoleManager
 
         throw new UnknownEntityException("Unknown role '" + role + "'");
     }
+
+    /**
+     * @see org.apache.fulcrum.security.spi.AbstractRoleManager#findRoleByName(java.lang.String)
+     */
+    @Override
+    protected <T extends Role> T findRoleByName(String name)
+    {
+        @SuppressWarnings("unchecked")
+        T role = (T) roles.getByName(name);
+        return role;
+    }
+
+    /**
+     * @see org.apache.fulcrum.security.spi.AbstractRoleManager#findRoleById(java.lang.Object)
+     */
+    @Override
+    protected <T extends Role> T findRoleById(Object id)
+    {
+        @SuppressWarnings("unchecked")
+        T role = (T) roles.getById(id);
+        return role;
+    }
 }
@@ -0,0 +1,230 @@
+package org.apache.fulcrum.security.memory;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.apache.fulcrum.security.entity.SecurityEntity;
+import org.apache.fulcrum.security.util.SecuritySet;
+
+/**
+ * Thread-safe in-memory storage of security entities of one type, indexed
+ * by id and by name. Names are matched ignoring case.
+ *
+ * Reads do not lock. Writes are serialized so that both indexes always
+ * describe the same set of entities. The name index is sorted, so that
+ * pages of entities can be read in name order.
+ *
+ * @param <T> the entity type
+ * @version $Id$
+ */
+public class MemoryStore<T extends SecurityEntity> implements Serializable
+{
+    /** Serial version */
+    private static final long serialVersionUID = 3466393440404587314L;
+
+    /** The entities by id */
+    private final ConcurrentMap<Object, T> byId = new ConcurrentHashMap<Object, T>();
+
+    /** The entities by case-folded name, see {@link SecuritySet#foldName(String)} */
+    private final ConcurrentNavigableMap<String, T> byName = new ConcurrentSkipListMap<String, T>();
+
+    /** The name each entity was indexed with, by id, to find stale name entries */
+    private final Map<Object, String> indexedNames = new ConcurrentHashMap<Object, String>();
+
+    /**
+     * Assign a new unique id to the entity and store it
+     *
+     * @param entity the new entity
+     * @return the entity with its id set
+     */
+    public synchronized T add(T entity)
+    {
+        entity.setId(MemoryHelper.getUniqueId());
+        index(entity);
+        return entity;
+    }
+
+    /**
+     * Store an entity again, e.g. after its name has changed. The entity
+     * must have an id.
+     *
+     * @param entity the entity
+     */
+    public synchronized void put(T entity)
+    {
+        unindex(entity.getId());
+        index(entity);
+    }
+
+    /**
+     * Rename an entity
+     *
+     * @param entity the entity
+     * @param name the new name
+     */
+    public synchronized void rename(T entity, String name)
+    {
+        unindex(entity.getId());
+        entity.setName(name);
+        index(entity);
+    }
+
+    /**
+     * Remove an entity
+     *
+     * @param entity the entity
+     * @return <code>true</code> if the entity was stored
+     */
+    public synchronized boolean remove(SecurityEntity entity)
+    {
+        return entity.getId() != null && unindex(entity.getId()) != null;
+    }
+
+    /**
+     * Remove all entities
+     */
+    public synchronized void clear()
+    {
+        byId.clear();
+        byName.clear();
+        indexedNames.clear();
+    }
+
+    /**
+     * @param name the name, ignoring case
+     * @return <code>true</code> if an entity with this name is stored
+     */
+    public boolean containsName(String name)
+    {
+        return name != null && byName.containsKey(SecuritySet.foldName(name));
+    }
+
+    /**
+     * @param name the name, ignoring case
+     * @return the entity with the given name or <code>null</code>
+     */
+    public T getByName(String name)
+    {
+        return name == null ? null : byName.get(SecuritySet.foldName(name));
+    }
+
+    /**
+     * @param id the id
+     * @return the entity with the given id or <code>null</code>
+     */
+    public T getById(Object id)
+    {
+        return id == null ? null : byId.get(id);
+    }
+
+    /**
+     * @return a snapshot of all stored entities
+     */
+    public List<T> values()
+    {
+        return new ArrayList<T>(byId.values());
+    }
+
+    /**
+     * @return a live, weakly consistent view of all stored entities
+     */
+    public Collection<T> view()
+    {
+        return byId.values();
+    }
+
+    /**
+     * Get a page of entities ordered by case-folded name
+     *
+     * @param afterName the page starts after this name, ignoring case, may be
+     *        <code>null</code> for the first page
+     * @param limit the maximum number of entities
+     * @return the entities of the page
+     */
+    public List<T> page(String afterName, int limit)
+    {
+        Collection<T> tail = (afterName == null) ? byName.values()
+                : byName.tailMap(SecuritySet.foldName(afterName), false).values();
+        List<T> page = new ArrayList<T>(Math.min(limit, 64));
+        for (T entity : tail)
+        {
+            if (page.size() == limit)
+            {
+                break;
+            }
+            page.add(entity);
+        }
+        return page;
+    }
+
+    /**
+     * @param prefix the name prefix, ignoring case
+     * @return a live view of the entities whose name starts with the prefix,
+     *         ordered by case-folded name
+     */
+    public Collection<T> withNamePrefix(String prefix)
+    {
+        String from = SecuritySet.foldName(prefix);
+        return byName.subMap(from, true, from + Character.MAX_VALUE, false).values();
+    }
+
+    /**
+     * @return the number of stored entities
+     */
+    public int size()
+    {
+        return byId.size();
+    }
+
+    private void index(T entity)
+    {
+        byId.put(entity.getId(), entity);
+
+        String name = entity.getName();
+        if (name != null)
+        {
+            String key = SecuritySet.foldName(name);
+            byName.put(key, entity);
+            indexedNames.put(entity.getId(), key);
+        }
+    }
+
+    private T unindex(Object id)
+    {
+        T old = byId.remove(id);
+        String key = indexedNames.remove(id);
+
+        if (key != null)
+        {
+            byName.remove(key, old);
+        }
+
+        return old;
+    }
+}
@@ -18,14 +18,23 @@ package org.apache.fulcrum.security.memory;
  * specific language governing permissions and limitations
  * under the License.
  */
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.basic.entity.BasicGroup;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineGroup;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
 import org.apache.fulcrum.security.spi.AbstractUserManager;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.fulcrum.security.util.UserQuery;
 import org.apache.fulcrum.security.util.UserSet;
 
 /**
@@ -39,12 +48,8 @@ public class MemoryUserManagerImpl extends AbstractUserManager {
 
 	// TODO Need to load up Crypto component and actually encrypt passwords!
 
-	private static List<User> users = new ArrayList<User>();
-	
-	public MemoryUserManagerImpl() {
-        // reset
-	    users.clear();
-    }
+	/** The users of this manager */
+	private final MemoryStore<User> users = new MemoryStore<User>();
 
 	/** Our Unique ID counter */
 	// private static int uniqueId = 0;
@@ -60,7 +65,7 @@ public class MemoryUserManagerImpl extends AbstractUserManager {
 	 *                              backend.
 	 */
 	public boolean checkExists(String userName) throws DataBackendException {
-		return MemoryHelper.checkExists(users, userName);
+		return users.containsName(userName);
 	}
 
 	/**
@@ -71,18 +76,110 @@ public class MemoryUserManagerImpl extends AbstractUserManager {
 	 *                              backend.
 	 */
 	public UserSet getAllUsers() throws DataBackendException {
-		return new UserSet(users);
+		return new UserSet(users.view());
 	}
 	
     @Override
     public <T extends User> UserSet<T> retrieveUserList(Object criteria) throws DataBackendException
     {
-        List filteredusers = users.stream()
+        List filteredusers = users.view().stream()
                 .filter(  x-> x.getName().toLowerCase().contains( criteria.toString().toLowerCase() ) )
                 .collect( Collectors.toList() );
         return new UserSet(filteredusers);
     }
 
+	/**
+	 * Evaluates the query over the users of {@link #candidates(UserQuery)}.
+	 *
+	 * @see org.apache.fulcrum.security.UserManager#retrieveUserList(org.apache.fulcrum.security.util.UserQuery)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T extends User> List<T> retrieveUserList(UserQuery query) throws DataBackendException {
+		return query.select((Iterator<T>) candidates(query).iterator());
+	}
+
+	/**
+	 * Narrow down the users to check for a query with an index. A name
+	 * prefix is looked up in the sorted name index.
+	 *
+	 * @param query the query
+	 * @return a superset of the users matching the query
+	 * @throws DataBackendException if there was an error accessing the data
+	 *                              backend
+	 */
+	protected Collection<? extends User> candidates(UserQuery query) throws DataBackendException {
+		return (query.getNamePrefix() != null) ? users.withNamePrefix(query.getNamePrefix()) : users.view();
+	}
+
+	/**
+	 * Reads the page from the sorted name index.
+	 *
+	 * @see org.apache.fulcrum.security.UserManager#getUsers(java.lang.String, int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T extends User> List<T> getUsers(String afterName, int limit) throws DataBackendException {
+		checkLimit(limit);
+		return (List<T>) users.page(afterName, limit);
+	}
+
+	/**
+	 * Iterates directly over the stored users. The stream is weakly
+	 * consistent, it does not fail on concurrent changes.
+	 *
+	 * @see org.apache.fulcrum.security.UserManager#streamUsers()
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T extends User> Stream<T> streamUsers() throws DataBackendException {
+		return (Stream<T>) users.view().stream();
+	}
+
+	/**
+	 * Answered from the size of the user store.
+	 *
+	 * @see org.apache.fulcrum.security.UserManager#countUsers()
+	 */
+	@Override
+	public int countUsers() {
+		return users.size();
+	}
+
+	/**
+	 * Answered from the users recorded on the stored group, which the memory
+	 * model managers update on every grant and revoke. Users removed meanwhile
+	 * are not counted.
+	 *
+	 * @see org.apache.fulcrum.security.UserManager#countUsersInGroup(org.apache.fulcrum.security.entity.Group)
+	 */
+	@Override
+	public int countUsersInGroup(Group group) throws DataBackendException {
+		Group stored = null;
+		try {
+			stored = getGroupManager().getGroupById(group.getId());
+		} catch (UnknownEntityException e) {
+			return 0;
+		}
+
+		Set<Object> ids = new HashSet<Object>();
+		if (stored instanceof TurbineGroup) {
+			for (TurbineUserGroupRole ugr : ((TurbineGroup) stored).getUserGroupRoleSet()) {
+				ids.add(ugr.getUser().getId());
+			}
+		} else if (stored instanceof BasicGroup) {
+			ids.addAll(((BasicGroup) stored).getUsers().getIds());
+		}
+
+		int count = 0;
+		for (Object id : ids) {
+			if (users.getById(id) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
 	/**
 	 * Removes an user account from the system.
 	 *
@@ -93,6 +190,8 @@ public class MemoryUserManagerImpl extends AbstractUserManager {
 	 */
 	public void removeUser(User user) throws DataBackendException, UnknownEntityException {
 		users.remove(user);
+		invalidateACLs(user);
+		userRemoved(user);
 	}
 
 	/**
@@ -104,8 +203,6 @@ public class MemoryUserManagerImpl extends AbstractUserManager {
 	 */
 	@Override
 	protected <T extends User> T persistNewUser(T user) throws DataBackendException {
-		users.remove(user);
-		user.setId(MemoryHelper.getUniqueId());
 		users.add(user);
 		return user;
 	}
@@ -122,10 +219,29 @@ public class MemoryUserManagerImpl extends AbstractUserManager {
 		boolean userExists = false;
 		userExists = checkExists(user);
 		if (userExists) {
-			users.remove(user);
-			users.add(user);
+			users.put(user);
 		} else {
 			throw new UnknownEntityException("Unknown user '" + user + "'");
 		}
 	}
+
+	/**
+	 * @see org.apache.fulcrum.security.spi.AbstractUserManager#findUserByName(java.lang.String)
+	 */
+	@Override
+	protected <T extends User> T findUserByName(String name) {
+		@SuppressWarnings("unchecked")
+		T user = (T) users.getByName(name);
+		return user;
+	}
+
+	/**
+	 * @see org.apache.fulcrum.security.spi.AbstractUserManager#findUserById(java.lang.Object)
+	 */
+	@Override
+	protected <T extends User> T findUserById(Object id) {
+		@SuppressWarnings("unchecked")
+		T user = (T) users.getById(id);
+		return user;
+	}
 }
@@ -187,6 +187,7 @@ public class MemoryModelManagerImpl extends AbstractDynamicModelManager implemen
 			if (roleExists && permissionExists) {
 				((DynamicRole) role).addPermission(permission);
 				((DynamicPermission) permission).addRole(role);
+				rolePermissionsChanged(role);
 				return;
 			}
 		} catch (Exception e) {
@@ -220,6 +221,7 @@ public class MemoryModelManagerImpl extends AbstractDynamicModelManager implemen
 			if (roleExists && permissionExists) {
 				((DynamicRole) role).removePermission(permission);
 				((DynamicPermission) permission).removeRole(role);
+				rolePermissionsChanged(role);
 				return;
 			}
 		} catch (Exception e) {
@@ -18,11 +18,14 @@ package org.apache.fulcrum.security.memory.turbine;
  * specific language governing permissions and limitations
  * under the License.
  */
+import java.util.stream.Stream;
+
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
 import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.model.turbine.AbstractTurbineModelManager;
+import org.apache.fulcrum.security.model.turbine.TurbineAuthorizationIndex;
 import org.apache.fulcrum.security.model.turbine.TurbineModelManager;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineGroup;
 import org.apache.fulcrum.security.model.turbine.entity.TurbinePermission;
@@ -42,6 +45,18 @@ import org.apache.fulcrum.security.util.UnknownEntityException;
  */
 public class MemoryTurbineModelManagerImpl extends AbstractTurbineModelManager implements TurbineModelManager
 {
+    /** Reverse index of the relations granted by this manager */
+    private final TurbineAuthorizationIndex index = new TurbineAuthorizationIndex();
+
+    /**
+     * @see org.apache.fulcrum.security.model.turbine.AbstractTurbineModelManager#getAuthorizationIndex()
+     */
+    @Override
+    public TurbineAuthorizationIndex getAuthorizationIndex()
+    {
+        return index;
+    }
+
     /**
      * Grants a Role a Permission
      * 
@@ -66,6 +81,9 @@ public class MemoryTurbineModelManagerImpl extends AbstractTurbineModelManager i
             {
                 ((TurbineRole) role).addPermission(permission);
                 ((TurbinePermission) permission).addRole(role);
+                index.grant(role.getId(), permission.getId());
+                invalidateACLs(role);
+                rolePermissionsChanged(role);
                 return;
             }
         }
@@ -108,6 +126,9 @@ public class MemoryTurbineModelManagerImpl extends AbstractTurbineModelManager i
             {
                 ((TurbineRole) role).removePermission(permission);
                 ((TurbinePermission) permission).removeRole(role);
+                index.revoke(role.getId(), permission.getId());
+                invalidateACLs(role);
+                rolePermissionsChanged(role);
                 return;
             }
         }
@@ -145,6 +166,8 @@ public class MemoryTurbineModelManagerImpl extends AbstractTurbineModelManager i
                 ((TurbineUser) user).addUserGroupRole(ugr);
                 ((TurbineGroup) group).addUserGroupRole(ugr);
                 ((TurbineRole) role).addUserGroupRole(ugr);
+                index.grant(user.getId(), group.getId(), role.getId());
+                invalidateACLs(user);
                 return;
             }
         }
@@ -199,6 +222,8 @@ public class MemoryTurbineModelManagerImpl extends AbstractTurbineModelManager i
                     throw new UnknownEntityException("Could not find User/Group/Role");
                 }
 
+                index.revoke(user.getId(), group.getId(), role.getId());
+                invalidateACLs(user);
                 return;
             }
         }
@@ -230,4 +255,25 @@ public class MemoryTurbineModelManagerImpl extends AbstractTurbineModelManager i
         revoke( user, group, oldRole );
         grant( user, group, newRole );
     }
+
+    /**
+     * Answered from the reverse index of this manager.
+     */
+    @Override
+    public Stream<Object> getUserIds(Group group, Role role) throws DataBackendException
+    {
+        return index.getUserIdsWithRole(group.getId(), role.getId()).stream();
+    }
+
+    /**
+     * Answered from the reverse index of this manager as the union of the
+     * bitmaps of the group and its ancestors, extended by the users of the
+     * roles which inherit the permission.
+     */
+    @Override
+    public Stream<Object> getUserIds(Group group, Permission permission) throws DataBackendException
+    {
+        return index.getUserIdsWithPermission(getGroupIdsWithAncestors(group), permission.getId(),
+                getRoleHierarchy().getInheritingRoles(permission.getId())).stream();
+    }
 }
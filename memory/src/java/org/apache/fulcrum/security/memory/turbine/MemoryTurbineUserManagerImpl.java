@@ -19,11 +19,20 @@ package org.apache.fulcrum.security.memory.turbine;
  * under the License.
  */
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import org.apache.fulcrum.security.ModelManager;
 import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.memory.MemoryUserManagerImpl;
+import org.apache.fulcrum.security.model.turbine.TurbineModelManager;
 import org.apache.fulcrum.security.model.turbine.TurbineUserManager;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.fulcrum.security.util.UserQuery;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -85,4 +94,25 @@ public class MemoryTurbineUserManagerImpl extends MemoryUserManagerImpl implemen
 		return isAnon;
 	}
 
+	/**
+	 * Looks up the users with a role in a group in the authorization index
+	 * of the model manager.
+	 *
+	 * @see org.apache.fulcrum.security.memory.MemoryUserManagerImpl#candidates(org.apache.fulcrum.security.util.UserQuery)
+	 */
+	@Override
+	protected Collection<? extends User> candidates(UserQuery query) throws DataBackendException {
+		if (query.getRole() != null) {
+			Object modelManager = resolve(ModelManager.ROLE);
+			if (modelManager instanceof TurbineModelManager) {
+				List<User> candidates = new ArrayList<User>();
+				try (Stream<Object> ids = ((TurbineModelManager) modelManager).getUserIds(query.getGroup(), query.getRole())) {
+					ids.map(id -> (User) findUserById(id)).filter(Objects::nonNull).forEach(candidates::add);
+				}
+				return candidates;
+			}
+		}
+
+		return super.candidates(query);
+	}
 }
@@ -23,6 +23,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 
 import java.io.Serializable;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -452,6 +453,96 @@ public class AccessControlListTest extends BaseUnit5Test
         assertTrue(acl.hasPermission(permission5));
     }
 
+    /*
+     * Class to test for boolean hasPermission(String, String) and the
+     * name lookups after serialization
+     */
+    @Test
+    public void testHasPermissionStringString() throws Exception
+    {
+        Group group = getGroup();
+        Group group2 = getGroup();
+        Role role = getRole();
+        Role role2 = getRole();
+        Permission permission = getPermission();
+        Permission permission2 = getPermission();
+        modelManager.grant(group, role);
+        modelManager.grant(group2, role2);
+        modelManager.grant(role, permission);
+        modelManager.grant(role2, permission2);
+        Map<Group, RoleSet> roleSets = new HashMap<Group, RoleSet>();
+        Map<Role, PermissionSet> permissionSets = new HashMap<Role, PermissionSet>();
+        roleSets.put(group, ((DynamicGroup) group).getRoles());
+        roleSets.put(group2, ((DynamicGroup) group2).getRoles());
+        permissionSets.put(role, ((DynamicRole) role).getPermissions());
+        permissionSets.put(role2, ((DynamicRole) role2).getPermissions());
+        acl = new DynamicAccessControlListImpl(roleSets, permissionSets);
+        assertTrue(acl.hasPermission(permission.getName(), group.getName()));
+        assertTrue(acl.hasPermission(permission.getName().toUpperCase(), group.getName().toLowerCase()));
+        assertFalse(acl.hasPermission(permission2.getName(), group.getName()));
+        assertTrue(acl.hasPermission(permission2.getName(), group2));
+        assertFalse(acl.hasPermission("unknown", group.getName()));
+        assertFalse(acl.hasPermission(permission.getName(), "unknown"));
+        assertTrue(acl.hasRole(role2.getName().toUpperCase()));
+
+        DynamicAccessControlList serDeSer = SerializationUtils.roundtrip(acl);
+        assertTrue(serDeSer.hasPermission(permission.getName(), group.getName()));
+        assertFalse(serDeSer.hasPermission(permission2.getName(), group.getName()));
+        assertTrue(serDeSer.hasRole(role2.getName(), group2.getName()));
+        assertEquals(1, serDeSer.getPermissions(group2).size());
+    }
+
+    /*
+     * Class to test for the batch checks hasPermissions and hasPermissionsInGroups
+     */
+    @Test
+    public void testHasPermissionsBatch() throws Exception
+    {
+        Group group = getGroup();
+        Group group2 = getGroup();
+        Role role = getRole();
+        Role role2 = getRole();
+        Permission permission = getPermission();
+        Permission permission2 = getPermission();
+        modelManager.grant(group, role);
+        modelManager.grant(group2, role2);
+        modelManager.grant(role, permission);
+        modelManager.grant(role2, permission2);
+        Map<Group, RoleSet> roleSets = new HashMap<Group, RoleSet>();
+        Map<Role, PermissionSet> permissionSets = new HashMap<Role, PermissionSet>();
+        roleSets.put(group, ((DynamicGroup) group).getRoles());
+        roleSets.put(group2, ((DynamicGroup) group2).getRoles());
+        permissionSets.put(role, ((DynamicRole) role).getPermissions());
+        permissionSets.put(role2, ((DynamicRole) role2).getPermissions());
+        acl = new DynamicAccessControlListImpl(roleSets, permissionSets);
+
+        BitSet pairs = acl.hasPermissions(
+                new String[] { permission.getName(), permission2.getName(), permission.getName().toUpperCase(), "unknown", null },
+                new String[] { group.getName(), group.getName(), group.getName(), group.getName(), group.getName() });
+        assertEquals(2, pairs.cardinality());
+        assertTrue(pairs.get(0));
+        assertTrue(pairs.get(2));
+
+        pairs = acl.hasPermissions(new Permission[] { permission2, permission2 }, new Group[] { group, group2 });
+        assertFalse(pairs.get(0));
+        assertTrue(pairs.get(1));
+
+        // bit i * groups.length + j
+        BitSet cross = acl.hasPermissionsInGroups(
+                new String[] { permission.getName(), "unknown", permission2.getName() },
+                new String[] { group.getName(), group2.getName() });
+        assertEquals(2, cross.cardinality());
+        assertTrue(cross.get(0));
+        assertTrue(cross.get(5));
+
+        cross = acl.hasPermissionsInGroups(new Permission[] { permission, permission2 }, new Group[] { group2 });
+        assertFalse(cross.get(0));
+        assertTrue(cross.get(1));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> acl.hasPermissions(new Permission[0], new Group[] { group }));
+    }
+
     private int getId()
     {
         return ++counter;
@@ -0,0 +1,151 @@
+package org.apache.fulcrum.security.acl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.ACLFactory;
+import org.apache.fulcrum.security.model.turbine.TurbineACLFactory;
+import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Run the TurbineAccessControlList tests against the caching ACL factory
+ *
+ * @version $Id$
+ */
+public class CachedTurbineAccessControlListTest extends TurbineAccessControlListTest
+{
+    @Override
+    protected String getComponentConfigurationFileName()
+    {
+        return "src/test/TurbineMemoryCachedComponentConfig.xml";
+    }
+
+    private TurbineACLFactory getACLFactory() throws Exception
+    {
+        return (TurbineACLFactory) lookup(ACLFactory.ROLE);
+    }
+
+    @Test
+    public void testCacheHit() throws Exception
+    {
+        TurbineACLFactory factory = getACLFactory();
+        TurbineAccessControlList first = userManager.getACL(user);
+        TurbineAccessControlList second = userManager.getACL(user);
+
+        assertSame(first, second);
+        assertEquals(1, factory.getCacheHits());
+        assertEquals(1, factory.getCacheMisses());
+        assertEquals(1, factory.getCacheSize());
+    }
+
+    @Test
+    public void testInvalidatedByUserGrant() throws Exception
+    {
+        Group group = getGroup();
+        Role role = getRole();
+        TurbineAccessControlList before = userManager.getACL(user);
+        assertFalse(before.hasRole(role, group));
+
+        modelManager.grant(user, group, role);
+        acl = userManager.getACL(user);
+        assertNotSame(before, acl);
+        assertTrue(acl.hasRole(role, group));
+
+        modelManager.revoke(user, group, role);
+        acl = userManager.getACL(user);
+        assertFalse(acl.hasRole(role, group));
+    }
+
+    @Test
+    public void testInvalidatedByRoleGrant() throws Exception
+    {
+        Group group = getGroup();
+        Role role = getRole();
+        Permission permission = getPermission();
+        modelManager.grant(user, group, role);
+        acl = userManager.getACL(user);
+        assertFalse(acl.hasPermission(permission, group));
+
+        modelManager.grant(role, permission);
+        acl = userManager.getACL(user);
+        assertTrue(acl.hasPermission(permission, group));
+
+        modelManager.revoke(role, permission);
+        acl = userManager.getACL(user);
+        assertFalse(acl.hasPermission(permission, group));
+    }
+
+    @Test
+    public void testInvalidatedByRename() throws Exception
+    {
+        Group group = getGroup();
+        Role role = getRole();
+        Permission permission = getPermission();
+        modelManager.grant(user, group, role);
+        modelManager.grant(role, permission);
+        acl = userManager.getACL(user);
+
+        permissionManager.renamePermission(permission, "renamed permission");
+        acl = userManager.getACL(user);
+        assertTrue(acl.hasPermission("renamed permission", group.getName()));
+    }
+
+    @Test
+    public void testUnrelatedUserStaysCached() throws Exception
+    {
+        TurbineACLFactory factory = getACLFactory();
+        User other = userManager.getUserInstance("Other user");
+        userManager.addUser(other, "secretpassword");
+        TurbineAccessControlList otherAcl = userManager.getACL(other);
+
+        modelManager.grant(user, getGroup(), getRole());
+        assertSame(otherAcl, userManager.getACL(other));
+        assertEquals(1, factory.getCacheHits());
+    }
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        TurbineACLFactory factory = getACLFactory();
+        userManager.getACL(user);
+        for (int i = 0; i < 2; i++)
+        {
+            User other = userManager.getUserInstance("Evicting user " + i);
+            userManager.addUser(other, "secretpassword");
+            userManager.getACL(other);
+        }
+
+        assertEquals(2, factory.getCacheSize());
+        assertEquals(1, factory.getCacheEvictions());
+
+        factory.invalidateAll();
+        assertEquals(0, factory.getCacheSize());
+    }
+}
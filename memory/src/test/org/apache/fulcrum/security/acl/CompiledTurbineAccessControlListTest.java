@@ -0,0 +1,96 @@
+package org.apache.fulcrum.security.acl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.model.turbine.CompiledTurbineAccessControlListImpl;
+import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
+import org.apache.fulcrum.security.util.GroupSet;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Run the TurbineAccessControlList tests against the compiled ACL
+ *
+ * @version $Id$
+ */
+public class CompiledTurbineAccessControlListTest extends TurbineAccessControlListTest
+{
+    @Override
+    protected String getComponentConfigurationFileName()
+    {
+        return "src/test/TurbineMemoryCompiledComponentConfig.xml";
+    }
+
+    @Test
+    public void testCompiledInstance() throws Exception
+    {
+        acl = userManager.getACL(user);
+        assertTrue(acl instanceof CompiledTurbineAccessControlListImpl);
+    }
+
+    @Test
+    public void testNamesIgnoreCase() throws Exception
+    {
+        Group group = getGroup();
+        Role role = getRole();
+        Permission permission = getPermission();
+        modelManager.grant(user, group, role);
+        modelManager.grant(role, permission);
+        acl = userManager.getACL(user);
+
+        assertTrue(acl.hasRole(role.getName().toUpperCase(), group.getName().toUpperCase()));
+        assertTrue(acl.hasPermission(permission.getName().toUpperCase(), group.getName()));
+        assertTrue(acl.hasPermission(permission.getName(), group));
+        assertFalse(acl.hasPermission(permission.getName(), modelManager.getGlobalGroup()));
+        assertFalse(acl.hasPermission("unknown", group.getName()));
+        assertFalse(acl.hasRole((String) null, group.getName()));
+        assertFalse(acl.hasPermission((Permission) null, group));
+        assertFalse(acl.hasPermission(permission, (GroupSet) null));
+    }
+
+    @Test
+    public void testSerializedCopy() throws Exception
+    {
+        Group group = getGroup();
+        Role role = getRole();
+        Permission permission = getPermission();
+        modelManager.grant(user, group, role);
+        modelManager.grant(role, permission);
+        acl = userManager.getACL(user);
+
+        TurbineAccessControlList copy = SerializationUtils.roundtrip(acl);
+        assertTrue(copy.hasPermission(permission, group));
+        assertTrue(copy.hasPermission(permission.getName(), group.getName()));
+        assertTrue(copy.hasRole(role, group));
+        assertEquals(acl.getGroupSet().size(), copy.getGroupSet().size());
+
+        // returned sets are copies
+        acl.getPermissions(group).clear();
+        assertTrue(acl.hasPermission(permission, group));
+        assertEquals(1, acl.getPermissions(group).size());
+    }
+}
@@ -0,0 +1,156 @@
+package org.apache.fulcrum.security.acl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.avalon.framework.configuration.ConfigurationException;
+import org.apache.avalon.framework.configuration.DefaultConfiguration;
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.ACLFactory;
+import org.apache.fulcrum.security.model.turbine.TurbineACLFactory;
+import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Run the TurbineAccessControlList tests against the interning ACL factory
+ *
+ * @version $Id$
+ */
+public class InternedTurbineAccessControlListTest extends TurbineAccessControlListTest
+{
+    @Override
+    protected String getComponentConfigurationFileName()
+    {
+        return "src/test/TurbineMemoryInternedComponentConfig.xml";
+    }
+
+    private TurbineACLFactory getACLFactory() throws Exception
+    {
+        return (TurbineACLFactory) lookup(ACLFactory.ROLE);
+    }
+
+    private User addUser(String name) throws Exception
+    {
+        User other = userManager.getUserInstance(name);
+        userManager.addUser(other, "secretpassword");
+        return other;
+    }
+
+    @Test
+    public void testSharedBetweenEqualAssignments() throws Exception
+    {
+        TurbineACLFactory factory = getACLFactory();
+        Group group = getGroup();
+        Role role = getRole();
+        User first = addUser("Interned user 1");
+        User second = addUser("Interned user 2");
+        User third = addUser("Interned user 3");
+        modelManager.grant(first, group, role);
+        modelManager.grant(second, group, role);
+        modelManager.grant(third, group, getRole());
+
+        TurbineAccessControlList acl = userManager.getACL(first);
+        assertSame(acl, userManager.getACL(second));
+        assertNotSame(acl, userManager.getACL(third));
+        assertTrue(acl.hasRole(role, group));
+        assertEquals(1, factory.getInternHits());
+        assertEquals(2, factory.getInternSize());
+    }
+
+    @Test
+    public void testInvalidatedByRoleGrant() throws Exception
+    {
+        Group group = getGroup();
+        Role role = getRole();
+        Permission permission = getPermission();
+        User first = addUser("Interned user 4");
+        User second = addUser("Interned user 5");
+        modelManager.grant(first, group, role);
+        modelManager.grant(second, group, role);
+        TurbineAccessControlList before = userManager.getACL(first);
+        assertFalse(before.hasPermission(permission, group));
+
+        modelManager.grant(role, permission);
+        TurbineAccessControlList after = userManager.getACL(second);
+        assertNotSame(before, after);
+        assertTrue(after.hasPermission(permission, group));
+        assertSame(after, userManager.getACL(first));
+
+        getACLFactory().invalidateAll();
+        assertEquals(0, getACLFactory().getInternSize());
+    }
+
+    @Test
+    public void testUserGrantChangesKey() throws Exception
+    {
+        Group group = getGroup();
+        Role role = getRole();
+        User first = addUser("Interned user 6");
+        User second = addUser("Interned user 7");
+        modelManager.grant(first, group, role);
+        modelManager.grant(second, group, role);
+        TurbineAccessControlList shared = userManager.getACL(first);
+
+        modelManager.grant(first, group, getRole());
+        assertNotSame(shared, userManager.getACL(first));
+        assertSame(shared, userManager.getACL(second));
+    }
+
+    @Test
+    public void testMutationDoesNotLeak() throws Exception
+    {
+        Group group = getGroup();
+        Role role = getRole();
+        Permission permission = getPermission();
+        User first = addUser("Interned user 8");
+        User second = addUser("Interned user 9");
+        modelManager.grant(role, permission);
+        modelManager.grant(first, group, role);
+        modelManager.grant(second, group, role);
+
+        TurbineAccessControlList acl = userManager.getACL(first);
+        acl.getRoles(group).clear();
+        acl.getPermissions(group).clear();
+        acl.getGroupSet().clear();
+
+        TurbineAccessControlList other = userManager.getACL(second);
+        assertSame(acl, other);
+        assertTrue(other.getRoles(group).contains(role));
+        assertTrue(other.getPermissions(group).contains(permission));
+        assertTrue(other.getGroupSet().contains(group));
+    }
+
+    @Test
+    public void testRequiresCompiled()
+    {
+        DefaultConfiguration conf = new DefaultConfiguration("aclFactory");
+        conf.setAttribute(TurbineACLFactory.INTERN_SIZE_ATTR_NAME, "2");
+        assertThrows(ConfigurationException.class, () -> new TurbineACLFactory().configure(conf));
+    }
+}
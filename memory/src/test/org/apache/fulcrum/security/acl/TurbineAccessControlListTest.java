@@ -23,6 +23,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 
 import java.io.Serializable;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -38,9 +39,12 @@ import org.apache.fulcrum.security.entity.Role;
 import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
 import org.apache.fulcrum.security.model.turbine.TurbineModelManager;
+import org.apache.fulcrum.security.util.GroupHandle;
 import org.apache.fulcrum.security.util.GroupSet;
+import org.apache.fulcrum.security.util.PermissionHandle;
 import org.apache.fulcrum.security.util.PermissionSet;
 import org.apache.fulcrum.security.util.RoleSet;
+import org.apache.fulcrum.security.util.UnknownEntityException;
 import org.apache.fulcrum.testcontainer.BaseUnit5Test;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -56,21 +60,29 @@ import org.junit.jupiter.api.Test;
 public class TurbineAccessControlListTest extends BaseUnit5Test
 {
 
-    private UserManager userManager;
-    private GroupManager groupManager;
-    private RoleManager roleManager;
-    private TurbineModelManager modelManager;
-    private PermissionManager permissionManager;
-    private TurbineAccessControlList acl;
+    protected UserManager userManager;
+    protected GroupManager groupManager;
+    protected RoleManager roleManager;
+    protected TurbineModelManager modelManager;
+    protected PermissionManager permissionManager;
+    protected TurbineAccessControlList acl;
     private static int counter = 1;
-    private User user;
+    protected User user;
+
+    /**
+     * @return the component configuration used by this test
+     */
+    protected String getComponentConfigurationFileName()
+    {
+        return "src/test/TurbineMemoryComponentConfig.xml";
+    }
 
     @BeforeEach
     public void setUp() throws Exception
     {
 
     	this.setRoleFileName("src/test/TurbineMemoryRoleConfig.xml");
-        this.setConfigurationFileName("src/test/TurbineMemoryComponentConfig.xml");
+        this.setConfigurationFileName(getComponentConfigurationFileName());
 
         SecurityService securityService = (SecurityService) lookup(SecurityService.ROLE);
         userManager = securityService.getUserManager();
@@ -414,26 +426,118 @@ public class TurbineAccessControlListTest extends BaseUnit5Test
         assertTrue(acl.hasPermission(permission5));
     }
 
+    /*
+     * Class to test for the batch checks hasPermissions and hasPermissionsInGroups
+     */
+    @Test
+    public void testHasPermissionsBatch() throws Exception
+    {
+        Group group = getGroup();
+        Group group2 = getGroup();
+        Role role = getRole();
+        Role role2 = getRole();
+        Permission permission = getPermission();
+        Permission permission2 = getPermission();
+        modelManager.grant(user, group, role);
+        modelManager.grant(user, group2, role2);
+        modelManager.grant(role, permission);
+        modelManager.grant(role2, permission2);
+        acl = userManager.getACL(user);
+
+        BitSet pairs = acl.hasPermissions(
+                new String[] { permission.getName(), permission2.getName(), permission.getName(), "unknown", null },
+                new String[] { group.getName(), group.getName(), group2.getName().toUpperCase(), group.getName(), group.getName() });
+        assertEquals(1, pairs.cardinality());
+        assertTrue(pairs.get(0));
+
+        pairs = acl.hasPermissions(
+                new Permission[] { permission, permission2, null },
+                new Group[] { group, group2, group });
+        assertTrue(pairs.get(0));
+        assertTrue(pairs.get(1));
+        assertFalse(pairs.get(2));
+
+        // bit i * groups.length + j
+        BitSet cross = acl.hasPermissionsInGroups(
+                new String[] { permission.getName(), permission2.getName(), "unknown" },
+                new String[] { group.getName(), group2.getName(), "unknown" });
+        assertEquals(2, cross.cardinality());
+        assertTrue(cross.get(0));
+        assertTrue(cross.get(4));
+
+        cross = acl.hasPermissionsInGroups(new Permission[] { permission2 }, new Group[] { group, group2 });
+        assertFalse(cross.get(0));
+        assertTrue(cross.get(1));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> acl.hasPermissions(new String[] { permission.getName() }, new String[0]));
+    }
+
+    /*
+     * Class to test for boolean hasPermission(PermissionHandle, GroupHandle)
+     */
+    @Test
+    public void testHasPermissionHandle() throws Exception
+    {
+        Group group = getGroup();
+        Group group2 = getGroup();
+        Role role = getRole();
+        Permission permission = getPermission();
+        Permission permission2 = getPermission();
+        modelManager.grant(user, group, role);
+        modelManager.grant(role, permission);
+        modelManager.grant(role, permission2);
+        acl = userManager.getACL(user);
+
+        PermissionHandle handle = permissionManager.getPermissionHandle(permission.getName());
+        PermissionHandle handle2 = permissionManager.getPermissionHandle(permission2.getName());
+        GroupHandle groupHandle = groupManager.getGroupHandle(group.getName());
+        GroupHandle groupHandle2 = groupManager.getGroupHandle(group2.getName());
+        assertTrue(acl.hasPermission(handle, groupHandle));
+        assertFalse(acl.hasPermission(handle, groupHandle2));
+        assertFalse(acl.hasPermission(handle, null));
+
+        // handles survive a rebuild of the ACL
+        modelManager.grant(user, group2, role);
+        acl = userManager.getACL(user);
+        assertTrue(acl.hasPermission(handle, groupHandle2));
+
+        // and never match once the entity is gone
+        TurbineAccessControlList before = acl;
+        modelManager.revokeAll(group2);
+        groupManager.removeGroup(group2);
+        assertFalse(groupHandle2.isValid());
+        assertFalse(before.hasPermission(handle, groupHandle2));
+
+        modelManager.revoke(role, permission2);
+        permissionManager.removePermission(permission2);
+        assertFalse(handle2.isValid());
+        assertFalse(before.hasPermission(handle2, groupHandle));
+        assertTrue(before.hasPermission(handle, groupHandle));
+
+        assertThrows(UnknownEntityException.class, () -> permissionManager.getPermissionHandle("unknown"));
+    }
+
     private int getId()
     {
         return ++counter;
     }
 
-    private Role getRole() throws Exception
+    protected Role getRole() throws Exception
     {
         Role role = roleManager.getRoleInstance("Role " + getId());
         roleManager.addRole(role);
         return role;
     }
 
-    private Group getGroup() throws Exception
+    protected Group getGroup() throws Exception
     {
         Group group = groupManager.getGroupInstance("Group " + getId());
         groupManager.addGroup(group);
         return group;
     }
 
-    private Permission getPermission() throws Exception
+    protected Permission getPermission() throws Exception
     {
         Permission permission = permissionManager.getPermissionInstance("Permission " + getId());
         permissionManager.addPermission(permission);
@@ -0,0 +1,108 @@
+package org.apache.fulcrum.security.memory;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.dynamic.entity.impl.DynamicUserImpl;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the indexes of the memory store
+ *
+ * @version $Id$
+ */
+public class MemoryStoreTest
+{
+    private static User newUser(String name)
+    {
+        User user = new DynamicUserImpl();
+        user.setName(name);
+        return user;
+    }
+
+    @Test
+    public void testIndexes()
+    {
+        MemoryStore<User> store = new MemoryStore<User>();
+        User user = store.add(newUser("Clint"));
+
+        assertTrue(store.containsName("clint"));
+        assertTrue(store.containsName("CLINT"));
+        assertSame(user, store.getByName("cLiNt"));
+        assertSame(user, store.getById(user.getId()));
+        assertNull(store.getByName(null));
+        assertNull(store.getById(null));
+
+        store.rename(user, "Eastwood");
+        assertFalse(store.containsName("clint"));
+        assertSame(user, store.getByName("eastwood"));
+        assertEquals(1, store.size());
+
+        // renamed behind the back of the store
+        user.setName("Dirty Harry");
+        store.put(user);
+        assertFalse(store.containsName("eastwood"));
+        assertSame(user, store.getByName("dirty harry"));
+
+        assertTrue(store.remove(user));
+        assertFalse(store.remove(user));
+        assertFalse(store.containsName("dirty harry"));
+        assertNull(store.getById(user.getId()));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testConcurrentAdd() throws Exception
+    {
+        final MemoryStore<User> store = new MemoryStore<User>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        for (int i = 0; i < 1000; i++)
+        {
+            final String name = "user" + i;
+            executor.execute(() -> store.add(newUser(name)));
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        Set<Object> ids = new HashSet<Object>();
+        for (User user : store.values())
+        {
+            ids.add(user.getId());
+        }
+
+        assertEquals(1000, store.size());
+        assertEquals(1000, ids.size());
+        assertTrue(store.containsName("user999"));
+    }
+}
@@ -19,10 +19,20 @@ package org.apache.fulcrum.security.memory.turbine;
  * under the License.
  */
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Collections;
+import java.util.stream.Collectors;
+
 import org.apache.fulcrum.security.SecurityService;
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.model.turbine.test.AbstractTurbineModelManagerTest;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 
 /**
  * @author Eric Pugh
@@ -53,5 +63,49 @@ public class MemoryTurbineModelManagerTest extends AbstractTurbineModelManagerTe
         securityService = null;
     }
 
+    @Test
+    public void testRemovalPurgesIndex() throws Exception
+    {
+        Group group = groupManager.getGroupInstance("PURGE_GROUP");
+        groupManager.addGroup(group);
+        Role approver = roleManager.getRoleInstance("PURGE_APPROVER");
+        roleManager.addRole(approver);
+        Role auditor = roleManager.getRoleInstance("PURGE_AUDITOR");
+        roleManager.addRole(auditor);
+        Permission approve = permissionManager.getPermissionInstance("PURGE_APPROVE");
+        permissionManager.addPermission(approve);
+        User user = userManager.getUserInstance("purge1");
+        userManager.addUser(user, "secret");
+        User user2 = userManager.getUserInstance("purge2");
+        userManager.addUser(user2, "secret");
+
+        modelManager.grant(approver, approve);
+        modelManager.grant(auditor, approve);
+        modelManager.grant(user, group, approver);
+        modelManager.grant(user2, group, approver);
+        assertEquals(2, modelManager.getUserIds(group, approve).count());
+
+        userManager.removeUser(user);
+        assertEquals(Collections.singletonList(user2.getId()),
+            modelManager.getUserIds(group, approver).collect(Collectors.toList()));
+        assertEquals(1, modelManager.getUserIds(group, approve).count());
+
+        roleManager.removeRole(approver);
+        assertEquals(0, modelManager.getUserIds(group, approver).count());
+        assertEquals(0, modelManager.getUserIds(group, approve).count());
+
+        // the new user takes the ordinal of the removed one
+        User user3 = userManager.getUserInstance("purge3");
+        userManager.addUser(user3, "secret");
+        modelManager.grant(user3, group, auditor);
+        assertEquals(Collections.singletonList(user3.getId()),
+            modelManager.getUserIds(group, approve).collect(Collectors.toList()));
+
+        permissionManager.removePermission(approve);
+        assertEquals(0, modelManager.getUserIds(group, approve).count());
+
+        groupManager.removeGroup(group);
+        assertEquals(0, modelManager.getUserIds(group, auditor).count());
+    }
 
 }
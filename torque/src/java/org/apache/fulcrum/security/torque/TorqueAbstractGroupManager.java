@@ -29,9 +29,12 @@ import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.EntityExistsException;
 import org.apache.fulcrum.security.util.GroupSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.torque.Column;
 import org.apache.torque.NoRowsException;
 import org.apache.torque.TooManyRowsException;
 import org.apache.torque.TorqueException;
+import org.apache.torque.criteria.Criteria;
+import org.apache.torque.util.CountHelper;
 import org.apache.torque.util.Transaction;
 
 /**
@@ -102,6 +105,29 @@ public abstract class TorqueAbstractGroupManager extends AbstractGroupManager im
     protected abstract <T extends Group> T doSelectById(Integer id, Connection con)
         throws NoRowsException, TooManyRowsException, TorqueException;
 
+    /**
+     * Retrieve the attached objects of all given groups. The default
+     * implementation calls
+     * {@link TorqueAbstractSecurityEntity#retrieveAttachedObjects(Connection, Boolean)}
+     * for each group, subclasses may load the relations of all groups
+     * at once instead.
+     *
+     * @param groups the groups
+     * @param con a database connection
+     * @param lazy if <code>true</code>, may load some or all relationships later
+     *
+     * @throws DataBackendException if the relations cannot be mapped
+     * @throws TorqueException  if any database error occurs
+     */
+    protected <T extends Group> void retrieveAttachedObjects(List<T> groups, Connection con, Boolean lazy)
+        throws DataBackendException, TorqueException
+    {
+        for (Group group : groups)
+        {
+            ((TorqueAbstractSecurityEntity)group).retrieveAttachedObjects(con, lazy);
+        }
+    }
+
     /**
     * Creates a new group with specified attributes.
     *
@@ -152,6 +178,8 @@ public abstract class TorqueAbstractGroupManager extends AbstractGroupManager im
             {
                 throw new DataBackendException("Renaming Group '" + group.getName() + "' failed", e);
             }
+
+            groupRenamed(group);
         }
         else
         {
@@ -178,6 +206,8 @@ public abstract class TorqueAbstractGroupManager extends AbstractGroupManager im
         {
             throw new DataBackendException("Removing Group '" + group.getName() + "' failed", e);
         }
+
+        groupRemoved(group);
     }
 
     /**
@@ -250,13 +280,9 @@ public abstract class TorqueAbstractGroupManager extends AbstractGroupManager im
 
             List<Group> groups = doSelectAllGroups(con);
 
-            for (Group group : groups)
-            {
-                // Add dependent objects if they exist
-                ((TorqueAbstractSecurityEntity)group).retrieveAttachedObjects(con, getLazyLoading());
-
-                groupSet.add(group);
-            }
+            // Add dependent objects if they exist
+            retrieveAttachedObjects(groups, con, getLazyLoading());
+            groupSet.add(groups);
 
             Transaction.commit(con);
             con = null;
@@ -276,6 +302,50 @@ public abstract class TorqueAbstractGroupManager extends AbstractGroupManager im
         return groupSet;
     }
 
+    /**
+     * Get the column holding the group name, to check for a name with a
+     * COUNT query instead of selecting the group.
+     *
+     * @return the name column or <code>null</code> if the group has to be
+     *         selected
+     * @throws TorqueException if any database error occurs
+     */
+    protected Column getNameColumn() throws TorqueException
+    {
+        return null;
+    }
+
+    /**
+     * Check whether a group name exists with a COUNT query on the name
+     * column, which does not read any row. Without a name column the group
+     * is selected.
+     *
+     * @param name the group name
+     * @param con a database connection
+     * @return true if the group exists
+     * @throws TooManyRowsException if the name is not unique
+     * @throws TorqueException if any database error occurs
+     */
+    protected boolean selectExists(String name, Connection con) throws TorqueException
+    {
+        Column column = getNameColumn();
+        if (column == null)
+        {
+            doSelectByName(name, con);
+            return true;
+        }
+
+        Criteria criteria = new Criteria();
+        criteria.where(column, name);
+        criteria.setIgnoreCase(true);
+        int count = new CountHelper().count(criteria, con, column);
+        if (count > 1)
+        {
+            throw new TooManyRowsException(name);
+        }
+        return count == 1;
+    }
+
     /**
      * Determines if the <code>Group</code> exists in the security system.
      *
@@ -295,12 +365,10 @@ public abstract class TorqueAbstractGroupManager extends AbstractGroupManager im
         {
             con = Transaction.begin();
 
-            doSelectByName(groupName, con);
+            exists = selectExists(groupName, con);
 
             Transaction.commit(con);
             con = null;
-
-            exists = true;
         }
         catch (NoRowsException e)
         {
@@ -30,9 +30,12 @@ import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.EntityExistsException;
 import org.apache.fulcrum.security.util.PermissionSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.torque.Column;
 import org.apache.torque.NoRowsException;
 import org.apache.torque.TooManyRowsException;
 import org.apache.torque.TorqueException;
+import org.apache.torque.criteria.Criteria;
+import org.apache.torque.util.CountHelper;
 import org.apache.torque.util.Transaction;
 
 /**
@@ -98,6 +101,27 @@ public abstract class TorqueAbstractPermissionManager extends AbstractPermission
 	protected abstract <T extends Permission> T doSelectById(Integer id, Connection con)
 			throws NoRowsException, TooManyRowsException, TorqueException;
 
+	/**
+	 * Retrieve the attached objects of all given permissions. The default
+	 * implementation calls
+	 * {@link TorqueAbstractSecurityEntity#retrieveAttachedObjects(Connection, Boolean)}
+	 * for each permission, subclasses may load the relations of all permissions
+	 * at once instead.
+	 *
+	 * @param permissions the permissions
+	 * @param con  a database connection
+	 * @param lazy if <code>true</code>, may load some or all relationships later
+	 *
+	 * @throws DataBackendException if the relations cannot be mapped
+	 * @throws TorqueException      if any database error occurs
+	 */
+	protected <T extends Permission> void retrieveAttachedObjects(List<T> permissions, Connection con, Boolean lazy)
+			throws DataBackendException, TorqueException {
+		for (Permission permission : permissions) {
+			((TorqueAbstractSecurityEntity) permission).retrieveAttachedObjects(con, lazy);
+		}
+	}
+
 	/**
 	 * Renames an existing Permission.
 	 *
@@ -120,6 +144,8 @@ public abstract class TorqueAbstractPermissionManager extends AbstractPermission
 			} catch (Exception e) {
 				throw new DataBackendException("Renaming Permission '" + permission.getName() + "' failed", e);
 			}
+
+			permissionRenamed(permission);
 		} else {
 			throw new UnknownEntityException("Unknown permission '" + permission.getName() + "'");
 		}
@@ -143,6 +169,8 @@ public abstract class TorqueAbstractPermissionManager extends AbstractPermission
 			} catch (TorqueException e) {
 				throw new DataBackendException("Removing Permission '" + permission.getName() + "' failed", e);
 			}
+
+			permissionRemoved(permission);
 		} else {
 			throw new UnknownEntityException("Unknown permission '" + permission.getName() + "'");
 		}
@@ -184,11 +212,9 @@ public abstract class TorqueAbstractPermissionManager extends AbstractPermission
 
 			List<Permission> permissions = doSelectAllPermissions(con);
 
-			for (Permission p : permissions) {
-				// Add attached objects if they exist
-				((TorqueAbstractSecurityEntity) p).retrieveAttachedObjects(con, false);
-				permissionSet.add(p);
-			}
+			// Add attached objects if they exist
+			retrieveAttachedObjects(permissions, con, false);
+			permissionSet.add(permissions);
 
 			Transaction.commit(con);
 			con = null;
@@ -203,6 +229,46 @@ public abstract class TorqueAbstractPermissionManager extends AbstractPermission
 		return permissionSet;
 	}
 
+	/**
+	 * Get the column holding the permission name, to check for a name with a
+	 * COUNT query instead of selecting the permission.
+	 *
+	 * @return the name column or <code>null</code> if the permission has to be
+	 *         selected
+	 * @throws TorqueException if any database error occurs
+	 */
+	protected Column getNameColumn() throws TorqueException {
+		return null;
+	}
+
+	/**
+	 * Check whether a permission name exists with a COUNT query on the name
+	 * column, which does not read any row. Without a name column the permission
+	 * is selected.
+	 *
+	 * @param name the permission name
+	 * @param con a database connection
+	 * @return true if the permission exists
+	 * @throws TooManyRowsException if the name is not unique
+	 * @throws TorqueException if any database error occurs
+	 */
+	protected boolean selectExists(String name, Connection con) throws TorqueException {
+		Column column = getNameColumn();
+		if (column == null) {
+			doSelectByName(name, con);
+			return true;
+		}
+
+		Criteria criteria = new Criteria();
+		criteria.where(column, name);
+		criteria.setIgnoreCase(true);
+		int count = new CountHelper().count(criteria, con, column);
+		if (count > 1) {
+			throw new TooManyRowsException(name);
+		}
+		return count == 1;
+	}
+
 	/**
 	 * Determines if the <code>Permission</code> exists in the security system.
 	 *
@@ -220,12 +286,10 @@ public abstract class TorqueAbstractPermissionManager extends AbstractPermission
 		try {
 			con = Transaction.begin();
 
-			doSelectByName(permissionName, con);
+			exists = selectExists(permissionName, con);
 
 			Transaction.commit(con);
 			con = null;
-
-			exists = true;
 		} catch (NoRowsException e) {
 			exists = false;
 		} catch (TooManyRowsException e) {
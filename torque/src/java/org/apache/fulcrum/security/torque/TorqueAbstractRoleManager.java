@@ -29,9 +29,12 @@ import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.EntityExistsException;
 import org.apache.fulcrum.security.util.RoleSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.torque.Column;
 import org.apache.torque.NoRowsException;
 import org.apache.torque.TooManyRowsException;
 import org.apache.torque.TorqueException;
+import org.apache.torque.criteria.Criteria;
+import org.apache.torque.util.CountHelper;
 import org.apache.torque.util.Transaction;
 /**
  * This implementation persists to a database via Torque.
@@ -102,6 +105,29 @@ public abstract class TorqueAbstractRoleManager extends AbstractRoleManager impl
     protected abstract <T extends Role> T doSelectById(Integer id, Connection con)
         throws NoRowsException, TooManyRowsException, TorqueException;
 
+    /**
+     * Retrieve the attached objects of all given roles. The default
+     * implementation calls
+     * {@link TorqueAbstractSecurityEntity#retrieveAttachedObjects(Connection, Boolean)}
+     * for each role, subclasses may load the relations of all roles
+     * at once instead.
+     *
+     * @param roles the roles
+     * @param con a database connection
+     * @param lazy if <code>true</code>, may load some or all relationships later
+     *
+     * @throws DataBackendException if the relations cannot be mapped
+     * @throws TorqueException  if any database error occurs
+     */
+    protected <T extends Role> void retrieveAttachedObjects(List<T> roles, Connection con, Boolean lazy)
+        throws DataBackendException, TorqueException
+    {
+        for (Role role : roles)
+        {
+            ((TorqueAbstractSecurityEntity)role).retrieveAttachedObjects(con, lazy);
+        }
+    }
+
 
     /**
     * Renames an existing Role.
@@ -129,6 +155,8 @@ public abstract class TorqueAbstractRoleManager extends AbstractRoleManager impl
             {
                 throw new DataBackendException("Renaming Role '" + role.getName() + "' failed", e);
             }
+
+            invalidateACLs(role);
         }
         else
         {
@@ -180,6 +208,8 @@ public abstract class TorqueAbstractRoleManager extends AbstractRoleManager impl
             {
                 throw new DataBackendException("Removing Role '" + role.getName() + "' failed", e);
             }
+
+            roleRemoved(role);
         }
         else
         {
@@ -187,6 +217,50 @@ public abstract class TorqueAbstractRoleManager extends AbstractRoleManager impl
         }
     }
 
+    /**
+     * Get the column holding the role name, to check for a name with a
+     * COUNT query instead of selecting the role.
+     *
+     * @return the name column or <code>null</code> if the role has to be
+     *         selected
+     * @throws TorqueException if any database error occurs
+     */
+    protected Column getNameColumn() throws TorqueException
+    {
+        return null;
+    }
+
+    /**
+     * Check whether a role name exists with a COUNT query on the name
+     * column, which does not read any row. Without a name column the role
+     * is selected.
+     *
+     * @param name the role name
+     * @param con a database connection
+     * @return true if the role exists
+     * @throws TooManyRowsException if the name is not unique
+     * @throws TorqueException if any database error occurs
+     */
+    protected boolean selectExists(String name, Connection con) throws TorqueException
+    {
+        Column column = getNameColumn();
+        if (column == null)
+        {
+            doSelectByName(name, con);
+            return true;
+        }
+
+        Criteria criteria = new Criteria();
+        criteria.where(column, name);
+        criteria.setIgnoreCase(true);
+        int count = new CountHelper().count(criteria, con, column);
+        if (count > 1)
+        {
+            throw new TooManyRowsException(name);
+        }
+        return count == 1;
+    }
+
     /**
       * Determines if the <code>Role</code> exists in the security system.
       *
@@ -206,12 +280,10 @@ public abstract class TorqueAbstractRoleManager extends AbstractRoleManager impl
         {
             con = Transaction.begin();
 
-            doSelectByName(roleName, con);
+            exists = selectExists(roleName, con);
 
             Transaction.commit(con);
             con = null;
-
-            exists = true;
         }
         catch (NoRowsException e)
         {
@@ -255,13 +327,9 @@ public abstract class TorqueAbstractRoleManager extends AbstractRoleManager impl
 
             List<Role> roles = doSelectAllRoles(con);
 
-            for (Role role : roles)
-            {
-               // Add attached objects if they exist
-               ((TorqueAbstractSecurityEntity)role).retrieveAttachedObjects(con, getLazyLoading());
-
-                roleSet.add(role);
-            }
+            // Add attached objects if they exist
+            retrieveAttachedObjects(roles, con, getLazyLoading());
+            roleSet.add(roles);
 
             Transaction.commit(con);
             con = null;
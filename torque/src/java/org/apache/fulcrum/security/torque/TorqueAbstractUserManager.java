@@ -23,16 +23,20 @@ import java.util.List;
 
 import org.apache.avalon.framework.configuration.Configuration;
 import org.apache.avalon.framework.configuration.ConfigurationException;
+import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.spi.AbstractUserManager;
 import org.apache.fulcrum.security.torque.security.TorqueAbstractSecurityEntity;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.fulcrum.security.util.UserQuery;
 import org.apache.fulcrum.security.util.UserSet;
+import org.apache.torque.Column;
 import org.apache.torque.NoRowsException;
 import org.apache.torque.TooManyRowsException;
 import org.apache.torque.TorqueException;
 import org.apache.torque.criteria.Criteria;
+import org.apache.torque.util.CountHelper;
 import org.apache.torque.util.Transaction;
 
 /**
@@ -78,6 +82,43 @@ public abstract class TorqueAbstractUserManager extends AbstractUserManager {
      */
 	protected abstract <T extends User> List<T> doSelectUsers(Connection con, Criteria criteria) throws TorqueException;
 
+	/**
+	 * Get the column holding the user name, used to read the users page by
+	 * page in name order
+	 *
+	 * @return the name column
+	 *
+	 * @throws TorqueException if the column cannot be determined
+	 */
+	protected abstract Column getNameColumn() throws TorqueException;
+
+	/**
+	 * Get the column holding the email address of the user
+	 *
+	 * @return the email column or <code>null</code> if the users have none
+	 *
+	 * @throws TorqueException if the column cannot be determined
+	 */
+	protected Column getEmailColumn() throws TorqueException {
+		return null;
+	}
+
+	/**
+	 * Restrict a query to the members of the group of a user query, and to
+	 * those who have its role there if it has one. The default implementation
+	 * cannot translate group conditions.
+	 *
+	 * @param criteria the criteria on the user table
+	 * @param query the user query, with a group
+	 *
+	 * @return false if the condition cannot be expressed in SQL
+	 *
+	 * @throws TorqueException if any database error occurs
+	 */
+	protected boolean addGroupCondition(Criteria criteria, UserQuery query) throws TorqueException {
+		return false;
+	}
+
 	/**
 	 * Get a specialized User by name
 	 *
@@ -110,6 +151,27 @@ public abstract class TorqueAbstractUserManager extends AbstractUserManager {
 	protected abstract <T extends User> T doSelectById(Integer id, Connection con)
 			throws NoRowsException, TooManyRowsException, TorqueException;
 
+	/**
+	 * Retrieve the attached objects of all given users. The default
+	 * implementation calls
+	 * {@link TorqueAbstractSecurityEntity#retrieveAttachedObjects(Connection, Boolean)}
+	 * for each user, subclasses may load the relations of all users
+	 * at once instead.
+	 *
+	 * @param users the users
+	 * @param con  a database connection
+	 * @param lazy if <code>true</code>, may load some or all relationships later
+	 *
+	 * @throws DataBackendException if the relations cannot be mapped
+	 * @throws TorqueException      if any database error occurs
+	 */
+	protected <T extends User> void retrieveAttachedObjects(List<T> users, Connection con, Boolean lazy)
+			throws DataBackendException, TorqueException {
+		for (User user : users) {
+			((TorqueAbstractSecurityEntity) user).retrieveAttachedObjects(con, lazy);
+		}
+	}
+
 	/**
 	 * Removes an user account from the system.
 	 *
@@ -125,6 +187,9 @@ public abstract class TorqueAbstractUserManager extends AbstractUserManager {
 		} catch (TorqueException e) {
 			throw new DataBackendException("Removing User '" + user.getName() + "' failed", e);
 		}
+
+		userRemoved(user);
+		invalidateACLs(user);
 	}
 
 	/**
@@ -170,6 +235,28 @@ public abstract class TorqueAbstractUserManager extends AbstractUserManager {
 		}
 	}
 
+	/**
+	 * Check whether a user name exists with a COUNT query on the name
+	 * column, which does not read any row.
+	 *
+	 * @param name the user name
+	 * @param con a database connection
+	 * @return true if the user exists
+	 * @throws TooManyRowsException if the name is not unique
+	 * @throws TorqueException if any database error occurs
+	 */
+	protected boolean selectExists(String name, Connection con) throws TorqueException {
+		Column column = getNameColumn();
+		Criteria criteria = new Criteria();
+		criteria.where(column, name);
+		criteria.setIgnoreCase(true);
+		int count = new CountHelper().count(criteria, con, column);
+		if (count > 1) {
+			throw new TooManyRowsException(name);
+		}
+		return count == 1;
+	}
+
 	/**
 	 * Check whether a specified user's account exists.
 	 *
@@ -182,6 +269,10 @@ public abstract class TorqueAbstractUserManager extends AbstractUserManager {
 	 */
 	@Override
 	public boolean checkExists(String userName) throws DataBackendException {
+		if (!mightExist(userName)) {
+			return false;
+		}
+
 		boolean exists = false;
 
 		Connection con = null;
@@ -189,12 +280,10 @@ public abstract class TorqueAbstractUserManager extends AbstractUserManager {
 		try {
 			con = Transaction.begin();
 
-			doSelectByName(userName, con);
+			exists = selectExists(userName, con);
 
 			Transaction.commit(con);
 			con = null;
-
-			exists = true;
 		} catch (NoRowsException e) {
 			exists = false;
 		} catch (TooManyRowsException e) {
@@ -269,12 +358,9 @@ public abstract class TorqueAbstractUserManager extends AbstractUserManager {
 
 			List<User> users = doSelectAllUsers(con);
 
-			for (User user : users) {
-				// Add attached objects if they exist
-				((TorqueAbstractSecurityEntity) user).retrieveAttachedObjects(con, false);
-
-				userSet.add(user);
-			}
+			// Add attached objects if they exist
+			retrieveAttachedObjects(users, con, false);
+			userSet.add(users);
 
 			Transaction.commit(con);
 			con = null;
@@ -304,12 +390,9 @@ public abstract class TorqueAbstractUserManager extends AbstractUserManager {
 
             List<User> users = doSelectUsers(con, criteria);
 
-            for (User user : users) {
-                // Add attached objects if they exist
-                ((TorqueAbstractSecurityEntity) user).retrieveAttachedObjects(con, false);
-
-                userSet.add(user);
-            }
+            // Add attached objects if they exist
+            retrieveAttachedObjects(users, con, false);
+            userSet.add(users);
 
             Transaction.commit(con);
             con = null;
@@ -324,6 +407,217 @@ public abstract class TorqueAbstractUserManager extends AbstractUserManager {
         return userSet;
     }
 
+	/**
+	 * Translate the query into one SELECT on the user table. If a condition
+	 * cannot be expressed in SQL, the query is evaluated over all users
+	 * instead.
+	 *
+	 * @see org.apache.fulcrum.security.UserManager#retrieveUserList(org.apache.fulcrum.security.util.UserQuery)
+	 */
+	@Override
+	public <T extends User> List<T> retrieveUserList(UserQuery query) throws DataBackendException {
+		List<T> users;
+		Connection con = null;
+
+		try {
+			Criteria criteria = buildCriteria(query);
+			if (criteria == null) {
+				return super.retrieveUserList(query);
+			}
+
+			con = Transaction.begin();
+
+			users = doSelectUsers(con, criteria);
+
+			// Add attached objects if they exist
+			retrieveAttachedObjects(users, con, false);
+
+			Transaction.commit(con);
+			con = null;
+		} catch (TorqueException e) {
+			throw new DataBackendException("Error retrieving users by query", e);
+		} finally {
+			if (con != null) {
+				Transaction.safeRollback(con);
+			}
+		}
+
+		return users;
+	}
+
+	/**
+	 * Build the criteria for a user query
+	 *
+	 * @param query the user query
+	 * @return the criteria or <code>null</code> if a condition cannot be
+	 *         expressed in SQL
+	 * @throws TorqueException if any database error occurs
+	 */
+	protected Criteria buildCriteria(UserQuery query) throws TorqueException {
+		Criteria criteria = new Criteria();
+		criteria.setIgnoreCase(true);
+		Column name = getNameColumn();
+
+		if (query.getNamePrefix() != null) {
+			criteria.where(name, escapeLike(query.getNamePrefix()) + "*", Criteria.LIKE);
+		}
+		if (query.getNamePart() != null) {
+			criteria.and(name, "*" + escapeLike(query.getNamePart()) + "*", Criteria.LIKE);
+		}
+		if (query.getEmail() != null) {
+			Column email = getEmailColumn();
+			if (email == null) {
+				return null;
+			}
+			criteria.and(email, query.getEmail());
+		}
+		if (query.getGroup() != null && !addGroupCondition(criteria, query)) {
+			return null;
+		}
+
+		switch (query.getOrder()) {
+		case NAME_ASCENDING:
+			criteria.addAscendingOrderByColumn(name);
+			break;
+		case NAME_DESCENDING:
+			criteria.addDescendingOrderByColumn(name);
+			break;
+		default:
+			break;
+		}
+		if (query.getLimit() > 0) {
+			criteria.setLimit(query.getLimit());
+		}
+
+		return criteria;
+	}
+
+	/**
+	 * Escape the wildcards of Torque LIKE conditions
+	 *
+	 * @param value a literal value
+	 * @return the value with <code>*</code>, <code>?</code> and the escape
+	 *         character escaped
+	 */
+	private static String escapeLike(String value) {
+		StringBuilder escaped = new StringBuilder(value.length() + 4);
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '*' || c == '?' || c == '\\') {
+				escaped.append('\\');
+			}
+			escaped.append(c);
+		}
+		return escaped.toString();
+	}
+
+	/**
+	 * Read one page with a keyset condition on the name column, so that the
+	 * database can seek to the start of the page instead of counting rows.
+	 * The JDBC fetch size is set to the page size.
+	 *
+	 * @see org.apache.fulcrum.security.UserManager#getUsers(java.lang.String, int)
+	 */
+	@Override
+	public <T extends User> List<T> getUsers(String afterName, int limit) throws DataBackendException {
+		checkLimit(limit);
+		List<T> users;
+		Connection con = null;
+
+		try {
+			con = Transaction.begin();
+
+			Column name = getNameColumn();
+			Criteria criteria = new Criteria();
+			if (afterName != null) {
+				criteria.where(name, afterName, Criteria.GREATER_THAN);
+			}
+			criteria.addAscendingOrderByColumn(name);
+			criteria.setLimit(limit);
+			criteria.setFetchSize(Integer.valueOf(limit));
+
+			users = doSelectUsers(con, criteria);
+
+			// Add attached objects if they exist
+			retrieveAttachedObjects(users, con, false);
+
+			Transaction.commit(con);
+			con = null;
+		} catch (TorqueException e) {
+			throw new DataBackendException("Error retrieving a page of users", e);
+		} finally {
+			if (con != null) {
+				Transaction.safeRollback(con);
+			}
+		}
+
+		return users;
+	}
+
+	/**
+	 * Count the users with a COUNT query on the user table.
+	 *
+	 * @see org.apache.fulcrum.security.UserManager#countUsers()
+	 */
+	@Override
+	public int countUsers() throws DataBackendException {
+		int count;
+		Connection con = null;
+
+		try {
+			con = Transaction.begin();
+
+			count = new CountHelper().count(new Criteria(), con, getNameColumn());
+
+			Transaction.commit(con);
+			con = null;
+		} catch (TorqueException e) {
+			throw new DataBackendException("Error counting users", e);
+		} finally {
+			if (con != null) {
+				Transaction.safeRollback(con);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Count the members of a group with a COUNT query on the user table,
+	 * restricted by the condition of {@link #addGroupCondition(Criteria, UserQuery)}.
+	 * If there is none, the members are counted as in the default
+	 * implementation.
+	 *
+	 * @see org.apache.fulcrum.security.UserManager#countUsersInGroup(org.apache.fulcrum.security.entity.Group)
+	 */
+	@Override
+	public int countUsersInGroup(Group group) throws DataBackendException {
+		int count;
+		Connection con = null;
+
+		try {
+			Criteria criteria = new Criteria();
+			if (!addGroupCondition(criteria, new UserQuery().inGroup(group))) {
+				return super.countUsersInGroup(group);
+			}
+
+			con = Transaction.begin();
+
+			count = new CountHelper().count(criteria, con, getNameColumn());
+
+			Transaction.commit(con);
+			con = null;
+		} catch (TorqueException e) {
+			throw new DataBackendException("Error counting the users of group '" + group.getName() + "'", e);
+		} finally {
+			if (con != null) {
+				Transaction.safeRollback(con);
+			}
+		}
+
+		return count;
+	}
+
 	/**
 	 * Retrieve a User object with specified id.
 	 *
@@ -0,0 +1,97 @@
+package org.apache.fulcrum.security.torque.basic;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.torque.om.TorqueBasicGroupPeer;
+import org.apache.fulcrum.security.torque.om.TorqueBasicUserGroup;
+import org.apache.fulcrum.security.torque.om.TorqueBasicUserGroupPeer;
+import org.apache.fulcrum.security.torque.om.TorqueBasicUserPeer;
+import org.apache.fulcrum.security.torque.security.TorqueBulkSelect;
+import org.apache.fulcrum.security.util.GroupSet;
+import org.apache.fulcrum.security.util.UserSet;
+import org.apache.torque.TorqueException;
+
+/**
+ * Retrieves the attached objects of a whole list of basic users or groups
+ * at once. The user/group relations of all entities and the related
+ * entities are each loaded with a few IN-list queries, instead of running
+ * the queries of
+ * {@link org.apache.fulcrum.security.torque.security.TorqueAbstractSecurityEntity#retrieveAttachedObjects(Connection, Boolean)}
+ * once per entity.
+ *
+ * @version $Id$
+ */
+public final class BasicBulkRetriever
+{
+    private BasicBulkRetriever()
+    {
+        // static methods only
+    }
+
+    /**
+     * Retrieve the groups of all users
+     *
+     * @param users the users, instances of {@link TorqueAbstractBasicUser}
+     * @param con a database connection
+     * @throws TorqueException if any database error occurs
+     */
+    public static void retrieveUserAttachedObjects(List<? extends User> users, Connection con)
+        throws TorqueException
+    {
+        Map<Object, List<Group>> groups = TorqueBulkSelect.<TorqueBasicUserGroup, Group>selectRelated(
+                users, TorqueBasicUserGroupPeer.USER_ID, TorqueBasicUserGroupPeer::doSelect,
+                TorqueBasicUserGroup::getUserId, TorqueBasicUserGroup::getGroupId,
+                TorqueBasicGroupPeer.GROUP_ID, TorqueBasicGroupPeer::doSelect, con);
+
+        for (User user : users)
+        {
+            ((TorqueAbstractBasicUser) user).setGroups(
+                    new GroupSet(groups.getOrDefault(user.getId(), Collections.<Group>emptyList())));
+        }
+    }
+
+    /**
+     * Retrieve the users of all groups
+     *
+     * @param groups the groups, instances of {@link TorqueAbstractBasicGroup}
+     * @param con a database connection
+     * @throws TorqueException if any database error occurs
+     */
+    public static void retrieveGroupAttachedObjects(List<? extends Group> groups, Connection con)
+        throws TorqueException
+    {
+        Map<Object, List<User>> users = TorqueBulkSelect.<TorqueBasicUserGroup, User>selectRelated(
+                groups, TorqueBasicUserGroupPeer.GROUP_ID, TorqueBasicUserGroupPeer::doSelect,
+                TorqueBasicUserGroup::getGroupId, TorqueBasicUserGroup::getUserId,
+                TorqueBasicUserPeer.USER_ID, TorqueBasicUserPeer::doSelect, con);
+
+        for (Group group : groups)
+        {
+            ((TorqueAbstractBasicGroup) group).setUsers(
+                    new UserSet<User>(users.getOrDefault(group.getId(), Collections.<User>emptyList())));
+        }
+    }
+}
@@ -23,6 +23,8 @@ import java.util.List;
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.torque.TorqueAbstractGroupManager;
 import org.apache.fulcrum.security.torque.om.TorqueBasicGroupPeer;
+import org.apache.fulcrum.security.util.DataBackendException;
+import org.apache.torque.Column;
 import org.apache.torque.NoRowsException;
 import org.apache.torque.TooManyRowsException;
 import org.apache.torque.TorqueException;
@@ -58,6 +60,15 @@ public class TorqueBasicGroupManagerImpl extends TorqueAbstractGroupManager
         return (T)TorqueBasicGroupPeer.retrieveByPK(id, con);
     }
 
+    /**
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractGroupManager#getNameColumn()
+     */
+    @Override
+    protected Column getNameColumn()
+    {
+        return TorqueBasicGroupPeer.GROUP_NAME;
+    }
+
     /**
      * @see org.apache.fulcrum.security.torque.TorqueAbstractGroupManager#doSelectByName(java.lang.String, java.sql.Connection)
      */
@@ -78,4 +89,24 @@ public class TorqueBasicGroupManagerImpl extends TorqueAbstractGroupManager
 
         return t;
     }
+
+    /**
+     * Retrieve the attached objects of all groups at once, if they are
+     * instances of the basic Torque classes.
+     *
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractGroupManager#retrieveAttachedObjects(java.util.List, java.sql.Connection, java.lang.Boolean)
+     */
+    @Override
+    protected <T extends Group> void retrieveAttachedObjects(List<T> groups, Connection con, Boolean lazy)
+        throws DataBackendException, TorqueException
+    {
+        if (!groups.isEmpty() && groups.get(0) instanceof TorqueAbstractBasicGroup)
+        {
+            BasicBulkRetriever.retrieveGroupAttachedObjects(groups, con);
+        }
+        else
+        {
+            super.retrieveAttachedObjects(groups, con, lazy);
+        }
+    }
 }
@@ -22,7 +22,11 @@ import java.util.List;
 
 import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.torque.TorqueAbstractUserManager;
+import org.apache.fulcrum.security.torque.om.TorqueBasicUserGroupPeer;
 import org.apache.fulcrum.security.torque.om.TorqueBasicUserPeer;
+import org.apache.fulcrum.security.util.DataBackendException;
+import org.apache.fulcrum.security.util.UserQuery;
+import org.apache.torque.Column;
 import org.apache.torque.NoRowsException;
 import org.apache.torque.TooManyRowsException;
 import org.apache.torque.TorqueException;
@@ -59,6 +63,36 @@ public class TorqueBasicUserManagerImpl extends TorqueAbstractUserManager
         return (List<T>)TorqueBasicUserPeer.doSelect(criteria, con);
     }
 
+    /**
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractUserManager#getNameColumn()
+     */
+    @Override
+    protected Column getNameColumn()
+    {
+        return TorqueBasicUserPeer.LOGIN_NAME;
+    }
+
+    /**
+     * Selects the members of the group with a sub-select on the user/group
+     * table. The basic model has no roles.
+     *
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractUserManager#addGroupCondition(org.apache.torque.criteria.Criteria, org.apache.fulcrum.security.util.UserQuery)
+     */
+    @Override
+    protected boolean addGroupCondition(Criteria criteria, UserQuery query)
+    {
+        if (query.getRole() != null)
+        {
+            return false;
+        }
+
+        Criteria members = new Criteria();
+        members.addSelectColumn(TorqueBasicUserGroupPeer.USER_ID);
+        members.where(TorqueBasicUserGroupPeer.GROUP_ID, query.getGroup().getId());
+        criteria.and(TorqueBasicUserPeer.USER_ID, members, Criteria.IN);
+        return true;
+    }
+
     /**
      * @see org.apache.fulcrum.security.torque.TorqueAbstractUserManager#doSelectById(java.lang.Integer, java.sql.Connection)
      */
@@ -88,4 +122,23 @@ public class TorqueBasicUserManagerImpl extends TorqueAbstractUserManager
         return t;
     }
 
+    /**
+     * Retrieve the attached objects of all users at once, if they are
+     * instances of the basic Torque classes.
+     *
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractUserManager#retrieveAttachedObjects(java.util.List, java.sql.Connection, java.lang.Boolean)
+     */
+    @Override
+    protected <T extends User> void retrieveAttachedObjects(List<T> users, Connection con, Boolean lazy)
+        throws DataBackendException, TorqueException
+    {
+        if (!users.isEmpty() && users.get(0) instanceof TorqueAbstractBasicUser)
+        {
+            BasicBulkRetriever.retrieveUserAttachedObjects(users, con);
+        }
+        else
+        {
+            super.retrieveAttachedObjects(users, con, lazy);
+        }
+    }
 }
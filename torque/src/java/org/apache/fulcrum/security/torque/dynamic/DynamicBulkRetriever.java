@@ -0,0 +1,173 @@
+package org.apache.fulcrum.security.torque.dynamic;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicGroupPeer;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicGroupRole;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicGroupRolePeer;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicPermissionPeer;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicRolePeer;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicRolePermission;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicRolePermissionPeer;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicUserDelegates;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicUserDelegatesPeer;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicUserGroup;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicUserGroupPeer;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicUserPeer;
+import org.apache.fulcrum.security.torque.security.TorqueBulkSelect;
+import org.apache.fulcrum.security.util.GroupSet;
+import org.apache.fulcrum.security.util.PermissionSet;
+import org.apache.fulcrum.security.util.RoleSet;
+import org.apache.fulcrum.security.util.UserSet;
+import org.apache.torque.TorqueException;
+
+/**
+ * Retrieves the attached objects of a whole list of dynamic users, groups,
+ * roles or permissions at once. The user/group, group/role, role/permission
+ * and delegate relations of all entities and the related entities are each
+ * loaded with a few IN-list queries, instead of running the queries of
+ * {@link org.apache.fulcrum.security.torque.security.TorqueAbstractSecurityEntity#retrieveAttachedObjects(Connection, Boolean)}
+ * once per entity.
+ *
+ * @version $Id$
+ */
+public final class DynamicBulkRetriever
+{
+    private DynamicBulkRetriever()
+    {
+        // static methods only
+    }
+
+    /**
+     * Retrieve the groups, delegators and delegatees of all users
+     *
+     * @param users the users, instances of {@link TorqueAbstractDynamicUser}
+     * @param con a database connection
+     * @throws TorqueException if any database error occurs
+     */
+    public static void retrieveUserAttachedObjects(List<? extends User> users, Connection con)
+        throws TorqueException
+    {
+        Map<Object, List<Group>> groups = TorqueBulkSelect.<TorqueDynamicUserGroup, Group>selectRelated(
+                users, TorqueDynamicUserGroupPeer.USER_ID, TorqueDynamicUserGroupPeer::doSelect,
+                TorqueDynamicUserGroup::getUserId, TorqueDynamicUserGroup::getGroupId,
+                TorqueDynamicGroupPeer.GROUP_ID, TorqueDynamicGroupPeer::doSelect, con);
+        Map<Object, List<User>> delegators = TorqueBulkSelect.<TorqueDynamicUserDelegates, User>selectRelated(
+                users, TorqueDynamicUserDelegatesPeer.DELEGATEE_USER_ID, TorqueDynamicUserDelegatesPeer::doSelect,
+                TorqueDynamicUserDelegates::getDelegateeUserId, TorqueDynamicUserDelegates::getDelegatorUserId,
+                TorqueDynamicUserPeer.USER_ID, TorqueDynamicUserPeer::doSelect, con);
+        Map<Object, List<User>> delegatees = TorqueBulkSelect.<TorqueDynamicUserDelegates, User>selectRelated(
+                users, TorqueDynamicUserDelegatesPeer.DELEGATOR_USER_ID, TorqueDynamicUserDelegatesPeer::doSelect,
+                TorqueDynamicUserDelegates::getDelegatorUserId, TorqueDynamicUserDelegates::getDelegateeUserId,
+                TorqueDynamicUserPeer.USER_ID, TorqueDynamicUserPeer::doSelect, con);
+
+        for (User user : users)
+        {
+            TorqueAbstractDynamicUser u = (TorqueAbstractDynamicUser) user;
+            u.setGroups(new GroupSet(groups.getOrDefault(user.getId(), Collections.<Group>emptyList())));
+            u.setDelegators(new UserSet<User>(delegators.getOrDefault(user.getId(), Collections.<User>emptyList())));
+            u.setDelegatees(new UserSet<User>(delegatees.getOrDefault(user.getId(), Collections.<User>emptyList())));
+        }
+    }
+
+    /**
+     * Retrieve the users and roles of all groups
+     *
+     * @param groups the groups, instances of {@link TorqueAbstractDynamicGroup}
+     * @param con a database connection
+     * @throws TorqueException if any database error occurs
+     */
+    public static void retrieveGroupAttachedObjects(List<? extends Group> groups, Connection con)
+        throws TorqueException
+    {
+        Map<Object, List<User>> users = TorqueBulkSelect.<TorqueDynamicUserGroup, User>selectRelated(
+                groups, TorqueDynamicUserGroupPeer.GROUP_ID, TorqueDynamicUserGroupPeer::doSelect,
+                TorqueDynamicUserGroup::getGroupId, TorqueDynamicUserGroup::getUserId,
+                TorqueDynamicUserPeer.USER_ID, TorqueDynamicUserPeer::doSelect, con);
+        Map<Object, List<Role>> roles = TorqueBulkSelect.<TorqueDynamicGroupRole, Role>selectRelated(
+                groups, TorqueDynamicGroupRolePeer.GROUP_ID, TorqueDynamicGroupRolePeer::doSelect,
+                TorqueDynamicGroupRole::getGroupId, TorqueDynamicGroupRole::getRoleId,
+                TorqueDynamicRolePeer.ROLE_ID, TorqueDynamicRolePeer::doSelect, con);
+
+        for (Group group : groups)
+        {
+            TorqueAbstractDynamicGroup g = (TorqueAbstractDynamicGroup) group;
+            g.setUsers(new UserSet<User>(users.getOrDefault(group.getId(), Collections.<User>emptyList())));
+            g.setRoles(new RoleSet(roles.getOrDefault(group.getId(), Collections.<Role>emptyList())));
+        }
+    }
+
+    /**
+     * Retrieve the permissions and groups of all roles
+     *
+     * @param roles the roles, instances of {@link TorqueAbstractDynamicRole}
+     * @param con a database connection
+     * @throws TorqueException if any database error occurs
+     */
+    public static void retrieveRoleAttachedObjects(List<? extends Role> roles, Connection con)
+        throws TorqueException
+    {
+        Map<Object, List<Permission>> permissions = TorqueBulkSelect.<TorqueDynamicRolePermission, Permission>selectRelated(
+                roles, TorqueDynamicRolePermissionPeer.ROLE_ID, TorqueDynamicRolePermissionPeer::doSelect,
+                TorqueDynamicRolePermission::getRoleId, TorqueDynamicRolePermission::getPermissionId,
+                TorqueDynamicPermissionPeer.PERMISSION_ID, TorqueDynamicPermissionPeer::doSelect, con);
+        Map<Object, List<Group>> groups = TorqueBulkSelect.<TorqueDynamicGroupRole, Group>selectRelated(
+                roles, TorqueDynamicGroupRolePeer.ROLE_ID, TorqueDynamicGroupRolePeer::doSelect,
+                TorqueDynamicGroupRole::getRoleId, TorqueDynamicGroupRole::getGroupId,
+                TorqueDynamicGroupPeer.GROUP_ID, TorqueDynamicGroupPeer::doSelect, con);
+
+        for (Role role : roles)
+        {
+            TorqueAbstractDynamicRole r = (TorqueAbstractDynamicRole) role;
+            r.setPermissions(new PermissionSet(permissions.getOrDefault(role.getId(), Collections.<Permission>emptyList())));
+            r.setGroups(new GroupSet(groups.getOrDefault(role.getId(), Collections.<Group>emptyList())));
+        }
+    }
+
+    /**
+     * Retrieve the roles of all permissions
+     *
+     * @param permissions the permissions, instances of {@link TorqueAbstractDynamicPermission}
+     * @param con a database connection
+     * @throws TorqueException if any database error occurs
+     */
+    public static void retrievePermissionAttachedObjects(List<? extends Permission> permissions, Connection con)
+        throws TorqueException
+    {
+        Map<Object, List<Role>> roles = TorqueBulkSelect.<TorqueDynamicRolePermission, Role>selectRelated(
+                permissions, TorqueDynamicRolePermissionPeer.PERMISSION_ID, TorqueDynamicRolePermissionPeer::doSelect,
+                TorqueDynamicRolePermission::getPermissionId, TorqueDynamicRolePermission::getRoleId,
+                TorqueDynamicRolePeer.ROLE_ID, TorqueDynamicRolePeer::doSelect, con);
+
+        for (Permission permission : permissions)
+        {
+            ((TorqueAbstractDynamicPermission) permission).setRoles(
+                    new RoleSet(roles.getOrDefault(permission.getId(), Collections.<Role>emptyList())));
+        }
+    }
+}
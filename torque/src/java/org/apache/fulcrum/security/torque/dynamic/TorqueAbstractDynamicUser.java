@@ -238,7 +238,7 @@ public abstract class TorqueAbstractDynamicUser extends TorqueAbstractSecurityEn
      * java.util.Set)
      */
     public <T extends User> void setDelegators(Set<T> delegates) {
-        if (delegators != null) {
+        if (delegates != null) {
             this.delegators = new UserSet<T>(delegates);
         } else {
             this.delegators = new UserSet<T>();
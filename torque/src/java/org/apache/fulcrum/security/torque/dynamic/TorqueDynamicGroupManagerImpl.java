@@ -24,6 +24,8 @@ import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.torque.TorqueAbstractGroupManager;
 import org.apache.fulcrum.security.torque.om.TorqueDynamicGroup;
 import org.apache.fulcrum.security.torque.om.TorqueDynamicGroupPeer;
+import org.apache.fulcrum.security.util.DataBackendException;
+import org.apache.torque.Column;
 import org.apache.torque.NoRowsException;
 import org.apache.torque.TooManyRowsException;
 import org.apache.torque.TorqueException;
@@ -56,6 +58,15 @@ public class TorqueDynamicGroupManagerImpl extends TorqueAbstractGroupManager
         return (T) TorqueDynamicGroupPeer.retrieveByPK(id, con);
     }
 
+    /**
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractGroupManager#getNameColumn()
+     */
+    @Override
+    protected Column getNameColumn()
+    {
+        return TorqueDynamicGroupPeer.GROUP_NAME;
+    }
+
     /* (non-Javadoc)
      * @see org.apache.fulcrum.security.torque.TorqueAbstractGroupManager#doSelectByName(java.lang.String, java.sql.Connection)
      */
@@ -76,4 +87,24 @@ public class TorqueDynamicGroupManagerImpl extends TorqueAbstractGroupManager
 
         return (T) groups.get(0);
     }
+
+    /**
+     * Retrieve the attached objects of all groups at once, if they are
+     * instances of the dynamic Torque classes.
+     *
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractGroupManager#retrieveAttachedObjects(java.util.List, java.sql.Connection, java.lang.Boolean)
+     */
+    @Override
+    protected <T extends Group> void retrieveAttachedObjects(List<T> groups, Connection con, Boolean lazy)
+        throws DataBackendException, TorqueException
+    {
+        if (!groups.isEmpty() && groups.get(0) instanceof TorqueAbstractDynamicGroup)
+        {
+            DynamicBulkRetriever.retrieveGroupAttachedObjects(groups, con);
+        }
+        else
+        {
+            super.retrieveAttachedObjects(groups, con, lazy);
+        }
+    }
 }
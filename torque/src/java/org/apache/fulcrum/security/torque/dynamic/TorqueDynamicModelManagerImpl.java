@@ -19,6 +19,10 @@ package org.apache.fulcrum.security.torque.dynamic;
  * under the License.
  */
 import java.sql.Connection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.Permission;
@@ -30,10 +34,13 @@ import org.apache.fulcrum.security.model.dynamic.entity.DynamicGroup;
 import org.apache.fulcrum.security.model.dynamic.entity.DynamicPermission;
 import org.apache.fulcrum.security.model.dynamic.entity.DynamicRole;
 import org.apache.fulcrum.security.model.dynamic.entity.DynamicUser;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicRoleHierarchy;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicRoleHierarchyPeer;
 import org.apache.fulcrum.security.torque.security.TorqueAbstractSecurityEntity;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.UnknownEntityException;
 import org.apache.torque.TorqueException;
+import org.apache.torque.criteria.Criteria;
 import org.apache.torque.util.Transaction;
 
 /**
@@ -135,6 +142,7 @@ public class TorqueDynamicModelManagerImpl extends AbstractDynamicModelManager i
 				}
 			}
 
+			rolePermissionsChanged(role);
 			return;
 		}
 
@@ -186,6 +194,7 @@ public class TorqueDynamicModelManagerImpl extends AbstractDynamicModelManager i
 				}
 			}
 
+			rolePermissionsChanged(role);
 			return;
 		}
 
@@ -444,4 +453,45 @@ public class TorqueDynamicModelManagerImpl extends AbstractDynamicModelManager i
 			throw new UnknownEntityException("Unknown user '" + delegatee.getName() + "'");
 		}
 	}
+
+	/**
+	 * Reads the role hierarchy table.
+	 */
+	@Override
+	protected Map<Object, Set<Object>> loadParentRoles() throws DataBackendException {
+		Map<Object, Set<Object>> parents = new HashMap<Object, Set<Object>>();
+
+		try {
+			for (TorqueDynamicRoleHierarchy edge : TorqueDynamicRoleHierarchyPeer.doSelect(new Criteria())) {
+				parents.computeIfAbsent(edge.getRoleId(), k -> new HashSet<Object>()).add(edge.getParentRoleId());
+			}
+		} catch (TorqueException e) {
+			throw new DataBackendException("Loading the role hierarchy failed", e);
+		}
+
+		return parents;
+	}
+
+	/**
+	 * Inserts or deletes a row of the role hierarchy table.
+	 */
+	@Override
+	protected void saveParentRole(Role role, Role parent, boolean add) throws DataBackendException {
+		try {
+			if (add) {
+				TorqueDynamicRoleHierarchy edge = new TorqueDynamicRoleHierarchy();
+				edge.setRoleId((Integer) role.getId());
+				edge.setParentRoleId((Integer) parent.getId());
+				edge.save();
+			} else {
+				Criteria criteria = new Criteria();
+				criteria.where(TorqueDynamicRoleHierarchyPeer.ROLE_ID, role.getId());
+				criteria.where(TorqueDynamicRoleHierarchyPeer.PARENT_ROLE_ID, parent.getId());
+				TorqueDynamicRoleHierarchyPeer.doDelete(criteria);
+			}
+		} catch (TorqueException e) {
+			throw new DataBackendException((add ? "addParentRole('" : "removeParentRole('") + role.getName() + "', '"
+					+ parent.getName() + "') failed", e);
+		}
+	}
 }
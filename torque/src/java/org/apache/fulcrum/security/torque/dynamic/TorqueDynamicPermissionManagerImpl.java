@@ -24,6 +24,8 @@ import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.torque.TorqueAbstractPermissionManager;
 import org.apache.fulcrum.security.torque.om.TorqueDynamicPermission;
 import org.apache.fulcrum.security.torque.om.TorqueDynamicPermissionPeer;
+import org.apache.fulcrum.security.util.DataBackendException;
+import org.apache.torque.Column;
 import org.apache.torque.NoRowsException;
 import org.apache.torque.TooManyRowsException;
 import org.apache.torque.TorqueException;
@@ -61,6 +63,15 @@ public class TorqueDynamicPermissionManagerImpl extends TorqueAbstractPermission
         return (T) TorqueDynamicPermissionPeer.retrieveByPK(id, con);
     }
 
+    /**
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractPermissionManager#getNameColumn()
+     */
+    @Override
+    protected Column getNameColumn()
+    {
+        return TorqueDynamicPermissionPeer.PERMISSION_NAME;
+    }
+
     /* (non-Javadoc)
      * @see org.apache.fulcrum.security.torque.TorqueAbstractPermissionManager#doSelectByName(java.lang.String, java.sql.Connection)
      */
@@ -81,4 +92,24 @@ public class TorqueDynamicPermissionManagerImpl extends TorqueAbstractPermission
 
         return (T) permissions.get(0);
     }
+
+    /**
+     * Retrieve the attached objects of all permissions at once, if they are
+     * instances of the dynamic Torque classes.
+     *
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractPermissionManager#retrieveAttachedObjects(java.util.List, java.sql.Connection, java.lang.Boolean)
+     */
+    @Override
+    protected <T extends Permission> void retrieveAttachedObjects(List<T> permissions, Connection con, Boolean lazy)
+        throws DataBackendException, TorqueException
+    {
+        if (!permissions.isEmpty() && permissions.get(0) instanceof TorqueAbstractDynamicPermission)
+        {
+            DynamicBulkRetriever.retrievePermissionAttachedObjects(permissions, con);
+        }
+        else
+        {
+            super.retrieveAttachedObjects(permissions, con, lazy);
+        }
+    }
 }
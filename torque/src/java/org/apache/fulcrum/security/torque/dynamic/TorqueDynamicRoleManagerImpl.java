@@ -20,14 +20,20 @@ package org.apache.fulcrum.security.torque.dynamic;
 import java.sql.Connection;
 import java.util.List;
 
+import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
 import org.apache.fulcrum.security.torque.TorqueAbstractRoleManager;
 import org.apache.fulcrum.security.torque.om.TorqueDynamicRole;
 import org.apache.fulcrum.security.torque.om.TorqueDynamicRolePeer;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicRolePermissionPeer;
+import org.apache.fulcrum.security.util.DataBackendException;
+import org.apache.torque.Column;
 import org.apache.torque.NoRowsException;
 import org.apache.torque.TooManyRowsException;
 import org.apache.torque.TorqueException;
 import org.apache.torque.criteria.Criteria;
+import org.apache.torque.util.CountHelper;
+import org.apache.torque.util.Transaction;
 /**
  * This implementation persists to a database via Torque.
  *
@@ -61,6 +67,52 @@ public class TorqueDynamicRoleManagerImpl extends TorqueAbstractRoleManager
         return (T) TorqueDynamicRolePeer.retrieveByPK(id, con);
     }
 
+    /**
+     * Count the roles with a COUNT query on the role/permission table.
+     *
+     * @see org.apache.fulcrum.security.RoleManager#countRolesWithPermission(org.apache.fulcrum.security.entity.Permission)
+     */
+    @Override
+    public int countRolesWithPermission(Permission permission) throws DataBackendException
+    {
+        int count;
+        Connection con = null;
+
+        try
+        {
+            con = Transaction.begin();
+
+            Criteria criteria = new Criteria(TorqueDynamicRolePermissionPeer.DATABASE_NAME);
+            criteria.where(TorqueDynamicRolePermissionPeer.PERMISSION_ID, permission.getId());
+            count = new CountHelper().count(criteria, con, TorqueDynamicRolePermissionPeer.ROLE_ID);
+
+            Transaction.commit(con);
+            con = null;
+        }
+        catch (TorqueException e)
+        {
+            throw new DataBackendException("Error counting the roles of permission '" + permission.getName() + "'", e);
+        }
+        finally
+        {
+            if (con != null)
+            {
+                Transaction.safeRollback(con);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractRoleManager#getNameColumn()
+     */
+    @Override
+    protected Column getNameColumn()
+    {
+        return TorqueDynamicRolePeer.ROLE_NAME;
+    }
+
     /* (non-Javadoc)
      * @see org.apache.fulcrum.security.torque.TorqueAbstractRoleManager#doSelectByName(java.lang.String, java.sql.Connection)
      */
@@ -81,4 +133,24 @@ public class TorqueDynamicRoleManagerImpl extends TorqueAbstractRoleManager
 
         return (T) roles.get(0);
     }
+
+    /**
+     * Retrieve the attached objects of all roles at once, if they are
+     * instances of the dynamic Torque classes.
+     *
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractRoleManager#retrieveAttachedObjects(java.util.List, java.sql.Connection, java.lang.Boolean)
+     */
+    @Override
+    protected <T extends Role> void retrieveAttachedObjects(List<T> roles, Connection con, Boolean lazy)
+        throws DataBackendException, TorqueException
+    {
+        if (!roles.isEmpty() && roles.get(0) instanceof TorqueAbstractDynamicRole)
+        {
+            DynamicBulkRetriever.retrieveRoleAttachedObjects(roles, con);
+        }
+        else
+        {
+            super.retrieveAttachedObjects(roles, con, lazy);
+        }
+    }
 }
@@ -22,9 +22,13 @@ import java.util.List;
 
 import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.torque.TorqueAbstractUserManager;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicGroupRolePeer;
 import org.apache.fulcrum.security.torque.om.TorqueDynamicUser;
+import org.apache.fulcrum.security.torque.om.TorqueDynamicUserGroupPeer;
 import org.apache.fulcrum.security.torque.om.TorqueDynamicUserPeer;
 import org.apache.fulcrum.security.util.DataBackendException;
+import org.apache.fulcrum.security.util.UserQuery;
+import org.apache.torque.Column;
 import org.apache.torque.NoRowsException;
 import org.apache.torque.TooManyRowsException;
 import org.apache.torque.TorqueException;
@@ -61,6 +65,37 @@ public class TorqueDynamicUserManagerImpl extends TorqueAbstractUserManager
         return (List<T>)TorqueDynamicUserPeer.doSelect(criteria, con);
     }
 
+    /**
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractUserManager#getNameColumn()
+     */
+    @Override
+    protected Column getNameColumn()
+    {
+        return TorqueDynamicUserPeer.LOGIN_NAME;
+    }
+
+    /**
+     * Selects the members of the group with a sub-select on the user/group
+     * table. Roles belong to groups in the dynamic model, so a role condition
+     * joins the group/role table.
+     *
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractUserManager#addGroupCondition(org.apache.torque.criteria.Criteria, org.apache.fulcrum.security.util.UserQuery)
+     */
+    @Override
+    protected boolean addGroupCondition(Criteria criteria, UserQuery query)
+    {
+        Criteria members = new Criteria();
+        members.addSelectColumn(TorqueDynamicUserGroupPeer.USER_ID);
+        members.where(TorqueDynamicUserGroupPeer.GROUP_ID, query.getGroup().getId());
+        if (query.getRole() != null)
+        {
+            members.addJoin(TorqueDynamicUserGroupPeer.GROUP_ID, TorqueDynamicGroupRolePeer.GROUP_ID);
+            members.where(TorqueDynamicGroupRolePeer.ROLE_ID, query.getRole().getId());
+        }
+        criteria.and(TorqueDynamicUserPeer.USER_ID, members, Criteria.IN);
+        return true;
+    }
+
     /* (non-Javadoc)
      * @see org.apache.fulcrum.security.torque.TorqueAbstractUserManager#doSelectById(java.lang.Integer, java.sql.Connection)
      */
@@ -91,4 +126,23 @@ public class TorqueDynamicUserManagerImpl extends TorqueAbstractUserManager
         return (T) users.get(0);
     }
 
+    /**
+     * Retrieve the attached objects of all users at once, if they are
+     * instances of the dynamic Torque classes.
+     *
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractUserManager#retrieveAttachedObjects(java.util.List, java.sql.Connection, java.lang.Boolean)
+     */
+    @Override
+    protected <T extends User> void retrieveAttachedObjects(List<T> users, Connection con, Boolean lazy)
+        throws DataBackendException, TorqueException
+    {
+        if (!users.isEmpty() && users.get(0) instanceof TorqueAbstractDynamicUser)
+        {
+            DynamicBulkRetriever.retrieveUserAttachedObjects(users, con);
+        }
+        else
+        {
+            super.retrieveAttachedObjects(users, con, lazy);
+        }
+    }
 }
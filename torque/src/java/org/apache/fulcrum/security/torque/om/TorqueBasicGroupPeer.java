@@ -0,0 +1,17 @@
+package org.apache.fulcrum.security.torque.om;
+
+/**
+ * The skeleton for this class was autogenerated by Torque on:
+ *
+ * [Sun Oct 18 08:54:44 UTC 2026]
+ *
+ * This class provides static wrappers for the peer implementation classes.
+ * This class will only be generated as long as it does not already exist
+ * in the output directory.
+ */
+
+public class TorqueBasicGroupPeer
+    extends org.apache.fulcrum.security.torque.om.BaseTorqueBasicGroupPeer
+{
+
+}
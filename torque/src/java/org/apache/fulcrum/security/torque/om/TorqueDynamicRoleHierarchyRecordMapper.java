@@ -0,0 +1,19 @@
+package org.apache.fulcrum.security.torque.om;
+
+
+/**
+ * Maps ResultSet rows into TorqueDynamicRoleHierarchy objects.
+ *
+ * The skeleton for this class was autogenerated by Torque on:
+ *
+ * [Sun Oct 18 11:40:47 UTC 2026]
+ *
+ */
+public class TorqueDynamicRoleHierarchyRecordMapper extends BaseTorqueDynamicRoleHierarchyRecordMapper
+{
+    /** Serial version */
+    private static final long serialVersionUID = 1792323647062L;
+
+
+
+}
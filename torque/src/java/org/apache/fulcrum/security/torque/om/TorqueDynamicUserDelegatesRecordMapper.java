@@ -0,0 +1,19 @@
+package org.apache.fulcrum.security.torque.om;
+
+
+/**
+ * Maps ResultSet rows into TorqueDynamicUserDelegates objects.
+ *
+ * The skeleton for this class was autogenerated by Torque on:
+ *
+ * [Sun Oct 18 08:54:47 UTC 2026]
+ *
+ */
+public class TorqueDynamicUserDelegatesRecordMapper extends BaseTorqueDynamicUserDelegatesRecordMapper
+{
+    /** Serial version */
+    private static final long serialVersionUID = 1792313687094L;
+
+
+
+}
@@ -0,0 +1,22 @@
+package org.apache.fulcrum.security.torque.om;
+
+
+/**
+ * The skeleton for this class was autogenerated by Torque on:
+ *
+ * [Sun Oct 18 08:54:39 UTC 2026]
+ *
+ * You should add additional methods to this class to meet the
+ * application requirements.  This class will only be generated as
+ * long as it does not already exist in the output directory.
+ */
+
+public  class TorqueDynamicUserGroup
+    extends org.apache.fulcrum.security.torque.om.BaseTorqueDynamicUserGroup
+{
+    /** Serial version */
+    private static final long serialVersionUID = 1792313679895L;
+
+
+
+}
@@ -0,0 +1,23 @@
+package org.apache.fulcrum.security.torque.om;
+
+
+/**
+ * The skeleton for this class was autogenerated by Torque on:
+ *
+ * [Sun Oct 18 08:54:40 UTC 2026]
+ *
+ * You should add additional methods to this class to meet the
+ * application requirements.  This class will only be generated as
+ * long as it does not already exist in the output directory.
+ */
+
+public  class TorqueTurbineUser
+    extends org.apache.fulcrum.security.torque.om.BaseTorqueTurbineUser
+    implements org.apache.fulcrum.security.model.turbine.entity.TurbineUser
+{
+    /** Serial version */
+    private static final long serialVersionUID = 1792313680094L;
+
+
+
+}
@@ -0,0 +1,22 @@
+package org.apache.fulcrum.security.torque.om;
+
+
+/**
+ * The skeleton for this class was autogenerated by Torque on:
+ *
+ * [Sun Oct 18 12:01:54 UTC 2026]
+ *
+ * You should add additional methods to this class to meet the
+ * application requirements.  This class will only be generated as
+ * long as it does not already exist in the output directory.
+ */
+
+public  class TurbineGroupHierarchy
+    extends org.apache.fulcrum.security.torque.om.BaseTurbineGroupHierarchy
+{
+    /** Serial version */
+    private static final long serialVersionUID = 1792324914671L;
+
+
+
+}
@@ -0,0 +1,19 @@
+package org.apache.fulcrum.security.torque.om;
+
+
+/**
+ * Maps ResultSet rows into TurbineGroupHierarchy objects.
+ *
+ * The skeleton for this class was autogenerated by Torque on:
+ *
+ * [Sun Oct 18 12:02:04 UTC 2026]
+ *
+ */
+public class TurbineGroupHierarchyRecordMapper extends BaseTurbineGroupHierarchyRecordMapper
+{
+    /** Serial version */
+    private static final long serialVersionUID = 1792324924400L;
+
+
+
+}
@@ -0,0 +1,22 @@
+package org.apache.fulcrum.security.torque.om;
+
+/**
+ * The skeleton for this class was autogenerated by Torque on:
+ *
+ * [Sun Oct 18 08:54:44 UTC 2026]
+ *
+ * You should add additional methods to this class to meet the
+ * application requirements.  This class will only be generated as
+ * long as it does not already exist in the output directory.
+ */
+
+public class TurbineRolePeerImpl
+    extends org.apache.fulcrum.security.torque.om.BaseTurbineRolePeerImpl
+    implements org.apache.fulcrum.security.torque.peer.TorqueTurbinePeer
+{
+    /** Serial version */
+    private static final long serialVersionUID = 1792313684454L;
+
+
+
+}
@@ -36,6 +36,22 @@ public interface TurbineRolePermissionPeerMapper
 
 {
 	
+    /**
+     * Returns the id of the associated TurbineRole object without
+     * retrieving it.
+     *
+     * @return the role id
+     */
+    Integer getRoleId();
+
+    /**
+     * Returns the id of the associated TurbinePermission object without
+     * retrieving it.
+     *
+     * @return the permission id
+     */
+    Integer getPermissionId();
+
     /**
      * Returns the associated TurbineRole object.
      * If it was not retrieved before, the object is retrieved from
@@ -36,6 +36,30 @@ import org.apache.torque.TorqueException;
 public interface TurbineUserGroupRoleModelPeerMapper
 {
 
+    /**
+     * Returns the id of the associated TurbineUser object without
+     * retrieving it.
+     *
+     * @return the user id
+     */
+    Integer getUserId();
+
+    /**
+     * Returns the id of the associated TurbineGroup object without
+     * retrieving it.
+     *
+     * @return the group id
+     */
+    Integer getGroupId();
+
+    /**
+     * Returns the id of the associated TurbineRole object without
+     * retrieving it.
+     *
+     * @return the role id
+     */
+    Integer getRoleId();
+
     /**
      * Returns the associated TurbineUser object.
      * If it was not retrieved before, the object is retrieved from
@@ -0,0 +1,192 @@
+package org.apache.fulcrum.security.torque.security;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.fulcrum.security.entity.SecurityEntity;
+import org.apache.torque.Column;
+import org.apache.torque.TorqueException;
+import org.apache.torque.criteria.Criteria;
+
+/**
+ * Loads security entities by their ids with a few IN-list queries instead
+ * of one query per id.
+ *
+ * @version $Id$
+ */
+public final class TorqueBulkSelect
+{
+    /** Maximum number of ids in one IN clause */
+    public static final int CHUNK_SIZE = 500;
+
+    /**
+     * A select method of a generated peer, e.g. <code>TurbineUserPeer::doSelect</code>
+     *
+     * @param <T> the entity type
+     */
+    @FunctionalInterface
+    public interface Select<T>
+    {
+        /**
+         * Select the entities matching the criteria
+         *
+         * @param criteria the criteria
+         * @param con a database connection
+         * @return the list of entities
+         * @throws TorqueException if any database error occurs
+         */
+        List<? extends T> doSelect(Criteria criteria, Connection con) throws TorqueException;
+    }
+
+    private TorqueBulkSelect()
+    {
+        // static methods only
+    }
+
+    /**
+     * Select all rows with one of the given values in a column, e.g. all
+     * relation rows of a list of entities
+     *
+     * @param <T> the row type
+     * @param values the values, may contain duplicates and <code>null</code> values
+     * @param column the column to match
+     * @param select the select method of the peer
+     * @param con a database connection
+     * @return the list of rows
+     * @throws TorqueException if any database error occurs
+     */
+    public static <T> List<T> selectIn(Collection<?> values, Column column, Select<T> select, Connection con)
+        throws TorqueException
+    {
+        Set<Object> distinct = new LinkedHashSet<Object>(values);
+        distinct.remove(null);
+
+        List<T> result = new ArrayList<T>();
+        List<Object> chunk = new ArrayList<Object>(Math.min(distinct.size(), CHUNK_SIZE));
+
+        for (Object value : distinct)
+        {
+            chunk.add(value);
+            if (chunk.size() == CHUNK_SIZE)
+            {
+                selectChunk(chunk, column, select, con, result);
+                chunk.clear();
+            }
+        }
+
+        if (!chunk.isEmpty())
+        {
+            selectChunk(chunk, column, select, con, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Select all entities with the given ids
+     *
+     * @param <T> the entity type
+     * @param ids the ids, may contain duplicates and <code>null</code> values
+     * @param idColumn the primary key column of the entity table
+     * @param select the select method of the peer
+     * @param con a database connection
+     * @return a map of the found entities by their id
+     * @throws TorqueException if any database error occurs
+     */
+    public static <T extends SecurityEntity> Map<Object, T> selectByIds(Collection<?> ids, Column idColumn,
+            Select<T> select, Connection con) throws TorqueException
+    {
+        List<T> entities = selectIn(ids, idColumn, select, con);
+        Map<Object, T> result = new HashMap<Object, T>(entities.size() * 2);
+
+        for (T entity : entities)
+        {
+            result.put(entity.getId(), entity);
+        }
+
+        return result;
+    }
+
+    /**
+     * Select the related entities of a list of owners over a relation table,
+     * e.g. the groups of a list of users, with a few IN-list queries on the
+     * relation table and on the table of the related entities
+     *
+     * @param <R> the relation row type
+     * @param <T> the related entity type
+     * @param owners the owners
+     * @param ownerColumn the column of the relation table referencing the owner
+     * @param relationSelect the select method of the relation peer
+     * @param ownerId the owner id of a relation row
+     * @param relatedId the related id of a relation row
+     * @param relatedIdColumn the primary key column of the related table
+     * @param relatedSelect the select method of the related peer
+     * @param con a database connection
+     * @return the related entities by owner id, owners without relations are missing
+     * @throws TorqueException if any database error occurs
+     */
+    public static <R, T extends SecurityEntity> Map<Object, List<T>> selectRelated(Collection<? extends SecurityEntity> owners,
+            Column ownerColumn, Select<R> relationSelect, Function<? super R, ?> ownerId,
+            Function<? super R, ?> relatedId, Column relatedIdColumn, Select<T> relatedSelect, Connection con)
+        throws TorqueException
+    {
+        List<Object> ownerIds = new ArrayList<Object>(owners.size());
+        for (SecurityEntity owner : owners)
+        {
+            ownerIds.add(owner.getId());
+        }
+
+        List<R> rows = selectIn(ownerIds, ownerColumn, relationSelect, con);
+        List<Object> relatedIds = new ArrayList<Object>(rows.size());
+        for (R row : rows)
+        {
+            relatedIds.add(relatedId.apply(row));
+        }
+
+        Map<Object, T> related = selectByIds(relatedIds, relatedIdColumn, relatedSelect, con);
+        Map<Object, List<T>> result = new HashMap<Object, List<T>>();
+
+        for (R row : rows)
+        {
+            T entity = related.get(relatedId.apply(row));
+            if (entity != null)
+            {
+                result.computeIfAbsent(ownerId.apply(row), k -> new ArrayList<T>()).add(entity);
+            }
+        }
+
+        return result;
+    }
+
+    private static <T> void selectChunk(List<Object> chunk, Column column,
+            Select<T> select, Connection con, List<T> result) throws TorqueException
+    {
+        Criteria criteria = new Criteria();
+        criteria.whereIn(column, chunk);
+        result.addAll(select.doSelect(criteria, con));
+    }
+}
@@ -0,0 +1,148 @@
+package org.apache.fulcrum.security.torque.security.turbine;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
+import org.apache.torque.map.ColumnMap;
+
+/**
+ * The user/group/role relations added to and removed from a user since it
+ * was loaded, so that only the changed rows have to be written.
+ *
+ * @version $Id$
+ */
+public class TurbineUserGroupRoleDelta
+{
+    private final Set<TurbineUserGroupRole> added = new LinkedHashSet<TurbineUserGroupRole>();
+
+    private final Set<TurbineUserGroupRole> removed = new LinkedHashSet<TurbineUserGroupRole>();
+
+    /**
+     * Record a new relation
+     *
+     * @param ugr the user/group/role relation
+     */
+    public void add(TurbineUserGroupRole ugr)
+    {
+        removed.remove(ugr);
+        added.add(ugr);
+    }
+
+    /**
+     * Record a removed relation
+     *
+     * @param ugr the user/group/role relation
+     */
+    public void remove(TurbineUserGroupRole ugr)
+    {
+        if (!added.remove(ugr))
+        {
+            removed.add(ugr);
+        }
+    }
+
+    /**
+     * @return the added relations
+     */
+    public Set<TurbineUserGroupRole> getAdded()
+    {
+        return Collections.unmodifiableSet(added);
+    }
+
+    /**
+     * @return the removed relations
+     */
+    public Set<TurbineUserGroupRole> getRemoved()
+    {
+        return Collections.unmodifiableSet(removed);
+    }
+
+    /**
+     * @return true if nothing changed
+     */
+    public boolean isEmpty()
+    {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * Write the delta to a user/group/role table. The removed and the added
+     * relations are deleted in one batch, so that adding a relation which
+     * already exists in the database does not fail, then the added relations
+     * are inserted in a second batch.
+     *
+     * @param con a database connection
+     * @param tableName the name of the user/group/role table
+     * @param userId the user id column
+     * @param groupId the group id column
+     * @param roleId the role id column
+     * @throws SQLException if any database error occurs
+     */
+    public void apply(Connection con, String tableName, ColumnMap userId, ColumnMap groupId, ColumnMap roleId)
+        throws SQLException
+    {
+        if (isEmpty())
+        {
+            return;
+        }
+
+        String delete = "DELETE FROM " + tableName
+                + " WHERE " + userId.getColumnName() + " = ?"
+                + " AND " + groupId.getColumnName() + " = ?"
+                + " AND " + roleId.getColumnName() + " = ?";
+
+        try (PreparedStatement ps = con.prepareStatement(delete))
+        {
+            addBatch(ps, removed);
+            addBatch(ps, added);
+            ps.executeBatch();
+        }
+
+        if (!added.isEmpty())
+        {
+            String insert = "INSERT INTO " + tableName
+                    + " (" + userId.getColumnName()
+                    + ", " + groupId.getColumnName()
+                    + ", " + roleId.getColumnName() + ") VALUES (?, ?, ?)";
+
+            try (PreparedStatement ps = con.prepareStatement(insert))
+            {
+                addBatch(ps, added);
+                ps.executeBatch();
+            }
+        }
+    }
+
+    private static void addBatch(PreparedStatement ps, Set<TurbineUserGroupRole> ugrs) throws SQLException
+    {
+        for (TurbineUserGroupRole ugr : ugrs)
+        {
+            ps.setInt(1, ((Integer) ugr.getUser().getId()).intValue());
+            ps.setInt(2, ((Integer) ugr.getGroup().getId()).intValue());
+            ps.setInt(3, ((Integer) ugr.getRole().getId()).intValue());
+            ps.addBatch();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.apache.fulcrum.security.torque.security.turbine;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+import java.sql.Connection;
+
+import org.apache.torque.TorqueException;
+
+/**
+ * Implemented by Torque users which can store changes of their
+ * user/group/role relations without rewriting all of them.
+ *
+ * @version $Id$
+ */
+public interface TurbineUserGroupRoleUpdatable
+{
+    /**
+     * Store the changed user/group/role relations and the user itself
+     *
+     * @param con a database connection
+     * @param delta the added and removed relations
+     * @throws TorqueException if any database error occurs
+     */
+    void update(Connection con, TurbineUserGroupRoleDelta delta) throws TorqueException;
+}
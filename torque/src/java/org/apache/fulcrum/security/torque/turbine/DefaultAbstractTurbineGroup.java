@@ -18,15 +18,20 @@ package org.apache.fulcrum.security.torque.turbine;
  * under the License.
  */
 import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineGroup;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
 import org.apache.fulcrum.security.torque.om.TurbineGroupPeer;
 import org.apache.fulcrum.security.torque.om.TurbineUserGroupRolePeer;
+import org.apache.fulcrum.security.torque.om.TurbineUserPeer;
 import org.apache.fulcrum.security.torque.peer.TurbineUserGroupRoleModelPeerMapper;
+import org.apache.fulcrum.security.torque.security.TorqueBulkSelect;
 import org.apache.fulcrum.security.torque.security.turbine.TorqueAbstractTurbineTurbineSecurityEntity;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.torque.TorqueException;
@@ -64,6 +69,27 @@ public abstract class DefaultAbstractTurbineGroup extends TorqueAbstractTurbineT
         return (List<T>) TurbineUserGroupRolePeer.doSelectJoinTurbineRole(criteria, con);
     }
     
+    /**
+     * Load the users of the given relations with a few IN-list queries
+     * instead of one query per relation.
+     *
+     * @param ugrs the User/Group/Role relations
+     * @param con a database connection
+     * @throws TorqueException  if any database error occurs
+     *
+     * @return the users by their id
+     */
+    protected <T extends TurbineUserGroupRoleModelPeerMapper> Map<Object, User> selectUsers(List<T> ugrs, Connection con)
+        throws TorqueException
+    {
+        List<Integer> userIds = new ArrayList<Integer>(ugrs.size());
+        for (T ttugr : ugrs)
+        {
+            userIds.add(ttugr.getUserId());
+        }
+        return TorqueBulkSelect.selectByIds(userIds, TurbineUserPeer.USER_ID, TurbineUserPeer::doSelect, con);
+    }
+
     @Override
     public void retrieveAttachedObjects( Connection con )
         throws DataBackendException
@@ -82,13 +108,14 @@ public abstract class DefaultAbstractTurbineGroup extends TorqueAbstractTurbineT
                 Set<TurbineUserGroupRole> userGroupRoleSet = new HashSet<TurbineUserGroupRole>();
                                
                 List<TurbineUserGroupRoleModelPeerMapper> ugrs = getTurbineUserGroupRolesJoinTurbineRole(new Criteria(), con);
+                Map<Object, User> users = selectUsers(ugrs, con);
         
                 for (TurbineUserGroupRoleModelPeerMapper ttugr : ugrs)
                 {
                     TurbineUserGroupRole ugr = new TurbineUserGroupRole();
                     ugr.setGroup(this);
                     ugr.setRole(ttugr.getTurbineRole());
-                    ugr.setUser(ttugr.getTurbineUser(con));
+                    ugr.setUser(users.get(ttugr.getUserId()));
                     userGroupRoleSet.add(ugr);
                 }
                 setUserGroupRoleSet(userGroupRoleSet);
@@ -18,19 +18,24 @@ package org.apache.fulcrum.security.torque.turbine;
  * under the License.
  */
 import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineRole;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
 import org.apache.fulcrum.security.torque.om.TurbineRolePeer;
 import org.apache.fulcrum.security.torque.om.TurbineRolePermission;
 import org.apache.fulcrum.security.torque.om.TurbineRolePermissionPeer;
 import org.apache.fulcrum.security.torque.om.TurbineUserGroupRolePeer;
+import org.apache.fulcrum.security.torque.om.TurbineUserPeer;
 import org.apache.fulcrum.security.torque.peer.TurbineRolePermissionPeerMapper;
 import org.apache.fulcrum.security.torque.peer.TurbineUserGroupRoleModelPeerMapper;
+import org.apache.fulcrum.security.torque.security.TorqueBulkSelect;
 import org.apache.fulcrum.security.torque.security.turbine.TorqueAbstractTurbineTurbineSecurityEntity;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.PermissionSet;
@@ -91,6 +96,27 @@ public abstract class DefaultAbstractTurbineRole extends TorqueAbstractTurbineTu
         return (List<T>) TurbineUserGroupRolePeer.doSelectJoinTurbineGroup(criteria, con);
     }
 
+    /**
+     * Load the users of the given relations with a few IN-list queries
+     * instead of one query per relation.
+     *
+     * @param ugrs the User/Group/Role relations
+     * @param con a database connection
+     * @throws TorqueException  if any database error occurs
+     *
+     * @return the users by their id
+     */
+    protected <T extends TurbineUserGroupRoleModelPeerMapper> Map<Object, User> selectUsers(List<T> ugrs, Connection con)
+        throws TorqueException
+    {
+        List<Integer> userIds = new ArrayList<Integer>(ugrs.size());
+        for (T ttugr : ugrs)
+        {
+            userIds.add(ttugr.getUserId());
+        }
+        return TorqueBulkSelect.selectByIds(userIds, TurbineUserPeer.USER_ID, TurbineUserPeer::doSelect, con);
+    }
+
     /**
      * @see org.apache.fulcrum.security.model.turbine.entity.TurbineRole#addPermission(org.apache.fulcrum.security.entity.Permission)
      */
@@ -191,13 +217,14 @@ public abstract class DefaultAbstractTurbineRole extends TorqueAbstractTurbineTu
                 Set<TurbineUserGroupRole> userGroupRoleSet = new HashSet<TurbineUserGroupRole>();
         
                 List<TurbineUserGroupRoleModelPeerMapper> ugrs = getTurbineUserGroupRolesJoinTurbineGroup(new Criteria(), con);
+                Map<Object, User> users = selectUsers(ugrs, con);
         
                 for (TurbineUserGroupRoleModelPeerMapper ttugr : ugrs)
                 {
                     TurbineUserGroupRole ugr = new TurbineUserGroupRole();
                     ugr.setRole(this);
                     ugr.setGroup(ttugr.getTurbineGroup());
-                    ugr.setUser(ttugr.getTurbineUser(con));
+                    ugr.setUser(users.get(ttugr.getUserId()));
                     userGroupRoleSet.add(ugr);
                 }
         
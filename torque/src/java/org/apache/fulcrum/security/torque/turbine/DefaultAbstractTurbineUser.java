@@ -29,6 +29,8 @@ import org.apache.fulcrum.security.torque.om.TurbineUserGroupRolePeer;
 import org.apache.fulcrum.security.torque.om.TurbineUserPeer;
 import org.apache.fulcrum.security.torque.peer.TurbineUserGroupRoleModelPeerMapper;
 import org.apache.fulcrum.security.torque.security.turbine.TorqueAbstractTurbineTurbineSecurityEntityDefault;
+import org.apache.fulcrum.security.torque.security.turbine.TurbineUserGroupRoleDelta;
+import org.apache.fulcrum.security.torque.security.turbine.TurbineUserGroupRoleUpdatable;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.torque.TorqueException;
 import org.apache.torque.criteria.Criteria;
@@ -43,6 +45,7 @@ import org.apache.torque.om.SimpleKey;
  * @version $Id:$
  */
 public abstract class DefaultAbstractTurbineUser extends TorqueAbstractTurbineTurbineSecurityEntityDefault
+    implements TurbineUserGroupRoleUpdatable
 {
     /** Serial version */
 	private static final long serialVersionUID = -7255623655281852566L;
@@ -159,6 +162,26 @@ public abstract class DefaultAbstractTurbineUser extends TorqueAbstractTurbineTu
         }
     }
 
+    /**
+     * Store only the changed user/group/role relations
+     *
+     * @see org.apache.fulcrum.security.torque.security.turbine.TurbineUserGroupRoleUpdatable#update(java.sql.Connection, org.apache.fulcrum.security.torque.security.turbine.TurbineUserGroupRoleDelta)
+     */
+    @Override
+    public void update(Connection con, TurbineUserGroupRoleDelta delta) throws TorqueException
+    {
+        try
+        {
+            delta.apply(con, TurbineUserGroupRolePeer.TABLE_NAME, TurbineUserGroupRolePeer.USER_ID,
+                    TurbineUserGroupRolePeer.GROUP_ID, TurbineUserGroupRolePeer.ROLE_ID);
+            save(con);
+        }
+        catch (Exception e)
+        {
+            throw new TorqueException(e);
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.apache.fulcrum.security.torque.security.TorqueAbstractSecurityEntity#delete()
      */
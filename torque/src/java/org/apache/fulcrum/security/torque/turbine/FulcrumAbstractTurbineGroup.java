@@ -18,15 +18,20 @@ package org.apache.fulcrum.security.torque.turbine;
  * under the License.
  */
 import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.apache.fulcrum.security.entity.User;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineGroup;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
 import org.apache.fulcrum.security.torque.om.TorqueTurbineGroupPeer;
 import org.apache.fulcrum.security.torque.om.TorqueTurbineUserGroupRole;
 import org.apache.fulcrum.security.torque.om.TorqueTurbineUserGroupRolePeer;
+import org.apache.fulcrum.security.torque.om.TorqueTurbineUserPeer;
+import org.apache.fulcrum.security.torque.security.TorqueBulkSelect;
 import org.apache.fulcrum.security.torque.security.turbine.TorqueAbstractTurbineTurbineSecurityEntity;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.torque.TorqueException;
@@ -64,6 +69,27 @@ public abstract class FulcrumAbstractTurbineGroup extends TorqueAbstractTurbineT
         return TorqueTurbineUserGroupRolePeer.doSelectJoinTorqueTurbineRole(criteria, con);
     }
     
+    /**
+     * Load the users of the given relations with a few IN-list queries
+     * instead of one query per relation.
+     *
+     * @param ugrs the User/Group/Role relations
+     * @param con a database connection
+     * @throws TorqueException  if any database error occurs
+     *
+     * @return the users by their id
+     */
+    protected Map<Object, User> selectTorqueTurbineUsers(List<TorqueTurbineUserGroupRole> ugrs, Connection con)
+        throws TorqueException
+    {
+        List<Integer> userIds = new ArrayList<Integer>(ugrs.size());
+        for (TorqueTurbineUserGroupRole ttugr : ugrs)
+        {
+            userIds.add(ttugr.getUserId());
+        }
+        return TorqueBulkSelect.selectByIds(userIds, TorqueTurbineUserPeer.USER_ID, TorqueTurbineUserPeer::doSelect, con);
+    }
+
     @Override
     public void retrieveAttachedObjects( Connection con )
         throws DataBackendException
@@ -81,13 +107,14 @@ public abstract class FulcrumAbstractTurbineGroup extends TorqueAbstractTurbineT
             if (!lazy) {
                 Set<TurbineUserGroupRole> userGroupRoleSet = new HashSet<TurbineUserGroupRole>();
                 List<TorqueTurbineUserGroupRole> ugrs = getTorqueTurbineUserGroupRolesJoinTorqueTurbineRole(new Criteria(), con);
+                Map<Object, User> users = selectTorqueTurbineUsers(ugrs, con);
         
                 for (TorqueTurbineUserGroupRole ttugr : ugrs)
                 {
                     TurbineUserGroupRole ugr = new TurbineUserGroupRole();
                     ugr.setGroup(this);
                     ugr.setRole(ttugr.getTorqueTurbineRole());
-                    ugr.setUser(ttugr.getTorqueTurbineUser(con));
+                    ugr.setUser(users.get(ttugr.getUserId()));
                     userGroupRoleSet.add(ugr);
                 }
         
@@ -29,6 +29,8 @@ import org.apache.fulcrum.security.torque.om.TorqueTurbineUserGroupRole;
 import org.apache.fulcrum.security.torque.om.TorqueTurbineUserGroupRolePeer;
 import org.apache.fulcrum.security.torque.om.TorqueTurbineUserPeer;
 import org.apache.fulcrum.security.torque.security.turbine.TorqueAbstractTurbineTurbineSecurityEntity;
+import org.apache.fulcrum.security.torque.security.turbine.TurbineUserGroupRoleDelta;
+import org.apache.fulcrum.security.torque.security.turbine.TurbineUserGroupRoleUpdatable;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.torque.TorqueException;
 import org.apache.torque.criteria.Criteria;
@@ -42,6 +44,7 @@ import org.apache.torque.om.SimpleKey;
  * @version $Id:$
  */
 public abstract class FulcrumAbstractTurbineUser extends TorqueAbstractTurbineTurbineSecurityEntity
+    implements TurbineUserGroupRoleUpdatable
 {
     /** Serial version */
 	private static final long serialVersionUID = -7255623655281852566L;
@@ -136,6 +139,26 @@ public abstract class FulcrumAbstractTurbineUser extends TorqueAbstractTurbineTu
     }
 
     
+    /**
+     * Store only the changed user/group/role relations
+     *
+     * @see org.apache.fulcrum.security.torque.security.turbine.TurbineUserGroupRoleUpdatable#update(java.sql.Connection, org.apache.fulcrum.security.torque.security.turbine.TurbineUserGroupRoleDelta)
+     */
+    @Override
+    public void update(Connection con, TurbineUserGroupRoleDelta delta) throws TorqueException
+    {
+        try
+        {
+            delta.apply(con, TorqueTurbineUserGroupRolePeer.TABLE_NAME, TorqueTurbineUserGroupRolePeer.USER_ID,
+                    TorqueTurbineUserGroupRolePeer.GROUP_ID, TorqueTurbineUserGroupRolePeer.ROLE_ID);
+            save(con);
+        }
+        catch (Exception e)
+        {
+            throw new TorqueException(e);
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.apache.fulcrum.security.torque.security.TorqueAbstractSecurityEntity#delete()
      */
@@ -29,6 +29,7 @@ import org.apache.fulcrum.security.torque.peer.TorqueTurbinePeer;
 import org.apache.fulcrum.security.torque.peer.managers.PeerGroupManager;
 import org.apache.fulcrum.security.torque.security.TorqueAbstractSecurityEntity;
 import org.apache.fulcrum.security.util.DataBackendException;
+import org.apache.torque.Column;
 import org.apache.torque.NoRowsException;
 import org.apache.torque.TooManyRowsException;
 import org.apache.torque.TorqueException;
@@ -73,6 +74,27 @@ public class TorqueTurbineGroupManagerImpl extends PeerGroupManager
 
     }
 
+    /**
+     * Retrieve the attached objects of all groups at once, if they are
+     * instances of the Turbine Torque classes.
+     *
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractGroupManager#retrieveAttachedObjects(java.util.List, java.sql.Connection, java.lang.Boolean)
+     */
+    @Override
+    protected <T extends Group> void retrieveAttachedObjects(List<T> groups, Connection con, Boolean lazy)
+        throws DataBackendException, TorqueException
+    {
+        TurbineBulkRetriever retriever = TurbineBulkRetriever.getInstance(groups);
+        if (retriever != null)
+        {
+            retriever.retrieveGroupAttachedObjects(groups, con, lazy);
+        }
+        else
+        {
+            super.retrieveAttachedObjects(groups, con, lazy);
+        }
+    }
+
     /**
      * @see org.apache.fulcrum.security.torque.TorqueAbstractGroupManager#doSelectById(java.lang.Integer, java.sql.Connection)
      */
@@ -96,6 +118,26 @@ public class TorqueTurbineGroupManagerImpl extends PeerGroupManager
 
     }
 
+    /**
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractGroupManager#getNameColumn()
+     */
+    @Override
+    protected Column getNameColumn() throws TorqueException
+    {
+        if ( (getCustomPeer())) {
+            try
+            {
+                return ((TorqueTurbinePeer<?>) getPeerInstance()).getTableMap().getColumn( getColumnName() );
+            }
+            catch ( DataBackendException e )
+            {
+                throw new TorqueException( e );
+            }
+        } else {
+            return TorqueTurbineGroupPeer.GROUP_NAME;
+        }
+    }
+
     /**
      * @see org.apache.fulcrum.security.torque.TorqueAbstractGroupManager#doSelectByName(java.lang.String, java.sql.Connection)
      */
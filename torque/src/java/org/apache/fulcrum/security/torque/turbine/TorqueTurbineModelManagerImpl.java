@@ -18,6 +18,13 @@ package org.apache.fulcrum.security.torque.turbine;
  * under the License.
  */
 import java.sql.Connection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.Permission;
@@ -31,11 +38,22 @@ import org.apache.fulcrum.security.model.turbine.entity.TurbineRole;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineUser;
 import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
 import org.apache.fulcrum.security.torque.LazyLoadable;
+import org.apache.fulcrum.security.torque.om.TorqueTurbineGroupHierarchy;
+import org.apache.fulcrum.security.torque.om.TorqueTurbineGroupHierarchyPeer;
+import org.apache.fulcrum.security.torque.om.TorqueTurbineRoleHierarchy;
+import org.apache.fulcrum.security.torque.om.TorqueTurbineRoleHierarchyPeer;
+import org.apache.fulcrum.security.torque.om.TurbineGroupHierarchy;
+import org.apache.fulcrum.security.torque.om.TurbineGroupHierarchyPeer;
+import org.apache.fulcrum.security.torque.om.TurbineRoleHierarchy;
+import org.apache.fulcrum.security.torque.om.TurbineRoleHierarchyPeer;
 import org.apache.fulcrum.security.torque.om.TurbineRolePermissionPeer;
 import org.apache.fulcrum.security.torque.security.TorqueAbstractSecurityEntity;
 import org.apache.fulcrum.security.torque.security.turbine.TorqueAbstractTurbineTurbineSecurityEntity;
+import org.apache.fulcrum.security.torque.security.turbine.TurbineUserGroupRoleDelta;
+import org.apache.fulcrum.security.torque.security.turbine.TurbineUserGroupRoleUpdatable;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.fulcrum.security.util.UserSet;
 import org.apache.torque.TorqueException;
 import org.apache.torque.criteria.Criteria;
 import org.apache.torque.util.Transaction;
@@ -99,6 +117,8 @@ public class TorqueTurbineModelManagerImpl extends AbstractTurbineModelManager i
                 }
             }
 
+            invalidateACLs(role);
+            rolePermissionsChanged(role);
             return;
         }
 
@@ -149,6 +169,8 @@ public class TorqueTurbineModelManagerImpl extends AbstractTurbineModelManager i
                 throw new DataBackendException("revoke('" + role.getName() + "', '" + permission.getName() + "') failed", e);
             }
 
+            invalidateACLs(role);
+            rolePermissionsChanged(role);
             return;
         }
 
@@ -188,7 +210,301 @@ public class TorqueTurbineModelManagerImpl extends AbstractTurbineModelManager i
         }
     }
 
-    private void addUserGroupRole( User user, Role role, Group group )
+    /**
+     * Selects the user ids from the user/group/role table with one query.
+     */
+    @Override
+    public Stream<Object> getUserIds(Group group, Role role) throws DataBackendException
+    {
+        TurbineBulkRetriever retriever = TurbineBulkRetriever.getInstance(Collections.singletonList(group));
+        if (retriever == null)
+        {
+            return super.getUserIds(group, role);
+        }
+
+        Connection con = null;
+
+        try
+        {
+            con = Transaction.begin();
+            List<Integer> ids = retriever.selectUserIdsWithRole(group.getId(), role.getId(), con);
+            Transaction.commit(con);
+            con = null;
+            return Collections.<Object>unmodifiableList(ids).stream();
+        }
+        catch (TorqueException e)
+        {
+            throw new DataBackendException("getUserIds('" + group.getName() + "', '" + role.getName() + "') failed", e);
+        }
+        finally
+        {
+            if (con != null)
+            {
+                Transaction.safeRollback(con);
+            }
+        }
+    }
+
+    /**
+     * Selects the user ids with one query joining the user/group/role and
+     * the role/permission table. The group and its ancestors are taken from
+     * the group hierarchy, roles inheriting the permission from the role
+     * hierarchy, both are added to the query as IN lists.
+     */
+    @Override
+    public Stream<Object> getUserIds(Group group, Permission permission) throws DataBackendException
+    {
+        TurbineBulkRetriever retriever = TurbineBulkRetriever.getInstance(Collections.singletonList(group));
+        if (retriever == null)
+        {
+            return super.getUserIds(group, permission);
+        }
+
+        Connection con = null;
+
+        try
+        {
+            con = Transaction.begin();
+            List<Integer> ids = retriever.selectUserIdsWithPermission(getGroupIdsWithAncestors(group), permission.getId(),
+                    getRoleHierarchy().getInheritingRoles(permission.getId()), con);
+            Transaction.commit(con);
+            con = null;
+            return Collections.<Object>unmodifiableList(ids).stream();
+        }
+        catch (TorqueException e)
+        {
+            throw new DataBackendException("getUserIds('" + group.getName() + "', '" + permission.getName() + "') failed", e);
+        }
+        finally
+        {
+            if (con != null)
+            {
+                Transaction.safeRollback(con);
+            }
+        }
+    }
+
+    /**
+     * Selects the users with one query, the user ids are a sub-select.
+     */
+    @Override
+    public <T extends User> UserSet<T> getUsers(Group group, Role role) throws DataBackendException
+    {
+        TurbineBulkRetriever retriever = TurbineBulkRetriever.getInstance(Collections.singletonList(group));
+        if (retriever == null)
+        {
+            return super.getUsers(group, role);
+        }
+
+        return getUserManager().retrieveUserList(retriever.usersWithRole(group.getId(), role.getId()));
+    }
+
+    /**
+     * Selects the users with one query, the user ids are a sub-select
+     * joining the user/group/role and the role/permission table for the
+     * group and its ancestors.
+     */
+    @Override
+    public <T extends User> UserSet<T> getUsers(Group group, Permission permission) throws DataBackendException
+    {
+        TurbineBulkRetriever retriever = TurbineBulkRetriever.getInstance(Collections.singletonList(group));
+        if (retriever == null)
+        {
+            return super.getUsers(group, permission);
+        }
+
+        return getUserManager().retrieveUserList(retriever.usersWithPermission(getGroupIdsWithAncestors(group), permission.getId(),
+                getRoleHierarchy().getInheritingRoles(permission.getId())));
+    }
+
+    /**
+     * Reads the role hierarchy table of the schema of the configured role
+     * class.
+     */
+    @Override
+    protected Map<Object, Set<Object>> loadParentRoles() throws DataBackendException
+    {
+        Map<Object, Set<Object>> parents = new HashMap<Object, Set<Object>>();
+
+        try
+        {
+            if (isFulcrumSchema())
+            {
+                for (TorqueTurbineRoleHierarchy edge : TorqueTurbineRoleHierarchyPeer.doSelect(new Criteria()))
+                {
+                    parents.computeIfAbsent(edge.getRoleId(), k -> new HashSet<Object>()).add(edge.getParentRoleId());
+                }
+            }
+            else
+            {
+                for (TurbineRoleHierarchy edge : TurbineRoleHierarchyPeer.doSelect(new Criteria()))
+                {
+                    parents.computeIfAbsent(edge.getRoleId(), k -> new HashSet<Object>()).add(edge.getParentRoleId());
+                }
+            }
+        }
+        catch (TorqueException e)
+        {
+            throw new DataBackendException("Loading the role hierarchy failed", e);
+        }
+
+        return parents;
+    }
+
+    /**
+     * Inserts or deletes a row of the role hierarchy table of the schema of
+     * the configured role class.
+     */
+    @Override
+    protected void saveParentRole(Role role, Role parent, boolean add) throws DataBackendException
+    {
+        try
+        {
+            if (isFulcrumSchema())
+            {
+                if (add)
+                {
+                    TorqueTurbineRoleHierarchy edge = new TorqueTurbineRoleHierarchy();
+                    edge.setRoleId((Integer) role.getId());
+                    edge.setParentRoleId((Integer) parent.getId());
+                    edge.save();
+                }
+                else
+                {
+                    Criteria criteria = new Criteria();
+                    criteria.where(TorqueTurbineRoleHierarchyPeer.ROLE_ID, role.getId());
+                    criteria.where(TorqueTurbineRoleHierarchyPeer.PARENT_ROLE_ID, parent.getId());
+                    TorqueTurbineRoleHierarchyPeer.doDelete(criteria);
+                }
+            }
+            else
+            {
+                if (add)
+                {
+                    TurbineRoleHierarchy edge = new TurbineRoleHierarchy();
+                    edge.setRoleId((Integer) role.getId());
+                    edge.setParentRoleId((Integer) parent.getId());
+                    edge.save();
+                }
+                else
+                {
+                    Criteria criteria = new Criteria();
+                    criteria.where(TurbineRoleHierarchyPeer.ROLE_ID, role.getId());
+                    criteria.where(TurbineRoleHierarchyPeer.PARENT_ROLE_ID, parent.getId());
+                    TurbineRoleHierarchyPeer.doDelete(criteria);
+                }
+            }
+        }
+        catch (TorqueException e)
+        {
+            throw new DataBackendException((add ? "addParentRole('" : "removeParentRole('")
+                    + role.getName() + "', '" + parent.getName() + "') failed", e);
+        }
+    }
+
+    /**
+     * Reads the group hierarchy table of the schema of the configured role
+     * class.
+     */
+    @Override
+    protected Map<Object, Object> loadParentGroups() throws DataBackendException
+    {
+        Map<Object, Object> parents = new HashMap<Object, Object>();
+
+        try
+        {
+            if (isFulcrumSchema())
+            {
+                for (TorqueTurbineGroupHierarchy edge : TorqueTurbineGroupHierarchyPeer.doSelect(new Criteria()))
+                {
+                    parents.put(edge.getGroupId(), edge.getParentGroupId());
+                }
+            }
+            else
+            {
+                for (TurbineGroupHierarchy edge : TurbineGroupHierarchyPeer.doSelect(new Criteria()))
+                {
+                    parents.put(edge.getGroupId(), edge.getParentGroupId());
+                }
+            }
+        }
+        catch (TorqueException e)
+        {
+            throw new DataBackendException("Loading the group hierarchy failed", e);
+        }
+
+        return parents;
+    }
+
+    /**
+     * Replaces the row of the group in the group hierarchy table of the
+     * schema of the configured role class.
+     */
+    @Override
+    protected void saveParentGroup(Group group, Group parent) throws DataBackendException
+    {
+        Connection con = null;
+
+        try
+        {
+            con = Transaction.begin();
+
+            if (isFulcrumSchema())
+            {
+                Criteria criteria = new Criteria();
+                criteria.where(TorqueTurbineGroupHierarchyPeer.GROUP_ID, group.getId());
+                TorqueTurbineGroupHierarchyPeer.doDelete(criteria, con);
+
+                if (parent != null)
+                {
+                    TorqueTurbineGroupHierarchy edge = new TorqueTurbineGroupHierarchy();
+                    edge.setGroupId((Integer) group.getId());
+                    edge.setParentGroupId((Integer) parent.getId());
+                    edge.save(con);
+                }
+            }
+            else
+            {
+                Criteria criteria = new Criteria();
+                criteria.where(TurbineGroupHierarchyPeer.GROUP_ID, group.getId());
+                TurbineGroupHierarchyPeer.doDelete(criteria, con);
+
+                if (parent != null)
+                {
+                    TurbineGroupHierarchy edge = new TurbineGroupHierarchy();
+                    edge.setGroupId((Integer) group.getId());
+                    edge.setParentGroupId((Integer) parent.getId());
+                    edge.save(con);
+                }
+            }
+
+            Transaction.commit(con);
+            con = null;
+        }
+        catch (TorqueException e)
+        {
+            throw new DataBackendException("setParentGroup('" + group.getName() + "', '"
+                    + (parent == null ? null : parent.getName()) + "') failed", e);
+        }
+        finally
+        {
+            if (con != null)
+            {
+                Transaction.safeRollback(con);
+            }
+        }
+    }
+
+    /**
+     * @return true if the role manager uses the fulcrum-turbine-schema classes
+     * @throws DataBackendException if the role class cannot be instantiated
+     */
+    private boolean isFulcrumSchema() throws DataBackendException
+    {
+        return getRoleManager().getRoleInstance() instanceof FulcrumAbstractTurbineRole;
+    }
+
+    private void addUserGroupRole( User user, Role role, Group group, TurbineUserGroupRoleDelta delta )
         throws DataBackendException
     {
         TurbineUserGroupRole new_user_group_role = new TurbineUserGroupRole();
@@ -196,6 +512,7 @@ public class TorqueTurbineModelManagerImpl extends AbstractTurbineModelManager i
         new_user_group_role.setGroup(group);
         new_user_group_role.setRole(role);
         ((TurbineUser) user).addUserGroupRole(new_user_group_role);
+        delta.add(new_user_group_role);
         
         if (group instanceof TurbineGroup ) {
             if (getGroupManager() instanceof LazyLoadable) {
@@ -215,7 +532,7 @@ public class TorqueTurbineModelManagerImpl extends AbstractTurbineModelManager i
         }
     }
 
-    private void removeUserGroupRole( User user, Role role, Group group )
+    private void removeUserGroupRole( User user, Role role, Group group, TurbineUserGroupRoleDelta delta )
         throws DataBackendException, UnknownEntityException
     {
         boolean ugrFound = false;
@@ -227,6 +544,7 @@ public class TorqueTurbineModelManagerImpl extends AbstractTurbineModelManager i
             {
                 ugrFound = true;
                 ((TurbineUser)user).removeUserGroupRole(user_group_role);
+                delta.remove(user_group_role);
                 if (group instanceof TurbineGroup ) {
                     if (getGroupManager() instanceof LazyLoadable) {
                         ((TorqueAbstractTurbineTurbineSecurityEntity) group).removeUserGroupRole(user_group_role, 
@@ -314,14 +632,15 @@ public class TorqueTurbineModelManagerImpl extends AbstractTurbineModelManager i
                             + user.getName() + "', '"
                             + group.getName() + "', '"
                             + role.getName() + "')";
+            TurbineUserGroupRoleDelta delta = new TurbineUserGroupRoleDelta();
             switch (privilege) {
                 case GRANT:
-                    addUserGroupRole( user, role, group );break;
+                    addUserGroupRole( user, role, group, delta );break;
                 case REVOKE:
-                    removeUserGroupRole( user, role, group );break;
+                    removeUserGroupRole( user, role, group, delta );break;
                 case REPLACE_ROLE:
-                    addUserGroupRole( user, newRole, group );
-                    removeUserGroupRole( user, role, group );
+                    addUserGroupRole( user, newRole, group, delta );
+                    removeUserGroupRole( user, role, group, delta );
                     // the user's user-group-role set is updated, i.e. the old one is removed and the new one added -
                     // no need to do an additional delete in the database
                     logChars = Privilege.REPLACE_ROLE.toString()+"('"
@@ -330,7 +649,8 @@ public class TorqueTurbineModelManagerImpl extends AbstractTurbineModelManager i
                                     + newRole.getName() + "')";
                     break; 
             }
-            syncPrivilegeWithDatabase( user, logChars );
+            syncPrivilegeWithDatabase( user, delta, logChars );
+            invalidateACLs( user );
     }
     
     private void handlePrivileges( Privilege privilege, User user, Group group, Role role )
@@ -339,7 +659,7 @@ public class TorqueTurbineModelManagerImpl extends AbstractTurbineModelManager i
         handlePrivileges( privilege, user, group, role, null );    
     }
 
-    private void syncPrivilegeWithDatabase( User user, String logChars)
+    private void syncPrivilegeWithDatabase( User user, TurbineUserGroupRoleDelta delta, String logChars)
         throws DataBackendException
     {
         Connection con = null;
@@ -347,11 +667,16 @@ public class TorqueTurbineModelManagerImpl extends AbstractTurbineModelManager i
         try
         {
             con = Transaction.begin();
-            // save only the new user group may be the better contract, but this would 
-            //  require/add a dependency to initTurbineUserGroupRoles()
-            //((TorqueAbstractSecurityEntity)user).save( con );
-            // update only user
-            ((TorqueAbstractSecurityEntity)user).update(con);
+            if (user instanceof TurbineUserGroupRoleUpdatable)
+            {
+                // write only the added and removed user group roles
+                ((TurbineUserGroupRoleUpdatable)user).update(con, delta);
+            }
+            else
+            {
+                // rewrite all user group roles of the user
+                ((TorqueAbstractSecurityEntity)user).update(con);
+            }
             //((TorqueAbstractSecurityEntity)group).update(con);
             //((TorqueAbstractSecurityEntity)role).update(con);
             Transaction.commit(con);
@@ -25,6 +25,7 @@ import org.apache.fulcrum.security.torque.om.TorqueTurbinePermissionPeer;
 import org.apache.fulcrum.security.torque.peer.TorqueTurbinePeer;
 import org.apache.fulcrum.security.torque.peer.managers.PeerPermissionManager;
 import org.apache.fulcrum.security.util.DataBackendException;
+import org.apache.torque.Column;
 import org.apache.torque.NoRowsException;
 import org.apache.torque.TooManyRowsException;
 import org.apache.torque.TorqueException;
@@ -68,6 +69,27 @@ public class TorqueTurbinePermissionManagerImpl extends PeerPermissionManager
        
     }
 
+    /**
+     * Retrieve the attached objects of all permissions at once, if they are
+     * instances of the Turbine Torque classes.
+     *
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractPermissionManager#retrieveAttachedObjects(java.util.List, java.sql.Connection, java.lang.Boolean)
+     */
+    @Override
+    protected <T extends Permission> void retrieveAttachedObjects(List<T> permissions, Connection con, Boolean lazy)
+        throws DataBackendException, TorqueException
+    {
+        TurbineBulkRetriever retriever = TurbineBulkRetriever.getInstance(permissions);
+        if (retriever != null)
+        {
+            retriever.retrievePermissionAttachedObjects(permissions, con);
+        }
+        else
+        {
+            super.retrieveAttachedObjects(permissions, con, lazy);
+        }
+    }
+
     /**
      * @see org.apache.fulcrum.security.torque.TorqueAbstractPermissionManager#doSelectById(java.lang.Integer, java.sql.Connection)
      */
@@ -90,6 +112,26 @@ public class TorqueTurbinePermissionManagerImpl extends PeerPermissionManager
         } 
     }
 
+    /**
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractPermissionManager#getNameColumn()
+     */
+    @Override
+    protected Column getNameColumn() throws TorqueException
+    {
+        if ( (getCustomPeer())) {
+            try
+            {
+                return ((TorqueTurbinePeer<?>) getPeerInstance()).getTableMap().getColumn( getColumnName() );
+            }
+            catch ( DataBackendException e )
+            {
+                throw new TorqueException( e );
+            }
+        } else {
+            return TorqueTurbinePermissionPeer.PERMISSION_NAME;
+        }
+    }
+
     /**
      * @see org.apache.fulcrum.security.torque.TorqueAbstractPermissionManager#doSelectByName(java.lang.String, java.sql.Connection)
      */
@@ -18,17 +18,21 @@ package org.apache.fulcrum.security.torque.turbine;
  * under the License.
  */
 import java.sql.Connection;
+import java.util.Collections;
 import java.util.List;
 
+import org.apache.fulcrum.security.entity.Permission;
 import org.apache.fulcrum.security.entity.Role;
 import org.apache.fulcrum.security.torque.om.TorqueTurbineRolePeer;
 import org.apache.fulcrum.security.torque.peer.TorqueTurbinePeer;
 import org.apache.fulcrum.security.torque.peer.managers.PeerRoleManager;
 import org.apache.fulcrum.security.util.DataBackendException;
+import org.apache.torque.Column;
 import org.apache.torque.NoRowsException;
 import org.apache.torque.TooManyRowsException;
 import org.apache.torque.TorqueException;
 import org.apache.torque.criteria.Criteria;
+import org.apache.torque.util.Transaction;
 /**
  * This implementation persists to a database via Torque.
  *
@@ -66,6 +70,69 @@ public class TorqueTurbineRoleManagerImpl extends PeerRoleManager
         }
     }
 
+    /**
+     * Retrieve the attached objects of all roles at once, if they are
+     * instances of the Turbine Torque classes.
+     *
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractRoleManager#retrieveAttachedObjects(java.util.List, java.sql.Connection, java.lang.Boolean)
+     */
+    @Override
+    protected <T extends Role> void retrieveAttachedObjects(List<T> roles, Connection con, Boolean lazy)
+        throws DataBackendException, TorqueException
+    {
+        TurbineBulkRetriever retriever = TurbineBulkRetriever.getInstance(roles);
+        if (retriever != null)
+        {
+            retriever.retrieveRoleAttachedObjects(roles, con, lazy);
+        }
+        else
+        {
+            super.retrieveAttachedObjects(roles, con, lazy);
+        }
+    }
+
+    /**
+     * Count the roles with a COUNT query on the role/permission table, if
+     * the permission is an instance of the Turbine Torque classes.
+     *
+     * @see org.apache.fulcrum.security.RoleManager#countRolesWithPermission(org.apache.fulcrum.security.entity.Permission)
+     */
+    @Override
+    public int countRolesWithPermission(Permission permission) throws DataBackendException
+    {
+        TurbineBulkRetriever retriever = TurbineBulkRetriever.getInstance(Collections.singletonList(permission));
+        if (retriever == null)
+        {
+            return super.countRolesWithPermission(permission);
+        }
+
+        int count;
+        Connection con = null;
+
+        try
+        {
+            con = Transaction.begin();
+
+            count = retriever.countRolesWithPermission(permission.getId(), con);
+
+            Transaction.commit(con);
+            con = null;
+        }
+        catch (TorqueException e)
+        {
+            throw new DataBackendException("Error counting the roles of permission '" + permission.getName() + "'", e);
+        }
+        finally
+        {
+            if (con != null)
+            {
+                Transaction.safeRollback(con);
+            }
+        }
+
+        return count;
+    }
+
     /**
      * @see org.apache.fulcrum.security.torque.TorqueAbstractRoleManager#doSelectById(java.lang.Integer, java.sql.Connection)
      */
@@ -89,6 +156,26 @@ public class TorqueTurbineRoleManagerImpl extends PeerRoleManager
         }
     }
 
+    /**
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractRoleManager#getNameColumn()
+     */
+    @Override
+    protected Column getNameColumn() throws TorqueException
+    {
+        if ( (getCustomPeer())) {
+            try
+            {
+                return ((TorqueTurbinePeer<?>) getPeerInstance()).getTableMap().getColumn( getColumnName() );
+            }
+            catch ( DataBackendException e )
+            {
+                throw new TorqueException( e );
+            }
+        } else {
+            return TorqueTurbineRolePeer.ROLE_NAME;
+        }
+    }
+
     /**
      * @see org.apache.fulcrum.security.torque.TorqueAbstractRoleManager#doSelectByName(java.lang.String, java.sql.Connection)
      */
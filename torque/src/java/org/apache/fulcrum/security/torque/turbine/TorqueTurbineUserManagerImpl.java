@@ -18,6 +18,7 @@ package org.apache.fulcrum.security.torque.turbine;
  * under the License.
  */
 import java.sql.Connection;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.fulcrum.security.entity.User;
@@ -31,7 +32,9 @@ import org.apache.fulcrum.security.torque.security.TorqueAbstractSecurityEntity;
 import org.apache.fulcrum.security.torque.security.turbine.TorqueAbstractTurbineTurbineSecurityEntityDefault;
 import org.apache.fulcrum.security.util.DataBackendException;
 import org.apache.fulcrum.security.util.UnknownEntityException;
+import org.apache.fulcrum.security.util.UserQuery;
 import org.apache.fulcrum.security.util.UserSet;
+import org.apache.torque.Column;
 import org.apache.torque.NoRowsException;
 import org.apache.torque.TooManyRowsException;
 import org.apache.torque.TorqueException;
@@ -116,6 +119,76 @@ public class TorqueTurbineUserManagerImpl extends PeerUserManager implements Tur
         }
     }
 
+    /**
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractUserManager#getNameColumn()
+     */
+    @Override
+    protected Column getNameColumn() throws TorqueException
+    {
+        if ( (getCustomPeer())) {
+            try
+            {
+                return ((TorqueTurbinePeer<?>) getPeerInstance()).getTableMap().getColumn( getColumnName() );
+            }
+            catch ( DataBackendException e )
+            {
+                throw new TorqueException( e );
+            }
+        } else {
+            return TorqueTurbineUserPeer.LOGIN_NAME;
+        }
+    }
+
+    /**
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractUserManager#getEmailColumn()
+     */
+    @Override
+    protected Column getEmailColumn()
+    {
+        return getCustomPeer() ? null : TorqueTurbineUserPeer.EMAIL;
+    }
+
+    /**
+     * Selects the users with a sub-select on the user/group/role table of
+     * the schema of the group class.
+     *
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractUserManager#addGroupCondition(org.apache.torque.criteria.Criteria, org.apache.fulcrum.security.util.UserQuery)
+     */
+    @Override
+    protected boolean addGroupCondition(Criteria criteria, UserQuery query)
+    {
+        TurbineBulkRetriever retriever = TurbineBulkRetriever.getInstance(Collections.singletonList(query.getGroup()));
+        if (retriever == null)
+        {
+            return false;
+        }
+
+        retriever.whereMember(criteria, query.getGroup().getId(),
+                (query.getRole() == null) ? null : query.getRole().getId());
+        return true;
+    }
+
+    /**
+     * Retrieve the attached objects of all users at once, if they are
+     * instances of the Turbine Torque classes.
+     *
+     * @see org.apache.fulcrum.security.torque.TorqueAbstractUserManager#retrieveAttachedObjects(java.util.List, java.sql.Connection, java.lang.Boolean)
+     */
+    @Override
+    protected <T extends User> void retrieveAttachedObjects(List<T> users, Connection con, Boolean lazy)
+        throws DataBackendException, TorqueException
+    {
+        TurbineBulkRetriever retriever = TurbineBulkRetriever.getInstance(users);
+        if (retriever != null)
+        {
+            retriever.retrieveUserAttachedObjects(users, con);
+        }
+        else
+        {
+            super.retrieveAttachedObjects(users, con, lazy);
+        }
+    }
+
     /**
      * @see org.apache.fulcrum.security.torque.TorqueAbstractUserManager#doSelectById(java.lang.Integer, java.sql.Connection)
      */
@@ -253,13 +326,19 @@ public class TorqueTurbineUserManagerImpl extends PeerUserManager implements Tur
     
             List<User> users = doSelectUsers(con, criteria);
     
-            for (User user : users)
+            if (getCustomPeer())
             {
-                // Add attached objects if they exist
-                attachRelatedObjects( user, con ); 
-    
-                userSet.add(user);
+                for (User user : users)
+                {
+                    // Add attached objects if they exist
+                    attachRelatedObjects( user, con ); 
+                }
+            }
+            else
+            {
+                retrieveAttachedObjects( users, con, false );
             }
+            userSet.add(users);
     
             Transaction.commit(con);
             con = null;
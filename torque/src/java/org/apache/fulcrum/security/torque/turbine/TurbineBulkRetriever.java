@@ -0,0 +1,568 @@
+package org.apache.fulcrum.security.torque.turbine;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.entity.SecurityEntity;
+import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineGroup;
+import org.apache.fulcrum.security.model.turbine.entity.TurbinePermission;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineRole;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineUser;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
+import org.apache.fulcrum.security.torque.om.TorqueTurbineGroupPeer;
+import org.apache.fulcrum.security.torque.om.TorqueTurbinePermissionPeer;
+import org.apache.fulcrum.security.torque.om.TorqueTurbineRolePeer;
+import org.apache.fulcrum.security.torque.om.TorqueTurbineRolePermissionPeer;
+import org.apache.fulcrum.security.torque.om.TorqueTurbineUserGroupRolePeer;
+import org.apache.fulcrum.security.torque.om.TorqueTurbineUserPeer;
+import org.apache.fulcrum.security.torque.om.TurbineGroupPeer;
+import org.apache.fulcrum.security.torque.om.TurbinePermissionPeer;
+import org.apache.fulcrum.security.torque.om.TurbineRolePeer;
+import org.apache.fulcrum.security.torque.om.TurbineRolePermissionPeer;
+import org.apache.fulcrum.security.torque.om.TurbineUserGroupRolePeer;
+import org.apache.fulcrum.security.torque.om.TurbineUserPeer;
+import org.apache.fulcrum.security.torque.peer.TurbineRolePermissionPeerMapper;
+import org.apache.fulcrum.security.torque.peer.TurbineUserGroupRoleModelPeerMapper;
+import org.apache.fulcrum.security.torque.security.TorqueBulkSelect;
+import org.apache.fulcrum.security.torque.security.TorqueBulkSelect.Select;
+import org.apache.fulcrum.security.util.PermissionSet;
+import org.apache.fulcrum.security.util.RoleSet;
+import org.apache.torque.Column;
+import org.apache.torque.TorqueException;
+import org.apache.torque.criteria.Criteria;
+import org.apache.torque.criteria.Criterion;
+import org.apache.torque.om.mapper.IntegerMapper;
+import org.apache.torque.util.CountHelper;
+
+/**
+ * Retrieves the attached objects of a whole list of Turbine users, groups,
+ * roles or permissions at once. The relation rows of all entities and the
+ * related entities are each loaded with a few IN-list queries and wired up
+ * in memory, instead of running the queries of
+ * {@link org.apache.fulcrum.security.torque.security.TorqueAbstractSecurityEntity#retrieveAttachedObjects(Connection, Boolean)}
+ * once per entity.
+ *
+ * It also builds the queries answering which users hold a role or a
+ * permission in a group.
+ *
+ * @version $Id$
+ */
+public class TurbineBulkRetriever
+{
+    /** Holder for the retriever of the fulcrum-turbine-default-schema classes */
+    private static class DefaultHolder
+    {
+        static final TurbineBulkRetriever INSTANCE = new TurbineBulkRetriever(
+                TurbineUserGroupRolePeer::doSelect,
+                (criteria, con) -> TurbineUserGroupRolePeer.doSelect(criteria, new IntegerMapper(), con),
+                TurbineUserGroupRolePeer.USER_ID,
+                TurbineUserGroupRolePeer.GROUP_ID, TurbineUserGroupRolePeer.ROLE_ID,
+                TurbineRolePermissionPeer::doSelect, TurbineRolePermissionPeer.ROLE_ID,
+                TurbineRolePermissionPeer.PERMISSION_ID,
+                TurbineUserPeer::doSelect, TurbineUserPeer.USER_ID,
+                TurbineGroupPeer::doSelect, TurbineGroupPeer.GROUP_ID,
+                TurbineRolePeer::doSelect, TurbineRolePeer.ROLE_ID,
+                TurbinePermissionPeer::doSelect, TurbinePermissionPeer.PERMISSION_ID);
+    }
+
+    /** Holder for the retriever of the fulcrum-turbine-schema classes */
+    private static class FulcrumHolder
+    {
+        static final TurbineBulkRetriever INSTANCE = new TurbineBulkRetriever(
+                TorqueTurbineUserGroupRolePeer::doSelect,
+                (criteria, con) -> TorqueTurbineUserGroupRolePeer.doSelect(criteria, new IntegerMapper(), con),
+                TorqueTurbineUserGroupRolePeer.USER_ID,
+                TorqueTurbineUserGroupRolePeer.GROUP_ID, TorqueTurbineUserGroupRolePeer.ROLE_ID,
+                TorqueTurbineRolePermissionPeer::doSelect, TorqueTurbineRolePermissionPeer.ROLE_ID,
+                TorqueTurbineRolePermissionPeer.PERMISSION_ID,
+                TorqueTurbineUserPeer::doSelect, TorqueTurbineUserPeer.USER_ID,
+                TorqueTurbineGroupPeer::doSelect, TorqueTurbineGroupPeer.GROUP_ID,
+                TorqueTurbineRolePeer::doSelect, TorqueTurbineRolePeer.ROLE_ID,
+                TorqueTurbinePermissionPeer::doSelect, TorqueTurbinePermissionPeer.PERMISSION_ID);
+    }
+
+    private final Select<? extends TurbineUserGroupRoleModelPeerMapper> userGroupRoleSelect;
+
+    private final Select<Integer> userGroupRoleIdSelect;
+
+    private final Column userGroupRoleUserId;
+
+    private final Column userGroupRoleGroupId;
+
+    private final Column userGroupRoleRoleId;
+
+    private final Select<? extends TurbineRolePermissionPeerMapper> rolePermissionSelect;
+
+    private final Column rolePermissionRoleId;
+
+    private final Column rolePermissionPermissionId;
+
+    private final Select<User> userSelect;
+
+    private final Column userId;
+
+    private final Select<Group> groupSelect;
+
+    private final Column groupId;
+
+    private final Select<Role> roleSelect;
+
+    private final Column roleId;
+
+    private final Select<Permission> permissionSelect;
+
+    private final Column permissionId;
+
+    private TurbineBulkRetriever(
+            Select<? extends TurbineUserGroupRoleModelPeerMapper> userGroupRoleSelect,
+            Select<Integer> userGroupRoleIdSelect,
+            Column userGroupRoleUserId, Column userGroupRoleGroupId, Column userGroupRoleRoleId,
+            Select<? extends TurbineRolePermissionPeerMapper> rolePermissionSelect,
+            Column rolePermissionRoleId, Column rolePermissionPermissionId,
+            Select<User> userSelect, Column userId,
+            Select<Group> groupSelect, Column groupId,
+            Select<Role> roleSelect, Column roleId,
+            Select<Permission> permissionSelect, Column permissionId)
+    {
+        this.userGroupRoleSelect = userGroupRoleSelect;
+        this.userGroupRoleIdSelect = userGroupRoleIdSelect;
+        this.userGroupRoleUserId = userGroupRoleUserId;
+        this.userGroupRoleGroupId = userGroupRoleGroupId;
+        this.userGroupRoleRoleId = userGroupRoleRoleId;
+        this.rolePermissionSelect = rolePermissionSelect;
+        this.rolePermissionRoleId = rolePermissionRoleId;
+        this.rolePermissionPermissionId = rolePermissionPermissionId;
+        this.userSelect = userSelect;
+        this.userId = userId;
+        this.groupSelect = groupSelect;
+        this.groupId = groupId;
+        this.roleSelect = roleSelect;
+        this.roleId = roleId;
+        this.permissionSelect = permissionSelect;
+        this.permissionId = permissionId;
+    }
+
+    /**
+     * Get the retriever for the entities of a list
+     *
+     * @param entities the entities
+     * @return the retriever for the Torque classes of the entities or
+     *         <code>null</code> if there is none
+     */
+    public static TurbineBulkRetriever getInstance(List<? extends SecurityEntity> entities)
+    {
+        if (entities.isEmpty())
+        {
+            return null;
+        }
+
+        SecurityEntity first = entities.get(0);
+        if (first instanceof DefaultAbstractTurbineUser
+                || first instanceof DefaultAbstractTurbineGroup
+                || first instanceof DefaultAbstractTurbineRole
+                || first instanceof DefaultAbstractTurbinePermission)
+        {
+            return DefaultHolder.INSTANCE;
+        }
+
+        if (first instanceof FulcrumAbstractTurbineUser
+                || first instanceof FulcrumAbstractTurbineGroup
+                || first instanceof FulcrumAbstractTurbineRole
+                || first instanceof FulcrumAbstractTurbinePermission)
+        {
+            return FulcrumHolder.INSTANCE;
+        }
+
+        return null;
+    }
+
+    /**
+     * Retrieve the user/group/role relations of all users
+     *
+     * @param users the users
+     * @param con a database connection
+     * @throws TorqueException if any database error occurs
+     */
+    public void retrieveUserAttachedObjects(List<? extends User> users, Connection con)
+        throws TorqueException
+    {
+        Map<Object, Set<TurbineUserGroupRole>> ugrsByUser = newSetMap(users);
+        List<? extends TurbineUserGroupRoleModelPeerMapper> ugrs =
+                TorqueBulkSelect.selectIn(ugrsByUser.keySet(), userGroupRoleUserId, userGroupRoleSelect, con);
+
+        Map<Object, User> userMap = entityMap(users);
+        Map<Object, Group> groupMap = selectGroups(ugrs, con);
+        Map<Object, Role> roleMap = selectRoles(ugrs, con);
+
+        for (TurbineUserGroupRoleModelPeerMapper ttugr : ugrs)
+        {
+            ugrsByUser.get(ttugr.getUserId()).add(newUserGroupRole(ttugr, userMap, groupMap, roleMap));
+        }
+
+        for (User user : users)
+        {
+            ((TurbineUser) user).setUserGroupRoleSet(ugrsByUser.get(user.getId()));
+        }
+    }
+
+    /**
+     * Retrieve the user/group/role relations of all groups
+     *
+     * @param groups the groups
+     * @param con a database connection
+     * @param lazy if <code>true</code>, nothing is retrieved
+     * @throws TorqueException if any database error occurs
+     */
+    public void retrieveGroupAttachedObjects(List<? extends Group> groups, Connection con, boolean lazy)
+        throws TorqueException
+    {
+        if (lazy)
+        {
+            return;
+        }
+
+        Map<Object, Set<TurbineUserGroupRole>> ugrsByGroup = newSetMap(groups);
+        List<? extends TurbineUserGroupRoleModelPeerMapper> ugrs =
+                TorqueBulkSelect.selectIn(ugrsByGroup.keySet(), userGroupRoleGroupId, userGroupRoleSelect, con);
+
+        Map<Object, User> userMap = selectUsers(ugrs, con);
+        Map<Object, Group> groupMap = entityMap(groups);
+        Map<Object, Role> roleMap = selectRoles(ugrs, con);
+
+        for (TurbineUserGroupRoleModelPeerMapper ttugr : ugrs)
+        {
+            ugrsByGroup.get(ttugr.getGroupId()).add(newUserGroupRole(ttugr, userMap, groupMap, roleMap));
+        }
+
+        for (Group group : groups)
+        {
+            ((TurbineGroup) group).setUserGroupRoleSet(ugrsByGroup.get(group.getId()));
+        }
+    }
+
+    /**
+     * Retrieve the permissions and the user/group/role relations of all roles
+     *
+     * @param roles the roles
+     * @param con a database connection
+     * @param lazy if <code>true</code>, only the permissions are retrieved
+     * @throws TorqueException if any database error occurs
+     */
+    public void retrieveRoleAttachedObjects(List<? extends Role> roles, Connection con, boolean lazy)
+        throws TorqueException
+    {
+        Map<Object, PermissionSet> permissionsByRole = new HashMap<Object, PermissionSet>(roles.size() * 2);
+        for (Role role : roles)
+        {
+            permissionsByRole.put(role.getId(), new PermissionSet());
+        }
+
+        List<? extends TurbineRolePermissionPeerMapper> rps =
+                TorqueBulkSelect.selectIn(permissionsByRole.keySet(), rolePermissionRoleId, rolePermissionSelect, con);
+
+        List<Integer> permissionIds = new ArrayList<Integer>(rps.size());
+        for (TurbineRolePermissionPeerMapper ttrp : rps)
+        {
+            permissionIds.add(ttrp.getPermissionId());
+        }
+        Map<Object, Permission> permissionMap =
+                TorqueBulkSelect.selectByIds(permissionIds, permissionId, permissionSelect, con);
+
+        for (TurbineRolePermissionPeerMapper ttrp : rps)
+        {
+            permissionsByRole.get(ttrp.getRoleId()).add(permissionMap.get(ttrp.getPermissionId()));
+        }
+
+        for (Role role : roles)
+        {
+            ((TurbineRole) role).setPermissions(permissionsByRole.get(role.getId()));
+        }
+
+        if (lazy)
+        {
+            return;
+        }
+
+        Map<Object, Set<TurbineUserGroupRole>> ugrsByRole = newSetMap(roles);
+        List<? extends TurbineUserGroupRoleModelPeerMapper> ugrs =
+                TorqueBulkSelect.selectIn(ugrsByRole.keySet(), userGroupRoleRoleId, userGroupRoleSelect, con);
+
+        Map<Object, User> userMap = selectUsers(ugrs, con);
+        Map<Object, Group> groupMap = selectGroups(ugrs, con);
+        Map<Object, Role> roleMap = entityMap(roles);
+
+        for (TurbineUserGroupRoleModelPeerMapper ttugr : ugrs)
+        {
+            ugrsByRole.get(ttugr.getRoleId()).add(newUserGroupRole(ttugr, userMap, groupMap, roleMap));
+        }
+
+        for (Role role : roles)
+        {
+            ((TurbineRole) role).setUserGroupRoleSet(ugrsByRole.get(role.getId()));
+        }
+    }
+
+    /**
+     * Retrieve the roles of all permissions
+     *
+     * @param permissions the permissions
+     * @param con a database connection
+     * @throws TorqueException if any database error occurs
+     */
+    public void retrievePermissionAttachedObjects(List<? extends Permission> permissions, Connection con)
+        throws TorqueException
+    {
+        Map<Object, RoleSet> rolesByPermission = new HashMap<Object, RoleSet>(permissions.size() * 2);
+        for (Permission permission : permissions)
+        {
+            rolesByPermission.put(permission.getId(), new RoleSet());
+        }
+
+        List<? extends TurbineRolePermissionPeerMapper> rps =
+                TorqueBulkSelect.selectIn(rolesByPermission.keySet(), rolePermissionPermissionId, rolePermissionSelect, con);
+
+        List<Integer> roleIds = new ArrayList<Integer>(rps.size());
+        for (TurbineRolePermissionPeerMapper ttrp : rps)
+        {
+            roleIds.add(ttrp.getRoleId());
+        }
+        Map<Object, Role> roleMap = TorqueBulkSelect.selectByIds(roleIds, roleId, roleSelect, con);
+
+        for (TurbineRolePermissionPeerMapper ttrp : rps)
+        {
+            rolesByPermission.get(ttrp.getPermissionId()).add(roleMap.get(ttrp.getRoleId()));
+        }
+
+        for (Permission permission : permissions)
+        {
+            ((TurbinePermission) permission).setRoles(rolesByPermission.get(permission.getId()));
+        }
+    }
+
+    /**
+     * Select the ids of all users who are assigned a role in a group
+     *
+     * @param groupId the group id
+     * @param roleId the role id
+     * @param con a database connection
+     * @return the user ids
+     * @throws TorqueException if any database error occurs
+     */
+    public List<Integer> selectUserIdsWithRole(Object groupId, Object roleId, Connection con)
+        throws TorqueException
+    {
+        return new ArrayList<Integer>(userGroupRoleIdSelect.doSelect(userIdsWithRole(groupId, roleId), con));
+    }
+
+    /**
+     * Select the ids of all users who are assigned a permission in one of
+     * the given groups, with one query over the user/group/role and the
+     * role/permission table
+     *
+     * @param groupIds the group ids, e.g. a group and its ancestors
+     * @param permissionId the permission id
+     * @param inheritingRoleIds the ids of the roles which inherit the
+     *            permission through the role hierarchy
+     * @param con a database connection
+     * @return the user ids
+     * @throws TorqueException if any database error occurs
+     */
+    public List<Integer> selectUserIdsWithPermission(Collection<?> groupIds, Object permissionId,
+            Collection<?> inheritingRoleIds, Connection con)
+        throws TorqueException
+    {
+        return new ArrayList<Integer>(userGroupRoleIdSelect.doSelect(
+                userIdsWithPermission(groupIds, permissionId, inheritingRoleIds), con));
+    }
+
+    /**
+     * Build the criteria selecting all users who are assigned a role in a
+     * group, as one query with a sub-select
+     *
+     * @param groupId the group id
+     * @param roleId the role id
+     * @return the criteria on the user table
+     */
+    public Criteria usersWithRole(Object groupId, Object roleId)
+    {
+        return new Criteria().where(userId, userIdsWithRole(groupId, roleId), Criteria.IN);
+    }
+
+    /**
+     * Build the criteria selecting all users who are assigned a permission
+     * in one of the given groups, as one query with a sub-select
+     *
+     * @param groupIds the group ids, e.g. a group and its ancestors
+     * @param permissionId the permission id
+     * @param inheritingRoleIds the ids of the roles which inherit the
+     *            permission through the role hierarchy
+     * @return the criteria on the user table
+     */
+    public Criteria usersWithPermission(Collection<?> groupIds, Object permissionId, Collection<?> inheritingRoleIds)
+    {
+        return new Criteria().where(userId, userIdsWithPermission(groupIds, permissionId, inheritingRoleIds), Criteria.IN);
+    }
+
+    /**
+     * Restrict a criteria on the user table to the users who are assigned a
+     * role in a group, with a sub-select
+     *
+     * @param criteria the criteria on the user table
+     * @param groupId the group id
+     * @param roleId the role id or <code>null</code> for any role
+     * @return the criteria
+     */
+    public Criteria whereMember(Criteria criteria, Object groupId, Object roleId)
+    {
+        Criteria members = new Criteria();
+        members.addSelectColumn(userGroupRoleUserId);
+        members.where(userGroupRoleGroupId, groupId);
+        if (roleId != null)
+        {
+            members.where(userGroupRoleRoleId, roleId);
+        }
+        members.setDistinct();
+        return criteria.and(userId, members, Criteria.IN);
+    }
+
+    /**
+     * Count the roles a permission is granted to with a COUNT query on the
+     * role/permission table
+     *
+     * @param permissionId the permission id
+     * @param con a database connection
+     * @return the number of roles
+     * @throws TorqueException if any database error occurs
+     */
+    public int countRolesWithPermission(Object permissionId, Connection con)
+        throws TorqueException
+    {
+        Criteria criteria = new Criteria();
+        criteria.where(rolePermissionPermissionId, permissionId);
+        return new CountHelper().count(criteria, con, rolePermissionRoleId);
+    }
+
+    private Criteria userIdsWithRole(Object groupId, Object roleId)
+    {
+        Criteria criteria = new Criteria();
+        criteria.addSelectColumn(userGroupRoleUserId);
+        criteria.where(userGroupRoleGroupId, groupId);
+        criteria.where(userGroupRoleRoleId, roleId);
+        criteria.setDistinct();
+        return criteria;
+    }
+
+    private Criteria userIdsWithPermission(Collection<?> groupIds, Object permissionId, Collection<?> inheritingRoleIds)
+    {
+        Criteria criteria = new Criteria();
+        criteria.addSelectColumn(userGroupRoleUserId);
+        criteria.where(userGroupRoleGroupId, groupIds, Criteria.IN);
+        criteria.setDistinct();
+
+        if (inheritingRoleIds.isEmpty())
+        {
+            criteria.addJoin(userGroupRoleRoleId, rolePermissionRoleId);
+            criteria.where(rolePermissionPermissionId, permissionId);
+            return criteria;
+        }
+
+        Criteria granting = new Criteria();
+        granting.addSelectColumn(rolePermissionRoleId);
+        granting.where(rolePermissionPermissionId, permissionId);
+
+        Criterion roles = new Criterion(userGroupRoleRoleId, granting, Criteria.IN);
+        roles.or(new Criterion(userGroupRoleRoleId, inheritingRoleIds, Criteria.IN));
+        criteria.where(roles);
+        return criteria;
+    }
+
+    private Map<Object, User> selectUsers(List<? extends TurbineUserGroupRoleModelPeerMapper> ugrs, Connection con)
+        throws TorqueException
+    {
+        List<Integer> ids = new ArrayList<Integer>(ugrs.size());
+        for (TurbineUserGroupRoleModelPeerMapper ttugr : ugrs)
+        {
+            ids.add(ttugr.getUserId());
+        }
+        return TorqueBulkSelect.selectByIds(ids, userId, userSelect, con);
+    }
+
+    private Map<Object, Group> selectGroups(List<? extends TurbineUserGroupRoleModelPeerMapper> ugrs, Connection con)
+        throws TorqueException
+    {
+        List<Integer> ids = new ArrayList<Integer>(ugrs.size());
+        for (TurbineUserGroupRoleModelPeerMapper ttugr : ugrs)
+        {
+            ids.add(ttugr.getGroupId());
+        }
+        return TorqueBulkSelect.selectByIds(ids, groupId, groupSelect, con);
+    }
+
+    private Map<Object, Role> selectRoles(List<? extends TurbineUserGroupRoleModelPeerMapper> ugrs, Connection con)
+        throws TorqueException
+    {
+        List<Integer> ids = new ArrayList<Integer>(ugrs.size());
+        for (TurbineUserGroupRoleModelPeerMapper ttugr : ugrs)
+        {
+            ids.add(ttugr.getRoleId());
+        }
+        return TorqueBulkSelect.selectByIds(ids, roleId, roleSelect, con);
+    }
+
+    private static TurbineUserGroupRole newUserGroupRole(TurbineUserGroupRoleModelPeerMapper ttugr,
+            Map<Object, User> userMap, Map<Object, Group> groupMap, Map<Object, Role> roleMap)
+    {
+        TurbineUserGroupRole ugr = new TurbineUserGroupRole();
+        ugr.setUser(userMap.get(ttugr.getUserId()));
+        ugr.setGroup(groupMap.get(ttugr.getGroupId()));
+        ugr.setRole(roleMap.get(ttugr.getRoleId()));
+        return ugr;
+    }
+
+    private static <T extends SecurityEntity> Map<Object, T> entityMap(List<? extends T> entities)
+    {
+        Map<Object, T> map = new HashMap<Object, T>(entities.size() * 2);
+        for (T entity : entities)
+        {
+            map.put(entity.getId(), entity);
+        }
+        return map;
+    }
+
+    private static Map<Object, Set<TurbineUserGroupRole>> newSetMap(List<? extends SecurityEntity> entities)
+    {
+        Map<Object, Set<TurbineUserGroupRole>> map = new HashMap<Object, Set<TurbineUserGroupRole>>(entities.size() * 2);
+        for (SecurityEntity entity : entities)
+        {
+            map.put(entity.getId(), new HashSet<TurbineUserGroupRole>());
+        }
+        return map;
+    }
+}
@@ -85,6 +85,19 @@ CREATE TABLE DYNAMIC_ROLE_PERMISSION
 );
 
 
+-- ---------------------------------------------------------------------------
+-- DYNAMIC_ROLE_HIERARCHY
+-- ---------------------------------------------------------------------------
+drop table DYNAMIC_ROLE_HIERARCHY if exists CASCADE;
+
+CREATE TABLE DYNAMIC_ROLE_HIERARCHY
+(
+    ROLE_ID INTEGER NOT NULL,
+    PARENT_ROLE_ID INTEGER NOT NULL,
+    PRIMARY KEY(ROLE_ID,PARENT_ROLE_ID)
+);
+
+
 -- ---------------------------------------------------------------------------
 -- DYNAMIC_USER_GROUP
 -- ---------------------------------------------------------------------------
@@ -141,6 +154,16 @@ CREATE TABLE DYNAMIC_USER_DELEGATES
 ;
 
 
+    ALTER TABLE DYNAMIC_ROLE_HIERARCHY
+        ADD CONSTRAINT DYNAMIC_ROLE_HIERARCHY_FK_1 FOREIGN KEY (ROLE_ID)
+            REFERENCES FULCRUM_DYNAMIC_ROLE (ROLE_ID)
+;
+    ALTER TABLE DYNAMIC_ROLE_HIERARCHY
+        ADD CONSTRAINT DYNAMIC_ROLE_HIERARCHY_FK_2 FOREIGN KEY (PARENT_ROLE_ID)
+            REFERENCES FULCRUM_DYNAMIC_ROLE (ROLE_ID)
+;
+
+
     ALTER TABLE DYNAMIC_USER_GROUP
         ADD CONSTRAINT DYNAMIC_USER_GROUP_FK_1 FOREIGN KEY (USER_ID)
             REFERENCES FULCRUM_DYNAMIC_USER (USER_ID)
@@ -89,6 +89,32 @@ CREATE TABLE TURBINE_ROLE_PERMISSION
 );
 
 
+-- ---------------------------------------------------------------------------
+-- TURBINE_ROLE_HIERARCHY
+-- ---------------------------------------------------------------------------
+drop table TURBINE_ROLE_HIERARCHY if exists CASCADE;
+
+CREATE TABLE TURBINE_ROLE_HIERARCHY
+(
+    ROLE_ID INTEGER NOT NULL,
+    PARENT_ROLE_ID INTEGER NOT NULL,
+    PRIMARY KEY(ROLE_ID,PARENT_ROLE_ID)
+);
+
+
+-- ---------------------------------------------------------------------------
+-- TURBINE_GROUP_HIERARCHY
+-- ---------------------------------------------------------------------------
+drop table TURBINE_GROUP_HIERARCHY if exists CASCADE;
+
+CREATE TABLE TURBINE_GROUP_HIERARCHY
+(
+    GROUP_ID INTEGER NOT NULL,
+    PARENT_GROUP_ID INTEGER NOT NULL,
+    PRIMARY KEY(GROUP_ID)
+);
+
+
 -- ---------------------------------------------------------------------------
 -- TURBINE_USER_GROUP_ROLE
 -- ---------------------------------------------------------------------------
@@ -120,6 +146,26 @@ CREATE TABLE TURBINE_USER_GROUP_ROLE
 ;
 
 
+    ALTER TABLE TURBINE_ROLE_HIERARCHY
+        ADD CONSTRAINT TURBINE_ROLE_HIERARCHY_FK_1 FOREIGN KEY (ROLE_ID)
+            REFERENCES FULCRUM_TURBINE_ROLE (ROLE_ID)
+;
+    ALTER TABLE TURBINE_ROLE_HIERARCHY
+        ADD CONSTRAINT TURBINE_ROLE_HIERARCHY_FK_2 FOREIGN KEY (PARENT_ROLE_ID)
+            REFERENCES FULCRUM_TURBINE_ROLE (ROLE_ID)
+;
+
+
+    ALTER TABLE TURBINE_GROUP_HIERARCHY
+        ADD CONSTRAINT TURBINE_GROUP_HIERARCHY_FK_1 FOREIGN KEY (GROUP_ID)
+            REFERENCES FULCRUM_TURBINE_GROUP (GROUP_ID)
+;
+    ALTER TABLE TURBINE_GROUP_HIERARCHY
+        ADD CONSTRAINT TURBINE_GROUP_HIERARCHY_FK_2 FOREIGN KEY (PARENT_GROUP_ID)
+            REFERENCES FULCRUM_TURBINE_GROUP (GROUP_ID)
+;
+
+
     ALTER TABLE TURBINE_USER_GROUP_ROLE
         ADD CONSTRAINT TURBINE_USER_GROUP_ROLE_FK_1 FOREIGN KEY (USER_ID)
             REFERENCES FULCRUM_TURBINE_USER (USER_ID)
@@ -0,0 +1,148 @@
+package org.apache.fulcrum.security.torque;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.LoggerConfig;
+import org.apache.logging.log4j.core.config.Property;
+import org.apache.torque.util.BasePeerImpl;
+
+/**
+ * Counts the statements Torque executes while it is open, by listening to
+ * the debug log of the Torque peers. Statements issued through plain JDBC
+ * are not counted.
+ *
+ * @version $Id$
+ */
+public class QueryCounter extends AbstractAppender implements AutoCloseable
+{
+    private static final String[] LOGGER_NAMES = { BasePeerImpl.class.getName() };
+
+    private final AtomicInteger queries = new AtomicInteger();
+
+    private final AtomicInteger inserts = new AtomicInteger();
+
+    private final AtomicInteger updates = new AtomicInteger();
+
+    private final AtomicInteger deletes = new AtomicInteger();
+
+    private QueryCounter()
+    {
+        super("QueryCounter", null, null, true, Property.EMPTY_ARRAY);
+    }
+
+    /**
+     * Start counting
+     *
+     * @return the counter
+     */
+    public static QueryCounter open()
+    {
+        QueryCounter counter = new QueryCounter();
+        counter.start();
+
+        LoggerContext context = LoggerContext.getContext(false);
+        Configuration config = context.getConfiguration();
+        for (String name : LOGGER_NAMES)
+        {
+            LoggerConfig loggerConfig = new LoggerConfig(name, Level.DEBUG, false);
+            loggerConfig.addAppender(counter, Level.DEBUG, null);
+            config.addLogger(name, loggerConfig);
+        }
+        context.updateLoggers();
+
+        return counter;
+    }
+
+    @Override
+    public void append(LogEvent event)
+    {
+        String format = event.getMessage().getFormat();
+        if (format.startsWith("Executing query"))
+        {
+            queries.incrementAndGet();
+        }
+        else if (format.startsWith("Executing insert"))
+        {
+            inserts.incrementAndGet();
+        }
+        else if (format.startsWith("Executing update"))
+        {
+            updates.incrementAndGet();
+        }
+        else if (format.startsWith("Executing delete"))
+        {
+            deletes.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of select statements executed so far
+     */
+    public int getQueries()
+    {
+        return queries.get();
+    }
+
+    /**
+     * @return the number of insert statements executed so far
+     */
+    public int getInserts()
+    {
+        return inserts.get();
+    }
+
+    /**
+     * @return the number of update statements executed so far
+     */
+    public int getUpdates()
+    {
+        return updates.get();
+    }
+
+    /**
+     * @return the number of delete statements executed so far
+     */
+    public int getDeletes()
+    {
+        return deletes.get();
+    }
+
+    /**
+     * Stop counting
+     */
+    @Override
+    public void close()
+    {
+        LoggerContext context = LoggerContext.getContext(false);
+        for (String name : LOGGER_NAMES)
+        {
+            context.getConfiguration().removeLogger(name);
+        }
+        context.updateLoggers();
+        stop();
+    }
+}
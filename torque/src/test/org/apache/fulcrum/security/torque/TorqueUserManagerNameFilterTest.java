@@ -0,0 +1,74 @@
+package org.apache.fulcrum.security.torque;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.fulcrum.security.spi.AbstractUserManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Run the user manager tests with the user name filter enabled
+ *
+ * @version $Id$
+ */
+public class TorqueUserManagerNameFilterTest extends TorqueUserManagerTest
+{
+    @Override
+    @BeforeEach
+    public void setUp()
+    {
+        super.setUp();
+        ((AbstractUserManager) userManager).setNameFilterSize(100);
+    }
+
+    @Test
+    public void testNameFilter() throws Exception
+    {
+        AbstractUserManager manager = (AbstractUserManager) userManager;
+        user = userManager.getUserInstance("filtered");
+        userManager.addUser(user, "secret");
+
+        long rebuilds = manager.getNameFilterRebuilds();
+        long negatives = manager.getNameFilterNegatives();
+        assertFalse(userManager.checkExists("nobody"));
+        assertEquals(negatives + 1, manager.getNameFilterNegatives());
+        assertEquals(rebuilds, manager.getNameFilterRebuilds());
+        assertNotNull(manager.getNameFilter());
+
+        assertTrue(userManager.checkExists("Filtered"));
+        user = userManager.getUserInstance("added");
+        userManager.addUser(user, "secret");
+        assertTrue(userManager.checkExists("added"));
+
+        userManager.removeUser(user);
+        negatives = manager.getNameFilterNegatives();
+        assertFalse(userManager.checkExists("added"));
+        assertEquals(negatives + 1, manager.getNameFilterNegatives());
+
+        assertTrue(manager.rebuildNameFilter());
+        assertEquals(rebuilds + 1, manager.getNameFilterRebuilds());
+        assertEquals(1, manager.getNameFilter().size());
+        assertTrue(userManager.checkExists("filtered"));
+    }
+}
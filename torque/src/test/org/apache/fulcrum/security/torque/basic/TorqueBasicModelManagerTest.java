@@ -19,16 +19,22 @@ package org.apache.fulcrum.security.torque.basic;
  * under the License.
  */
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import org.apache.fulcrum.security.SecurityService;
+import org.apache.fulcrum.security.entity.Group;
 import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.basic.entity.BasicGroup;
 import org.apache.fulcrum.security.model.basic.entity.BasicUser;
 import org.apache.fulcrum.security.model.basic.test.AbstractModelManagerTest;
 import org.apache.fulcrum.security.torque.HsqlDB;
+import org.apache.fulcrum.security.torque.QueryCounter;
 import org.apache.fulcrum.security.torque.om.TorqueBasicGroupPeer;
 import org.apache.fulcrum.security.torque.om.TorqueBasicUserGroupPeer;
 import org.apache.fulcrum.security.torque.om.TorqueBasicUserPeer;
+import org.apache.fulcrum.security.util.GroupSet;
+import org.apache.fulcrum.security.util.UserSet;
 import org.apache.torque.TorqueException;
 import org.apache.torque.criteria.Criteria;
 import org.junit.After;
@@ -71,6 +77,35 @@ public class TorqueBasicModelManagerTest extends AbstractModelManagerTest
         assertEquals(0, ((BasicUser) user).getGroups().size());
     }
 
+    @Test
+    public void testGetAllQueryCount() throws Exception
+    {
+        Group group = groupManager.getGroupInstance("TEST_BULK");
+        groupManager.addGroup(group);
+        for (int i = 0; i < 10; i++)
+        {
+            User user = userManager.getUserInstance("Bulk" + i);
+            userManager.addUser(user, "pet");
+            modelManager.grant(user, group);
+        }
+
+        try (QueryCounter counter = QueryCounter.open())
+        {
+            // users, user groups, groups
+            UserSet<User> users = userManager.getAllUsers();
+            assertEquals(3, counter.getQueries());
+            assertTrue(((BasicUser) users.getByName("Bulk7")).getGroups().contains(group));
+        }
+
+        try (QueryCounter counter = QueryCounter.open())
+        {
+            // groups, user groups, users
+            GroupSet groups = groupManager.getAllGroups();
+            assertEquals(3, counter.getQueries());
+            assertEquals(10, ((BasicGroup) groups.getByName("TEST_BULK")).getUsers().size());
+        }
+    }
+
     @Override
     @After
 	public void tearDown()
@@ -1,5 +1,7 @@
 package org.apache.fulcrum.security.torque.dynamic;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 /*
@@ -22,8 +24,17 @@ import static org.junit.jupiter.api.Assertions.fail;
  */
 
 import org.apache.fulcrum.security.SecurityService;
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.dynamic.entity.DynamicGroup;
+import org.apache.fulcrum.security.model.dynamic.entity.DynamicPermission;
+import org.apache.fulcrum.security.model.dynamic.entity.DynamicRole;
+import org.apache.fulcrum.security.model.dynamic.entity.DynamicUser;
 import org.apache.fulcrum.security.model.dynamic.test.AbstractDynamicModelManagerTest;
 import org.apache.fulcrum.security.torque.HsqlDB;
+import org.apache.fulcrum.security.torque.QueryCounter;
 import org.apache.fulcrum.security.torque.om.TorqueDynamicGroupPeer;
 import org.apache.fulcrum.security.torque.om.TorqueDynamicGroupRolePeer;
 import org.apache.fulcrum.security.torque.om.TorqueDynamicPermissionPeer;
@@ -32,10 +43,15 @@ import org.apache.fulcrum.security.torque.om.TorqueDynamicRolePermissionPeer;
 import org.apache.fulcrum.security.torque.om.TorqueDynamicUserDelegatesPeer;
 import org.apache.fulcrum.security.torque.om.TorqueDynamicUserGroupPeer;
 import org.apache.fulcrum.security.torque.om.TorqueDynamicUserPeer;
+import org.apache.fulcrum.security.util.GroupSet;
+import org.apache.fulcrum.security.util.PermissionSet;
+import org.apache.fulcrum.security.util.RoleSet;
+import org.apache.fulcrum.security.util.UserSet;
 import org.apache.torque.TorqueException;
 import org.apache.torque.criteria.Criteria;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 
 
 /**
@@ -68,6 +84,67 @@ public class TorqueDynamicModelManagerTest extends AbstractDynamicModelManagerTe
         }
     }
 
+    @Test
+    public void testGetAllQueryCount() throws Exception
+    {
+        Permission permission = permissionManager.getPermissionInstance("TEST_BULK_PERMISSION");
+        permissionManager.addPermission(permission);
+        Group group = groupManager.getGroupInstance("TEST_BULK");
+        groupManager.addGroup(group);
+        User delegator = userManager.getUserInstance("BulkDelegator");
+        userManager.addUser(delegator, "pet");
+        for (int i = 0; i < 10; i++)
+        {
+            Role role = roleManager.getRoleInstance("TEST_BULK_ROLE" + i);
+            roleManager.addRole(role);
+            modelManager.grant(role, permission);
+            modelManager.grant(group, role);
+            User user = userManager.getUserInstance("Bulk" + i);
+            userManager.addUser(user, "pet");
+            modelManager.grant(user, group);
+            modelManager.addDelegate(delegator, user);
+        }
+
+        try (QueryCounter counter = QueryCounter.open())
+        {
+            // users, user groups, groups, delegators, users, delegatees, users
+            UserSet<User> users = userManager.getAllUsers();
+            assertEquals(7, counter.getQueries());
+            DynamicUser user = (DynamicUser) users.getByName("Bulk7");
+            assertTrue(user.getGroups().contains(group));
+            assertTrue(user.getDelegators().contains(delegator));
+            assertEquals(10, ((DynamicUser) users.getByName("BulkDelegator")).getDelegatees().size());
+        }
+
+        try (QueryCounter counter = QueryCounter.open())
+        {
+            // groups, user groups, users, group roles, roles
+            GroupSet groups = groupManager.getAllGroups();
+            assertEquals(5, counter.getQueries());
+            DynamicGroup g = (DynamicGroup) groups.getByName("TEST_BULK");
+            assertEquals(10, g.getUsers().size());
+            assertEquals(10, g.getRoles().size());
+        }
+
+        try (QueryCounter counter = QueryCounter.open())
+        {
+            // roles, role permissions, permissions, group roles, groups
+            RoleSet roles = roleManager.getAllRoles();
+            assertEquals(5, counter.getQueries());
+            DynamicRole role = (DynamicRole) roles.getByName("TEST_BULK_ROLE3");
+            assertTrue(role.getPermissions().contains(permission));
+            assertTrue(role.getGroups().contains(group));
+        }
+
+        try (QueryCounter counter = QueryCounter.open())
+        {
+            // permissions, role permissions, roles
+            PermissionSet permissions = permissionManager.getAllPermissions();
+            assertEquals(3, counter.getQueries());
+            assertEquals(10, ((DynamicPermission) permissions.getByName("TEST_BULK_PERMISSION")).getRoles().size());
+        }
+    }
+
     @Override
     @AfterEach
 	public void tearDown()
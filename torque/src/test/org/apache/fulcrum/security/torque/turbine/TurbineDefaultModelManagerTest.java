@@ -18,25 +18,49 @@ package org.apache.fulcrum.security.torque.turbine;
  * under the License.
  */
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.fulcrum.security.SecurityService;
+import org.apache.fulcrum.security.entity.Group;
+import org.apache.fulcrum.security.entity.Permission;
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.entity.User;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineGroup;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineRole;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineUser;
+import org.apache.fulcrum.security.model.turbine.entity.TurbineUserGroupRole;
 import org.apache.fulcrum.security.model.turbine.test.AbstractTurbineModelManagerTest;
 import org.apache.fulcrum.security.torque.HsqlDB;
+import org.apache.fulcrum.security.torque.QueryCounter;
 import org.apache.fulcrum.security.torque.om.TurbineGroupPeer;
 import org.apache.fulcrum.security.torque.om.TurbinePermissionPeer;
 import org.apache.fulcrum.security.torque.om.TurbineRolePeer;
 import org.apache.fulcrum.security.torque.om.TurbineRolePermissionPeer;
 import org.apache.fulcrum.security.torque.om.TurbineUserGroupRolePeer;
 import org.apache.fulcrum.security.torque.om.TurbineUserPeer;
+import org.apache.fulcrum.security.torque.security.TorqueAbstractSecurityEntity;
+import org.apache.fulcrum.security.torque.security.turbine.TurbineUserGroupRoleDelta;
+import org.apache.fulcrum.security.util.RoleSet;
+import org.apache.fulcrum.security.util.UserSet;
 import org.apache.torque.TorqueException;
 import org.apache.torque.criteria.Criteria;
 import org.apache.torque.util.Transaction;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 
 /**
  * @author <a href="mailto:tv@apache.org">Thomas Vandahl</a>
@@ -130,4 +154,196 @@ public class TurbineDefaultModelManagerTest
         securityService = null;
     }
 
+    @Test
+    public void testRevokeUserGroupRoleKeepsOtherRows() throws Exception
+    {
+        Group group = securityService.getGroupManager().getGroupInstance("TEST_DELTA");
+        securityService.getGroupManager().addGroup(group);
+        User user = userManager.getUserInstance("Delta");
+        userManager.addUser(user, "pet");
+        Role role1 = roleManager.getRoleInstance("TEST_DELTA_ROLE1");
+        roleManager.addRole(role1);
+        Role role2 = roleManager.getRoleInstance("TEST_DELTA_ROLE2");
+        roleManager.addRole(role2);
+
+        modelManager.grant(user, group, role1);
+        modelManager.grant(user, group, role2);
+        assertEquals(2, countUserGroupRoles(user));
+
+        // only the revoked row is deleted, the other row is left as it is
+        modelManager.revoke(user, group, role1);
+        List<org.apache.fulcrum.security.torque.om.TurbineUserGroupRole> rows = selectUserGroupRoles(user);
+        assertEquals(1, rows.size());
+        assertEquals(group.getId(), rows.get(0).getGroupId());
+        assertEquals(role2.getId(), rows.get(0).getRoleId());
+    }
+
+    @Test
+    public void testDeltaBatchesOnlyChangedRows() throws Exception
+    {
+        Group group = securityService.getGroupManager().getGroupInstance("TEST_DELTA_JDBC");
+        securityService.getGroupManager().addGroup(group);
+        User user = userManager.getUserInstance("DeltaJdbc");
+        userManager.addUser(user, "pet");
+        Role role1 = roleManager.getRoleInstance("TEST_DELTA_JDBC_ROLE1");
+        roleManager.addRole(role1);
+        Role role2 = roleManager.getRoleInstance("TEST_DELTA_JDBC_ROLE2");
+        roleManager.addRole(role2);
+        modelManager.grant(user, group, role1);
+        modelManager.grant(user, group, role2);
+
+        TurbineUserGroupRole revoked = new TurbineUserGroupRole();
+        revoked.setUser(user);
+        revoked.setGroup(group);
+        revoked.setRole(role1);
+        TurbineUserGroupRoleDelta delta = new TurbineUserGroupRoleDelta();
+        delta.remove(revoked);
+
+        Map<String, Integer> rows = new HashMap<String, Integer>();
+        Connection con = Transaction.begin();
+        try
+        {
+            delta.apply(countBatchedRows(con, rows), TurbineUserGroupRolePeer.TABLE_NAME,
+                    TurbineUserGroupRolePeer.USER_ID, TurbineUserGroupRolePeer.GROUP_ID, TurbineUserGroupRolePeer.ROLE_ID);
+            Transaction.commit(con);
+            con = null;
+        }
+        finally
+        {
+            if (con != null)
+            {
+                Transaction.safeRollback(con);
+            }
+        }
+
+        // one deleted row, nothing inserted
+        assertEquals(Integer.valueOf(1), rows.get("DELETE"));
+        assertNull(rows.get("INSERT"));
+        assertEquals(1, countUserGroupRoles(user));
+    }
+
+    @Test
+    public void testRetrieveAttachedUsersQueryCount() throws Exception
+    {
+        Group group = securityService.getGroupManager().getGroupInstance("TEST_QUERY_COUNT");
+        securityService.getGroupManager().addGroup(group);
+        Role role = roleManager.getRoleInstance("TEST_QUERY_COUNT_ROLE");
+        roleManager.addRole(role);
+        for (int i = 0; i < 10; i++)
+        {
+            User user = userManager.getUserInstance("QueryCount" + i);
+            userManager.addUser(user, "pet");
+            modelManager.grant(user, group, role);
+        }
+
+        Connection con = Transaction.begin();
+        try (QueryCounter counter = QueryCounter.open())
+        {
+            // role permissions, user group roles, users
+            ((TorqueAbstractSecurityEntity) role).retrieveAttachedObjects(con, false);
+            assertEquals(3, counter.getQueries());
+            assertEquals(10, ((TurbineRole) role).getUserGroupRoleSet().size());
+
+            // user group roles, users
+            ((TorqueAbstractSecurityEntity) group).retrieveAttachedObjects(con, false);
+            assertEquals(5, counter.getQueries());
+            assertEquals(10, ((TurbineGroup) group).getUserGroupRoleSet().size());
+        }
+        finally
+        {
+            Transaction.commit(con);
+        }
+    }
+
+    @Test
+    public void testGetAllQueryCount() throws Exception
+    {
+        Permission permission = permissionManager.getPermissionInstance("TEST_BULK_PERMISSION");
+        permissionManager.addPermission(permission);
+        Group group = securityService.getGroupManager().getGroupInstance("TEST_BULK");
+        securityService.getGroupManager().addGroup(group);
+        for (int i = 0; i < 10; i++)
+        {
+            Role role = roleManager.getRoleInstance("TEST_BULK_ROLE" + i);
+            roleManager.addRole(role);
+            modelManager.grant(role, permission);
+            User user = userManager.getUserInstance("Bulk" + i);
+            userManager.addUser(user, "pet");
+            modelManager.grant(user, group, role);
+        }
+
+        try (QueryCounter counter = QueryCounter.open())
+        {
+            // roles, role permissions, permissions, user group roles, users, groups
+            RoleSet roles = roleManager.getAllRoles();
+            assertEquals(6, counter.getQueries());
+            Role role = roles.getByName("TEST_BULK_ROLE3");
+            assertTrue(((TurbineRole) role).getPermissions().contains(permission));
+            assertEquals(1, ((TurbineRole) role).getUserGroupRoleSet().size());
+        }
+
+        try (QueryCounter counter = QueryCounter.open())
+        {
+            // users, user group roles, groups, roles
+            UserSet<User> users = userManager.getAllUsers();
+            assertEquals(4, counter.getQueries());
+            TurbineUser user = (TurbineUser) users.getByName("Bulk7");
+            TurbineUserGroupRole ugr = user.getUserGroupRoleSet().iterator().next();
+            assertTrue("TEST_BULK_ROLE7".equalsIgnoreCase(ugr.getRole().getName()));
+            assertEquals(group, ugr.getGroup());
+        }
+    }
+
+    /**
+     * Wrap a connection so that the rows added to the batches of its
+     * prepared statements are counted per statement type
+     */
+    private static Connection countBatchedRows(Connection con, Map<String, Integer> rows)
+    {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                Object result = invoke(con, method, args);
+                if ("prepareStatement".equals(method.getName()))
+                {
+                    String sql = (String) args[0];
+                    String type = sql.substring(0, sql.indexOf(' '));
+                    PreparedStatement ps = (PreparedStatement) result;
+                    return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                        new Class<?>[] { PreparedStatement.class }, (psProxy, psMethod, psArgs) -> {
+                            if ("addBatch".equals(psMethod.getName()) && psArgs == null)
+                            {
+                                rows.merge(type, 1, Integer::sum);
+                            }
+                            return invoke(ps, psMethod, psArgs);
+                        });
+                }
+                return result;
+            });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable
+    {
+        try
+        {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    private int countUserGroupRoles(User user) throws TorqueException
+    {
+        return selectUserGroupRoles(user).size();
+    }
+
+    private List<org.apache.fulcrum.security.torque.om.TurbineUserGroupRole> selectUserGroupRoles(User user)
+        throws TorqueException
+    {
+        Criteria criteria = new Criteria();
+        criteria.where( TurbineUserGroupRolePeer.USER_ID, user.getId() );
+        return TurbineUserGroupRolePeer.doSelect( criteria );
+    }
+
 }